@@ -0,0 +1,143 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * Classe ChunkedMapping, fichier de taille quelconque (éventuellement supérieure à 2 Go) projeté en mémoire par
+ * tranches d'au plus 1 Go, et composé d'enregistrements de taille fixe adressés par un index de type long. Chaque
+ * tranche contient une puissance de deux d'enregistrements, de sorte qu'aucun champ n'est à cheval sur deux
+ * tranches et que la tranche d'un enregistrement se déduit de son index par un simple décalage.
+ * Les tranches appartiennent à l'arène (voir GraphArena) qui a projeté le fichier. La fermeture de l'arène est
+ * marquée par un indicateur qui n'est consulté ni par getInt ni par getShort, les accès les plus fréquents de la
+ * recherche d'itinéraire, mais seulement par slice; les tranches restent projetées tant que le fichier est
+ * référencé.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class ChunkedMapping {
+    /**
+     * Logarithme en base 2 de la taille maximale, en octets, d'une tranche
+     */
+    private static final int MAX_CHUNK_BYTES_BITS = 30;
+
+    private final int recordBytes;
+    private final long recordCount;
+    private final int chunkRecordsBits;
+    private final long chunkRecordsMask;
+    private final ByteBuffer[] chunks;
+    private volatile boolean isReleased;
+
+    private ChunkedMapping(int recordBytes, long recordCount, int chunkRecordsBits, ByteBuffer[] chunks) {
+        this.recordBytes = recordBytes;
+        this.recordCount = recordCount;
+        this.chunkRecordsBits = chunkRecordsBits;
+        this.chunkRecordsMask = (1L << chunkRecordsBits) - 1;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Projette en mémoire, en lecture seule, le fichier dont le chemin est donné
+     * @param path chemin d'accès du fichier
+     * @param recordBytes taille, en octets, d'un enregistrement
+     * @return le fichier projeté
+     * @throws IOException en cas d'erreur d'entrée ou sortie, p.ex: si le fichier n'existe pas
+     * @throws IllegalArgumentException si la taille d'un enregistrement n'est pas strictement positive, ou si
+     * la taille du fichier n'en est pas un multiple
+     */
+    static ChunkedMapping map(Path path, int recordBytes) throws IOException {
+        Preconditions.checkArgument(recordBytes > 0);
+        try (FileChannel channel = FileChannel.open(path)) {
+            long size = channel.size();
+            Preconditions.checkArgument(size % recordBytes == 0);
+            long recordCount = size / recordBytes;
+            int chunkRecordsBits = MAX_CHUNK_BYTES_BITS - (Integer.SIZE - Integer.numberOfLeadingZeros(recordBytes - 1));
+            long chunkBytes = (long) recordBytes << chunkRecordsBits;
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((size + chunkBytes - 1) / chunkBytes)];
+            for (int i = 0; i < chunks.length; i++) {
+                long position = i * chunkBytes;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkBytes, size - position));
+            }
+            return new ChunkedMapping(recordBytes, recordCount, chunkRecordsBits, chunks);
+        }
+    }
+
+    /**
+     * Retourne le nombre d'enregistrements du fichier
+     * @return le nombre d'enregistrements
+     */
+    long recordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Retourne l'entier de type int se trouvant à la position donnée de l'enregistrement d'index donné
+     * @param record index de l'enregistrement
+     * @param offset position de l'entier dans l'enregistrement, en octets
+     * @return l'entier
+     */
+    int getInt(long record, int offset) {
+        return chunk(record).getInt(position(record, offset));
+    }
+
+    /**
+     * Retourne l'entier de type short se trouvant à la position donnée de l'enregistrement d'index donné
+     * @param record index de l'enregistrement
+     * @param offset position de l'entier dans l'enregistrement, en octets
+     * @return l'entier
+     */
+    short getShort(long record, int offset) {
+        return chunk(record).getShort(position(record, offset));
+    }
+
+    /**
+     * Retourne une mémoire tampon contenant les enregistrements consécutifs donnés, qui est une vue de la tranche
+     * qui les contient, ou une copie s'ils sont à cheval sur deux tranches
+     * @param record index du premier enregistrement
+     * @param count nombre d'enregistrements
+     * @return la mémoire tampon, positionnée au premier enregistrement
+     * @throws IndexOutOfBoundsException si les enregistrements ne sont pas tous dans le fichier
+     * @throws IllegalStateException si l'arène du fichier a été fermée
+     */
+    ByteBuffer slice(long record, int count) {
+        Objects.checkFromIndexSize(record, count, recordCount);
+        if (isReleased) {
+            throw new IllegalStateException("arène fermée");
+        }
+        if (count == 0) {
+            return ByteBuffer.allocate(0);
+        }
+        int first = (int) (record >>> chunkRecordsBits);
+        int position = position(record, 0);
+        int bytes = count * recordBytes;
+        if (first == (int) ((record + count - 1) >>> chunkRecordsBits)) {
+            return chunks[first].slice(position, bytes);
+        }
+        int firstBytes = chunks[first].capacity() - position;
+        return ByteBuffer.allocate(bytes)
+                .put(0, chunks[first], position, firstBytes)
+                .put(firstBytes, chunks[first + 1], 0, bytes - firstBytes);
+    }
+
+    /**
+     * Marque le fichier comme libéré, ce que vérifie slice; la mémoire des tranches est libérée dès que le
+     * fichier n'est plus référencé
+     */
+    void release() {
+        isReleased = true;
+    }
+
+    private ByteBuffer chunk(long record) {
+        return chunks[(int) (record >>> chunkRecordsBits)];
+    }
+
+    private int position(long record, int offset) {
+        return (int) (record & chunkRecordsMask) * recordBytes + offset;
+    }
+}
@@ -0,0 +1,214 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Q28_4;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+import static java.lang.Short.toUnsignedInt;
+
+/**
+ * Classe CompressedEdges, arêtes d'un graphe et identités de leurs profils lues dans edges_compressed.bin (voir
+ * GraphCompression), où elles sont regroupées en blocs de BLOCK_EDGES arêtes. Un index donne la position de
+ * chaque bloc, de sorte que le bloc d'une arête est trouvé en temps constant. Les échantillons des profils
+ * restent lus dans elevations.bin.
+ * <p>
+ * Un bloc contient la position de chacune de ses colonnes, puis les colonnes des destinations, longueurs,
+ * dénivelés, ensembles d'attributs et profils de ses arêtes, chaque valeur étant encodée sur un nombre variable
+ * d'octets (voir VarInts). Les destinations et les premiers échantillons des profils, proches d'une arête à la
+ * suivante, sont représentés par leur différence avec ceux de l'arête précédente du bloc (ou avec 0 pour la
+ * première), encodée en zigzag et suivie du sens de l'arête (1 bit) ou du type du profil (2 bits). L'accès à un
+ * champ d'une arête décode donc au plus BLOCK_EDGES entiers.
+ * <p>
+ * Format du fichier : nombre d'arêtes, position de chaque bloc (entiers de type int), puis les blocs.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class CompressedEdges implements EdgeStorage {
+    private static final int BLOCK_EDGES_BITS = 4;
+    private static final int BLOCK_EDGES = 1 << BLOCK_EDGES_BITS;
+    private static final int BLOCK_EDGES_MASK = BLOCK_EDGES - 1;
+    /**
+     * Index des colonnes d'un bloc; la position de chaque colonne, sauf la première, est donnée par un octet
+     * au début du bloc
+     */
+    private static final int TARGETS = 0;
+    private static final int LENGTHS = 1;
+    private static final int ELEVATION_GAINS = 2;
+    private static final int ATTRIBUTES = 3;
+    private static final int PROFILES = 4;
+    private static final int COLUMN_COUNT = 5;
+    /**
+     * Nombre de bits de poids faible des valeurs des colonnes des destinations et des profils qui ne sont pas
+     * des différences, mais le sens de l'arête et le type du profil
+     */
+    private static final int DIRECTION_BITS = 1;
+    private static final int PROFILE_TYPE_BITS = 2;
+    private static final int NUMBER_OF_BYTES = 10;
+
+    private final ByteBuffer buffer;
+    private final ShortBuffer elevations;
+    private final int count;
+
+    /**
+     * Constructeur
+     * @param buffer contenu de edges_compressed.bin
+     * @param elevations échantillons des profils, tels que dans elevations.bin
+     */
+    CompressedEdges(ByteBuffer buffer, ShortBuffer elevations) {
+        this.buffer = buffer;
+        this.elevations = elevations;
+        this.count = buffer.getInt(0);
+    }
+
+    /**
+     * Retourne le contenu de edges_compressed.bin pour les arêtes données
+     * @param edges arêtes et identités de leurs profils, telles que dans edges.bin et profile_ids.bin
+     * @return le contenu du fichier
+     */
+    static byte[] encode(GraphEdges edges) {
+        ByteBuffer edgesBuffer = edges.edgesBuffer();
+        IntBuffer profileIds = edges.profileIds();
+        int count = edges.count();
+        int blockCount = Math2.ceilDiv(count, BLOCK_EDGES);
+        int indexBytes = Integer.BYTES * (1 + blockCount);
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        ByteBuffer index = ByteBuffer.allocate(indexBytes).putInt(count);
+
+        for (int block = 0; block < blockCount; block++) {
+            int firstEdgeId = block << BLOCK_EDGES_BITS;
+            int lastEdgeId = Math.min(firstEdgeId + BLOCK_EDGES, count);
+            ByteArrayOutputStream[] columns = new ByteArrayOutputStream[COLUMN_COUNT];
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                columns[column] = new ByteArrayOutputStream();
+            }
+            int previousTarget = 0, previousFirstSample = 0;
+            for (int edgeId = firstEdgeId; edgeId < lastEdgeId; edgeId++) {
+                int offset = NUMBER_OF_BYTES * edgeId;
+                int target = edgesBuffer.getInt(offset);
+                int targetNodeId = target < 0 ? ~target : target;
+                VarInts.write(columns[TARGETS], VarInts.zigZag((long) targetNodeId - previousTarget) << DIRECTION_BITS
+                        | (target < 0 ? 1 : 0));
+                previousTarget = targetNodeId;
+                VarInts.write(columns[LENGTHS], toUnsignedInt(edgesBuffer.getShort(offset + Integer.BYTES)));
+                VarInts.write(columns[ELEVATION_GAINS],
+                        toUnsignedInt(edgesBuffer.getShort(offset + Integer.BYTES + Short.BYTES)));
+                VarInts.write(columns[ATTRIBUTES],
+                        toUnsignedInt(edgesBuffer.getShort(offset + Integer.BYTES + 2 * Short.BYTES)));
+                int profileId = profileIds.get(edgeId);
+                int firstSample = Bits.extractUnsigned(profileId, 0, 30);
+                VarInts.write(columns[PROFILES], VarInts.zigZag((long) firstSample - previousFirstSample)
+                        << PROFILE_TYPE_BITS | Bits.extractUnsigned(profileId, 30, 2));
+                previousFirstSample = firstSample;
+            }
+            index.putInt(Integer.BYTES * (1 + block), indexBytes + blocks.size());
+            // Au pire, une colonne de BLOCK_EDGES valeurs de 5 octets suivie de trois de 3 octets : 228 < 256
+            int columnOffset = COLUMN_COUNT - 1;
+            for (int column = 0; column < COLUMN_COUNT - 1; column++) {
+                columnOffset += columns[column].size();
+                blocks.write(columnOffset);
+            }
+            for (ByteArrayOutputStream column : columns) {
+                blocks.writeBytes(column.toByteArray());
+            }
+        }
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream(indexBytes + blocks.size());
+        file.writeBytes(index.array());
+        file.writeBytes(blocks.toByteArray());
+        return file.toByteArray();
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public boolean isInverted(int edgeId) {
+        return (value(edgeId, TARGETS) & 1) != 0;
+    }
+
+    @Override
+    public int targetNodeId(int edgeId) {
+        return (int) sum(edgeId, TARGETS, DIRECTION_BITS);
+    }
+
+    @Override
+    public double length(int edgeId) {
+        return Q28_4.asDouble((int) value(edgeId, LENGTHS));
+    }
+
+    @Override
+    public double elevationGain(int edgeId) {
+        return Q28_4.asDouble((int) value(edgeId, ELEVATION_GAINS));
+    }
+
+    @Override
+    public boolean hasProfile(int edgeId) {
+        return (value(edgeId, PROFILES) & ((1 << PROFILE_TYPE_BITS) - 1)) != 0;
+    }
+
+    @Override
+    public float[] profileSamples(int edgeId) {
+        int type = (int) (value(edgeId, PROFILES) & ((1 << PROFILE_TYPE_BITS) - 1));
+        int firstSample = (int) sum(edgeId, PROFILES, PROFILE_TYPE_BITS);
+        return GraphEdges.profileSamples(type << 30 | firstSample, (int) value(edgeId, LENGTHS),
+                isInverted(edgeId), elevations);
+    }
+
+    @Override
+    public int attributesIndex(int edgeId) {
+        return (int) value(edgeId, ATTRIBUTES);
+    }
+
+    /**
+     * Retourne la position du début de la colonne donnée du bloc contenant l'arête d'identité donnée
+     * @param edgeId identité de l'arête
+     * @param column index de la colonne
+     * @return la position de la colonne
+     */
+    private int columnOffset(int edgeId, int column) {
+        int block = buffer.getInt(Integer.BYTES * (1 + (edgeId >>> BLOCK_EDGES_BITS)));
+        return column == TARGETS
+                ? block + COLUMN_COUNT - 1
+                : block + Byte.toUnsignedInt(buffer.get(block + column - 1));
+    }
+
+    /**
+     * Retourne la valeur de la colonne donnée pour l'arête d'identité donnée
+     * @param edgeId identité de l'arête
+     * @param column index de la colonne
+     * @return la valeur encodée dans la colonne
+     */
+    private long value(int edgeId, int column) {
+        int position = columnOffset(edgeId, column);
+        for (int k = 0; k < (edgeId & BLOCK_EDGES_MASK); k++) {
+            position = VarInts.skip(buffer, position);
+        }
+        return VarInts.read(buffer, position);
+    }
+
+    /**
+     * Retourne la somme des différences de la colonne donnée pour l'arête d'identité donnée et les arêtes la
+     * précédant dans son bloc, c.-à-d. la valeur représentée par ces différences
+     * @param edgeId identité de l'arête
+     * @param column index de la colonne
+     * @param tagBits nombre de bits de poids faible des valeurs de la colonne qui ne sont pas des différences
+     * @return la valeur représentée
+     */
+    private long sum(int edgeId, int column, int tagBits) {
+        long sum = 0;
+        int position = columnOffset(edgeId, column);
+        for (int k = 0; k <= (edgeId & BLOCK_EDGES_MASK); k++) {
+            sum += VarInts.unZigZag(VarInts.read(buffer, position) >>> tagBits);
+            position = VarInts.skip(buffer, position);
+        }
+        return sum;
+    }
+}
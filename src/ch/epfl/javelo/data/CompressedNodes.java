@@ -0,0 +1,170 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Q28_4;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Classe CompressedNodes, noeuds d'un graphe lus dans nodes_compressed.bin (voir GraphCompression), où ils sont
+ * regroupés en blocs de BLOCK_NODES noeuds. Un index donne la position de chaque bloc et l'identité de la
+ * première arête sortant de son premier noeud, de sorte que le bloc d'un noeud est trouvé en temps constant.
+ * <p>
+ * Un bloc contient le nombre d'arêtes sortant de chacun de ses noeuds (4 bits par noeud), la position de la
+ * colonne des coordonnées N, puis les colonnes des coordonnées E et N. Chaque coordonnée y est représentée par sa
+ * différence avec celle du noeud précédent du bloc (ou avec 0 pour le premier), encodée en zigzag sur un nombre
+ * variable d'octets (voir VarInts). L'accès à un noeud décode donc au plus BLOCK_NODES entiers.
+ * <p>
+ * Format du fichier : nombre de noeuds, position de chaque bloc, identité de la première arête de chaque bloc
+ * (entiers de type int), puis les blocs.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class CompressedNodes implements NodeStorage {
+    private static final int BLOCK_NODES_BITS = 4;
+    private static final int BLOCK_NODES = 1 << BLOCK_NODES_BITS;
+    private static final int BLOCK_NODES_MASK = BLOCK_NODES - 1;
+    /**
+     * Taille des nombres d'arêtes sortantes d'un bloc (4 bits par noeud)
+     */
+    private static final int DEGREES_BYTES = BLOCK_NODES / 2;
+    /**
+     * Position, dans un bloc, de l'octet donnant la position de la colonne des coordonnées N
+     */
+    private static final int OFFSET_N_COLUMN = DEGREES_BYTES;
+    private static final int OFFSET_E_COLUMN = OFFSET_N_COLUMN + 1;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int blockCount;
+
+    /**
+     * Constructeur
+     * @param buffer contenu de nodes_compressed.bin
+     */
+    CompressedNodes(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(0);
+        this.blockCount = Math2.ceilDiv(count, BLOCK_NODES);
+    }
+
+    /**
+     * Retourne le contenu de nodes_compressed.bin pour les noeuds donnés
+     * @param nodes noeuds, tels que dans nodes.bin
+     * @return le contenu du fichier
+     */
+    static byte[] encode(GraphNodes nodes) {
+        IntBuffer nodesBuffer = nodes.buffer();
+        int count = nodes.count();
+        int blockCount = Math2.ceilDiv(count, BLOCK_NODES);
+        int indexBytes = Integer.BYTES * (1 + 2 * blockCount);
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        ByteBuffer index = ByteBuffer.allocate(indexBytes).putInt(count);
+
+        for (int block = 0; block < blockCount; block++) {
+            int firstNodeId = block << BLOCK_NODES_BITS;
+            int lastNodeId = Math.min(firstNodeId + BLOCK_NODES, count);
+            byte[] degrees = new byte[DEGREES_BYTES];
+            ByteArrayOutputStream es = new ByteArrayOutputStream();
+            ByteArrayOutputStream ns = new ByteArrayOutputStream();
+            int previousE = 0, previousN = 0;
+            for (int nodeId = firstNodeId; nodeId < lastNodeId; nodeId++) {
+                int e = nodesBuffer.get(3 * nodeId);
+                int n = nodesBuffer.get(3 * nodeId + 1);
+                int k = nodeId & BLOCK_NODES_MASK;
+                int shift = (k & 1) == 0 ? 4 : 0;
+                degrees[k >> 1] = (byte) (degrees[k >> 1] | nodes.outDegree(nodeId) << shift);
+                VarInts.write(es, VarInts.zigZag((long) e - previousE));
+                VarInts.write(ns, VarInts.zigZag((long) n - previousN));
+                previousE = e;
+                previousN = n;
+            }
+            index.putInt(Integer.BYTES * (1 + block), indexBytes + blocks.size());
+            index.putInt(Integer.BYTES * (1 + blockCount + block), Bits.extractUnsigned(nodesBuffer.get(3 * firstNodeId + 2), 0, 28));
+            blocks.writeBytes(degrees);
+            blocks.write(OFFSET_E_COLUMN + es.size());
+            blocks.writeBytes(es.toByteArray());
+            blocks.writeBytes(ns.toByteArray());
+        }
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream(indexBytes + blocks.size());
+        file.writeBytes(index.array());
+        file.writeBytes(blocks.toByteArray());
+        return file.toByteArray();
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public double nodeE(int nodeId) {
+        int block = blockOffset(nodeId);
+        return Q28_4.asDouble(coordinate(block + OFFSET_E_COLUMN, nodeId));
+    }
+
+    @Override
+    public double nodeN(int nodeId) {
+        int block = blockOffset(nodeId);
+        return Q28_4.asDouble(coordinate(block + Byte.toUnsignedInt(buffer.get(block + OFFSET_N_COLUMN)), nodeId));
+    }
+
+    @Override
+    public int outDegree(int nodeId) {
+        return degree(blockOffset(nodeId), nodeId & BLOCK_NODES_MASK);
+    }
+
+    @Override
+    public int edgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < outDegree(nodeId);
+        int blockIndex = nodeId >>> BLOCK_NODES_BITS;
+        int block = blockOffset(nodeId);
+        int edgeId = buffer.getInt(Integer.BYTES * (1 + blockCount + blockIndex)) + edgeIndex;
+        for (int k = 0; k < (nodeId & BLOCK_NODES_MASK); k++) {
+            edgeId += degree(block, k);
+        }
+        return edgeId;
+    }
+
+    /**
+     * Retourne la position du bloc contenant le noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @return la position du bloc
+     */
+    private int blockOffset(int nodeId) {
+        return buffer.getInt(Integer.BYTES * (1 + (nodeId >>> BLOCK_NODES_BITS)));
+    }
+
+    /**
+     * Retourne le nombre d'arêtes sortant du k-ième noeud du bloc donné
+     * @param block position du bloc
+     * @param k index du noeud dans le bloc
+     * @return le nombre d'arêtes sortantes
+     */
+    private int degree(int block, int k) {
+        int degrees = buffer.get(block + (k >> 1));
+        return Bits.extractUnsigned(degrees, (k & 1) == 0 ? 4 : 0, 4);
+    }
+
+    /**
+     * Retourne la coordonnée, au format Q28.4, du noeud d'identité donnée dans la colonne donnée, obtenue en
+     * cumulant les différences de ce noeud et des noeuds le précédant dans son bloc
+     * @param column position de la colonne
+     * @param nodeId identité du noeud
+     * @return la coordonnée
+     */
+    private int coordinate(int column, int nodeId) {
+        long coordinate = 0;
+        int position = column;
+        for (int k = 0; k <= (nodeId & BLOCK_NODES_MASK); k++) {
+            coordinate += VarInts.unZigZag(VarInts.read(buffer, position));
+            position = VarInts.skip(buffer, position);
+        }
+        return (int) coordinate;
+    }
+}
@@ -0,0 +1,131 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * Classe EdgeAttributeIndex, index des arêtes d'un graphe selon leurs attributs OSM : à chaque attribut correspond
+ * l'ensemble compressé (voir EdgeBitmap) des identités des arêtes le possédant, ce qui permet d'obtenir les
+ * arêtes possédant tous les attributs d'un ensemble, ou l'un d'entre eux, sans parcourir toutes les arêtes du
+ * graphe.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class EdgeAttributeIndex {
+    private final EdgeBitmap[] bitmaps;
+
+    /**
+     * Constructeur privé
+     * @param bitmaps ensemble des arêtes possédant chaque attribut, indexé par l'ordinal de l'attribut
+     */
+    private EdgeAttributeIndex(EdgeBitmap[] bitmaps) {
+        this.bitmaps = bitmaps;
+    }
+
+    /**
+     * Construit l'index des arêtes du graphe donné, en un seul parcours de ses arêtes
+     * @param graph graphe
+     * @return l'index
+     */
+    public static EdgeAttributeIndex of(Graph graph) {
+        int edgeCount = graph.edgeCount();
+        long[] edgeBits = new long[edgeCount];
+        int[] counts = new int[Attribute.COUNT];
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            long bits = graph.edgeAttributes(edgeId).bits();
+            edgeBits[edgeId] = bits;
+            for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+                counts[Long.numberOfTrailingZeros(remaining)] += 1;
+            }
+        }
+
+        int[][] edgeIds = new int[Attribute.COUNT][];
+        for (int a = 0; a < Attribute.COUNT; a++) {
+            edgeIds[a] = new int[counts[a]];
+            counts[a] = 0;
+        }
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            for (long remaining = edgeBits[edgeId]; remaining != 0; remaining &= remaining - 1) {
+                int a = Long.numberOfTrailingZeros(remaining);
+                edgeIds[a][counts[a]++] = edgeId;
+            }
+        }
+
+        EdgeBitmap[] bitmaps = new EdgeBitmap[Attribute.COUNT];
+        for (int a = 0; a < Attribute.COUNT; a++) {
+            bitmaps[a] = EdgeBitmap.of(edgeIds[a], counts[a]);
+        }
+        return new EdgeAttributeIndex(bitmaps);
+    }
+
+    /**
+     * Retourne l'ensemble des arêtes possédant l'attribut donné
+     * @param attribute attribut
+     * @return l'ensemble des identités de ces arêtes
+     */
+    public EdgeBitmap edges(Attribute attribute) {
+        return bitmaps[attribute.ordinal()];
+    }
+
+    /**
+     * Retourne l'ensemble des arêtes possédant tous les attributs de l'ensemble donné. Les intersections sont
+     * calculées en partant de l'attribut le plus rare, afin que les ensembles intermédiaires restent petits.
+     * @param attributes ensemble d'attributs
+     * @return l'ensemble des identités de ces arêtes
+     * @throws IllegalArgumentException si l'ensemble d'attributs est vide
+     */
+    public EdgeBitmap edgesWithAll(AttributeSet attributes) {
+        Preconditions.checkArgument(attributes.bits() != 0);
+        EdgeBitmap rarest = null;
+        for (long remaining = attributes.bits(); remaining != 0; remaining &= remaining - 1) {
+            EdgeBitmap bitmap = bitmaps[Long.numberOfTrailingZeros(remaining)];
+            if (rarest == null || bitmap.cardinality() < rarest.cardinality()) {
+                rarest = bitmap;
+            }
+        }
+        EdgeBitmap result = rarest;
+        for (long remaining = attributes.bits(); remaining != 0 && !result.isEmpty(); remaining &= remaining - 1) {
+            EdgeBitmap bitmap = bitmaps[Long.numberOfTrailingZeros(remaining)];
+            if (bitmap != rarest) {
+                result = result.and(bitmap);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Retourne l'ensemble des arêtes possédant au moins l'un des attributs de l'ensemble donné
+     * @param attributes ensemble d'attributs
+     * @return l'ensemble des identités de ces arêtes, vide si l'ensemble d'attributs l'est
+     */
+    public EdgeBitmap edgesWithAny(AttributeSet attributes) {
+        EdgeBitmap result = EdgeBitmap.empty();
+        for (long remaining = attributes.bits(); remaining != 0; remaining &= remaining - 1) {
+            result = result.or(bitmaps[Long.numberOfTrailingZeros(remaining)]);
+        }
+        return result;
+    }
+
+    /**
+     * Retourne un itérateur sur les identités, par ordre croissant, des arêtes possédant tous les attributs de
+     * l'ensemble donné
+     * @param attributes ensemble d'attributs
+     * @return l'itérateur
+     * @throws IllegalArgumentException si l'ensemble d'attributs est vide
+     */
+    public PrimitiveIterator.OfInt edgeIdsWithAll(AttributeSet attributes) {
+        return edgesWithAll(attributes).iterator();
+    }
+
+    /**
+     * Retourne un itérateur sur les identités, par ordre croissant, des arêtes possédant au moins l'un des
+     * attributs de l'ensemble donné
+     * @param attributes ensemble d'attributs
+     * @return l'itérateur
+     */
+    public PrimitiveIterator.OfInt edgeIdsWithAny(AttributeSet attributes) {
+        return edgesWithAny(attributes).iterator();
+    }
+}
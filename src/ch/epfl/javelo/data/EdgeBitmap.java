@@ -0,0 +1,452 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Classe EdgeBitmap, ensemble immuable et compressé d'identités d'arêtes, organisé à la manière d'un « roaring
+ * bitmap » : les identités sont regroupées par blocs de CHUNK_SIZE selon leurs 16 bits de poids fort, et chaque
+ * bloc non vide est représenté soit par le tableau trié de ses 16 bits de poids faible s'il en contient au plus
+ * MAX_ARRAY_SIZE, soit par une table de bits de CHUNK_SIZE bits sinon. Un ensemble occupe ainsi au plus 16 bits
+ * par identité, et bien moins lorsqu'il est dense.
+ * <p>
+ * L'intersection et l'union de deux ensembles sont calculées bloc par bloc, sans décompresser les ensembles.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class EdgeBitmap {
+    /**
+     * Nombre d'identités couvertes par un bloc
+     */
+    private static final int CHUNK_SIZE = 1 << Character.SIZE;
+    /**
+     * Nombre de mots de 64 bits d'une table de bits
+     */
+    private static final int BITMAP_WORDS = CHUNK_SIZE / Long.SIZE;
+    /**
+     * Nombre maximal d'identités d'un bloc représenté par un tableau, au-delà duquel une table de bits (de
+     * 8 Kio) est plus compacte
+     */
+    private static final int MAX_ARRAY_SIZE = 4096;
+
+    private static final EdgeBitmap EMPTY = new EdgeBitmap(new char[0], new char[0][], new long[0][], new int[0]);
+
+    /**
+     * 16 bits de poids fort des identités de chaque bloc, par ordre croissant
+     */
+    private final char[] keys;
+    /**
+     * Contenu de chaque bloc représenté par un tableau trié, null pour les blocs représentés par une table de bits
+     */
+    private final char[][] arrays;
+    /**
+     * Contenu de chaque bloc représenté par une table de bits, null pour les blocs représentés par un tableau
+     */
+    private final long[][] bitmaps;
+    /**
+     * Nombre d'identités de chaque bloc
+     */
+    private final int[] cardinalities;
+
+    /**
+     * Constructeur privé
+     * @param keys 16 bits de poids fort des identités de chaque bloc
+     * @param arrays blocs représentés par un tableau
+     * @param bitmaps blocs représentés par une table de bits
+     * @param cardinalities nombre d'identités de chaque bloc
+     */
+    private EdgeBitmap(char[] keys, char[][] arrays, long[][] bitmaps, int[] cardinalities) {
+        this.keys = keys;
+        this.arrays = arrays;
+        this.bitmaps = bitmaps;
+        this.cardinalities = cardinalities;
+    }
+
+    /**
+     * Retourne l'ensemble vide
+     * @return l'ensemble vide
+     */
+    public static EdgeBitmap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Retourne l'ensemble des identités données
+     * @param edgeIds identités des arêtes, positives et strictement croissantes
+     * @param count nombre d'identités à prendre en compte, au début du tableau
+     * @return l'ensemble de ces identités
+     * @throws IllegalArgumentException si les identités ne sont pas positives et strictement croissantes, ou si
+     * leur nombre est invalide
+     */
+    public static EdgeBitmap of(int[] edgeIds, int count) {
+        Preconditions.checkArgument(0 <= count && count <= edgeIds.length);
+        Builder builder = new Builder();
+        int previous = -1;
+        for (int i = 0; i < count; i++) {
+            Preconditions.checkArgument(edgeIds[i] > previous);
+            previous = edgeIds[i];
+            builder.add(edgeIds[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Retourne le nombre d'identités de l'ensemble
+     * @return le nombre d'identités
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int c : cardinalities) {
+            cardinality += c;
+        }
+        return cardinality;
+    }
+
+    /**
+     * Retourne vrai ssi l'ensemble est vide
+     * @return vrai ssi l'ensemble est vide
+     */
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Retourne vrai ssi l'ensemble contient l'identité donnée
+     * @param edgeId identité d'une arête
+     * @return vrai ssi l'ensemble la contient
+     */
+    public boolean contains(int edgeId) {
+        if (edgeId < 0) return false;
+        int chunk = Arrays.binarySearch(keys, (char) (edgeId >>> Character.SIZE));
+        if (chunk < 0) return false;
+        char low = (char) edgeId;
+        return arrays[chunk] != null
+                ? Arrays.binarySearch(arrays[chunk], 0, cardinalities[chunk], low) >= 0
+                : (bitmaps[chunk][low >>> 6] & 1L << low) != 0;
+    }
+
+    /**
+     * Retourne l'intersection de cet ensemble et de celui donné
+     * @param that autre ensemble
+     * @return l'intersection des deux ensembles
+     */
+    public EdgeBitmap and(EdgeBitmap that) {
+        Builder builder = new Builder();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < that.keys.length) {
+            if (keys[i] < that.keys[j]) {
+                i += 1;
+            } else if (keys[i] > that.keys[j]) {
+                j += 1;
+            } else {
+                builder.addAnd(keys[i], this, i, that, j);
+                i += 1;
+                j += 1;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Retourne l'union de cet ensemble et de celui donné
+     * @param that autre ensemble
+     * @return l'union des deux ensembles
+     */
+    public EdgeBitmap or(EdgeBitmap that) {
+        Builder builder = new Builder();
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < that.keys.length) {
+            if (j == that.keys.length || i < keys.length && keys[i] < that.keys[j]) {
+                builder.addCopy(keys[i], this, i);
+                i += 1;
+            } else if (i == keys.length || keys[i] > that.keys[j]) {
+                builder.addCopy(that.keys[j], that, j);
+                j += 1;
+            } else {
+                builder.addOr(keys[i], this, i, that, j);
+                i += 1;
+                j += 1;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Retourne un itérateur sur les identités de l'ensemble, par ordre croissant
+     * @return l'itérateur
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int chunk = 0;
+            /**
+             * Position dans le tableau du bloc courant, ou index du mot courant de sa table de bits
+             */
+            private int position = 0;
+            /**
+             * Bits restant à parcourir du mot courant de la table de bits du bloc courant
+             */
+            private long word = bitmaps.length > 0 && bitmaps[0] != null ? bitmaps[0][0] : 0;
+
+            @Override
+            public boolean hasNext() {
+                while (chunk < keys.length) {
+                    if (arrays[chunk] != null) {
+                        if (position < cardinalities[chunk]) return true;
+                    } else {
+                        while (word == 0 && position < BITMAP_WORDS - 1) {
+                            position += 1;
+                            word = bitmaps[chunk][position];
+                        }
+                        if (word != 0) return true;
+                    }
+                    chunk += 1;
+                    position = 0;
+                    word = chunk < keys.length && bitmaps[chunk] != null ? bitmaps[chunk][0] : 0;
+                }
+                return false;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int high = keys[chunk] << Character.SIZE;
+                if (arrays[chunk] != null) {
+                    int low = arrays[chunk][position];
+                    position += 1;
+                    return high | low;
+                }
+                int low = position * Long.SIZE + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return high | low;
+            }
+        };
+    }
+
+    /**
+     * Bâtisseur d'ensemble, auquel les blocs (ou les identités) sont ajoutés par ordre croissant
+     */
+    private static final class Builder {
+        private char[] keys = new char[4];
+        private char[][] arrays = new char[4][];
+        private long[][] bitmaps = new long[4][];
+        private int[] cardinalities = new int[4];
+        private int size = 0;
+
+        /**
+         * Ajoute l'identité donnée, supérieure à toutes celles déjà ajoutées
+         * @param edgeId identité de l'arête
+         */
+        void add(int edgeId) {
+            char key = (char) (edgeId >>> Character.SIZE);
+            char low = (char) edgeId;
+            if (size == 0 || keys[size - 1] != key) {
+                append(key, new char[MAX_ARRAY_SIZE], null, 0);
+            }
+            int chunk = size - 1;
+            int cardinality = cardinalities[chunk];
+            if (arrays[chunk] != null && cardinality == MAX_ARRAY_SIZE) {
+                bitmaps[chunk] = toBitmap(arrays[chunk], cardinality);
+                arrays[chunk] = null;
+            }
+            if (arrays[chunk] != null) {
+                arrays[chunk][cardinality] = low;
+            } else {
+                bitmaps[chunk][low >>> 6] |= 1L << low;
+            }
+            cardinalities[chunk] = cardinality + 1;
+        }
+
+        /**
+         * Ajoute une copie du bloc donné de l'ensemble donné
+         * @param key 16 bits de poids fort des identités du bloc
+         * @param bitmap ensemble
+         * @param chunk index du bloc dans l'ensemble
+         */
+        void addCopy(char key, EdgeBitmap bitmap, int chunk) {
+            append(key, bitmap.arrays[chunk], bitmap.bitmaps[chunk], bitmap.cardinalities[chunk]);
+        }
+
+        /**
+         * Ajoute l'intersection de deux blocs de même clé
+         * @param key 16 bits de poids fort des identités des blocs
+         * @param a premier ensemble
+         * @param i index du bloc dans le premier ensemble
+         * @param b second ensemble
+         * @param j index du bloc dans le second ensemble
+         */
+        void addAnd(char key, EdgeBitmap a, int i, EdgeBitmap b, int j) {
+            if (a.arrays[i] == null && b.arrays[j] == null) {
+                long[] words = new long[BITMAP_WORDS];
+                int cardinality = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] = a.bitmaps[i][w] & b.bitmaps[j][w];
+                    cardinality += Long.bitCount(words[w]);
+                }
+                appendBitmap(key, words, cardinality);
+                return;
+            }
+            if (a.arrays[i] == null) {
+                addAnd(key, b, j, a, i);
+                return;
+            }
+            char[] values = a.arrays[i];
+            char[] result = new char[a.cardinalities[i]];
+            int cardinality = 0;
+            if (b.arrays[j] == null) {
+                long[] words = b.bitmaps[j];
+                for (int k = 0; k < a.cardinalities[i]; k++) {
+                    char low = values[k];
+                    if ((words[low >>> 6] & 1L << low) != 0) {
+                        result[cardinality++] = low;
+                    }
+                }
+            } else {
+                char[] others = b.arrays[j];
+                int k = 0;
+                int l = 0;
+                while (k < a.cardinalities[i] && l < b.cardinalities[j]) {
+                    if (values[k] < others[l]) {
+                        k += 1;
+                    } else if (values[k] > others[l]) {
+                        l += 1;
+                    } else {
+                        result[cardinality++] = values[k];
+                        k += 1;
+                        l += 1;
+                    }
+                }
+            }
+            if (cardinality > 0) {
+                append(key, Arrays.copyOf(result, cardinality), null, cardinality);
+            }
+        }
+
+        /**
+         * Ajoute l'union de deux blocs de même clé
+         * @param key 16 bits de poids fort des identités des blocs
+         * @param a premier ensemble
+         * @param i index du bloc dans le premier ensemble
+         * @param b second ensemble
+         * @param j index du bloc dans le second ensemble
+         */
+        void addOr(char key, EdgeBitmap a, int i, EdgeBitmap b, int j) {
+            if (a.arrays[i] != null && b.arrays[j] != null
+                    && a.cardinalities[i] + b.cardinalities[j] <= MAX_ARRAY_SIZE) {
+                char[] values = a.arrays[i];
+                char[] others = b.arrays[j];
+                char[] result = new char[a.cardinalities[i] + b.cardinalities[j]];
+                int cardinality = 0;
+                int k = 0;
+                int l = 0;
+                while (k < a.cardinalities[i] || l < b.cardinalities[j]) {
+                    if (l == b.cardinalities[j] || k < a.cardinalities[i] && values[k] < others[l]) {
+                        result[cardinality++] = values[k++];
+                    } else if (k == a.cardinalities[i] || values[k] > others[l]) {
+                        result[cardinality++] = others[l++];
+                    } else {
+                        result[cardinality++] = values[k++];
+                        l += 1;
+                    }
+                }
+                append(key, Arrays.copyOf(result, cardinality), null, cardinality);
+                return;
+            }
+            long[] words = a.arrays[i] == null
+                    ? a.bitmaps[i].clone()
+                    : toBitmap(a.arrays[i], a.cardinalities[i]);
+            if (b.arrays[j] == null) {
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] |= b.bitmaps[j][w];
+                }
+            } else {
+                for (int k = 0; k < b.cardinalities[j]; k++) {
+                    char low = b.arrays[j][k];
+                    words[low >>> 6] |= 1L << low;
+                }
+            }
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            appendBitmap(key, words, cardinality);
+        }
+
+        /**
+         * Ajoute un bloc représenté par la table de bits donnée, ou par un tableau si celui-ci est plus compact
+         * @param key 16 bits de poids fort des identités du bloc
+         * @param words table de bits du bloc
+         * @param cardinality nombre d'identités du bloc
+         */
+        private void appendBitmap(char key, long[] words, int cardinality) {
+            if (cardinality == 0) return;
+            if (cardinality > MAX_ARRAY_SIZE) {
+                append(key, null, words, cardinality);
+                return;
+            }
+            char[] values = new char[cardinality];
+            int k = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[k++] = (char) (w * Long.SIZE + Long.numberOfTrailingZeros(word));
+                }
+            }
+            append(key, values, null, cardinality);
+        }
+
+        /**
+         * Ajoute le bloc donné à la fin de l'ensemble en construction
+         * @param key 16 bits de poids fort des identités du bloc
+         * @param array contenu du bloc sous forme de tableau, ou null
+         * @param bitmap contenu du bloc sous forme de table de bits, ou null
+         * @param cardinality nombre d'identités du bloc
+         */
+        private void append(char key, char[] array, long[] bitmap, int cardinality) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                arrays = Arrays.copyOf(arrays, 2 * size);
+                bitmaps = Arrays.copyOf(bitmaps, 2 * size);
+                cardinalities = Arrays.copyOf(cardinalities, 2 * size);
+            }
+            keys[size] = key;
+            arrays[size] = array;
+            bitmaps[size] = bitmap;
+            cardinalities[size] = cardinality;
+            size += 1;
+        }
+
+        /**
+         * Retourne l'ensemble construit, dont les tableaux sont ramenés à leur taille exacte
+         * @return l'ensemble
+         */
+        EdgeBitmap build() {
+            if (size == 0) return EMPTY;
+            for (int chunk = 0; chunk < size; chunk++) {
+                if (arrays[chunk] != null && arrays[chunk].length != cardinalities[chunk]) {
+                    arrays[chunk] = Arrays.copyOf(arrays[chunk], cardinalities[chunk]);
+                }
+            }
+            return new EdgeBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(arrays, size),
+                    Arrays.copyOf(bitmaps, size), Arrays.copyOf(cardinalities, size));
+        }
+
+        /**
+         * Retourne la table de bits contenant les valeurs du tableau donné
+         * @param array valeurs
+         * @param cardinality nombre de valeurs à prendre en compte
+         * @return la table de bits
+         */
+        private static long[] toBitmap(char[] array, int cardinality) {
+            long[] words = new long[BITMAP_WORDS];
+            for (int k = 0; k < cardinality; k++) {
+                words[array[k] >>> 6] |= 1L << array[k];
+            }
+            return words;
+        }
+    }
+}
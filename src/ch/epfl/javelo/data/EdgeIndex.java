@@ -0,0 +1,355 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.Arrays;
+
+/**
+ * Classe EdgeIndex, index spatial des arêtes d'un graphe sous la forme d'un R-arbre compact (statique) : les
+ * rectangles englobant les arêtes sont rangés par tuiles (tri selon E, puis selon N par tranche) et regroupés par
+ * NODE_SIZE pour former chaque niveau de l'arbre. Des deux arêtes reliant les deux mêmes noeuds en sens inverses,
+ * seule une est indexée, la position sur l'autre s'en déduisant.
+ * <p>
+ * Les rectangles sont représentés par des nombres à virgule flottante de type float, arrondis vers l'extérieur,
+ * afin de réduire la mémoire occupée; les distances sont quant à elles calculées exactement, à partir des
+ * positions des noeuds.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class EdgeIndex {
+    /**
+     * Nombre maximal d'enfants d'un noeud de l'arbre
+     */
+    private static final int NODE_SIZE = 16;
+    private static final int BOX_FLOATS = 4;
+    private static final int MIN_E = 0;
+    private static final int MIN_N = 1;
+    private static final int MAX_E = 2;
+    private static final int MAX_N = 3;
+
+    private final Graph graph;
+    /**
+     * Identités des arêtes indexées et de leur noeud de départ, dans l'ordre des feuilles de l'arbre
+     */
+    private final int[] edgeIds;
+    private final int[] fromNodeIds;
+    /**
+     * Rectangles englobants de tous les noeuds de l'arbre : feuilles, puis chaque niveau jusqu'à la racine
+     */
+    private final float[] boxes;
+    /**
+     * Position, dans boxes, de la fin de chaque niveau de l'arbre
+     */
+    private final int[] levelEnds;
+
+    /**
+     * Constructeur privé
+     * @param graph graphe
+     * @param edgeIds identités des arêtes indexées, dans l'ordre des feuilles
+     * @param fromNodeIds identités de leur noeud de départ
+     * @param boxes rectangles englobants de tous les noeuds de l'arbre
+     * @param levelEnds position de la fin de chaque niveau
+     */
+    private EdgeIndex(Graph graph, int[] edgeIds, int[] fromNodeIds, float[] boxes, int[] levelEnds) {
+        this.graph = graph;
+        this.edgeIds = edgeIds;
+        this.fromNodeIds = fromNodeIds;
+        this.boxes = boxes;
+        this.levelEnds = levelEnds;
+    }
+
+    /**
+     * Construit l'index des arêtes du graphe donné
+     * @param graph graphe
+     * @return l'index
+     */
+    public static EdgeIndex of(Graph graph) {
+        int[] edgeIds = new int[graph.edgeCount()];
+        int[] fromNodeIds = new int[graph.edgeCount()];
+        int count = 0;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                if (reverseEdgeId(graph, edgeId, nodeId) < edgeId) {
+                    edgeIds[count] = edgeId;
+                    fromNodeIds[count] = nodeId;
+                    count += 1;
+                }
+            }
+        }
+
+        // Tri par tuiles : selon E, puis selon N au sein de chaque tranche verticale
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) keys[i] = sortKey(graph, fromNodeIds[i], edgeIds[i], true, i);
+        Arrays.sort(keys);
+        int sliceSize = NODE_SIZE * (int) Math.ceil(Math.sqrt(Math.ceil((double) count / NODE_SIZE)));
+        for (int start = 0; start < count; start += sliceSize) {
+            int end = Math.min(start + sliceSize, count);
+            for (int i = start; i < end; i++) {
+                int item = (int) keys[i];
+                keys[i] = sortKey(graph, fromNodeIds[item], edgeIds[item], false, item);
+            }
+            Arrays.sort(keys, start, end);
+        }
+        int[] sortedEdgeIds = new int[count];
+        int[] sortedFromNodeIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            sortedEdgeIds[i] = edgeIds[(int) keys[i]];
+            sortedFromNodeIds[i] = fromNodeIds[(int) keys[i]];
+        }
+
+        int boxCount = count;
+        int levelCount = 1;
+        for (int levelSize = count; levelSize > 1; levelSize = Math2.ceilDiv(levelSize, NODE_SIZE)) {
+            boxCount += Math2.ceilDiv(levelSize, NODE_SIZE);
+            levelCount += 1;
+        }
+        float[] boxes = new float[BOX_FLOATS * boxCount];
+        int[] levelEnds = new int[levelCount];
+        for (int i = 0; i < count; i++) {
+            PointCh from = graph.nodePoint(sortedFromNodeIds[i]);
+            PointCh to = graph.nodePoint(graph.edgeTargetNodeId(sortedEdgeIds[i]));
+            setBox(boxes, i, Math.min(from.e(), to.e()), Math.min(from.n(), to.n()),
+                    Math.max(from.e(), to.e()), Math.max(from.n(), to.n()));
+        }
+        levelEnds[0] = count;
+        for (int level = 1; level < levelCount; level++) {
+            int childStart = level == 1 ? 0 : levelEnds[level - 2];
+            int childEnd = levelEnds[level - 1];
+            int position = childEnd;
+            for (int child = childStart; child < childEnd; child += NODE_SIZE, position++) {
+                float minE = Float.POSITIVE_INFINITY, minN = Float.POSITIVE_INFINITY;
+                float maxE = Float.NEGATIVE_INFINITY, maxN = Float.NEGATIVE_INFINITY;
+                for (int c = child; c < Math.min(child + NODE_SIZE, childEnd); c++) {
+                    minE = Math.min(minE, boxes[BOX_FLOATS * c + MIN_E]);
+                    minN = Math.min(minN, boxes[BOX_FLOATS * c + MIN_N]);
+                    maxE = Math.max(maxE, boxes[BOX_FLOATS * c + MAX_E]);
+                    maxN = Math.max(maxN, boxes[BOX_FLOATS * c + MAX_N]);
+                }
+                boxes[BOX_FLOATS * position + MIN_E] = minE;
+                boxes[BOX_FLOATS * position + MIN_N] = minN;
+                boxes[BOX_FLOATS * position + MAX_E] = maxE;
+                boxes[BOX_FLOATS * position + MAX_N] = maxN;
+            }
+            levelEnds[level] = position;
+        }
+        return new EdgeIndex(graph, sortedEdgeIds, sortedFromNodeIds, boxes, levelEnds);
+    }
+
+    /**
+     * Retourne l'identité de l'arête allant en sens inverse de l'arête donnée, c.-à-d. reliant les deux mêmes
+     * noeuds avec la même longueur, ou -1 s'il n'en existe pas (p.ex. sur une voie à sens unique)
+     * @param graph graphe
+     * @param edgeId identité de l'arête
+     * @param fromNodeId identité du noeud de départ de l'arête
+     * @return l'identité de l'arête inverse, ou -1
+     */
+    public static int reverseEdgeId(Graph graph, int edgeId, int fromNodeId) {
+        int toNodeId = graph.edgeTargetNodeId(edgeId);
+        for (int i = 0; i < graph.nodeOutDegree(toNodeId); i++) {
+            int reverseEdgeId = graph.nodeOutEdgeId(toNodeId, i);
+            if (reverseEdgeId != edgeId && graph.edgeTargetNodeId(reverseEdgeId) == fromNodeId
+                    && graph.edgeLength(reverseEdgeId) == graph.edgeLength(edgeId)) {
+                return reverseEdgeId;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Retourne le nombre d'arêtes indexées
+     * @return le nombre d'arêtes indexées
+     */
+    public int count() {
+        return edgeIds.length;
+    }
+
+    /**
+     * Retourne le point le plus proche du point donné sur les arêtes du graphe, à la distance maximale donnée
+     * (en mètres), ou null si aucune arête ne se trouve à cette distance. Les noeuds de l'arbre sont visités par
+     * distance croissante de leur rectangle englobant au point, de sorte que la recherche s'arrête dès que la
+     * meilleure arête trouvée est plus proche que le rectangle le plus proche restant.
+     * @param point point duquel on cherche l'arête la plus proche
+     * @param maxDistance distance maximale, éventuellement infinie
+     * @return le point de l'arête la plus proche, ou null
+     */
+    public EdgeSnap closestEdge(PointCh point, double maxDistance) {
+        if (edgeIds.length == 0) return null;
+        double e = point.e(), n = point.n();
+        double bestSquaredDistance = maxDistance * maxDistance;
+        int best = -1;
+        // File de priorité des noeuds à visiter, chacun représenté par la distance (float) à son rectangle
+        // dans les 32 bits de poids fort et sa position dans les 32 bits de poids faible
+        long[] heap = new long[4 * NODE_SIZE];
+        int size = 0;
+        int root = boxes.length / BOX_FLOATS - 1;
+        heap[size++] = key(boxSquaredDistance(root, e, n), root);
+        while (size > 0) {
+            long top = heap[0];
+            heap[0] = heap[--size];
+            siftDown(heap, size);
+            if (Float.intBitsToFloat((int) (top >>> 32)) > bestSquaredDistance) break;
+            int position = (int) top;
+            if (position < edgeIds.length) {
+                double squaredDistance = squaredDistance(position, e, n);
+                if (squaredDistance <= bestSquaredDistance) {
+                    bestSquaredDistance = squaredDistance;
+                    best = position;
+                }
+                continue;
+            }
+            int level = level(position);
+            int childStart = level == 1 ? 0 : levelEnds[level - 2];
+            int first = childStart + (position - levelEnds[level - 1]) * NODE_SIZE;
+            int last = Math.min(first + NODE_SIZE, levelEnds[level - 1]);
+            for (int child = first; child < last; child++) {
+                float distance = boxSquaredDistance(child, e, n);
+                if (distance > bestSquaredDistance) continue;
+                if (size == heap.length) heap = Arrays.copyOf(heap, 2 * size);
+                heap[size++] = key(distance, child);
+                siftUp(heap, size - 1);
+            }
+        }
+        return best == -1 ? null : snap(best, e, n);
+    }
+
+    /**
+     * Retourne le point le plus proche du point donné sur l'arête de position donnée dans les feuilles
+     * @param position position de l'arête
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @return le point de l'arête
+     */
+    private EdgeSnap snap(int position, double e, double n) {
+        int edgeId = edgeIds[position];
+        PointCh from = graph.nodePoint(fromNodeIds[position]);
+        PointCh to = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+        double factor = factor(from, to, e, n);
+        PointCh point = new PointCh(Math2.interpolate(from.e(), to.e(), factor),
+                Math2.interpolate(from.n(), to.n(), factor));
+        return new EdgeSnap(edgeId, fromNodeIds[position], factor * graph.edgeLength(edgeId), point,
+                Math.sqrt(Math2.squaredNorm(point.e() - e, point.n() - n)));
+    }
+
+    /**
+     * Retourne le carré de la distance entre le point donné et l'arête de position donnée dans les feuilles
+     * @param position position de l'arête
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @return le carré de la distance
+     */
+    private double squaredDistance(int position, double e, double n) {
+        PointCh from = graph.nodePoint(fromNodeIds[position]);
+        PointCh to = graph.nodePoint(graph.edgeTargetNodeId(edgeIds[position]));
+        double factor = factor(from, to, e, n);
+        return Math2.squaredNorm(Math2.interpolate(from.e(), to.e(), factor) - e,
+                Math2.interpolate(from.n(), to.n(), factor) - n);
+    }
+
+    /**
+     * Retourne la fraction de la longueur du segment donné à laquelle se trouve la projection du point donné,
+     * ramenée entre 0 et 1
+     * @param from extrémité de départ du segment
+     * @param to extrémité d'arrivée du segment
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @return la fraction, entre 0 et 1
+     */
+    private static double factor(PointCh from, PointCh to, double e, double n) {
+        double squaredLength = from.squaredDistanceTo(to);
+        if (squaredLength == 0) return 0;
+        double dot = Math2.dotProduct(e - from.e(), n - from.n(), to.e() - from.e(), to.n() - from.n());
+        return Math2.clamp(0, dot / squaredLength, 1);
+    }
+
+    /**
+     * Retourne le niveau de l'arbre auquel se trouve le noeud de position donnée
+     * @param position position du noeud
+     * @return le niveau du noeud (0 pour les feuilles)
+     */
+    private int level(int position) {
+        int level = 0;
+        while (position >= levelEnds[level]) level += 1;
+        return level;
+    }
+
+    /**
+     * Retourne le carré de la distance entre le point donné et le rectangle du noeud de position donnée (0 si le
+     * point est dans le rectangle), arrondi vers le bas
+     * @param position position du noeud
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @return le carré de la distance
+     */
+    private float boxSquaredDistance(int position, double e, double n) {
+        double dE = Math.max(0, Math.max(boxes[BOX_FLOATS * position + MIN_E] - e, e - boxes[BOX_FLOATS * position + MAX_E]));
+        double dN = Math.max(0, Math.max(boxes[BOX_FLOATS * position + MIN_N] - n, n - boxes[BOX_FLOATS * position + MAX_N]));
+        float distance = (float) Math2.squaredNorm(dE, dN);
+        return distance > Math2.squaredNorm(dE, dN) ? Math.nextDown(distance) : distance;
+    }
+
+    private static void setBox(float[] boxes, int position, double minE, double minN, double maxE, double maxN) {
+        boxes[BOX_FLOATS * position + MIN_E] = floatDown(minE);
+        boxes[BOX_FLOATS * position + MIN_N] = floatDown(minN);
+        boxes[BOX_FLOATS * position + MAX_E] = floatUp(maxE);
+        boxes[BOX_FLOATS * position + MAX_N] = floatUp(maxN);
+    }
+
+    private static float floatDown(double value) {
+        float f = (float) value;
+        return f > value ? Math.nextDown(f) : f;
+    }
+
+    private static float floatUp(double value) {
+        float f = (float) value;
+        return f < value ? Math.nextUp(f) : f;
+    }
+
+    /**
+     * Retourne la clé de tri d'une arête : la coordonnée donnée (E ou N) du milieu de l'arête, au centimètre,
+     * dans les 32 bits de poids fort, et l'index de l'arête dans les 32 bits de poids faible
+     * @param graph graphe
+     * @param fromNodeId identité du noeud de départ de l'arête
+     * @param edgeId identité de l'arête
+     * @param east vrai pour trier selon E, faux pour trier selon N
+     * @param index index de l'arête
+     * @return la clé de tri
+     */
+    private static long sortKey(Graph graph, int fromNodeId, int edgeId, boolean east, int index) {
+        PointCh from = graph.nodePoint(fromNodeId);
+        PointCh to = graph.nodePoint(graph.edgeTargetNodeId(edgeId));
+        double middle = east ? (from.e() + to.e()) / 2 : (from.n() + to.n()) / 2;
+        return Math.round(middle * 100) << 32 | index;
+    }
+
+    private static long key(float squaredDistance, int position) {
+        return (long) Float.floatToIntBits(squaredDistance) << 32 | position;
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0 && heap[(index - 1) / 2] > heap[index]) {
+            swap(heap, index, (index - 1) / 2);
+            index = (index - 1) / 2;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (2 * index + 1 < size) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child += 1;
+            if (heap[index] <= heap[child]) return;
+            swap(heap, index, child);
+            index = child;
+        }
+    }
+
+    private static void swap(long[] values, int i, int j) {
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
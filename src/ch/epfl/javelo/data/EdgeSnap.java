@@ -0,0 +1,28 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.projection.PointCh;
+
+/**
+ * Enregistrement EdgeSnap, point d'une arête le plus proche d'un point donné (p.ex. d'un clic), trouvé par
+ * EdgeIndex
+ *
+ * @param edgeId identité de l'arête
+ * @param fromNodeId identité du noeud de départ de l'arête
+ * @param position position du point sur l'arête, en mètres depuis son noeud de départ
+ * @param point point de l'arête
+ * @param distance distance, en mètres, entre le point donné et le point de l'arête
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public record EdgeSnap(int edgeId, int fromNodeId, double position, PointCh point, double distance) {
+
+    /**
+     * Constructeur compact
+     * @throws IllegalArgumentException si la position ou la distance est négative
+     */
+    public EdgeSnap {
+        Preconditions.checkArgument(position >= 0 && distance >= 0);
+    }
+}
@@ -0,0 +1,66 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Interface EdgeStorage, accès aux arêtes d'un graphe, quelle que soit leur représentation en mémoire (fichiers
+ * projetés en mémoire ou tableaux décodés)
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+interface EdgeStorage {
+
+    /**
+     * Retourne le nombre d'arêtes
+     * @return le nombre d'arêtes
+     */
+    int count();
+
+    /**
+     * Retourne vrai ssi l'arête d'identité donnée va dans le sens inverse de la voie OSM dont elle provient
+     * @param edgeId identité de l'arête
+     * @return vrai ssi l'arête est inversée
+     */
+    boolean isInverted(int edgeId);
+
+    /**
+     * Retourne l'identité du noeud destination de l'arête d'identité donnée
+     * @param edgeId identité de l'arête
+     * @return l'identité du noeud destination
+     */
+    int targetNodeId(int edgeId);
+
+    /**
+     * Retourne la longueur, en mètres, de l'arête d'identité donnée
+     * @param edgeId identité de l'arête
+     * @return la longueur de l'arête
+     */
+    double length(int edgeId);
+
+    /**
+     * Retourne le dénivelé positif, en mètres, de l'arête d'identité donnée
+     * @param edgeId identité de l'arête
+     * @return le dénivelé positif de l'arête
+     */
+    double elevationGain(int edgeId);
+
+    /**
+     * Retourne vrai ssi l'arête d'identité donnée possède un profil
+     * @param edgeId identité de l'arête
+     * @return vrai ssi l'arête possède un profil
+     */
+    boolean hasProfile(int edgeId);
+
+    /**
+     * Retourne les échantillons du profil de l'arête d'identité donnée
+     * @param edgeId identité de l'arête
+     * @return les échantillons du profil, vide si l'arête n'en possède pas
+     */
+    float[] profileSamples(int edgeId);
+
+    /**
+     * Retourne l'identité de l'ensemble d'attributs attaché à l'arête d'identité donnée
+     * @param edgeId identité de l'arête
+     * @return l'identité de l'ensemble d'attributs
+     */
+    int attributesIndex(int edgeId);
+}
@@ -2,7 +2,10 @@ package ch.epfl.javelo.data;
 
 
 import ch.epfl.javelo.Functions;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
 
 
 import java.io.IOException;
@@ -11,10 +14,13 @@ import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
 
 /**
  * Class Graph
@@ -23,10 +29,42 @@ import java.util.function.DoubleUnaryOperator;
  * @author Idriss Mimet (324424)
  */
 public final class Graph {
-    private final GraphNodes nodes;
+    private final NodeStorage nodes;
     private final GraphSectors sectors;
-    private final GraphEdges edges;
+    private final EdgeStorage edges;
     private final List<AttributeSet> attributeSets ;
+    private final NodeIndex nodeIndex;
+    /**
+     * Distance (en mètres) à laquelle commence la recherche du noeud le plus proche d'un point en l'absence
+     * d'index spatial, doublée tant qu'aucun noeud n'est trouvé
+     */
+    private static final double INITIAL_SEARCH_DISTANCE = 500;
+    /**
+     * Nombre de points traités à la suite par une même tâche lors d'une recherche groupée (voir nodesClosestTo)
+     */
+    private static final int BATCH_SIZE = 1024;
+
+    /**
+     * Mode de chargement des fichiers du graphe
+     */
+    public enum LoadMode {
+        /**
+         * Fichiers projetés en mémoire et décodés à chaque accès, ce qui n'occupe presque pas de mémoire
+         */
+        MAPPED,
+        /**
+         * Noeuds et arêtes décodés une fois pour toutes dans des tableaux, ce qui accélère la recherche
+         * d'itinéraire au prix d'environ 13 octets par noeud et 14 octets par arête
+         */
+        HEAP,
+        /**
+         * Noeuds et arêtes lus dans les fichiers compressés écrits par GraphCompression, qui occupent environ
+         * deux fois moins de mémoire que nodes.bin, edges.bin et profile_ids.bin, au prix d'un décodage plus
+         * coûteux à chaque accès
+         */
+        COMPRESSED
+    }
+
     /**
      * Constructeur public
      * @param nodes nodes à insérer dans le Graph
@@ -35,10 +73,24 @@ public final class Graph {
      * @param attributeSets attributs du Graph
      */
     public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets) {
+        this((NodeStorage) nodes, sectors, edges, attributeSets, null);
+    }
+
+    /**
+     * Constructeur privé, indépendant de la représentation des noeuds et des arêtes
+     * @param nodes nodes à insérer dans le Graph
+     * @param sectors secteurs à insérer dans le Graph
+     * @param edges edges reliant les nodes du Graph
+     * @param attributeSets attributs du Graph
+     * @param nodeIndex index spatial des noeuds, ou null pour utiliser les secteurs
+     */
+    private Graph(NodeStorage nodes, GraphSectors sectors, EdgeStorage edges, List<AttributeSet> attributeSets,
+                  NodeIndex nodeIndex) {
         this.nodes = nodes;
         this.sectors = sectors;
         this.edges = edges;
         this.attributeSets = List.copyOf(attributeSets);
+        this.nodeIndex = nodeIndex;
 
     }
 
@@ -50,22 +102,158 @@ public final class Graph {
      * @throws IOException en cas d'erreur d'entrée ou sortie, p.ex: si l'un des fichiers n'existe pas
      */
     public static Graph loadFrom(Path basePath) throws IOException {
+        return loadFrom(basePath, LoadMode.MAPPED);
+    }
 
-        GraphNodes nodes1 = new GraphNodes(tryMethod("nodes.bin",basePath).asIntBuffer());
-        GraphSectors sectors1 = new GraphSectors(tryMethod("sectors.bin", basePath));
-        ByteBuffer edgesBuffer = tryMethod("edges.bin",basePath);
-        IntBuffer profilesBuffer = tryMethod("profile_ids.bin",basePath).asIntBuffer();
-        ShortBuffer elevationsBuffer = tryMethod("elevations.bin",basePath).asShortBuffer();
-        GraphEdges edges1 = new GraphEdges(edgesBuffer,profilesBuffer,elevationsBuffer);
+    /**
+     * Retourne le graphe JaVelo obtenu à partir des fichiers se trouvant dans le répertoire
+     * dont le chemin d'accès est basePath, chargé selon le mode donné
+     * @param basePath chemin d'accès des fichiers
+     * @param loadMode mode de chargement des noeuds et des arêtes
+     * @return Graph avec tous ses arguments
+     * @throws IOException en cas d'erreur d'entrée ou sortie, p.ex: si l'un des fichiers n'existe pas
+     */
+    public static Graph loadFrom(Path basePath, LoadMode loadMode) throws IOException {
+        Graph graph = loadMode == LoadMode.COMPRESSED
+                ? ofCompressed(tryMethod(GraphCompression.NODES_FILE, basePath), tryMethod("sectors.bin", basePath),
+                        tryMethod(GraphCompression.EDGES_FILE, basePath), tryMethod("elevations.bin", basePath),
+                        tryMethod("attributes.bin", basePath))
+                : of(tryMethod("nodes.bin", basePath), tryMethod("sectors.bin", basePath),
+                        tryMethod("edges.bin", basePath), tryMethod("profile_ids.bin", basePath),
+                        tryMethod("elevations.bin", basePath), tryMethod("attributes.bin", basePath), loadMode);
+        return graph.withNodeIndexFrom(basePath);
+    }
+
+    /**
+     * Retourne le graphe JaVelo dont les fichiers sont les sections du conteneur donné (voir GraphContainer),
+     * chargé selon le mode donné. Les sections sont des vues du conteneur projeté en mémoire, et ne sont donc
+     * pas copiées.
+     * @param container conteneur du graphe
+     * @param loadMode mode de chargement des noeuds et des arêtes
+     * @return Graph avec tous ses arguments
+     * @throws IllegalArgumentException si l'une des sections du graphe est absente du conteneur
+     */
+    public static Graph loadFrom(GraphContainer container, LoadMode loadMode) {
+        Graph graph = loadMode == LoadMode.COMPRESSED
+                ? ofCompressed(container.section(GraphCompression.NODES_FILE), container.section("sectors.bin"),
+                        container.section(GraphCompression.EDGES_FILE), container.section("elevations.bin"),
+                        container.section("attributes.bin"))
+                : of(container.section("nodes.bin"), container.section("sectors.bin"),
+                        container.section("edges.bin"), container.section("profile_ids.bin"),
+                        container.section("elevations.bin"), container.section("attributes.bin"), loadMode);
+        return container.hasSection(NodeIndex.FILE_NAME)
+                ? graph.withNodeIndex(NodeIndex.of(container.section(NodeIndex.FILE_NAME).asIntBuffer()))
+                : graph;
+    }
+
+    /**
+     * Retourne le graphe JaVelo dont les fichiers ont les contenus donnés, chargé selon le mode donné
+     * @param nodesBuffer contenu de nodes.bin
+     * @param sectorsBuffer contenu de sectors.bin
+     * @param edgesBuffer contenu de edges.bin
+     * @param profileIdsBuffer contenu de profile_ids.bin
+     * @param elevationsBuffer contenu de elevations.bin
+     * @param attributesBuffer contenu de attributes.bin
+     * @param loadMode mode de chargement des noeuds et des arêtes, MAPPED ou HEAP
+     * @return Graph avec tous ses arguments
+     */
+    private static Graph of(ByteBuffer nodesBuffer, ByteBuffer sectorsBuffer, ByteBuffer edgesBuffer,
+                            ByteBuffer profileIdsBuffer, ByteBuffer elevationsBuffer, ByteBuffer attributesBuffer,
+                            LoadMode loadMode) {
+
+        GraphNodes nodes1 = new GraphNodes(nodesBuffer.asIntBuffer());
+        GraphSectors sectors1 = new GraphSectors(sectorsBuffer);
+        IntBuffer profilesBuffer = profileIdsBuffer.asIntBuffer();
+        ShortBuffer elevations = elevationsBuffer.asShortBuffer();
+        GraphEdges edges1 = new GraphEdges(edgesBuffer, profilesBuffer, elevations);
+        List<AttributeSet> attributeSets1 = attributeSets(attributesBuffer);
+        return loadMode == LoadMode.HEAP
+                ? new Graph(HeapNodes.of(nodes1), sectors1, HeapEdges.of(edges1), attributeSets1, null)
+                : new Graph(nodes1, sectors1, edges1, attributeSets1, null);
+
+    }
+
+    /**
+     * Retourne le graphe JaVelo dont les noeuds et les arêtes sont lus dans les fichiers compressés écrits par
+     * GraphCompression, et les autres fichiers ont les contenus donnés
+     * @param compressedNodesBuffer contenu de nodes_compressed.bin
+     * @param sectorsBuffer contenu de sectors.bin
+     * @param compressedEdgesBuffer contenu de edges_compressed.bin
+     * @param elevationsBuffer contenu de elevations.bin
+     * @param attributesBuffer contenu de attributes.bin
+     * @return Graph avec tous ses arguments
+     */
+    private static Graph ofCompressed(ByteBuffer compressedNodesBuffer, ByteBuffer sectorsBuffer,
+                                      ByteBuffer compressedEdgesBuffer, ByteBuffer elevationsBuffer,
+                                      ByteBuffer attributesBuffer) {
+        return new Graph(new CompressedNodes(compressedNodesBuffer), new GraphSectors(sectorsBuffer),
+                new CompressedEdges(compressedEdgesBuffer, elevationsBuffer.asShortBuffer()),
+                attributeSets(attributesBuffer), null);
+    }
+
+    /**
+     * Retourne les ensembles d'attributs contenus dans attributes.bin
+     * @param attributesBuffer contenu de attributes.bin
+     * @return les ensembles d'attributs
+     */
+    private static List<AttributeSet> attributeSets(ByteBuffer attributesBuffer) {
         List<AttributeSet> attributeSets1 = new ArrayList<>();
-        LongBuffer attributesBuffer = tryMethod("attributes.bin",basePath).asLongBuffer();
+        LongBuffer attributes = attributesBuffer.asLongBuffer();
 
-        int lengthTab = attributesBuffer.capacity();
+        int lengthTab = attributes.capacity();
         for (int i = 0; i < lengthTab; i++) {
-            attributeSets1.add(new AttributeSet(attributesBuffer.get(i)));
+            attributeSets1.add(new AttributeSet(attributes.get(i)));
         }
-        return new Graph(nodes1, sectors1, edges1, attributeSets1);
+        return attributeSets1;
+    }
+
+    /**
+     * Retourne le graphe JaVelo obtenu à partir des fichiers se trouvant dans le répertoire dont le chemin d'accès
+     * est basePath, projetés en mémoire au sein de l'arène donnée. Contrairement aux autres modes de chargement,
+     * les noeuds, les arêtes et les profils sont adressés par des positions de type long, ce qui permet à leurs
+     * fichiers de dépasser 2 Go; le graphe n'est utilisable que tant que l'arène n'est pas fermée.
+     * @param basePath chemin d'accès des fichiers
+     * @param arena arène propriétaire des fichiers projetés
+     * @return Graph avec tous ses arguments
+     * @throws IOException en cas d'erreur d'entrée ou sortie, p.ex: si l'un des fichiers n'existe pas
+     * @throws IllegalStateException si l'arène a été fermée
+     */
+    public static Graph loadFrom(Path basePath, GraphArena arena) throws IOException {
+        SegmentedNodes nodes1 = new SegmentedNodes(
+                arena.map(basePath.resolve("nodes.bin"), SegmentedNodes.NODE_BYTES));
+        GraphSectors sectors1 = new GraphSectors(tryMethod("sectors.bin", basePath));
+        SegmentedEdges edges1 = new SegmentedEdges(
+                arena.map(basePath.resolve("edges.bin"), SegmentedEdges.EDGE_BYTES),
+                arena.map(basePath.resolve("profile_ids.bin"), Integer.BYTES),
+                arena.map(basePath.resolve("elevations.bin"), Short.BYTES));
+        return new Graph(nodes1, sectors1, edges1, attributeSets(tryMethod("attributes.bin", basePath)), null)
+                .withNodeIndexFrom(basePath);
+    }
 
+    /**
+     * Retourne un graphe identique à celui-ci, mais dont les recherches du noeud le plus proche d'un point
+     * utilisent l'index spatial donné plutôt que les secteurs
+     * @param nodeIndex index spatial des noeuds de ce graphe
+     * @return le nouveau graphe
+     * @throws IllegalArgumentException si l'index n'a pas été construit pour ce graphe, p.ex. s'il l'a été avant
+     * sa renumérotation (voir NodeIndex)
+     */
+    public Graph withNodeIndex(NodeIndex nodeIndex) {
+        Preconditions.checkArgument(nodeIndex.matches(this));
+        return new Graph(nodes, sectors, edges, attributeSets, nodeIndex);
+    }
+
+    /**
+     * Retourne un graphe identique à celui-ci, mais utilisant l'index spatial écrit dans le répertoire donné
+     * (voir NodeIndex), ou ce graphe si ce répertoire n'en contient pas
+     * @param basePath chemin d'accès des fichiers
+     * @return le graphe
+     * @throws IOException en cas d'erreur d'entrée ou sortie
+     * @throws IllegalArgumentException si l'index n'a pas été construit pour ce graphe
+     */
+    private Graph withNodeIndexFrom(Path basePath) throws IOException {
+        Path indexPath = basePath.resolve(NodeIndex.FILE_NAME);
+        return Files.exists(indexPath) ? withNodeIndex(NodeIndex.loadFrom(indexPath)) : this;
     }
 
     /**
@@ -85,6 +273,24 @@ public final class Graph {
         return new PointCh(nodes.nodeE(nodeId), nodes.nodeN(nodeId));
     }
 
+    /**
+     * Retourne la coordonnée E du noeud d'identité donnée, sans créer de point
+     * @param nodeId identité du noeud
+     * @return la coordonnée E du noeud
+     */
+    public double nodeE(int nodeId) {
+        return nodes.nodeE(nodeId);
+    }
+
+    /**
+     * Retourne la coordonnée N du noeud d'identité donnée, sans créer de point
+     * @param nodeId identité du noeud
+     * @return la coordonnée N du noeud
+     */
+    public double nodeN(int nodeId) {
+        return nodes.nodeN(nodeId);
+    }
+
     /**
      * Retourne le nombre d'arêtes sortantes d'un noeud
      * @param nodeId identité du noeud duquel on cherche le nombre d'arêtes sortantes
@@ -112,23 +318,107 @@ public final class Graph {
      * @return le noeud le plus proche du point ou -1 si aucun noued ne correspond aux critères ci-dessus
      */
     public int nodeClosestTo(PointCh point, double searchDistance) {
-        List<GraphSectors.Sector> inArea = sectors.sectorsInArea(point, searchDistance);
+        return nodeClosestTo(point.e(), point.n(), searchDistance);
+    }
+
+    /**
+     * Retourne l'identité du nœud se trouvant le plus proche du point donné, quelle que soit sa distance, ou -1
+     * si le graphe n'a aucun noeud. En l'absence d'index spatial, la distance de recherche est doublée jusqu'à ce
+     * qu'un noeud soit trouvé.
+     * @param point point duquel on cherche le noeud le plus proche
+     * @return le noeud le plus proche du point, ou -1 si le graphe n'a aucun noeud
+     */
+    public int nodeClosestTo(PointCh point) {
+        return nodeClosestTo(point.e(), point.n(), Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Cherche, pour chacun des points dont les coordonnées sont données, le noeud le plus proche à la distance
+     * maximale donnée, et écrit son identité (ou -1) et sa distance (ou l'infini) aux mêmes index des tableaux
+     * donnés. Les points sont triés par secteur, afin que des recherches voisines lisent les mêmes parties du
+     * graphe, puis répartis par lots de BATCH_SIZE entre les processeurs disponibles.
+     * @param es coordonnées E des points
+     * @param ns coordonnées N des points
+     * @param searchDistance distance maximale de recherche, éventuellement infinie
+     * @param nodeIds tableau recevant les identités des noeuds les plus proches
+     * @param distances tableau recevant les distances (en mètres) des points à ces noeuds
+     * @throws IllegalArgumentException si les tableaux n'ont pas tous la même taille, si la distance de
+     * recherche est négative, ou si l'un des points n'est pas en Suisse
+     */
+    public void nodesClosestTo(double[] es, double[] ns, double searchDistance, int[] nodeIds,
+                               double[] distances) {
+        int count = es.length;
+        Preconditions.checkArgument(ns.length == count && nodeIds.length == count && distances.length == count
+                && searchDistance >= 0);
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            Preconditions.checkArgument(SwissBounds.containsEN(es[i], ns[i]));
+            order[i] = (long) GraphSectors.sectorIndex(es[i], ns[i]) << Integer.SIZE | i;
+        }
+        Arrays.parallelSort(order);
+
+        IntStream.range(0, Math2.ceilDiv(count, BATCH_SIZE)).parallel().forEach(batch -> {
+            int end = Math.min(count, (batch + 1) * BATCH_SIZE);
+            for (int k = batch * BATCH_SIZE; k < end; k++) {
+                int i = (int) order[k];
+                int nodeId = nodeClosestTo(es[i], ns[i], searchDistance);
+                nodeIds[i] = nodeId;
+                distances[i] = nodeId == -1
+                        ? Double.POSITIVE_INFINITY
+                        : Math.hypot(nodes.nodeE(nodeId) - es[i], nodes.nodeN(nodeId) - ns[i]);
+            }
+        });
+    }
+
+    /**
+     * Méthode auxiliaire retournant l'identité du nœud se trouvant le plus proche du point de coordonnées
+     * données, à la distance maximale donnée, ou -1. Les secteurs sont parcourus directement, sans allouer de
+     * liste; une distance infinie est traitée en doublant la distance de recherche jusqu'à trouver un noeud.
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @param searchDistance distance maximale de recherche, éventuellement infinie
+     * @return le noeud le plus proche du point, ou -1
+     */
+    private int nodeClosestTo(double e, double n, double searchDistance) {
+        if (nodeIndex != null) {
+            return nodeIndex.nearest(e, n, searchDistance);
+        }
+        if (searchDistance == Double.POSITIVE_INFINITY) {
+            double maxDistance = Math.hypot(SwissBounds.WIDTH, SwissBounds.HEIGHT);
+            int nodeId = -1;
+            for (double distance = INITIAL_SEARCH_DISTANCE; nodeId == -1 && distance < 2 * maxDistance;
+                 distance *= 2) {
+                nodeId = nodeClosestTo(e, n, distance);
+            }
+            return nodeId;
+        }
+        int xMax = GraphSectors.sectorX(e + searchDistance);
+        int yMax = GraphSectors.sectorY(n + searchDistance);
         double distanceMin = searchDistance * searchDistance;
         int nodeId = -1;
-        for (GraphSectors.Sector sector : inArea) {
-            int firstId = sector.startNodeId();
-            int lastId = sector.endNodeId();
-            for (int i = firstId; i < lastId; i++) {
-                double distance = point.squaredDistanceTo(nodePoint(i));
-                if (distance <= distanceMin) {
-                    distanceMin = distance;
-                    nodeId = i;
+        for (int y = GraphSectors.sectorY(n - searchDistance); y <= yMax; y++) {
+            for (int x = GraphSectors.sectorX(e - searchDistance); x <= xMax; x++) {
+                int lastId = sectors.endNodeId(x, y);
+                for (int i = sectors.startNodeId(x, y); i < lastId; i++) {
+                    double distance = Math2.squaredNorm(nodes.nodeE(i) - e, nodes.nodeN(i) - n);
+                    if (distance <= distanceMin) {
+                        distanceMin = distance;
+                        nodeId = i;
+                    }
                 }
             }
         }
         return nodeId;
     }
 
+    /**
+     * Compte les arêtes d'un graph
+     * @return le nombre d'arêtes d'un graph
+     */
+    public int edgeCount() {
+        return edges.count();
+    }
+
     /**
      * retourne l'identité du nœud destination de l'arête d'identité donnée
      * @param edgeId id de l'arête
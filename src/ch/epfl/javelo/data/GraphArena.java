@@ -0,0 +1,62 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classe GraphArena, arène propriétaire des fichiers projetés en mémoire des graphes chargés avec elle (voir
+ * Graph.loadFrom(Path, GraphArena)). Ces fichiers sont adressés par des index de type long et peuvent donc
+ * dépasser 2 Go. Tous les graphes d'une arène partagent sa durée de vie: une fois l'arène fermée, leurs
+ * fichiers ne doivent plus être utilisés, et sont libérés dès que les graphes ne sont plus référencés.
+ * L'extraction d'un profil lève alors IllegalStateException; les autres accès aux noeuds et aux arêtes, les plus
+ * fréquents de la recherche d'itinéraire, ne sont pas vérifiés afin de ne rien coûter.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class GraphArena implements AutoCloseable {
+    private final List<ChunkedMapping> mappings = new ArrayList<>();
+    private boolean isClosed;
+
+    /**
+     * Projette en mémoire, au sein de cette arène, le fichier dont le chemin est donné
+     * @param path chemin d'accès du fichier
+     * @param recordBytes taille, en octets, d'un enregistrement du fichier
+     * @return le fichier projeté
+     * @throws IOException en cas d'erreur d'entrée ou sortie, p.ex: si le fichier n'existe pas
+     * @throws IllegalStateException si l'arène a été fermée
+     */
+    synchronized ChunkedMapping map(Path path, int recordBytes) throws IOException {
+        if (isClosed) {
+            throw new IllegalStateException("arène fermée");
+        }
+        ChunkedMapping mapping = ChunkedMapping.map(path, recordBytes);
+        mappings.add(mapping);
+        return mapping;
+    }
+
+    /**
+     * Retourne vrai ssi cette arène a été fermée
+     * @return vrai ssi l'arène a été fermée
+     */
+    public synchronized boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Ferme cette arène et libère les fichiers de tous les graphes chargés avec elle; sans effet si elle est
+     * déjà fermée
+     */
+    @Override
+    public synchronized void close() {
+        if (!isClosed) {
+            isClosed = true;
+            for (ChunkedMapping mapping : mappings) {
+                mapping.release();
+            }
+            mappings.clear();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Classe GraphCompression, outil hors ligne écrivant, à côté des fichiers d'un graphe, une version compressée de
+ * ses noeuds (nodes_compressed.bin, voir CompressedNodes) et de ses arêtes et identités de profils
+ * (edges_compressed.bin, voir CompressedEdges). Le graphe peut ensuite être chargé avec Graph.LoadMode.COMPRESSED,
+ * qui n'utilise plus nodes.bin, edges.bin et profile_ids.bin. Les fichiers compressés dérivant de ces derniers,
+ * ils doivent être recalculés si le graphe change (p.ex. après GraphRenumbering, qui d'ailleurs réduit leur
+ * taille, les différences entre noeuds voisins étant alors plus petites).
+ * <p>
+ * Le programme affiche la taille des fichiers avant et après compression.
+ * <p>
+ * Utilisation : {@code java ch.epfl.javelo.data.GraphCompression <répertoire du graphe>}
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class GraphCompression {
+    /**
+     * Nom du fichier des noeuds compressés
+     */
+    public static final String NODES_FILE = "nodes_compressed.bin";
+    /**
+     * Nom du fichier des arêtes compressées
+     */
+    public static final String EDGES_FILE = "edges_compressed.bin";
+
+    private GraphCompression() {}
+
+    /**
+     * Programme compressant le graphe du répertoire donné en argument
+     * @param args répertoire du graphe
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 1);
+        Path basePath = Path.of(args[0]);
+        compress(basePath);
+
+        long nodesSize = Files.size(basePath.resolve("nodes.bin"));
+        long edgesSize = Files.size(basePath.resolve("edges.bin")) + Files.size(basePath.resolve("profile_ids.bin"));
+        long compressedNodesSize = Files.size(basePath.resolve(NODES_FILE));
+        long compressedEdgesSize = Files.size(basePath.resolve(EDGES_FILE));
+        System.out.printf("noeuds : %d o -> %d o (%.1f %%)%n", nodesSize, compressedNodesSize,
+                100.0 * compressedNodesSize / nodesSize);
+        System.out.printf("arêtes et profils : %d o -> %d o (%.1f %%)%n", edgesSize, compressedEdgesSize,
+                100.0 * compressedEdgesSize / edgesSize);
+        System.out.printf("total : %d o économisés%n",
+                nodesSize + edgesSize - compressedNodesSize - compressedEdgesSize);
+    }
+
+    /**
+     * Écrit les fichiers compressés du graphe dont les fichiers se trouvent dans le répertoire donné
+     * @param basePath répertoire du graphe
+     * @throws IOException en cas d'erreur d'entrée/sortie, p.ex: si l'un des fichiers du graphe n'existe pas
+     */
+    public static void compress(Path basePath) throws IOException {
+        GraphNodes nodes = new GraphNodes(map(basePath, "nodes.bin").asIntBuffer());
+        GraphEdges edges = new GraphEdges(map(basePath, "edges.bin"),
+                map(basePath, "profile_ids.bin").asIntBuffer(), map(basePath, "elevations.bin").asShortBuffer());
+        Files.write(basePath.resolve(NODES_FILE), CompressedNodes.encode(nodes));
+        Files.write(basePath.resolve(EDGES_FILE), CompressedEdges.encode(edges));
+    }
+
+    /**
+     * Méthode auxiliaire projetant en mémoire le fichier donné
+     * @param basePath répertoire du fichier
+     * @param name nom du fichier
+     * @return le contenu du fichier
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    private static ByteBuffer map(Path basePath, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(name))) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Classe GraphContainer, fichier unique regroupant tous les fichiers d'un graphe, projeté en mémoire d'un seul
+ * tenant et dont chaque section (nodes.bin, edges.bin, etc.) est une vue, sans copie. Remplacer un graphe en
+ * cours d'utilisation revient ainsi à remplacer un seul fichier, ce que fait pack de manière atomique.
+ * <p>
+ * Le conteneur commence par un en-tête (nombre magique, version, nombre de sections), suivi de la table des
+ * sections, qui donne pour chacune son nom (ASCII, complété par des zéros), sa position et sa taille en octets.
+ * Les sections suivent, chacune alignée sur SECTION_ALIGNMENT octets. Toutes les valeurs sont big-endian,
+ * comme dans les fichiers du graphe.
+ * <p>
+ * Utilisation : {@code java ch.epfl.javelo.data.GraphContainer <répertoire du graphe> <conteneur>}
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class GraphContainer {
+    /**
+     * Nombre magique, "JVGC" en ASCII
+     */
+    private static final int MAGIC = 0x4A564743;
+    private static final int VERSION = 1;
+    /**
+     * Taille de l'en-tête : nombre magique, version et nombre de sections
+     */
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    /**
+     * Taille maximale, en octets, du nom d'une section
+     */
+    private static final int NAME_BYTES = 32;
+    /**
+     * Taille d'une entrée de la table des sections : nom, position et taille
+     */
+    private static final int ENTRY_BYTES = NAME_BYTES + 2 * Long.BYTES;
+    /**
+     * Alignement, en octets, du début de chaque section (une page mémoire)
+     */
+    private static final int SECTION_ALIGNMENT = 4096;
+    /**
+     * Fichiers constituant le graphe, nécessairement présents dans le conteneur
+     */
+    private static final List<String> GRAPH_FILES = List.of("nodes.bin", "sectors.bin", "edges.bin",
+            "profile_ids.bin", "elevations.bin", "attributes.bin");
+    private static final String FILE_EXTENSION = ".bin";
+
+    private final Map<String, ByteBuffer> sections;
+
+    /**
+     * Constructeur privé
+     * @param sections sections du conteneur, dans l'ordre de la table
+     */
+    private GraphContainer(Map<String, ByteBuffer> sections) {
+        this.sections = Collections.unmodifiableMap(sections);
+    }
+
+    /**
+     * Programme regroupant les fichiers du graphe se trouvant dans le répertoire donné en premier argument dans
+     * le conteneur donné en second argument
+     * @param args répertoire du graphe et chemin du conteneur
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 2);
+        pack(Path.of(args[0]), Path.of(args[1]));
+    }
+
+    /**
+     * Regroupe dans un conteneur les fichiers du graphe se trouvant dans le répertoire donné, ainsi que tous les
+     * autres fichiers .bin de ce répertoire (coûts précalculés, repères, etc.), qui en deviennent des sections
+     * supplémentaires, lues par les méthodes loadFrom(GraphContainer, ...) de leurs classes. Le conteneur est d'abord écrit dans un fichier temporaire du même répertoire, puis
+     * renommé de manière atomique, de sorte qu'un conteneur existant est remplacé d'un seul coup.
+     * @param basePath répertoire du graphe
+     * @param containerPath chemin du conteneur
+     * @throws IOException en cas d'erreur d'entrée/sortie, p.ex: si l'un des fichiers du graphe n'existe pas
+     * @throws IllegalArgumentException si le nom de l'un des fichiers est trop long pour la table des sections
+     */
+    public static void pack(Path basePath, Path containerPath) throws IOException {
+        List<String> names = new ArrayList<>(GRAPH_FILES);
+        List<String> extraNames = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(basePath, "*" + FILE_EXTENSION)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (!GRAPH_FILES.contains(name) && Files.isRegularFile(path)) {
+                    extraNames.add(name);
+                }
+            }
+        }
+        Collections.sort(extraNames);
+        names.addAll(extraNames);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + names.size() * ENTRY_BYTES)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(names.size());
+        long[] offsets = new long[names.size()];
+        long offset = header.capacity();
+        for (int i = 0; i < names.size(); i++) {
+            byte[] name = names.get(i).getBytes(StandardCharsets.US_ASCII);
+            Preconditions.checkArgument(name.length <= NAME_BYTES);
+            long size = Files.size(basePath.resolve(names.get(i)));
+            offsets[i] = align(offset);
+            header.put(name).put(new byte[NAME_BYTES - name.length]).putLong(offsets[i]).putLong(size);
+            offset = offsets[i] + size;
+        }
+
+        Path parent = containerPath.toAbsolutePath().getParent();
+        Path temporaryPath = Files.createTempFile(parent, containerPath.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                channel.write(header.flip());
+                for (int i = 0; i < names.size(); i++) {
+                    try (FileChannel source = FileChannel.open(basePath.resolve(names.get(i)))) {
+                        long size = source.size();
+                        long transferred = 0;
+                        while (transferred < size) {
+                            transferred += source.transferTo(transferred, size - transferred,
+                                    channel.position(offsets[i] + transferred));
+                        }
+                    }
+                }
+                channel.force(true);
+            }
+            Files.move(temporaryPath, containerPath,
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+    }
+
+    /**
+     * Projette en mémoire le conteneur dont le chemin est donné, en un seul appel, et retourne ses sections
+     * @param containerPath chemin du conteneur
+     * @return le conteneur
+     * @throws IOException en cas d'erreur d'entrée/sortie, ou si le fichier n'est pas un conteneur valide
+     */
+    public static GraphContainer open(Path containerPath) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(containerPath)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("taille de conteneur invalide : " + containerPath);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("en-tête de conteneur invalide : " + containerPath);
+        }
+        int sectionCount = buffer.getInt(2 * Integer.BYTES);
+        if (sectionCount < 0 || HEADER_BYTES + (long) sectionCount * ENTRY_BYTES > buffer.capacity()) {
+            throw new IOException("table des sections invalide : " + containerPath);
+        }
+
+        Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+        for (int i = 0; i < sectionCount; i++) {
+            int entry = HEADER_BYTES + i * ENTRY_BYTES;
+            byte[] name = new byte[NAME_BYTES];
+            buffer.get(entry, name);
+            int nameLength = 0;
+            while (nameLength < NAME_BYTES && name[nameLength] != 0) {
+                nameLength += 1;
+            }
+            long offset = buffer.getLong(entry + NAME_BYTES);
+            long size = buffer.getLong(entry + NAME_BYTES + Long.BYTES);
+            if (offset < 0 || size < 0 || offset + size > buffer.capacity()) {
+                throw new IOException("table des sections invalide : " + containerPath);
+            }
+            sections.put(new String(name, 0, nameLength, StandardCharsets.US_ASCII),
+                    buffer.slice((int) offset, (int) size));
+        }
+        return new GraphContainer(sections);
+    }
+
+    /**
+     * Retourne les noms des sections du conteneur, dans l'ordre de la table
+     * @return les noms des sections
+     */
+    public Set<String> sectionNames() {
+        return sections.keySet();
+    }
+
+    /**
+     * Retourne vrai ssi le conteneur possède une section du nom donné
+     * @param name nom de la section, p.ex. "nodes.bin"
+     * @return vrai ssi la section existe
+     */
+    public boolean hasSection(String name) {
+        return sections.containsKey(name);
+    }
+
+    /**
+     * Retourne le contenu de la section du nom donné, sous la forme d'une vue du conteneur projeté en mémoire
+     * @param name nom de la section, p.ex. "nodes.bin"
+     * @return le contenu de la section
+     * @throws IllegalArgumentException si le conteneur ne possède pas de section de ce nom
+     */
+    public ByteBuffer section(String name) {
+        ByteBuffer section = sections.get(name);
+        Preconditions.checkArgument(section != null);
+        return section.duplicate();
+    }
+
+    /**
+     * Retourne la plus petite position alignée sur SECTION_ALIGNMENT supérieure ou égale à la position donnée
+     * @param offset position en octets
+     * @return la position alignée
+     */
+    private static long align(long offset) {
+        return (offset + SECTION_ALIGNMENT - 1) / SECTION_ALIGNMENT * SECTION_ALIGNMENT;
+    }
+}
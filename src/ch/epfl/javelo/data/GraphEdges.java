@@ -16,7 +16,8 @@ import static java.lang.Short.toUnsignedInt;
  * @author Pedro Gouveia (345768)
  * @author Idriss Mimet (324424)
  */
-public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuffer elevations) {
+public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuffer elevations)
+        implements EdgeStorage {
 
     private static final int NUMBER_OF_BYTES = 10;
     /**
@@ -24,6 +25,14 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      */
     private static final int OFFSET_LENGTH = 4;
 
+    /**
+     * Retourne le nombre total d'arêtes
+     * @return le nombre total d'arêtes
+     */
+    public int count() {
+        return edgesBuffer.capacity() / NUMBER_OF_BYTES;
+    }
+
     /**
      * Retourne vrai ssi l'arête d'identité donnée va dans le sens inverse de la voie OSM dont elle provient
      * @param edgeId identité de l'arête
@@ -80,14 +89,27 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      * @return tableau des échantillons du profil de l'arête d'identité donnée (vide si l'arête ne possède pas de profil)
      */
     public float[] profileSamples(int edgeId) {
-        if (hasProfile(edgeId)) {
+        return profileSamples(profileIds.get(edgeId),
+                toUnsignedInt(edgesBuffer.getShort(NUMBER_OF_BYTES * edgeId + OFFSET_LENGTH)),
+                isInverted(edgeId), elevations);
+    }
+
+    /**
+     * Retourne le tableau des échantillons d'un profil, indépendamment de la représentation des arêtes
+     * @param profileId type (2 bits de poids fort) et index du premier échantillon (30 bits) du profil
+     * @param length longueur de l'arête, au format Q12.4
+     * @param isInverted vrai ssi l'arête va dans le sens inverse de la voie OSM dont elle provient
+     * @param elevations échantillons des profils, tels que dans elevations.bin
+     * @return tableau des échantillons du profil (vide si le type est 0, c.-à-d. si l'arête n'a pas de profil)
+     */
+    static float[] profileSamples(int profileId, int length, boolean isInverted, ShortBuffer elevations) {
+        if (Bits.extractUnsigned(profileId, 30, 2) != 0) {
 
-            int profile = Bits.extractUnsigned(profileIds.get(edgeId), 30, 2);
-            int lengthTab = 1 + Math2.ceilDiv(toUnsignedInt(edgesBuffer.getShort
-                    (NUMBER_OF_BYTES * edgeId + Integer.BYTES)), Q28_4.ofInt(2));
+            int profile = Bits.extractUnsigned(profileId, 30, 2);
+            int lengthTab = 1 + Math2.ceilDiv(length, Q28_4.ofInt(2));
 
             float[] samples = new float[lengthTab];
-            int firstId = Bits.extractUnsigned(profileIds.get(edgeId), 0, 30);
+            int firstId = Bits.extractUnsigned(profileId, 0, 30);
             int nbDiv , upInt , bitLength = 0;
 
 
@@ -125,7 +147,7 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
                     }
                 }
             }
-            if (isInverted(edgeId)) {
+            if (isInverted) {
                 return invert(samples);
             }
             return samples;
@@ -141,7 +163,7 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
      * @param samples tableau que l'on souhaite inverser
      * @return tableau inverse du tableau donné
      */
-    private float[] invert(float[] samples) {
+    private static float[] invert(float[] samples) {
         int length = samples.length;
         float[] inverted = new float[length];
         for (int i = 0; i < (length/2)+1; i++) {
@@ -11,7 +11,7 @@ import java.nio.IntBuffer;
  *  * @author Idriss Mimet (324424)
  *  */
 
-public record GraphNodes(IntBuffer buffer) {
+public record GraphNodes(IntBuffer buffer) implements NodeStorage {
 
     /**
      * East coordinate
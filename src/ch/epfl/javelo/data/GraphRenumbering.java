@@ -0,0 +1,294 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.Q28_4;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import static java.lang.Short.toUnsignedInt;
+
+/**
+ * Classe GraphRenumbering, outil hors ligne renumérotant les noeuds d'un graphe le long d'une courbe de Hilbert,
+ * afin que des noeuds proches dans l'espace, et donc visités ensemble par une recherche d'itinéraire, soient
+ * également proches dans les fichiers projetés en mémoire. Les arêtes sont renumérotées dans l'ordre de leur
+ * noeud de départ et les échantillons des profils dans l'ordre des arêtes.
+ * <p>
+ * La courbe est tracée sur une grille de 2^16 x 2^16 cellules alignée sur les secteurs, de sorte que les noeuds
+ * de chaque secteur restent consécutifs. Les fichiers nodes.bin, edges.bin, profile_ids.bin, elevations.bin et
+ * sectors.bin sont réécrits, attributes.bin est copié tel quel; les fichiers dérivés du graphe (repères,
+ * coûts, composantes, etc.) doivent être recalculés.
+ * <p>
+ * Utilisation : {@code java ch.epfl.javelo.data.GraphRenumbering <répertoire source> <répertoire cible>}
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class GraphRenumbering {
+    /**
+     * Nombre de secteurs sur la largeur (et la hauteur) de la Suisse, comme dans GraphSectors
+     */
+    private static final int SECTORS_PER_SIDE = 128;
+    /**
+     * Nombre de cellules de la courbe de Hilbert sur la largeur (et la hauteur) d'un secteur
+     */
+    private static final int CELLS_PER_SECTOR_SIDE = 512;
+    /**
+     * Ordre de la courbe de Hilbert, qui compte 2^ORDER cellules sur la largeur (et la hauteur) de la Suisse
+     */
+    private static final int ORDER = 16;
+    /**
+     * Nombre d'octets d'une arête dans edges.bin
+     */
+    private static final int EDGE_BYTES = 10;
+    /**
+     * Fichiers indépendants de la numérotation des noeuds et des arêtes, copiés tels quels
+     */
+    private static final String[] COPIED_FILES = {"attributes.bin"};
+
+    private GraphRenumbering() {}
+
+    /**
+     * Programme renumérotant le graphe du répertoire donné en premier argument et l'écrivant dans le répertoire
+     * donné en second argument
+     * @param args répertoires source et cible
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 2);
+        renumber(Path.of(args[0]), Path.of(args[1]));
+    }
+
+    /**
+     * Renumérote les noeuds du graphe dont les fichiers se trouvent dans le répertoire source et écrit les
+     * fichiers du graphe renuméroté dans le répertoire cible, créé si nécessaire
+     * @param sourcePath répertoire du graphe à renuméroter
+     * @param targetPath répertoire du graphe renuméroté
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si les deux répertoires sont identiques
+     */
+    public static void renumber(Path sourcePath, Path targetPath) throws IOException {
+        Preconditions.checkArgument(!Files.exists(targetPath) || !Files.isSameFile(sourcePath, targetPath));
+        IntBuffer nodes = map(sourcePath, "nodes.bin").asIntBuffer();
+        ByteBuffer edges = map(sourcePath, "edges.bin");
+        IntBuffer profileIds = map(sourcePath, "profile_ids.bin").asIntBuffer();
+        ShortBuffer elevations = map(sourcePath, "elevations.bin").asShortBuffer();
+        GraphNodes graphNodes = new GraphNodes(nodes);
+        int nodeCount = graphNodes.count();
+        int edgeCount = edges.capacity() / EDGE_BYTES;
+
+        int[] newNodeIds = newNodeIds(Graph.loadFrom(sourcePath));
+        int[] oldNodeIds = new int[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) oldNodeIds[newNodeIds[nodeId]] = nodeId;
+
+        // Les arêtes sont rangées dans l'ordre de leur noeud de départ, dans le même ordre pour chaque noeud
+        int[] oldEdgeIds = new int[edgeCount];
+        int[] newFirstEdgeIds = new int[nodeCount];
+        int newEdgeId = 0;
+        for (int newNodeId = 0; newNodeId < nodeCount; newNodeId++) {
+            int oldNodeId = oldNodeIds[newNodeId];
+            newFirstEdgeIds[newNodeId] = newEdgeId;
+            for (int i = 0; i < graphNodes.outDegree(oldNodeId); i++) {
+                oldEdgeIds[newEdgeId++] = graphNodes.edgeId(oldNodeId, i);
+            }
+        }
+        Preconditions.checkArgument(newEdgeId == edgeCount);
+
+        Files.createDirectories(targetPath);
+        try (DataOutputStream stream = outputStream(targetPath, "nodes.bin")) {
+            for (int newNodeId = 0; newNodeId < nodeCount; newNodeId++) {
+                int oldNodeId = oldNodeIds[newNodeId];
+                int degree = graphNodes.outDegree(oldNodeId);
+                stream.writeInt(nodes.get(3 * oldNodeId));
+                stream.writeInt(nodes.get(3 * oldNodeId + 1));
+                stream.writeInt((degree << 28) | newFirstEdgeIds[newNodeId]);
+            }
+        }
+
+        // Les échantillons partagés par plusieurs arêtes (p.ex. les deux sens d'une voie) le restent
+        int[] newFirstSamples = new int[elevations.capacity()];
+        Arrays.fill(newFirstSamples, -1);
+        int sampleCount = 0;
+        try (DataOutputStream edgeStream = outputStream(targetPath, "edges.bin");
+             DataOutputStream profileStream = outputStream(targetPath, "profile_ids.bin");
+             DataOutputStream elevationStream = outputStream(targetPath, "elevations.bin")) {
+            for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+                int oldEdgeId = oldEdgeIds[edgeId];
+                int offset = EDGE_BYTES * oldEdgeId;
+                int target = edges.getInt(offset);
+                int newTarget = newNodeIds[target < 0 ? ~target : target];
+                edgeStream.writeInt(target < 0 ? ~newTarget : newTarget);
+                for (int i = Integer.BYTES; i < EDGE_BYTES; i += Short.BYTES) {
+                    edgeStream.writeShort(edges.getShort(offset + i));
+                }
+
+                int profileId = profileIds.get(oldEdgeId);
+                int type = Bits.extractUnsigned(profileId, 30, 2);
+                if (type == 0) {
+                    profileStream.writeInt(profileId);
+                    continue;
+                }
+                int firstSample = Bits.extractUnsigned(profileId, 0, 30);
+                if (newFirstSamples[firstSample] == -1) {
+                    newFirstSamples[firstSample] = sampleCount;
+                    int length = profileShortCount(type, toUnsignedInt(edges.getShort(offset + Integer.BYTES)));
+                    for (int i = 0; i < length; i++) elevationStream.writeShort(elevations.get(firstSample + i));
+                    sampleCount += length;
+                }
+                profileStream.writeInt((type << 30) | newFirstSamples[firstSample]);
+            }
+        }
+
+        try (DataOutputStream stream = outputStream(targetPath, "sectors.bin")) {
+            int[] sectorIndexes = new int[nodeCount];
+            int[] sectorCounts = new int[SECTORS_PER_SIDE * SECTORS_PER_SIDE];
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                int[] cell = cell(graphNodes.nodeE(nodeId), graphNodes.nodeN(nodeId));
+                sectorIndexes[newNodeIds[nodeId]] =
+                        (cell[1] / CELLS_PER_SECTOR_SIDE) * SECTORS_PER_SIDE + cell[0] / CELLS_PER_SECTOR_SIDE;
+            }
+            int[] sectorFirstNodes = new int[sectorCounts.length];
+            Arrays.fill(sectorFirstNodes, -1);
+            for (int newNodeId = 0; newNodeId < nodeCount; newNodeId++) {
+                int sector = sectorIndexes[newNodeId];
+                if (sectorFirstNodes[sector] == -1) sectorFirstNodes[sector] = newNodeId;
+                // Les noeuds d'un secteur doivent être consécutifs, ce que garantit l'alignement de la courbe
+                Preconditions.checkArgument(sectorFirstNodes[sector] + sectorCounts[sector] == newNodeId);
+                sectorCounts[sector] += 1;
+            }
+            for (int sector = 0; sector < sectorCounts.length; sector++) {
+                Preconditions.checkArgument(sectorCounts[sector] <= 0xFFFF);
+                stream.writeInt(Math.max(sectorFirstNodes[sector], 0));
+                stream.writeShort(sectorCounts[sector]);
+            }
+        }
+
+        for (String name : COPIED_FILES) {
+            Files.copy(sourcePath.resolve(name), targetPath.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Retourne la nouvelle identité de chaque noeud du graphe donné, dans l'ordre de la courbe de Hilbert
+     * @param graph graphe
+     * @return la nouvelle identité de chaque noeud, indexée par son identité actuelle
+     */
+    public static int[] newNodeIds(Graph graph) {
+        int nodeCount = graph.nodeCount();
+        long[] keys = new long[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            PointCh point = graph.nodePoint(nodeId);
+            keys[nodeId] = (hilbertIndex(cell(point.e(), point.n())) << 28) | nodeId;
+        }
+        // Les clés sont triées par index de Hilbert puis par identité, contenue dans leurs 28 bits de poids faible
+        Arrays.sort(keys);
+        int[] newNodeIds = new int[nodeCount];
+        for (int rank = 0; rank < nodeCount; rank++) newNodeIds[(int) (keys[rank] & ((1 << 28) - 1))] = rank;
+        return newNodeIds;
+    }
+
+
+    /**
+     * Méthode auxiliaire retournant la cellule de la grille de la courbe contenant le point donné. Le secteur est
+     * calculé exactement comme dans GraphSectors, puis la cellule à l'intérieur de ce secteur.
+     * @param e coordonnée est du point
+     * @param n coordonnée nord du point
+     * @return les coordonnées x et y de la cellule
+     */
+    private static int[] cell(double e, double n) {
+        return new int[]{
+                cellCoordinate(e - SwissBounds.MIN_E, SwissBounds.WIDTH / SECTORS_PER_SIDE),
+                cellCoordinate(n - SwissBounds.MIN_N, SwissBounds.HEIGHT / SECTORS_PER_SIDE)};
+    }
+
+    /**
+     * Méthode auxiliaire retournant la coordonnée d'une cellule le long d'un axe
+     * @param distance distance au bord de la Suisse, selon cet axe
+     * @param sectorSize taille d'un secteur selon cet axe
+     * @return la coordonnée de la cellule, comprise entre 0 et 2^ORDER - 1
+     */
+    private static int cellCoordinate(double distance, double sectorSize) {
+        int sector = Math2.clamp(0, (int) (distance / sectorSize), SECTORS_PER_SIDE - 1);
+        int cell = (int) ((distance - sector * sectorSize) / sectorSize * CELLS_PER_SECTOR_SIDE);
+        return sector * CELLS_PER_SECTOR_SIDE + Math2.clamp(0, cell, CELLS_PER_SECTOR_SIDE - 1);
+    }
+
+    /**
+     * Méthode auxiliaire retournant l'index de la cellule donnée le long de la courbe de Hilbert d'ordre ORDER
+     * @param cell coordonnées x et y de la cellule
+     * @return l'index de la cellule le long de la courbe, compris entre 0 et 2^(2 * ORDER) - 1
+     */
+    private static long hilbertIndex(int[] cell) {
+        int side = 1 << ORDER;
+        int x = cell[0], y = cell[1];
+        long index = 0;
+        for (int s = side >> 1; s > 0; s >>= 1) {
+            int rx = (x & s) != 0 ? 1 : 0;
+            int ry = (y & s) != 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // Rotation du quadrant, afin que la courbe y soit parcourue dans la bonne orientation
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Méthode auxiliaire retournant le nombre de valeurs (de 16 bits) de elevations.bin occupées par un profil
+     * @param type type du profil (1 non compressé, 2 et 3 compressés)
+     * @param length longueur de l'arête, au format Q12.4
+     * @return le nombre de valeurs du profil
+     */
+    private static int profileShortCount(int type, int length) {
+        int sampleCount = 1 + Math2.ceilDiv(length, Q28_4.ofInt(2));
+        return switch (type) {
+            case 1 -> sampleCount;
+            case 2 -> 1 + Math2.ceilDiv(sampleCount - 1, 2);
+            default -> 1 + Math2.ceilDiv(sampleCount - 1, 4);
+        };
+    }
+
+    /**
+     * Méthode auxiliaire projetant en mémoire le fichier donné
+     * @param basePath répertoire du fichier
+     * @param name nom du fichier
+     * @return le contenu du fichier
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    private static ByteBuffer map(Path basePath, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(name))) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Méthode auxiliaire ouvrant en écriture le fichier donné
+     * @param basePath répertoire du fichier
+     * @param name nom du fichier
+     * @return le flot d'écriture du fichier
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    private static DataOutputStream outputStream(Path basePath, String name) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(basePath.resolve(name))));
+    }
+}
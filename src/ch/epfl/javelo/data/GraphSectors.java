@@ -68,13 +68,64 @@ public record GraphSectors(ByteBuffer buffer) {
         return sectors;
     }
 
+    /**
+     * Retourne l'abscisse (de 0 à 127) du secteur contenant la coordonnée E donnée, ramenée dans les limites
+     * de la Suisse
+     * @param e coordonnée E
+     * @return l'abscisse du secteur
+     */
+    static int sectorX(double e) {
+        return squareCoords(e - SwissBounds.MIN_E, WIDTH / NB_SECTORS_IN_LENGTH);
+    }
+
+    /**
+     * Retourne l'ordonnée (de 0 à 127) du secteur contenant la coordonnée N donnée, ramenée dans les limites
+     * de la Suisse
+     * @param n coordonnée N
+     * @return l'ordonnée du secteur
+     */
+    static int sectorY(double n) {
+        return squareCoords(n - SwissBounds.MIN_N, HEIGHT / NB_SECTORS_IN_LENGTH);
+    }
+
+    /**
+     * Retourne l'index, ligne par ligne, du secteur contenant le point de coordonnées données
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @return l'index du secteur
+     */
+    static int sectorIndex(double e, double n) {
+        return sectorY(n) * NB_SECTORS_IN_LENGTH + sectorX(e);
+    }
+
+    /**
+     * Retourne l'identité du premier noeud du secteur de coordonnées données
+     * @param x abscisse du secteur
+     * @param y ordonnée du secteur
+     * @return l'identité du premier noeud du secteur
+     */
+    int startNodeId(int x, int y) {
+        return buffer.getInt((Integer.BYTES + Short.BYTES) * (y * NB_SECTORS_IN_LENGTH + x));
+    }
+
+    /**
+     * Retourne l'identité du noeud suivant le dernier noeud du secteur de coordonnées données
+     * @param x abscisse du secteur
+     * @param y ordonnée du secteur
+     * @return l'identité du noeud suivant le dernier noeud du secteur
+     */
+    int endNodeId(int x, int y) {
+        int index = (Integer.BYTES + Short.BYTES) * (y * NB_SECTORS_IN_LENGTH + x);
+        return buffer.getInt(index) + Short.toUnsignedInt(buffer.getShort(index + Integer.BYTES));
+    }
+
     /**
      * Methode permettant de calculer les coordonnées du carré de distance donnée
      * @param distance distance du carré
      * @param divide longueur pour diviser la distance
      * @return coordonnée maximale du carré de distance donnée
      */
-    private int squareCoords(double distance, double divide) {
+    private static int squareCoords(double distance, double divide) {
         int calc = (int) (distance / divide);
         return Math2.clamp(0, calc, 127);
     }
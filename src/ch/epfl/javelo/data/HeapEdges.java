@@ -0,0 +1,105 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Classe HeapEdges, arêtes d'un graphe décodées une fois pour toutes dans des tableaux (une colonne par champ),
+ * dont l'accès évite la lecture et le décodage des valeurs du fichier projeté en mémoire. Les profils, peu
+ * utilisés par la recherche d'itinéraire, restent lus dans les fichiers projetés en mémoire.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class HeapEdges implements EdgeStorage {
+    private final GraphEdges profiles;
+    /**
+     * Identité du noeud destination de chaque arête, inversée (~) si l'arête va dans le sens inverse de sa voie
+     */
+    private final int[] targets;
+    /**
+     * Longueur et dénivelé positif de chaque arête, exacts car les valeurs Q12.4 sont représentables en float
+     */
+    private final float[] lengths;
+    private final float[] elevationGains;
+    /**
+     * Identité (non signée) de l'ensemble d'attributs de chaque arête
+     */
+    private final short[] attributesIndexes;
+
+    /**
+     * Constructeur privé
+     * @param profiles arêtes projetées en mémoire, dont sont lus les profils
+     * @param targets identité du noeud destination de chaque arête, inversée si l'arête est inversée
+     * @param lengths longueur de chaque arête
+     * @param elevationGains dénivelé positif de chaque arête
+     * @param attributesIndexes identité de l'ensemble d'attributs de chaque arête
+     */
+    private HeapEdges(GraphEdges profiles, int[] targets, float[] lengths, float[] elevationGains,
+                      short[] attributesIndexes) {
+        this.profiles = profiles;
+        this.targets = targets;
+        this.lengths = lengths;
+        this.elevationGains = elevationGains;
+        this.attributesIndexes = attributesIndexes;
+    }
+
+    /**
+     * Décode les arêtes données
+     * @param edges arêtes à décoder
+     * @return les arêtes décodées
+     */
+    static HeapEdges of(GraphEdges edges) {
+        int count = edges.count();
+        int[] targets = new int[count];
+        float[] lengths = new float[count];
+        float[] elevationGains = new float[count];
+        short[] attributesIndexes = new short[count];
+        for (int edgeId = 0; edgeId < count; edgeId++) {
+            int target = edges.targetNodeId(edgeId);
+            targets[edgeId] = edges.isInverted(edgeId) ? ~target : target;
+            lengths[edgeId] = (float) edges.length(edgeId);
+            elevationGains[edgeId] = (float) edges.elevationGain(edgeId);
+            attributesIndexes[edgeId] = (short) edges.attributesIndex(edgeId);
+        }
+        return new HeapEdges(edges, targets, lengths, elevationGains, attributesIndexes);
+    }
+
+    @Override
+    public int count() {
+        return targets.length;
+    }
+
+    @Override
+    public boolean isInverted(int edgeId) {
+        return targets[edgeId] < 0;
+    }
+
+    @Override
+    public int targetNodeId(int edgeId) {
+        int target = targets[edgeId];
+        return target < 0 ? ~target : target;
+    }
+
+    @Override
+    public double length(int edgeId) {
+        return lengths[edgeId];
+    }
+
+    @Override
+    public double elevationGain(int edgeId) {
+        return elevationGains[edgeId];
+    }
+
+    @Override
+    public boolean hasProfile(int edgeId) {
+        return profiles.hasProfile(edgeId);
+    }
+
+    @Override
+    public float[] profileSamples(int edgeId) {
+        return profiles.profileSamples(edgeId);
+    }
+
+    @Override
+    public int attributesIndex(int edgeId) {
+        return Short.toUnsignedInt(attributesIndexes[edgeId]);
+    }
+}
@@ -0,0 +1,86 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Q28_4;
+
+import java.nio.IntBuffer;
+
+/**
+ * Classe HeapNodes, noeuds d'un graphe décodés une fois pour toutes dans des tableaux (une colonne par champ),
+ * dont l'accès évite la lecture et le décodage des entiers du fichier projeté en mémoire
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class HeapNodes implements NodeStorage {
+    /**
+     * Coordonnées E et N de chaque noeud, au format Q28.4
+     */
+    private final int[] es;
+    private final int[] ns;
+    private final int[] firstEdgeIds;
+    private final byte[] outDegrees;
+
+    /**
+     * Constructeur privé
+     * @param es coordonnée E de chaque noeud, au format Q28.4
+     * @param ns coordonnée N de chaque noeud, au format Q28.4
+     * @param firstEdgeIds identité de la première arête sortant de chaque noeud
+     * @param outDegrees nombre d'arêtes sortant de chaque noeud
+     */
+    private HeapNodes(int[] es, int[] ns, int[] firstEdgeIds, byte[] outDegrees) {
+        this.es = es;
+        this.ns = ns;
+        this.firstEdgeIds = firstEdgeIds;
+        this.outDegrees = outDegrees;
+    }
+
+    /**
+     * Décode les noeuds donnés, représentés comme dans nodes.bin (trois entiers par noeud : coordonnées E et N,
+     * puis nombre d'arêtes sortantes sur 4 bits et identité de la première sur 28 bits)
+     * @param nodes noeuds à décoder
+     * @return les noeuds décodés
+     */
+    static HeapNodes of(GraphNodes nodes) {
+        IntBuffer buffer = nodes.buffer();
+        int count = nodes.count();
+        int[] es = new int[count];
+        int[] ns = new int[count];
+        int[] firstEdgeIds = new int[count];
+        byte[] outDegrees = new byte[count];
+        for (int nodeId = 0; nodeId < count; nodeId++) {
+            es[nodeId] = buffer.get(3 * nodeId);
+            ns[nodeId] = buffer.get(3 * nodeId + 1);
+            int edges = buffer.get(3 * nodeId + 2);
+            firstEdgeIds[nodeId] = Bits.extractUnsigned(edges, 0, 28);
+            outDegrees[nodeId] = (byte) Bits.extractUnsigned(edges, 28, 4);
+        }
+        return new HeapNodes(es, ns, firstEdgeIds, outDegrees);
+    }
+
+    @Override
+    public int count() {
+        return es.length;
+    }
+
+    @Override
+    public double nodeE(int nodeId) {
+        return Q28_4.asDouble(es[nodeId]);
+    }
+
+    @Override
+    public double nodeN(int nodeId) {
+        return Q28_4.asDouble(ns[nodeId]);
+    }
+
+    @Override
+    public int outDegree(int nodeId) {
+        return outDegrees[nodeId];
+    }
+
+    @Override
+    public int edgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < outDegree(nodeId);
+        return firstEdgeIds[nodeId] + edgeIndex;
+    }
+}
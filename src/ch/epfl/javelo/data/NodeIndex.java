@@ -0,0 +1,538 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.Q28_4;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntConsumer;
+
+/**
+ * Classe NodeIndex, index spatial des noeuds d'un graphe sous la forme d'un arbre k-d implicite : les noeuds sont
+ * rangés de sorte que le noeud médian de chaque intervalle (selon la coordonnée E aux niveaux pairs, N aux
+ * niveaux impairs) sépare les noeuds plus petits, placés avant lui, des plus grands, placés après, jusqu'à des
+ * feuilles d'au plus LEAF_SIZE noeuds. Contrairement aux secteurs de taille fixe de GraphSectors, l'arbre
+ * s'adapte à la densité des noeuds, et ses recherches n'ont pas besoin d'une distance maximale.
+ * <p>
+ * Les recherches n'allouent aucun objet : leur état est dans la pile d'exécution, et les résultats sont écrits
+ * dans un tableau ou passés à un consommateur fournis par l'appelant.
+ * <p>
+ * Format du fichier (node_index.bin) : nombre de noeuds, taille des feuilles, empreinte des noeuds du graphe,
+ * puis l'identité et les coordonnées E et N (au format Q28.4) de chaque noeud, dans l'ordre de l'arbre (entiers
+ * de type int). L'empreinte, calculée à partir de la position et du degré d'un échantillon de noeuds, permet de
+ * rejeter un index construit pour un autre graphe de même taille, p.ex. avant sa renumérotation (voir
+ * GraphRenumbering).
+ * <p>
+ * Utilisation : {@code java ch.epfl.javelo.data.NodeIndex <répertoire du graphe>}
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class NodeIndex {
+    /**
+     * Nom du fichier de l'index, dans le répertoire du graphe
+     */
+    public static final String FILE_NAME = "node_index.bin";
+    /**
+     * Nombre maximal de noeuds d'une feuille, parcourue exhaustivement
+     */
+    private static final int LEAF_SIZE = 32;
+    /**
+     * Nombre de noeuds, répartis régulièrement parmi les identités, dont est calculée l'empreinte du graphe
+     */
+    private static final int FINGERPRINT_SAMPLE_COUNT = 64;
+    private static final int HEADER_INTS = 3;
+    private static final int ENTRY_INTS = 3;
+    private static final int OFFSET_ID = 0;
+    private static final int OFFSET_E = 1;
+    private static final int OFFSET_N = 2;
+
+    private final IntBuffer buffer;
+    private final int count;
+    private final int fingerprint;
+
+    /**
+     * Constructeur privé
+     * @param buffer contenu de node_index.bin
+     */
+    private NodeIndex(IntBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.get(0);
+        this.fingerprint = buffer.get(2);
+        Preconditions.checkArgument(buffer.get(1) == LEAF_SIZE
+                && buffer.capacity() == HEADER_INTS + ENTRY_INTS * (long) count);
+    }
+
+    /**
+     * Programme construisant l'index des noeuds du graphe du répertoire donné en argument et l'écrivant dans
+     * ce répertoire
+     * @param args répertoire du graphe
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 1);
+        Path basePath = Path.of(args[0]);
+        // L'index existant, peut-être périmé, ne doit pas être chargé avec le graphe
+        Files.deleteIfExists(basePath.resolve(FILE_NAME));
+        of(Graph.loadFrom(basePath)).write(basePath.resolve(FILE_NAME));
+    }
+
+    /**
+     * Construit l'index des noeuds du graphe donné
+     * @param graph graphe
+     * @return l'index
+     */
+    public static NodeIndex of(Graph graph) {
+        int count = graph.nodeCount();
+        int[] ids = new int[count];
+        int[] es = new int[count];
+        int[] ns = new int[count];
+        for (int nodeId = 0; nodeId < count; nodeId++) {
+            PointCh point = graph.nodePoint(nodeId);
+            ids[nodeId] = nodeId;
+            es[nodeId] = (int) Math.round(Math.scalb(point.e(), 4));
+            ns[nodeId] = (int) Math.round(Math.scalb(point.n(), 4));
+        }
+        sort(ids, es, ns, 0, count - 1, 0);
+
+        int[] entries = new int[HEADER_INTS + ENTRY_INTS * count];
+        entries[0] = count;
+        entries[1] = LEAF_SIZE;
+        entries[2] = fingerprint(graph);
+        for (int i = 0; i < count; i++) {
+            entries[HEADER_INTS + ENTRY_INTS * i + OFFSET_ID] = ids[i];
+            entries[HEADER_INTS + ENTRY_INTS * i + OFFSET_E] = es[i];
+            entries[HEADER_INTS + ENTRY_INTS * i + OFFSET_N] = ns[i];
+        }
+        return new NodeIndex(IntBuffer.wrap(entries));
+    }
+
+    /**
+     * Retourne l'index dont le contenu est donné, p.ex. la section node_index.bin d'un GraphContainer
+     * @param buffer contenu de node_index.bin
+     * @return l'index
+     * @throws IllegalArgumentException si le contenu n'est pas celui d'un index valide
+     */
+    public static NodeIndex of(IntBuffer buffer) {
+        return new NodeIndex(buffer);
+    }
+
+    /**
+     * Projette en mémoire l'index écrit dans le fichier donné
+     * @param path chemin du fichier
+     * @return l'index
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si le fichier n'est pas un index valide
+     */
+    public static NodeIndex loadFrom(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return new NodeIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer());
+        }
+    }
+
+    /**
+     * Écrit l'index dans le fichier donné
+     * @param path chemin du fichier
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public void write(Path path) throws IOException {
+        try (DataOutputStream stream = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            for (int i = 0; i < buffer.capacity(); i++) {
+                stream.writeInt(buffer.get(i));
+            }
+        }
+    }
+
+    /**
+     * Retourne le nombre de noeuds de l'index
+     * @return le nombre de noeuds
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Retourne vrai ssi cet index a été construit pour le graphe donné, c.-à-d. s'il compte autant de noeuds que
+     * lui et que son empreinte est celle du graphe
+     * @param graph graphe
+     * @return vrai ssi l'index correspond au graphe
+     */
+    boolean matches(Graph graph) {
+        return count == graph.nodeCount() && fingerprint == fingerprint(graph);
+    }
+
+    /**
+     * Méthode auxiliaire calculant l'empreinte des noeuds du graphe donné à partir du nombre de noeuds et de la
+     * position (au format Q28.4) et du degré sortant d'au plus FINGERPRINT_SAMPLE_COUNT noeuds répartis
+     * régulièrement parmi les identités, dont le premier et le dernier. Une renumérotation des noeuds change
+     * l'empreinte, sauf si elle laisse tous les noeuds échantillonnés à leur place.
+     * @param graph graphe
+     * @return l'empreinte
+     */
+    private static int fingerprint(Graph graph) {
+        int count = graph.nodeCount();
+        int fingerprint = count;
+        int sampleCount = Math.min(count, FINGERPRINT_SAMPLE_COUNT);
+        for (int i = 0; i < sampleCount; i++) {
+            int nodeId = sampleCount == 1 ? 0 : (int) ((long) i * (count - 1) / (sampleCount - 1));
+            PointCh point = graph.nodePoint(nodeId);
+            fingerprint = 31 * fingerprint + (int) Math.round(Math.scalb(point.e(), 4));
+            fingerprint = 31 * fingerprint + (int) Math.round(Math.scalb(point.n(), 4));
+            fingerprint = 31 * fingerprint + graph.nodeOutDegree(nodeId);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Retourne l'identité du noeud le plus proche du point donné, à la distance maximale donnée (en mètres),
+     * ou -1 si aucun noeud ne correspond à ces critères
+     * @param point point duquel on cherche le noeud le plus proche
+     * @param maxDistance distance maximale, éventuellement infinie
+     * @return l'identité du noeud le plus proche, ou -1
+     */
+    public int nearest(PointCh point, double maxDistance) {
+        return nearest(point.e(), point.n(), maxDistance);
+    }
+
+    /**
+     * Retourne l'identité du noeud le plus proche du point de coordonnées données, à la distance maximale donnée
+     * (en mètres), ou -1 si aucun noeud ne correspond à ces critères
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @param maxDistance distance maximale, éventuellement infinie
+     * @return l'identité du noeud le plus proche, ou -1
+     */
+    int nearest(double e, double n, double maxDistance) {
+        int position = nearest(e, n, maxDistance * maxDistance, 0, count - 1, 0, -1);
+        return position == -1 ? -1 : id(position);
+    }
+
+    /**
+     * Écrit dans le tableau donné, par distance croissante, les identités des k noeuds les plus proches du point
+     * donné, à la distance maximale donnée (en mètres), et retourne leur nombre, inférieur à k s'il n'existe pas
+     * k noeuds à cette distance
+     * @param point point duquel on cherche les noeuds les plus proches
+     * @param maxDistance distance maximale, éventuellement infinie
+     * @param nodeIds tableau dont les k premiers éléments reçoivent les identités des noeuds
+     * @param k nombre de noeuds cherchés
+     * @return le nombre de noeuds trouvés
+     * @throws IllegalArgumentException si k est négatif ou supérieur à la taille du tableau
+     */
+    public int kNearest(PointCh point, double maxDistance, int[] nodeIds, int k) {
+        Preconditions.checkArgument(0 <= k && k <= nodeIds.length);
+        double e = point.e(), n = point.n();
+        // Les k premiers éléments du tableau forment un tas max (par distance) des positions des noeuds trouvés
+        int size = kNearest(e, n, maxDistance * maxDistance, nodeIds, k, 0, 0, count - 1, 0);
+        for (int last = size - 1; last > 0; last--) {
+            swap(nodeIds, 0, last);
+            siftDown(nodeIds, 0, last, e, n);
+        }
+        for (int i = 0; i < size; i++) {
+            nodeIds[i] = id(nodeIds[i]);
+        }
+        return size;
+    }
+
+    /**
+     * Passe au consommateur donné l'identité de chaque noeud se trouvant à la distance donnée (en mètres) du
+     * point donné, dans un ordre quelconque, et retourne leur nombre
+     * @param point centre du cercle
+     * @param radius rayon du cercle
+     * @param action consommateur des identités des noeuds
+     * @return le nombre de noeuds dans le cercle
+     */
+    public int forEachInRadius(PointCh point, double radius, IntConsumer action) {
+        return inRadius(point.e(), point.n(), radius * radius, action, 0, count - 1, 0);
+    }
+
+    /**
+     * Méthode récursive cherchant, dans l'intervalle donné de l'arbre, le noeud le plus proche du point donné
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @param maxSquaredDistance carré de la distance maximale
+     * @param left première position de l'intervalle
+     * @param right dernière position de l'intervalle
+     * @param axis coordonnée séparant l'intervalle (0 pour E, 1 pour N)
+     * @param best position du meilleur noeud trouvé jusqu'ici, ou -1
+     * @return la position du meilleur noeud trouvé, ou -1
+     */
+    private int nearest(double e, double n, double maxSquaredDistance, int left, int right, int axis, int best) {
+        if (right - left <= LEAF_SIZE) {
+            for (int i = left; i <= right; i++) {
+                best = closer(e, n, maxSquaredDistance, i, best);
+            }
+            return best;
+        }
+        int middle = (left + right) >>> 1;
+        best = closer(e, n, maxSquaredDistance, middle, best);
+        double delta = axis == 0 ? e - coordinateE(middle) : n - coordinateN(middle);
+        int nextAxis = 1 - axis;
+        if (delta <= 0) {
+            best = nearest(e, n, maxSquaredDistance, left, middle - 1, nextAxis, best);
+            if (delta * delta <= bound(e, n, maxSquaredDistance, best)) {
+                best = nearest(e, n, maxSquaredDistance, middle + 1, right, nextAxis, best);
+            }
+        } else {
+            best = nearest(e, n, maxSquaredDistance, middle + 1, right, nextAxis, best);
+            if (delta * delta <= bound(e, n, maxSquaredDistance, best)) {
+                best = nearest(e, n, maxSquaredDistance, left, middle - 1, nextAxis, best);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Méthode récursive ajoutant au tas donné les noeuds de l'intervalle donné de l'arbre plus proches du point
+     * donné que le plus éloigné du tas, ou que la distance maximale tant que le tas n'est pas plein
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @param maxSquaredDistance carré de la distance maximale
+     * @param heap tas max des positions des noeuds trouvés
+     * @param k capacité du tas
+     * @param size taille actuelle du tas
+     * @param left première position de l'intervalle
+     * @param right dernière position de l'intervalle
+     * @param axis coordonnée séparant l'intervalle (0 pour E, 1 pour N)
+     * @return la nouvelle taille du tas
+     */
+    private int kNearest(double e, double n, double maxSquaredDistance, int[] heap, int k, int size,
+                         int left, int right, int axis) {
+        if (k == 0) {
+            return 0;
+        }
+        if (right - left <= LEAF_SIZE) {
+            for (int i = left; i <= right; i++) {
+                size = offer(e, n, maxSquaredDistance, heap, k, size, i);
+            }
+            return size;
+        }
+        int middle = (left + right) >>> 1;
+        size = offer(e, n, maxSquaredDistance, heap, k, size, middle);
+        double delta = axis == 0 ? e - coordinateE(middle) : n - coordinateN(middle);
+        int nextAxis = 1 - axis;
+        int nearLeft = delta <= 0 ? left : middle + 1;
+        int nearRight = delta <= 0 ? middle - 1 : right;
+        size = kNearest(e, n, maxSquaredDistance, heap, k, size, nearLeft, nearRight, nextAxis);
+        double bound = size < k ? maxSquaredDistance : squaredDistance(e, n, heap[0]);
+        if (delta * delta <= bound) {
+            int farLeft = delta <= 0 ? middle + 1 : left;
+            int farRight = delta <= 0 ? right : middle - 1;
+            size = kNearest(e, n, maxSquaredDistance, heap, k, size, farLeft, farRight, nextAxis);
+        }
+        return size;
+    }
+
+    /**
+     * Méthode récursive passant au consommateur donné les noeuds de l'intervalle donné de l'arbre se trouvant
+     * dans le cercle donné
+     * @param e coordonnée E du centre
+     * @param n coordonnée N du centre
+     * @param squaredRadius carré du rayon
+     * @param action consommateur des identités des noeuds
+     * @param left première position de l'intervalle
+     * @param right dernière position de l'intervalle
+     * @param axis coordonnée séparant l'intervalle (0 pour E, 1 pour N)
+     * @return le nombre de noeuds de l'intervalle dans le cercle
+     */
+    private int inRadius(double e, double n, double squaredRadius, IntConsumer action, int left, int right,
+                         int axis) {
+        int found = 0;
+        if (right - left <= LEAF_SIZE) {
+            for (int i = left; i <= right; i++) {
+                if (squaredDistance(e, n, i) <= squaredRadius) {
+                    action.accept(id(i));
+                    found += 1;
+                }
+            }
+            return found;
+        }
+        int middle = (left + right) >>> 1;
+        if (squaredDistance(e, n, middle) <= squaredRadius) {
+            action.accept(id(middle));
+            found += 1;
+        }
+        double delta = axis == 0 ? e - coordinateE(middle) : n - coordinateN(middle);
+        if (delta <= 0 || delta * delta <= squaredRadius) {
+            found += inRadius(e, n, squaredRadius, action, left, middle - 1, 1 - axis);
+        }
+        if (delta >= 0 || delta * delta <= squaredRadius) {
+            found += inRadius(e, n, squaredRadius, action, middle + 1, right, 1 - axis);
+        }
+        return found;
+    }
+
+    /**
+     * Retourne la position du plus proche du point donné parmi le noeud de position donnée et le meilleur noeud
+     * trouvé jusqu'ici, en ne retenant le premier que s'il est à la distance maximale
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @param maxSquaredDistance carré de la distance maximale
+     * @param position position du noeud candidat
+     * @param best position du meilleur noeud trouvé jusqu'ici, ou -1
+     * @return la position du plus proche des deux noeuds, ou -1
+     */
+    private int closer(double e, double n, double maxSquaredDistance, int position, int best) {
+        return squaredDistance(e, n, position) <= bound(e, n, maxSquaredDistance, best) ? position : best;
+    }
+
+    /**
+     * Retourne le carré de la distance en deçà de laquelle un noeud est meilleur que le meilleur trouvé
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @param maxSquaredDistance carré de la distance maximale
+     * @param best position du meilleur noeud trouvé jusqu'ici, ou -1
+     * @return le carré de la distance
+     */
+    private double bound(double e, double n, double maxSquaredDistance, int best) {
+        return best == -1 ? maxSquaredDistance : squaredDistance(e, n, best);
+    }
+
+    /**
+     * Ajoute au tas donné le noeud de position donnée s'il se trouve à la distance maximale et que le tas n'est
+     * pas plein, ou s'il est plus proche que le noeud le plus éloigné du tas, qu'il remplace alors
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @param maxSquaredDistance carré de la distance maximale
+     * @param heap tas max des positions des noeuds trouvés
+     * @param k capacité du tas
+     * @param size taille actuelle du tas
+     * @param position position du noeud
+     * @return la nouvelle taille du tas
+     */
+    private int offer(double e, double n, double maxSquaredDistance, int[] heap, int k, int size, int position) {
+        double distance = squaredDistance(e, n, position);
+        if (distance > maxSquaredDistance) {
+            return size;
+        }
+        if (size < k) {
+            int child = size;
+            heap[child] = position;
+            while (child > 0 && squaredDistance(e, n, heap[(child - 1) / 2]) < distance) {
+                swap(heap, child, (child - 1) / 2);
+                child = (child - 1) / 2;
+            }
+            return size + 1;
+        }
+        if (distance < squaredDistance(e, n, heap[0])) {
+            heap[0] = position;
+            siftDown(heap, 0, size, e, n);
+        }
+        return size;
+    }
+
+    /**
+     * Fait descendre l'élément d'index donné du tas max donné jusqu'à sa place
+     * @param heap tas max des positions des noeuds
+     * @param index index de l'élément
+     * @param size taille du tas
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     */
+    private void siftDown(int[] heap, int index, int size, double e, double n) {
+        while (2 * index + 1 < size) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && squaredDistance(e, n, heap[child + 1]) > squaredDistance(e, n, heap[child])) {
+                child += 1;
+            }
+            if (squaredDistance(e, n, heap[child]) <= squaredDistance(e, n, heap[index])) {
+                return;
+            }
+            swap(heap, index, child);
+            index = child;
+        }
+    }
+
+    private int id(int position) {
+        return buffer.get(HEADER_INTS + ENTRY_INTS * position + OFFSET_ID);
+    }
+
+    private double coordinateE(int position) {
+        return Q28_4.asDouble(buffer.get(HEADER_INTS + ENTRY_INTS * position + OFFSET_E));
+    }
+
+    private double coordinateN(int position) {
+        return Q28_4.asDouble(buffer.get(HEADER_INTS + ENTRY_INTS * position + OFFSET_N));
+    }
+
+    private double squaredDistance(double e, double n, int position) {
+        return Math2.squaredNorm(coordinateE(position) - e, coordinateN(position) - n);
+    }
+
+    /**
+     * Méthode récursive rangeant l'intervalle donné des tableaux parallèles donnés en arbre k-d
+     * @param ids identités des noeuds
+     * @param es coordonnées E des noeuds, au format Q28.4
+     * @param ns coordonnées N des noeuds, au format Q28.4
+     * @param left première position de l'intervalle
+     * @param right dernière position de l'intervalle
+     * @param axis coordonnée séparant l'intervalle (0 pour E, 1 pour N)
+     */
+    private static void sort(int[] ids, int[] es, int[] ns, int left, int right, int axis) {
+        if (right - left <= LEAF_SIZE) {
+            return;
+        }
+        int middle = (left + right) >>> 1;
+        select(ids, es, ns, middle, left, right, axis == 0 ? es : ns);
+        sort(ids, es, ns, left, middle - 1, 1 - axis);
+        sort(ids, es, ns, middle + 1, right, 1 - axis);
+    }
+
+    /**
+     * Réordonne l'intervalle donné des tableaux parallèles donnés de sorte que l'élément d'index k soit celui
+     * qui s'y trouverait s'ils étaient triés selon la coordonnée donnée, les éléments le précédant n'étant pas
+     * plus grands et ceux le suivant pas plus petits
+     * @param ids identités des noeuds
+     * @param es coordonnées E des noeuds
+     * @param ns coordonnées N des noeuds
+     * @param k index de l'élément cherché
+     * @param left première position de l'intervalle
+     * @param right dernière position de l'intervalle
+     * @param keys coordonnée selon laquelle ordonner les noeuds (es ou ns)
+     */
+    private static void select(int[] ids, int[] es, int[] ns, int k, int left, int right, int[] keys) {
+        while (right > left) {
+            int pivot = keys[k];
+            int i = left;
+            int j = right;
+            swap(ids, es, ns, left, k);
+            if (keys[right] > pivot) {
+                swap(ids, es, ns, left, right);
+            }
+            while (i < j) {
+                swap(ids, es, ns, i, j);
+                i += 1;
+                j -= 1;
+                while (keys[i] < pivot) i += 1;
+                while (keys[j] > pivot) j -= 1;
+            }
+            if (keys[left] == pivot) {
+                swap(ids, es, ns, left, j);
+            } else {
+                j += 1;
+                swap(ids, es, ns, j, right);
+            }
+            if (j <= k) left = j + 1;
+            if (k <= j) right = j - 1;
+        }
+    }
+
+    private static void swap(int[] ids, int[] es, int[] ns, int i, int j) {
+        swap(ids, i, j);
+        swap(es, i, j);
+        swap(ns, i, j);
+    }
+
+    private static void swap(int[] values, int i, int j) {
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
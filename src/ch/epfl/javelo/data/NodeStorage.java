@@ -0,0 +1,46 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Interface NodeStorage, accès aux noeuds d'un graphe, quelle que soit leur représentation en mémoire (fichier
+ * projeté en mémoire ou tableaux décodés)
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+interface NodeStorage {
+
+    /**
+     * Retourne le nombre de noeuds
+     * @return le nombre de noeuds
+     */
+    int count();
+
+    /**
+     * Retourne la coordonnée E du noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @return la coordonnée E du noeud
+     */
+    double nodeE(int nodeId);
+
+    /**
+     * Retourne la coordonnée N du noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @return la coordonnée N du noeud
+     */
+    double nodeN(int nodeId);
+
+    /**
+     * Retourne le nombre d'arêtes sortant du noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @return le nombre d'arêtes sortantes du noeud
+     */
+    int outDegree(int nodeId);
+
+    /**
+     * Retourne l'identité de la edgeIndex-ième arête sortant du noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @param edgeIndex index de l'arête parmi les arêtes sortantes du noeud
+     * @return l'identité de l'arête
+     */
+    int edgeId(int nodeId, int edgeIndex);
+}
@@ -0,0 +1,108 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.Q28_4;
+
+import static java.lang.Short.toUnsignedInt;
+
+/**
+ * Classe SegmentedEdges, arêtes d'un graphe lues dans edges.bin et profile_ids.bin projetés par tranches au sein
+ * d'une arène (voir GraphArena), avec des positions de type long qui permettent aux fichiers de dépasser 2 Go.
+ * Les échantillons d'un profil étant consécutifs dans elevations.bin, seuls ceux-ci sont extraits pour le décoder.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class SegmentedEdges implements EdgeStorage {
+    /**
+     * Taille, en octets, d'une arête dans edges.bin
+     */
+    static final int EDGE_BYTES = 10;
+    private static final int OFFSET_TARGET = 0;
+    private static final int OFFSET_LENGTH = OFFSET_TARGET + Integer.BYTES;
+    private static final int OFFSET_ELEVATION_GAIN = OFFSET_LENGTH + Short.BYTES;
+    private static final int OFFSET_ATTRIBUTES = OFFSET_ELEVATION_GAIN + Short.BYTES;
+    /**
+     * Nombre maximal d'arêtes, l'identité d'une arête n'étant représentée que sur 28 bits dans nodes.bin
+     */
+    private static final long MAX_EDGE_COUNT = 1L << 28;
+    /**
+     * Masque ne conservant que le type d'un profil, et donc indiquant que son premier échantillon est d'index 0
+     */
+    private static final int PROFILE_TYPE_MASK = 0b11 << 30;
+
+    private final ChunkedMapping edges;
+    private final ChunkedMapping profileIds;
+    private final ChunkedMapping elevations;
+    private final int count;
+
+    /**
+     * Constructeur
+     * @param edges fichier edges.bin projeté, dont un enregistrement est une arête de EDGE_BYTES octets
+     * @param profileIds fichier profile_ids.bin projeté, dont un enregistrement est un entier de type int
+     * @param elevations fichier elevations.bin projeté, dont un enregistrement est un entier de type short
+     * @throws IllegalArgumentException si le fichier des arêtes en contient plus de 2^28, ou si le nombre de
+     * profils n'est pas égal au nombre d'arêtes
+     */
+    SegmentedEdges(ChunkedMapping edges, ChunkedMapping profileIds, ChunkedMapping elevations) {
+        Preconditions.checkArgument(edges.recordCount() <= MAX_EDGE_COUNT
+                && profileIds.recordCount() == edges.recordCount());
+        this.edges = edges;
+        this.profileIds = profileIds;
+        this.elevations = elevations;
+        this.count = (int) edges.recordCount();
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public boolean isInverted(int edgeId) {
+        return edges.getInt(edgeId, OFFSET_TARGET) < 0;
+    }
+
+    @Override
+    public int targetNodeId(int edgeId) {
+        int target = edges.getInt(edgeId, OFFSET_TARGET);
+        return target < 0 ? ~target : target;
+    }
+
+    @Override
+    public double length(int edgeId) {
+        return Q28_4.asDouble(toUnsignedInt(edges.getShort(edgeId, OFFSET_LENGTH)));
+    }
+
+    @Override
+    public double elevationGain(int edgeId) {
+        return Q28_4.asDouble(toUnsignedInt(edges.getShort(edgeId, OFFSET_ELEVATION_GAIN)));
+    }
+
+    @Override
+    public boolean hasProfile(int edgeId) {
+        return Bits.extractUnsigned(profileIds.getInt(edgeId, 0), 30, 2) != 0;
+    }
+
+    @Override
+    public float[] profileSamples(int edgeId) {
+        int profileId = profileIds.getInt(edgeId, 0);
+        int length = toUnsignedInt(edges.getShort(edgeId, OFFSET_LENGTH));
+        if (Bits.extractUnsigned(profileId, 30, 2) == 0) {
+            return new float[0];
+        }
+        // Le profil compte 1 + ⌈longueur / 2 m⌉ échantillons, dont chacun occupe au plus un short du fichier
+        long firstId = Bits.extractUnsigned(profileId, 0, 30);
+        int sampleCount = (int) Math.min(1 + Math2.ceilDiv(length, Q28_4.ofInt(2)),
+                elevations.recordCount() - firstId);
+        return GraphEdges.profileSamples(profileId & PROFILE_TYPE_MASK, length, isInverted(edgeId),
+                elevations.slice(firstId, sampleCount).asShortBuffer());
+    }
+
+    @Override
+    public int attributesIndex(int edgeId) {
+        return toUnsignedInt(edges.getShort(edgeId, OFFSET_ATTRIBUTES));
+    }
+}
@@ -0,0 +1,66 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.Q28_4;
+
+/**
+ * Classe SegmentedNodes, noeuds d'un graphe lus dans nodes.bin projeté par tranches au sein d'une arène (voir
+ * GraphArena), avec des positions de type long qui permettent au fichier de dépasser 2 Go
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class SegmentedNodes implements NodeStorage {
+    /**
+     * Taille, en octets, d'un noeud dans nodes.bin (coordonnées E et N, puis arêtes sortantes)
+     */
+    static final int NODE_BYTES = 3 * Integer.BYTES;
+    private static final int OFFSET_E = 0;
+    private static final int OFFSET_N = OFFSET_E + Integer.BYTES;
+    private static final int OFFSET_OUT_EDGES = OFFSET_N + Integer.BYTES;
+    /**
+     * Nombre maximal de noeuds, l'identité d'une arête n'étant représentée que sur 28 bits
+     */
+    private static final long MAX_NODE_COUNT = 1L << 28;
+
+    private final ChunkedMapping nodes;
+    private final int count;
+
+    /**
+     * Constructeur
+     * @param nodes fichier nodes.bin projeté, dont un enregistrement est un noeud de NODE_BYTES octets
+     * @throws IllegalArgumentException si le fichier contient plus de 2^28 noeuds
+     */
+    SegmentedNodes(ChunkedMapping nodes) {
+        Preconditions.checkArgument(nodes.recordCount() <= MAX_NODE_COUNT);
+        this.nodes = nodes;
+        this.count = (int) nodes.recordCount();
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public double nodeE(int nodeId) {
+        return Q28_4.asDouble(nodes.getInt(nodeId, OFFSET_E));
+    }
+
+    @Override
+    public double nodeN(int nodeId) {
+        return Q28_4.asDouble(nodes.getInt(nodeId, OFFSET_N));
+    }
+
+    @Override
+    public int outDegree(int nodeId) {
+        return Bits.extractUnsigned(nodes.getInt(nodeId, OFFSET_OUT_EDGES), 28, 4);
+    }
+
+    @Override
+    public int edgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < outDegree(nodeId);
+        return Bits.extractUnsigned(nodes.getInt(nodeId, OFFSET_OUT_EDGES), 0, 28) + edgeIndex;
+    }
+}
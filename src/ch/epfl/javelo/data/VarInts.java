@@ -0,0 +1,81 @@
+package ch.epfl.javelo.data;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Classe VarInts, encodage des entiers positifs sur un nombre variable d'octets (7 bits par octet, de poids
+ * faible en premier, le bit de poids fort de chaque octet indiquant qu'un autre le suit) et encodage
+ * « zigzag » des entiers signés, de sorte que les petites valeurs, positives ou négatives, occupent peu d'octets
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class VarInts {
+    private static final int PAYLOAD_BITS = 7;
+    private static final int PAYLOAD_MASK = (1 << PAYLOAD_BITS) - 1;
+    private static final int CONTINUATION_BIT = 1 << PAYLOAD_BITS;
+
+    private VarInts() {}
+
+    /**
+     * Écrit l'entier positif donné dans le flot donné
+     * @param stream flot dans lequel écrire
+     * @param value entier positif ou nul
+     */
+    static void write(ByteArrayOutputStream stream, long value) {
+        assert value >= 0;
+        while (value >= CONTINUATION_BIT) {
+            stream.write((int) (value & PAYLOAD_MASK) | CONTINUATION_BIT);
+            value >>>= PAYLOAD_BITS;
+        }
+        stream.write((int) value);
+    }
+
+    /**
+     * Retourne l'entier encodé à la position donnée de la mémoire tampon donnée
+     * @param buffer mémoire tampon
+     * @param position position du premier octet de l'entier
+     * @return l'entier
+     */
+    static long read(ByteBuffer buffer, int position) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buffer.get(position++);
+            value |= (long) (b & PAYLOAD_MASK) << shift;
+            shift += PAYLOAD_BITS;
+        } while ((b & CONTINUATION_BIT) != 0);
+        return value;
+    }
+
+    /**
+     * Retourne la position suivant l'entier encodé à la position donnée de la mémoire tampon donnée
+     * @param buffer mémoire tampon
+     * @param position position du premier octet de l'entier
+     * @return la position de l'entier suivant
+     */
+    static int skip(ByteBuffer buffer, int position) {
+        while ((buffer.get(position++) & CONTINUATION_BIT) != 0) {}
+        return position;
+    }
+
+    /**
+     * Retourne l'encodage zigzag de l'entier signé donné (0, -1, 1, -2, ... deviennent 0, 1, 2, 3, ...)
+     * @param value entier signé
+     * @return l'entier positif l'encodant
+     */
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Retourne l'entier signé dont l'encodage zigzag est donné
+     * @param value encodage zigzag
+     * @return l'entier signé
+     */
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
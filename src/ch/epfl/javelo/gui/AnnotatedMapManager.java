@@ -68,7 +68,7 @@ public final class AnnotatedMapManager {
         ObservableList<Waypoint> waypointsList = bean.getWaypoints();
 
         WaypointsManager waypointsManager =
-                new WaypointsManager(graph, prop, waypointsList, consumer);
+                new WaypointsManager(graph, prop, waypointsList, consumer, bean::previewWaypoint);
 
         BaseMapManager baseMapManager =
                 new BaseMapManager(handler, waypointsManager, prop);
@@ -16,22 +16,50 @@ import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
 
 import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 
 
 public final class JaVelo extends Application {
-
+    /**
+     * Nom du profil de la fonction de coût, dont les facteurs sont précalculés au premier lancement
+     */
+    private static final String COST_PROFILE = "city-bike";
 
     @Override
     public void start(Stage primaryStage) throws Exception {
 
-        Graph graph = Graph.loadFrom(Path.of("javelo-data"));
+        Path graphBasePath = Path.of("javelo-data");
+        Graph graph = Graph.loadFrom(graphBasePath);
         Path cacheBasePath = Path.of("osm-cache");
         String tileServer = "tile.openstreetmap.org";
         TileManager tileManager = new TileManager(cacheBasePath, tileServer);
-        CostFunction costFunction = new CityBikeCF(graph);
-        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
-        RouteBean routeBean = new RouteBean(routeComputer);
+        PrecomputedCostFunction costFunction;
+        try {
+            costFunction = PrecomputedCostFunction.loadFrom(graphBasePath, COST_PROFILE, graph);
+        } catch (NoSuchFileException e) {
+            costFunction = PrecomputedCostFunction.compute(graph, new CityBikeCF(graph));
+            costFunction.writeTo(graphBasePath, COST_PROFILE);
+        }
+        // Les repères de l'heuristique ALT sont calculés à l'avance (voir Landmarks); en leur absence, la distance
+        // à vol d'oiseau est utilisée
+        Heuristic heuristic;
+        try {
+            heuristic = Landmarks.loadFrom(graphBasePath, COST_PROFILE, graph);
+        } catch (NoSuchFileException e) {
+            heuristic = new StraightLineHeuristic(graph);
+        }
+        ConnectedComponents components;
+        try {
+            components = ConnectedComponents.loadFrom(graphBasePath, COST_PROFILE, graph);
+        } catch (NoSuchFileException e) {
+            components = ConnectedComponents.compute(graph, costFunction);
+            components.writeTo(graphBasePath, COST_PROFILE);
+        }
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction,
+                RouteComputer.QueueType.INDEXED_HEAP, RouteComputer.SearchMode.BIDIRECTIONAL,
+                components.max(heuristic));
+        RouteBean routeBean = new RouteBean(routeComputer, OverviewGraph.of(routeComputer));
         ErrorManager errorManager = new ErrorManager();
 
         ElevationProfileManager elevationProfileManager =
@@ -6,7 +6,11 @@ import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.util.Pair;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -22,6 +26,7 @@ public final class RouteBean {
     private final ObjectProperty<ElevationProfile> elevationProfile;
     private final LinkedHashMap<Pair<Integer, Integer>, Route > memory;
     private final RouteComputer routeComputer;
+    private final OverviewGraph overviewGraph;
     /**
      * Longueur maximale d'un step
      */
@@ -30,22 +35,70 @@ public final class RouteBean {
      * Capacité maximale du cacheDisque
      */
     private static final int MAX_CAPACITY = 100;
+    /**
+     * Nombre maximal de noeuds de l'arbre des itinéraires calculé à l'avance depuis le dernier point de passage
+     */
+    private static final int SPECULATIVE_TREE_NODE_COUNT = 200_000;
+    /**
+     * Temps accordé au calcul de l'aperçu à chaque déplacement d'un point de passage, afin qu'il tienne, avec son
+     * affichage, dans une image à 60 Hz (16 ms)
+     */
+    private static final Duration PREVIEW_TIMEOUT = Duration.ofMillis(10);
+    /**
+     * Nombre maximal de noeuds visités par le calcul de chaque segment de l'aperçu
+     */
+    private static final int PREVIEW_MAX_SETTLED_COUNT = 50_000;
+
+    /**
+     * Fil d'exécution d'arrière-plan calculant l'arbre des itinéraires depuis le dernier point de passage
+     */
+    private final ExecutorService speculationExecutor;
+    /**
+     * Calcul en cours de l'arbre des itinéraires, ou null
+     */
+    private Future<?> speculation;
+    /**
+     * Dernier arbre des itinéraires calculé, ou null; écrit par le fil d'arrière-plan
+     */
+    private volatile ShortestPathTree speculativeTree;
+    /**
+     * Index et noeud le plus proche du point de passage dont l'aperçu est affiché, ou null
+     */
+    private Pair<Integer, Integer> preview;
 
 
     /**
-     * Constructeur public
+     * Constructeur public, sans aperçu de l'itinéraire pendant le déplacement d'un point de passage
      * @param routeComputer calculateur d'itinéraire
      */
     public RouteBean(RouteComputer routeComputer){
+        this(routeComputer, null);
+    }
+
+    /**
+     * Constructeur public
+     * @param routeComputer calculateur d'itinéraire
+     * @param overviewGraph graphe grossier utilisé pour l'aperçu de l'itinéraire pendant le déplacement d'un point
+     *                      de passage, ou null pour ne pas afficher d'aperçu
+     */
+    public RouteBean(RouteComputer routeComputer, OverviewGraph overviewGraph){
         this.routeComputer = routeComputer;
+        this.overviewGraph = overviewGraph;
         memory = new LinkedHashMap<>(MAX_CAPACITY,0.75f, true);
         highlightedPosition = new SimpleDoubleProperty(Double.NaN);
         route = new SimpleObjectProperty<>();
         elevationProfile = new SimpleObjectProperty<>();
         waypoints = FXCollections.observableArrayList();
+        speculationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "javelo-speculation");
+            thread.setDaemon(true);
+            return thread;
+        });
         waypoints.addListener((Observable o) ->{
+            preview = null;
             findRoute();
             computeElevation();
+            speculate();
         } );
 
     }
@@ -139,7 +192,11 @@ public final class RouteBean {
      * @param endNodeId id du dernier noeud
      */
     private void createRoute(int startNodeId, int endNodeId){
-        Route newRoute =  routeComputer.bestRouteBetween(startNodeId,endNodeId);
+        ShortestPathTree tree = speculativeTree;
+        Route newRoute = tree != null && startNodeId != endNodeId
+                && tree.rootNodeId() == startNodeId && tree.covers(endNodeId)
+                ? tree.routeTo(endNodeId)
+                : routeComputer.bestRouteBetween(startNodeId,endNodeId);
         if(memory.size()==MAX_CAPACITY){
             Iterator<Pair<Integer, Integer>> it = memory.keySet().iterator();
             memory.remove(it.next());
@@ -148,6 +205,63 @@ public final class RouteBean {
 
     }
 
+    /**
+     * Méthode auxiliaire lançant en arrière-plan le calcul de l'arbre des itinéraires depuis le dernier point de
+     * passage, afin que l'itinéraire vers le prochain point ajouté puisse en être extrait sans nouvelle recherche.
+     * Le calcul précédent, devenu inutile, est annulé.
+     */
+    private void speculate(){
+        if (speculation != null) speculation.cancel(true);
+        speculation = null;
+        if (waypoints.isEmpty()) return;
+
+        int rootNodeId = waypoints.get(waypoints.size() - 1).closestNodeId();
+        ShortestPathTree tree = speculativeTree;
+        if (tree != null && tree.rootNodeId() == rootNodeId) return;
+        speculation = speculationExecutor.submit(() -> {
+            speculativeTree = routeComputer.shortestPathTree(rootNodeId, SPECULATIVE_TREE_NODE_COUNT);
+        });
+    }
+
+    /**
+     * Méthode affichant un aperçu de l'itinéraire pendant le déplacement du point de passage d'index donné, sans
+     * modifier les points de passage. Les segments touchant ce point sont calculés approximativement dans le graphe
+     * grossier, les autres sont ceux de l'itinéraire exact. L'itinéraire exact est rétabli lorsque le point de
+     * passage est modifié à la fin du déplacement, ou lorsque le déplacement est annulé. Le calcul de l'aperçu est
+     * limité à PREVIEW_TIMEOUT; s'il n'aboutit pas, l'aperçu précédent reste affiché.
+     * @param index index du point de passage déplacé
+     * @param waypoint position courante du point de passage, ou null si le déplacement est annulé
+     */
+    public void previewWaypoint(int index, Waypoint waypoint){
+        if (overviewGraph == null) return;
+        if (waypoint == null) {
+            if (preview != null) findRoute();
+            preview = null;
+            return;
+        }
+        Pair<Integer, Integer> newPreview = new Pair<>(index, waypoint.closestNodeId());
+        if (newPreview.equals(preview)) return;
+
+        QueryOptions options = QueryOptions.UNLIMITED
+                .withMaxSettledCount(PREVIEW_MAX_SETTLED_COUNT)
+                .withTimeout(PREVIEW_TIMEOUT);
+        List<Route> segments = new ArrayList<>();
+        for (int i = 0; i < waypoints.size() - 1; i++) {
+            int startNodeId = i == index ? waypoint.closestNodeId() : waypoints.get(i).closestNodeId();
+            int endNodeId = i + 1 == index ? waypoint.closestNodeId() : waypoints.get(i + 1).closestNodeId();
+            if (startNodeId == endNodeId) continue;
+            Route segment = memory.get(new Pair<>(startNodeId, endNodeId));
+            if (segment == null) {
+                segment = overviewGraph.approximateRouteBetween(startNodeId, endNodeId, options).route();
+            }
+            // Aucun aperçu n'est disponible à temps, l'itinéraire affiché reste le précédent
+            if (segment == null) return;
+            segments.add(segment);
+        }
+        preview = newPreview;
+        if (!segments.isEmpty()) setRoute(new MultiRoute(segments));
+    }
+
     /**
      * Méthode auxiliaire permettant de calculer l'élévation d'un itinéraire
      */
@@ -12,6 +12,7 @@ import javafx.scene.Group;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.layout.Pane;
 import javafx.scene.shape.SVGPath;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
@@ -26,6 +27,7 @@ public final class WaypointsManager {
     private final ObjectProperty<MapViewParameters> prop;
     private final ObservableList<Waypoint> waypointsList;
     private final Consumer<String> consumer;
+    private final BiConsumer<Integer, Waypoint> dragConsumer;
     private final Pane pane;
     private final SimpleObjectProperty<Point2D> oldPoint;
 
@@ -38,11 +40,27 @@ public final class WaypointsManager {
      */
     public WaypointsManager(Graph graph, ObjectProperty<MapViewParameters> prop,
                             ObservableList<Waypoint> waypointsList, Consumer<String> consumer){
+        this(graph, prop, waypointsList, consumer, (i, waypoint) -> {});
+    }
+
+    /**
+     * Constructeur public
+     * @param graph graph contenu dans l'instance de WaypointsManager à créer
+     * @param prop propriété de MapViewParameters representant la carte qui s'affiche à l'écran
+     * @param waypointsList liste de waypoints contenue dans l'instance de WaypointsManager à créer
+     * @param consumer Object de type consumer qui sert à gérer les erreurs
+     * @param dragConsumer Object de type consumer informé de l'index et de la position courante d'un waypoint
+     *                     pendant son déplacement, ou de null si le déplacement est annulé
+     */
+    public WaypointsManager(Graph graph, ObjectProperty<MapViewParameters> prop,
+                            ObservableList<Waypoint> waypointsList, Consumer<String> consumer,
+                            BiConsumer<Integer, Waypoint> dragConsumer){
 
         this.graph = graph;
         this.prop = prop;
         this.waypointsList = waypointsList;
         this.consumer = consumer;
+        this.dragConsumer = dragConsumer;
         Canvas canvas = new Canvas();
         this.pane = new Pane(canvas);
         this.oldPoint = new SimpleObjectProperty<>();
@@ -102,7 +120,7 @@ public final class WaypointsManager {
 
         pointUpdate(group);
 
-        waypointDrag(group);
+        waypointDrag(group,i);
 
         endDragHandler(group,i);
 
@@ -155,6 +173,7 @@ public final class WaypointsManager {
 
                 if (nodeNPoint.error()){
                     consumer.accept("Aucune route à proximité");
+                    dragConsumer.accept(i, null);
                     PointWebMercator point = PointWebMercator.ofPointCh(waypointsList.get(i).point());
                     group.setLayoutX(prop.get().viewX(point));
                     group.setLayoutY(prop.get().viewY(point));
@@ -169,14 +188,20 @@ public final class WaypointsManager {
     /**
      * Méthode privée qui gère le glissement des waypoints dans la carte
      * @param group waypoint à glisser
+     * @param i index du waypoint
      */
-    private void waypointDrag(Group group){
+    private void waypointDrag(Group group, int i){
         group.setOnMouseDragged(e ->{
             double newX = group.getLayoutX() - oldPoint.get().getX() + e.getX();
             double newY = group.getLayoutY() - oldPoint.get().getY() + e.getY();
             group.setLayoutX(newX);
             group.setLayoutY(newY);
 
+            NodeNPoint nodeNPoint = findClosestNode(newX,newY);
+            if (!nodeNPoint.error()){
+                dragConsumer.accept(i, new Waypoint(nodeNPoint.point(), nodeNPoint.closestNode()));
+            }
+
 
         });
     }
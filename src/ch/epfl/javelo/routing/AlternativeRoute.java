@@ -0,0 +1,42 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Objects;
+
+/**
+ * Enregistrement AlternativeRoute, itinéraire proposé parmi plusieurs alternatives, accompagné de ses statistiques
+ *
+ * @param route itinéraire
+ * @param cost coût de l'itinéraire selon la fonction de coût
+ * @param stretch rapport entre le coût de l'itinéraire et celui du meilleur itinéraire (1 pour ce dernier)
+ * @param sharedLength longueur, en mètres, des arêtes de l'itinéraire déjà empruntées par les alternatives
+ *                     mieux classées (0 pour le meilleur itinéraire)
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public record AlternativeRoute(Route route, double cost, double stretch, double sharedLength) {
+
+    /**
+     * Constructeur compact
+     * @throws NullPointerException si l'itinéraire est nul
+     */
+    public AlternativeRoute {
+        Objects.requireNonNull(route);
+    }
+
+    /**
+     * Retourne la longueur de l'itinéraire
+     * @return la longueur de l'itinéraire, en mètres
+     */
+    public double length() {
+        return route.length();
+    }
+
+    /**
+     * Retourne la part de l'itinéraire partagée avec les alternatives mieux classées
+     * @return la longueur partagée divisée par la longueur de l'itinéraire, entre 0 et 1
+     */
+    public double overlap() {
+        return sharedLength / route.length();
+    }
+}
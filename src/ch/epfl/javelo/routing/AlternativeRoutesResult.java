@@ -0,0 +1,59 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.List;
+
+/**
+ * Enregistrement AlternativeRoutesResult, résultat d'une recherche d'itinéraires alternatifs effectuée avec des
+ * limites (voir QueryOptions), qui distingue l'absence d'itinéraire de l'abandon de la recherche
+ *
+ * @param status statut de la recherche
+ * @param routes itinéraires trouvés, le meilleur en premier, vide si le statut n'est pas FOUND
+ * @param settledCount nombre de noeuds visités par la recherche, dans les deux sens
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public record AlternativeRoutesResult(RouteResult.Status status, List<AlternativeRoute> routes,
+                                      int settledCount) {
+
+    /**
+     * Constructeur compact
+     * @throws IllegalArgumentException si la liste des itinéraires est vide alors que le statut est FOUND, ou
+     * inversement, ou si le nombre de noeuds visités est négatif
+     */
+    public AlternativeRoutesResult {
+        Preconditions.checkArgument((status == RouteResult.Status.FOUND) == !routes.isEmpty()
+                && settledCount >= 0);
+        routes = List.copyOf(routes);
+    }
+
+    /**
+     * Retourne le résultat d'une recherche ayant trouvé les itinéraires donnés
+     * @param routes itinéraires trouvés, le meilleur en premier
+     * @param settledCount nombre de noeuds visités par la recherche
+     * @return le résultat
+     */
+    public static AlternativeRoutesResult found(List<AlternativeRoute> routes, int settledCount) {
+        return new AlternativeRoutesResult(RouteResult.Status.FOUND, routes, settledCount);
+    }
+
+    /**
+     * Retourne le résultat d'une recherche terminée sans avoir trouvé d'itinéraire, ou abandonnée
+     * @param status statut de la recherche, différent de FOUND
+     * @param settledCount nombre de noeuds visités par la recherche
+     * @return le résultat
+     */
+    public static AlternativeRoutesResult notFound(RouteResult.Status status, int settledCount) {
+        return new AlternativeRoutesResult(status, List.of(), settledCount);
+    }
+
+    /**
+     * Retourne vrai ssi la recherche a été abandonnée avant de connaître sa réponse
+     * @return vrai ssi la recherche a été abandonnée
+     */
+    public boolean isAborted() {
+        return status.isAborted();
+    }
+}
@@ -0,0 +1,50 @@
+package ch.epfl.javelo.routing;
+
+import java.util.PriorityQueue;
+
+/**
+ * Classe BinaryNodeQueue, file de priorité de noeuds basée sur java.util.PriorityQueue. Un même noeud peut s'y
+ * trouver plusieurs fois, la recherche ignorant les noeuds déjà visités lorsqu'ils sont retirés.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class BinaryNodeQueue implements NodeQueue {
+    private final PriorityQueue<WeightedNode> queue = new PriorityQueue<>();
+
+    @Override
+    public void push(int nodeId, float key) {
+        queue.add(new WeightedNode(nodeId, key));
+    }
+
+    @Override
+    public int pop() {
+        return queue.remove().nodeId();
+    }
+
+    @Override
+    public float minKey() {
+        WeightedNode min = queue.peek();
+        return min == null ? Float.POSITIVE_INFINITY : min.distance();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        queue.clear();
+    }
+
+    /**
+     * Enregistrement auxiliaire représentant un noeud et sa distance estimée
+     */
+    private record WeightedNode(int nodeId, float distance) implements Comparable<WeightedNode> {
+        @Override
+        public int compareTo(WeightedNode that) {
+            return Float.compare(this.distance, that.distance);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Classe CancellationToken, jeton permettant d'annuler depuis n'importe quel fil d'exécution les recherches
+ * d'itinéraire qui l'utilisent (voir QueryOptions). Une recherche annulée s'arrête rapidement et retourne un
+ * résultat de statut CANCELLED. Une fois annulé, un jeton le reste.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class CancellationToken {
+    private volatile boolean isCancelled;
+
+    /**
+     * Annule les recherches utilisant ce jeton
+     */
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * Retourne vrai ssi ce jeton a été annulé
+     * @return vrai ssi ce jeton a été annulé
+     */
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+}
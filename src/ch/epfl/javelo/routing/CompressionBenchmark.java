@@ -0,0 +1,112 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphCompression;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Classe CompressionBenchmark, programme comparant la mémoire occupée par les noeuds et les arêtes d'un graphe et
+ * la durée des recherches d'itinéraire, selon que le graphe est chargé depuis ses fichiers habituels
+ * (Graph.LoadMode.MAPPED) ou depuis ses fichiers compressés (Graph.LoadMode.COMPRESSED), écrits au préalable
+ * par GraphCompression. Les mêmes requêtes sont effectuées sur les deux graphes et les longueurs des
+ * itinéraires obtenus sont comparées.
+ * <p>
+ * Utilisation : {@code java ch.epfl.javelo.routing.CompressionBenchmark <graphe> [nombre de requêtes]}
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class CompressionBenchmark {
+    /**
+     * Nombre de requêtes par défaut
+     */
+    private static final int DEFAULT_QUERY_COUNT = 200;
+    /**
+     * Nombre de répétitions de la mesure, la première servant à l'échauffement de la machine virtuelle
+     */
+    private static final int ROUND_COUNT = 3;
+    /**
+     * Germe du générateur des requêtes, afin que les mesures soient reproductibles
+     */
+    private static final long SEED = 2022;
+
+    private CompressionBenchmark() {}
+
+    /**
+     * Programme principal
+     * @param args répertoire du graphe, puis éventuellement le nombre de requêtes
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 1 || args.length == 2);
+        Path basePath = Path.of(args[0]);
+        Graph graph = Graph.loadFrom(basePath, Graph.LoadMode.MAPPED);
+        Graph compressedGraph = Graph.loadFrom(basePath, Graph.LoadMode.COMPRESSED);
+        int queryCount = args.length == 2 ? Integer.parseInt(args[1]) : DEFAULT_QUERY_COUNT;
+        Preconditions.checkArgument(graph.nodeCount() == compressedGraph.nodeCount());
+
+        long size = Files.size(basePath.resolve("nodes.bin")) + Files.size(basePath.resolve("edges.bin"))
+                + Files.size(basePath.resolve("profile_ids.bin"));
+        long compressedSize = Files.size(basePath.resolve(GraphCompression.NODES_FILE))
+                + Files.size(basePath.resolve(GraphCompression.EDGES_FILE));
+        System.out.printf("mémoire des noeuds et arêtes : %d o -> %d o (%.1f %% économisés)%n",
+                size, compressedSize, 100.0 * (size - compressedSize) / size);
+
+        Random random = new Random(SEED);
+        int[] startNodeIds = new int[queryCount];
+        int[] endNodeIds = new int[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            startNodeIds[i] = random.nextInt(graph.nodeCount());
+            do endNodeIds[i] = random.nextInt(graph.nodeCount()); while (endNodeIds[i] == startNodeIds[i]);
+        }
+
+        for (RouteComputer.SearchMode searchMode : RouteComputer.SearchMode.values()) {
+            RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph),
+                    RouteComputer.QueueType.INDEXED_HEAP, searchMode);
+            RouteComputer compressedRouteComputer = new RouteComputer(compressedGraph,
+                    new CityBikeCF(compressedGraph), RouteComputer.QueueType.INDEXED_HEAP, searchMode);
+            double[] lengths = new double[queryCount];
+            double[] compressedLengths = new double[queryCount];
+            long time = 0, compressedTime = 0;
+            for (int round = 0; round < ROUND_COUNT; round++) {
+                long roundTime = run(routeComputer, startNodeIds, endNodeIds, lengths);
+                long compressedRoundTime = run(compressedRouteComputer, startNodeIds, endNodeIds,
+                        compressedLengths);
+                if (round > 0) {
+                    time += roundTime;
+                    compressedTime += compressedRoundTime;
+                }
+            }
+            int differenceCount = 0;
+            for (int i = 0; i < queryCount; i++) {
+                if (lengths[i] != compressedLengths[i]) differenceCount += 1;
+            }
+            int measuredCount = queryCount * (ROUND_COUNT - 1);
+            System.out.printf("%s: non compressé %.3f ms/requête, compressé %.3f ms/requête (x%.2f), "
+                            + "%d itinéraire(s) différent(s)%n", searchMode, time / 1e6 / measuredCount,
+                    compressedTime / 1e6 / measuredCount, (double) compressedTime / time, differenceCount);
+        }
+    }
+
+    /**
+     * Méthode auxiliaire effectuant les requêtes données et mesurant leur durée totale
+     * @param routeComputer planificateur d'itinéraire
+     * @param startNodeIds identités des noeuds de départ des requêtes
+     * @param endNodeIds identités des noeuds d'arrivée des requêtes
+     * @param lengths tableau dans lequel sont écrites les longueurs des itinéraires (0 en l'absence d'itinéraire)
+     * @return la durée totale des requêtes, en nanosecondes
+     */
+    private static long run(RouteComputer routeComputer, int[] startNodeIds, int[] endNodeIds, double[] lengths) {
+        long start = System.nanoTime();
+        for (int i = 0; i < startNodeIds.length; i++) {
+            Route route = routeComputer.bestRouteBetween(startNodeIds[i], endNodeIds[i]);
+            lengths[i] = route == null ? 0 : route.length();
+        }
+        return System.nanoTime() - start;
+    }
+}
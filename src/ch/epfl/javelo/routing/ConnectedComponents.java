@@ -0,0 +1,275 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphContainer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Classe ConnectedComponents, composantes connexes du graphe restreint aux arêtes de coût fini pour une fonction
+ * de coût donnée. Chaque noeud reçoit l'index de sa composante fortement connexe et celui de sa composante
+ * faiblement connexe. Les composantes fortement connexes sont numérotées dans l'ordre topologique inverse (toute
+ * arête menant d'une composante à une autre mène à une composante d'index inférieur), de sorte qu'un noeud ne
+ * peut atteindre que des noeuds de sa composante faiblement connexe dont la composante fortement connexe a un
+ * index inférieur ou égal au sien.
+ * <p>
+ * Cette classe est utilisable comme heuristique, dont la borne est infinie lorsqu'aucun itinéraire ne peut
+ * exister et nulle sinon, ce qui permet de rejeter immédiatement les recherches impossibles. Les composantes
+ * sont sauvegardées dans le fichier components-&lt;profil&gt;.bin, à côté des fichiers du graphe.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class ConnectedComponents implements Heuristic {
+    private final int nodeCount;
+    private final IntBuffer components;
+
+    /**
+     * Constructeur privé, les instances étant obtenues par les méthodes compute et loadFrom
+     * @param components composantes fortement connexes de chaque noeud, suivies des composantes faiblement
+     *                   connexes de chaque noeud
+     */
+    private ConnectedComponents(IntBuffer components) {
+        Preconditions.checkArgument(components.capacity() % 2 == 0);
+        this.nodeCount = components.capacity() / 2;
+        this.components = components;
+    }
+
+    /**
+     * Calcule les composantes connexes du graphe donné, restreint aux arêtes dont le coût est fini pour la
+     * fonction de coût donnée
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @return les composantes connexes du graphe
+     */
+    public static ConnectedComponents compute(Graph graph, CostFunction costFunction) {
+        int nodeCount = graph.nodeCount();
+        int[] components = new int[2 * nodeCount];
+        computeStrongComponents(graph, costFunction, components);
+        computeWeakComponents(graph, costFunction, components);
+        return new ConnectedComponents(IntBuffer.wrap(components));
+    }
+
+    /**
+     * Charge les composantes connexes du profil donné, sauvegardées dans le répertoire donné
+     * @param basePath chemin d'accès du répertoire
+     * @param profile nom du profil de la fonction de coût, p.ex. "city-bike"
+     * @param graph graphe auquel s'appliquent les composantes
+     * @return les composantes connexes du graphe
+     * @throws IOException en cas d'erreur d'entrée ou sortie, p.ex: si le fichier n'existe pas
+     * @throws IllegalArgumentException si le fichier ne correspond pas au nombre de noeuds du graphe
+     */
+    public static ConnectedComponents loadFrom(Path basePath, String profile, Graph graph) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(fileName(profile)))) {
+            return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), graph);
+        }
+    }
+
+    /**
+     * Charge les composantes connexes du profil donné depuis la section du même nom du conteneur donné (voir
+     * GraphContainer), sans copie
+     * @param container conteneur du graphe
+     * @param profile nom du profil de la fonction de coût, p.ex. "city-bike"
+     * @param graph graphe auquel s'appliquent les composantes
+     * @return les composantes connexes du graphe
+     * @throws IllegalArgumentException si le conteneur ne possède pas la section du profil, ou si elle ne
+     * correspond pas au nombre de noeuds du graphe
+     */
+    public static ConnectedComponents loadFrom(GraphContainer container, String profile, Graph graph) {
+        return of(container.section(fileName(profile)), graph);
+    }
+
+    /**
+     * Sauvegarde les composantes sous le nom du profil donné, dans le répertoire donné
+     * @param basePath chemin d'accès du répertoire
+     * @param profile nom du profil de la fonction de coût
+     * @throws IOException en cas d'erreur d'entrée ou sortie
+     */
+    public void writeTo(Path basePath, String profile) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(fileName(profile)))))) {
+            for (int i = 0; i < components.capacity(); i++) s.writeInt(components.get(i));
+        }
+    }
+
+    /**
+     * Retourne l'index de la composante fortement connexe du noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @return l'index de la composante fortement connexe du noeud
+     */
+    public int strongComponent(int nodeId) {
+        return components.get(nodeId);
+    }
+
+    /**
+     * Retourne l'index de la composante faiblement connexe du noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @return l'index de la composante faiblement connexe du noeud
+     */
+    public int weakComponent(int nodeId) {
+        return components.get(nodeCount + nodeId);
+    }
+
+    /**
+     * Retourne vrai s'il est certain qu'aucun itinéraire ne mène du premier noeud donné au second; lorsque
+     * cette méthode retourne faux, un tel itinéraire existe si les deux noeuds sont dans la même composante
+     * fortement connexe, et peut exister sinon
+     * @param fromNodeId identité du noeud de départ
+     * @param toNodeId identité du noeud d'arrivée
+     * @return vrai s'il est certain qu'aucun itinéraire n'existe
+     */
+    public boolean isCertainlyUnreachable(int fromNodeId, int toNodeId) {
+        return weakComponent(fromNodeId) != weakComponent(toNodeId)
+                || strongComponent(toNodeId) > strongComponent(fromNodeId);
+    }
+
+    @Override
+    public double lowerBound(int fromNodeId, int toNodeId) {
+        return isCertainlyUnreachable(fromNodeId, toNodeId) ? Double.POSITIVE_INFINITY : 0;
+    }
+
+    /**
+     * Méthode auxiliaire calculant les composantes fortement connexes au moyen de l'algorithme de Tarjan, dans
+     * une version itérative (la profondeur de la récursion pouvant atteindre le nombre de noeuds). Tarjan
+     * termine chaque composante après toutes celles qu'elle peut atteindre, ce qui donne l'ordre topologique
+     * inverse.
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param components tableau dont les nodeCount premiers éléments sont remplis par la composante de chaque noeud
+     */
+    private static void computeStrongComponents(Graph graph, CostFunction costFunction, int[] components) {
+        int nodeCount = graph.nodeCount();
+        int[] indices = new int[nodeCount];
+        Arrays.fill(indices, -1);
+        int[] lowLinks = new int[nodeCount];
+        boolean[] isOnStack = new boolean[nodeCount];
+        int[] componentStack = new int[nodeCount];
+        int[] callNodes = new int[nodeCount];
+        int[] callEdges = new int[nodeCount];
+        int nextIndex = 0, componentStackSize = 0, componentCount = 0;
+
+        for (int rootId = 0; rootId < nodeCount; rootId++) {
+            if (indices[rootId] != -1) continue;
+            int depth = 0;
+            callNodes[depth] = rootId;
+            callEdges[depth++] = 0;
+            indices[rootId] = lowLinks[rootId] = nextIndex++;
+            componentStack[componentStackSize++] = rootId;
+            isOnStack[rootId] = true;
+
+            while (depth > 0) {
+                int nodeId = callNodes[depth - 1];
+                int i = callEdges[depth - 1];
+                if (i < graph.nodeOutDegree(nodeId)) {
+                    callEdges[depth - 1] += 1;
+                    int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                    if (costFunction.costFactor(nodeId, edgeId) == Double.POSITIVE_INFINITY) continue;
+                    int targetNodeId = graph.edgeTargetNodeId(edgeId);
+                    if (indices[targetNodeId] == -1) {
+                        indices[targetNodeId] = lowLinks[targetNodeId] = nextIndex++;
+                        componentStack[componentStackSize++] = targetNodeId;
+                        isOnStack[targetNodeId] = true;
+                        callNodes[depth] = targetNodeId;
+                        callEdges[depth++] = 0;
+                    } else if (isOnStack[targetNodeId]) {
+                        lowLinks[nodeId] = Math.min(lowLinks[nodeId], indices[targetNodeId]);
+                    }
+                } else {
+                    depth -= 1;
+                    if (lowLinks[nodeId] == indices[nodeId]) {
+                        int memberId;
+                        do {
+                            memberId = componentStack[--componentStackSize];
+                            isOnStack[memberId] = false;
+                            components[memberId] = componentCount;
+                        } while (memberId != nodeId);
+                        componentCount += 1;
+                    }
+                    if (depth > 0) {
+                        int parentId = callNodes[depth - 1];
+                        lowLinks[parentId] = Math.min(lowLinks[parentId], lowLinks[nodeId]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Méthode auxiliaire calculant les composantes faiblement connexes au moyen d'une structure union-find
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param components tableau dont les nodeCount derniers éléments sont remplis par la composante de chaque
+     *                   noeud
+     */
+    private static void computeWeakComponents(Graph graph, CostFunction costFunction, int[] components) {
+        int nodeCount = graph.nodeCount();
+        int[] parents = new int[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) parents[nodeId] = nodeId;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                if (costFunction.costFactor(nodeId, edgeId) == Double.POSITIVE_INFINITY) continue;
+                int root1 = find(parents, nodeId);
+                int root2 = find(parents, graph.edgeTargetNodeId(edgeId));
+                if (root1 != root2) parents[Math.max(root1, root2)] = Math.min(root1, root2);
+            }
+        }
+
+        int[] rootComponents = new int[nodeCount];
+        int componentCount = 0;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            int rootId = find(parents, nodeId);
+            if (rootId == nodeId) rootComponents[nodeId] = componentCount++;
+            components[nodeCount + nodeId] = rootComponents[rootId];
+        }
+    }
+
+    /**
+     * Méthode auxiliaire retournant la racine de l'ensemble du noeud donné, en compressant le chemin parcouru
+     * @param parents parent de chaque noeud dans la structure union-find
+     * @param nodeId identité du noeud
+     * @return l'identité de la racine de l'ensemble du noeud
+     */
+    private static int find(int[] parents, int nodeId) {
+        int rootId = nodeId;
+        while (parents[rootId] != rootId) rootId = parents[rootId];
+        while (parents[nodeId] != rootId) {
+            int parentId = parents[nodeId];
+            parents[nodeId] = rootId;
+            nodeId = parentId;
+        }
+        return rootId;
+    }
+
+    /**
+     * Méthode auxiliaire retournant les composantes dont le contenu est donné
+     * @param buffer contenu du fichier des composantes
+     * @param graph graphe auquel s'appliquent les composantes
+     * @return les composantes connexes du graphe
+     * @throws IllegalArgumentException si le contenu ne correspond pas au nombre de noeuds du graphe
+     */
+    private static ConnectedComponents of(ByteBuffer buffer, Graph graph) {
+        IntBuffer components = buffer.asIntBuffer();
+        Preconditions.checkArgument(components.capacity() == 2 * graph.nodeCount());
+        return new ConnectedComponents(components);
+    }
+
+    /**
+     * Retourne le nom du fichier des composantes du profil donné, qui est aussi celui de sa section dans un
+     * conteneur (voir GraphContainer)
+     * @param profile nom du profil
+     * @return le nom du fichier
+     */
+    public static String fileName(String profile) {
+        return "components-" + profile + ".bin";
+    }
+}
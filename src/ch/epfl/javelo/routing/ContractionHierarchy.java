@@ -0,0 +1,384 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Classe ContractionHierarchy, hiérarchie de contraction d'un graphe pour une fonction de coût donnée, permettant
+ * de calculer des itinéraires optimaux en ne visitant qu'une infime partie des noeuds du graphe.
+ * <p>
+ * Les arcs de la hiérarchie sont identifiés par un entier : les identités inférieures au nombre d'arêtes du
+ * graphe désignent les arêtes elles-mêmes, les suivantes désignent les raccourcis, chacun remplaçant deux arcs
+ * consécutifs. Un itinéraire trouvé dans la hiérarchie est ainsi toujours décomposé en arêtes du graphe.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class ContractionHierarchy {
+    /**
+     * Nom du fichier contenant le rang de chaque noeud
+     */
+    private static final String RANKS_FILE = "ch_ranks.bin";
+    /**
+     * Nom du fichier contenant les raccourcis
+     */
+    private static final String SHORTCUTS_FILE = "ch_shortcuts.bin";
+    /**
+     * Taille d'un raccourci dans le fichier : noeuds de départ et d'arrivée, coût et deux arcs remplacés
+     */
+    private static final int SHORTCUT_BYTES = 2 * Integer.BYTES + Double.BYTES + 2 * Integer.BYTES;
+
+    private final Graph graph;
+    private final int edgeCount;
+    private final int[] ranks;
+    private final int[] arcSources;
+    private final int[] arcTargets;
+    private final double[] arcCosts;
+    private final int[] shortcutChildren;
+    /**
+     * Longueur de chaque arc, c.-à-d. la longueur totale des arêtes qu'il représente
+     */
+    private final double[] arcLengths;
+
+    private final int[] firstUpArcs;
+    private final int[] upArcs;
+    private final int[] firstDownArcs;
+    private final int[] downArcs;
+
+    private final ThreadLocal<SearchState> forwardStates;
+    private final ThreadLocal<SearchState> backwardStates;
+    private final ThreadLocal<double[]> searchLengths;
+
+    /**
+     * Espace de recherche montant d'un noeud, c.-à-d. les noeuds atteints depuis lui (ou l'atteignant) en
+     * n'empruntant que des arcs montant dans la hiérarchie, dans l'ordre de leur visite
+     * @param nodeIds identités des noeuds de l'espace de recherche
+     * @param costs coût du meilleur chemin montant entre le noeud d'origine et chaque noeud
+     * @param lengths longueur de ce chemin
+     */
+    record SearchSpace(int[] nodeIds, double[] costs, double[] lengths) {
+    }
+
+    /**
+     * Constructeur de la hiérarchie, à partir de ses arcs
+     * @param graph graphe de la hiérarchie
+     * @param ranks rang de chaque noeud dans l'ordre de contraction
+     * @param arcSources noeud de départ de chaque arc
+     * @param arcTargets noeud d'arrivée de chaque arc
+     * @param arcCosts coût de chaque arc (infini pour les arêtes inutilisables)
+     * @param shortcutChildren paires d'arcs remplacés par chaque raccourci
+     */
+    ContractionHierarchy(Graph graph, int[] ranks, int[] arcSources, int[] arcTargets, double[] arcCosts,
+                         int[] shortcutChildren) {
+        this.graph = graph;
+        this.edgeCount = graph.edgeCount();
+        this.ranks = ranks;
+        this.arcSources = arcSources;
+        this.arcTargets = arcTargets;
+        this.arcCosts = arcCosts;
+        this.shortcutChildren = shortcutChildren;
+
+        arcLengths = new double[arcSources.length];
+        for (int arc = 0; arc < arcSources.length; arc++) {
+            int shortcutIndex = arc - edgeCount;
+            arcLengths[arc] = arc < edgeCount
+                    ? graph.edgeLength(arc)
+                    : arcLengths[shortcutChildren[2 * shortcutIndex]]
+                            + arcLengths[shortcutChildren[2 * shortcutIndex + 1]];
+        }
+
+        int nodeCount = graph.nodeCount();
+        firstUpArcs = new int[nodeCount + 1];
+        firstDownArcs = new int[nodeCount + 1];
+        for (int arc = 0; arc < arcSources.length; arc++) {
+            if (!isUsable(arc)) continue;
+            if (isUpward(arc)) firstUpArcs[arcSources[arc] + 1] += 1;
+            else firstDownArcs[arcTargets[arc] + 1] += 1;
+        }
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            firstUpArcs[nodeId + 1] += firstUpArcs[nodeId];
+            firstDownArcs[nodeId + 1] += firstDownArcs[nodeId];
+        }
+        upArcs = new int[firstUpArcs[nodeCount]];
+        downArcs = new int[firstDownArcs[nodeCount]];
+        int[] nextUp = firstUpArcs.clone();
+        int[] nextDown = firstDownArcs.clone();
+        for (int arc = 0; arc < arcSources.length; arc++) {
+            if (!isUsable(arc)) continue;
+            if (isUpward(arc)) upArcs[nextUp[arcSources[arc]]++] = arc;
+            else downArcs[nextDown[arcTargets[arc]]++] = arc;
+        }
+
+        forwardStates = ThreadLocal.withInitial(() -> new SearchState(nodeCount, RouteComputer.QueueType.INDEXED_HEAP));
+        backwardStates = ThreadLocal.withInitial(() -> new SearchState(nodeCount, RouteComputer.QueueType.INDEXED_HEAP));
+        searchLengths = ThreadLocal.withInitial(() -> new double[nodeCount]);
+    }
+
+    /**
+     * Construit la hiérarchie de contraction du graphe donné pour la fonction de coût donnée. Ce prétraitement
+     * est coûteux et son résultat devrait être sauvegardé au moyen de la méthode writeTo.
+     * @param graph graphe à prétraiter
+     * @param costFunction fonction de coût des arêtes
+     * @return la hiérarchie de contraction du graphe
+     */
+    public static ContractionHierarchy build(Graph graph, CostFunction costFunction) {
+        return ContractionHierarchyBuilder.build(graph, costFunction);
+    }
+
+    /**
+     * Charge la hiérarchie de contraction sauvegardée dans le répertoire donné, qui doit avoir été construite
+     * pour le même graphe et la même fonction de coût
+     * @param basePath chemin d'accès des fichiers
+     * @param graph graphe de la hiérarchie
+     * @param costFunction fonction de coût utilisée lors de la construction de la hiérarchie
+     * @return la hiérarchie de contraction
+     * @throws IOException en cas d'erreur d'entrée ou sortie, p.ex: si l'un des fichiers n'existe pas
+     */
+    public static ContractionHierarchy loadFrom(Path basePath, Graph graph, CostFunction costFunction)
+            throws IOException {
+        IntBuffer ranksBuffer = map(basePath.resolve(RANKS_FILE)).asIntBuffer();
+        Preconditions.checkArgument(ranksBuffer.capacity() == graph.nodeCount());
+        int[] ranks = new int[ranksBuffer.capacity()];
+        ranksBuffer.get(ranks);
+
+        ByteBuffer shortcutsBuffer = map(basePath.resolve(SHORTCUTS_FILE));
+        int edgeCount = graph.edgeCount();
+        int shortcutCount = shortcutsBuffer.capacity() / SHORTCUT_BYTES;
+        int arcCount = edgeCount + shortcutCount;
+        int[] arcSources = new int[arcCount];
+        int[] arcTargets = new int[arcCount];
+        double[] arcCosts = new double[arcCount];
+        int[] shortcutChildren = new int[2 * shortcutCount];
+
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                arcSources[edgeId] = nodeId;
+                arcTargets[edgeId] = graph.edgeTargetNodeId(edgeId);
+                arcCosts[edgeId] = graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId);
+            }
+        }
+        for (int i = 0; i < shortcutCount; i++) {
+            int arc = edgeCount + i;
+            arcSources[arc] = shortcutsBuffer.getInt();
+            arcTargets[arc] = shortcutsBuffer.getInt();
+            arcCosts[arc] = shortcutsBuffer.getDouble();
+            shortcutChildren[2 * i] = shortcutsBuffer.getInt();
+            shortcutChildren[2 * i + 1] = shortcutsBuffer.getInt();
+        }
+        return new ContractionHierarchy(graph, ranks, arcSources, arcTargets, arcCosts, shortcutChildren);
+    }
+
+    /**
+     * Sauvegarde la hiérarchie dans le répertoire donné, à côté des fichiers du graphe
+     * @param basePath chemin d'accès du répertoire
+     * @throws IOException en cas d'erreur d'entrée ou sortie
+     */
+    public void writeTo(Path basePath) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(RANKS_FILE))))) {
+            for (int rank : ranks) s.writeInt(rank);
+        }
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(SHORTCUTS_FILE))))) {
+            for (int arc = edgeCount; arc < arcSources.length; arc++) {
+                s.writeInt(arcSources[arc]);
+                s.writeInt(arcTargets[arc]);
+                s.writeDouble(arcCosts[arc]);
+                s.writeInt(shortcutChildren[2 * (arc - edgeCount)]);
+                s.writeInt(shortcutChildren[2 * (arc - edgeCount) + 1]);
+            }
+        }
+    }
+
+    /**
+     * Retourne le nombre de raccourcis de la hiérarchie
+     * @return le nombre de raccourcis
+     */
+    public int shortcutCount() {
+        return arcSources.length - edgeCount;
+    }
+
+    /**
+     * Retourne le meilleur itinéraire entre les deux noeuds donnés, au moyen d'une recherche bidirectionnelle
+     * dans laquelle chaque recherche n'emprunte que des arcs menant à des noeuds de rang supérieur
+     * @param startNodeId identité du premier noeud de l'itinéraire
+     * @param endNodeId identité du dernier noeud de l'itinéraire
+     * @return le meilleur itinéraire, ou null s'il n'en existe aucun
+     * @throws IllegalArgumentException si les deux noeuds sont identiques
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        SearchState forward = forwardStates.get();
+        SearchState backward = backwardStates.get();
+        forward.begin();
+        backward.begin();
+        forward.update(startNodeId, 0, -1);
+        forward.queue().push(startNodeId, 0);
+        backward.update(endNodeId, 0, -1);
+        backward.queue().push(endNodeId, 0);
+
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int meetingNodeId = -1;
+        boolean forwardTurn = true;
+        while (true) {
+            boolean forwardDone = forward.queue().minKey() >= bestDistance;
+            boolean backwardDone = backward.queue().minKey() >= bestDistance;
+            if (forwardDone && backwardDone) break;
+            boolean isForward = backwardDone || (!forwardDone && forwardTurn);
+            forwardTurn = !forwardTurn;
+
+            SearchState state = isForward ? forward : backward;
+            SearchState other = isForward ? backward : forward;
+            int nodeId = state.queue().pop();
+            if (state.isSettled(nodeId)) continue;
+            double distance = state.distance(nodeId);
+
+            int[] arcs = isForward ? upArcs : downArcs;
+            int first = isForward ? firstUpArcs[nodeId] : firstDownArcs[nodeId];
+            int last = isForward ? firstUpArcs[nodeId + 1] : firstDownArcs[nodeId + 1];
+            for (int i = first; i < last; i++) {
+                int arc = arcs[i];
+                int neighborId = isForward ? arcTargets[arc] : arcSources[arc];
+                if (state.isSettled(neighborId)) continue;
+                double d = distance + arcCosts[arc];
+                if (d < state.distance(neighborId)) {
+                    state.update(neighborId, d, arc);
+                    state.queue().push(neighborId, (float) d);
+                }
+            }
+            state.settle(nodeId);
+
+            double total = distance + other.distance(nodeId);
+            if (total < bestDistance) {
+                bestDistance = total;
+                meetingNodeId = nodeId;
+            }
+        }
+
+        if (meetingNodeId == -1) return null;
+
+        Deque<Integer> arcs = new ArrayDeque<>();
+        for (int nodeId = meetingNodeId; nodeId != startNodeId; nodeId = arcSources[forward.predecessor(nodeId)]) {
+            arcs.addFirst(forward.predecessor(nodeId));
+        }
+        for (int nodeId = meetingNodeId; nodeId != endNodeId; nodeId = arcTargets[backward.predecessor(nodeId)]) {
+            arcs.addLast(backward.predecessor(nodeId));
+        }
+        return new SingleRoute(unpack(arcs));
+    }
+
+    /**
+     * Calcule l'espace de recherche montant complet du noeud donné, utilisé par les calculs de matrices de coûts
+     * @param originNodeId identité du noeud d'origine
+     * @param forward vrai pour les noeuds atteints depuis l'origine, faux pour les noeuds l'atteignant
+     * @return l'espace de recherche du noeud
+     */
+    SearchSpace upwardSearchSpace(int originNodeId, boolean forward) {
+        SearchState state = forwardStates.get();
+        double[] lengths = searchLengths.get();
+        state.begin();
+        state.update(originNodeId, 0, -1);
+        state.queue().push(originNodeId, 0);
+        lengths[originNodeId] = 0;
+
+        int[] nodeIds = new int[16];
+        int count = 0;
+        while (!state.queue().isEmpty()) {
+            int nodeId = state.queue().pop();
+            if (state.isSettled(nodeId)) continue;
+            double distance = state.distance(nodeId);
+            int[] arcs = forward ? upArcs : downArcs;
+            int first = forward ? firstUpArcs[nodeId] : firstDownArcs[nodeId];
+            int last = forward ? firstUpArcs[nodeId + 1] : firstDownArcs[nodeId + 1];
+            for (int i = first; i < last; i++) {
+                int arc = arcs[i];
+                int neighborId = forward ? arcTargets[arc] : arcSources[arc];
+                if (state.isSettled(neighborId)) continue;
+                double d = distance + arcCosts[arc];
+                if (d < state.distance(neighborId)) {
+                    state.update(neighborId, d, arc);
+                    state.queue().push(neighborId, (float) d);
+                    lengths[neighborId] = lengths[nodeId] + arcLengths[arc];
+                }
+            }
+            state.settle(nodeId);
+            if (count == nodeIds.length) nodeIds = Arrays.copyOf(nodeIds, 2 * count);
+            nodeIds[count++] = nodeId;
+        }
+
+        nodeIds = Arrays.copyOf(nodeIds, count);
+        double[] costs = new double[count];
+        double[] spaceLengths = new double[count];
+        for (int i = 0; i < count; i++) {
+            costs[i] = state.distance(nodeIds[i]);
+            spaceLengths[i] = lengths[nodeIds[i]];
+        }
+        return new SearchSpace(nodeIds, costs, spaceLengths);
+    }
+
+    /**
+     * Méthode auxiliaire décomposant la suite d'arcs donnée en arêtes du graphe, en remplaçant itérativement
+     * chaque raccourci par les deux arcs qu'il remplace
+     * @param arcs suite d'arcs à décomposer, vidée par la méthode
+     * @return la liste des arêtes composant les arcs
+     */
+    private List<Edge> unpack(Deque<Integer> arcs) {
+        List<Edge> edges = new ArrayList<>();
+        while (!arcs.isEmpty()) {
+            int arc = arcs.removeFirst();
+            if (arc < edgeCount) {
+                edges.add(Edge.of(graph, arc, arcSources[arc], arcTargets[arc]));
+            } else {
+                int shortcutIndex = arc - edgeCount;
+                arcs.addFirst(shortcutChildren[2 * shortcutIndex + 1]);
+                arcs.addFirst(shortcutChildren[2 * shortcutIndex]);
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Méthode auxiliaire retournant vrai ssi l'arc donné peut être emprunté
+     * @param arc identité de l'arc
+     * @return vrai ssi le coût de l'arc est fini et qu'il ne s'agit pas d'une boucle
+     */
+    private boolean isUsable(int arc) {
+        return arcCosts[arc] != Double.POSITIVE_INFINITY && arcSources[arc] != arcTargets[arc];
+    }
+
+    /**
+     * Méthode auxiliaire retournant vrai ssi l'arc donné mène à un noeud de rang supérieur
+     * @param arc identité de l'arc
+     * @return vrai ssi l'arc monte dans la hiérarchie
+     */
+    private boolean isUpward(int arc) {
+        return ranks[arcSources[arc]] < ranks[arcTargets[arc]];
+    }
+
+    /**
+     * Méthode auxiliaire projetant en mémoire le fichier donné
+     * @param path chemin du fichier
+     * @return un ByteBuffer contenant les informations du fichier
+     * @throws IOException en cas d'erreur d'entrée ou sortie
+     */
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.util.Arrays;
+
+/**
+ * Classe ContractionHierarchyBuilder, prétraitement d'un graphe en une hiérarchie de contraction. Les noeuds
+ * sont contractés un à un, dans l'ordre donné par leur différence d'arêtes (nombre de raccourcis nécessaires
+ * moins nombre d'arcs supprimés, plus nombre de voisins déjà contractés), recalculée paresseusement : la
+ * priorité d'un noeud est réévaluée lorsqu'il est retiré de la file, et il y est remis si elle a augmenté. Un
+ * raccourci u→w n'est ajouté lors de la contraction de v que si une recherche de témoin limitée ne trouve pas
+ * de chemin de u à w évitant v et au moins aussi court que u→v→w.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class ContractionHierarchyBuilder {
+    /**
+     * Nombre maximal de noeuds visités par une recherche de témoin lors de la contraction d'un noeud
+     */
+    private static final int WITNESS_SETTLED_LIMIT = 500;
+    /**
+     * Nombre maximal de noeuds visités par une recherche de témoin lors du calcul d'une priorité, qui n'a pas
+     * besoin d'être exacte
+     */
+    private static final int SIMULATION_SETTLED_LIMIT = 50;
+    /**
+     * Capacité initiale des listes d'arcs de chaque noeud
+     */
+    private static final int INITIAL_ARC_CAPACITY = 4;
+
+    private final int nodeCount;
+    private final int edgeCount;
+
+    private int arcCount;
+    private int[] arcSources;
+    private int[] arcTargets;
+    private double[] arcCosts;
+    private int[] shortcutChildren;
+
+    private final int[][] outArcs;
+    private final int[] outCounts;
+    private final int[][] inArcs;
+    private final int[] inCounts;
+    private final boolean[] contracted;
+    private final int[] deletedNeighbors;
+    private final SearchState witnessState;
+    private final int[] targetMarks;
+    private int currentMark;
+
+    /**
+     * Constructeur privé, le prétraitement étant lancé par la méthode build
+     * @param graph graphe à prétraiter
+     * @param costFunction fonction de coût des arêtes
+     */
+    private ContractionHierarchyBuilder(Graph graph, CostFunction costFunction) {
+        nodeCount = graph.nodeCount();
+        edgeCount = graph.edgeCount();
+
+        arcSources = new int[edgeCount + edgeCount / 2];
+        arcTargets = new int[arcSources.length];
+        arcCosts = new double[arcSources.length];
+        shortcutChildren = new int[edgeCount];
+        outArcs = new int[nodeCount][];
+        outCounts = new int[nodeCount];
+        inArcs = new int[nodeCount][];
+        inCounts = new int[nodeCount];
+        contracted = new boolean[nodeCount];
+        deletedNeighbors = new int[nodeCount];
+        witnessState = new SearchState(nodeCount, RouteComputer.QueueType.INDEXED_HEAP);
+        targetMarks = new int[nodeCount];
+
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            outArcs[nodeId] = new int[INITIAL_ARC_CAPACITY];
+            inArcs[nodeId] = new int[INITIAL_ARC_CAPACITY];
+        }
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                int targetNodeId = graph.edgeTargetNodeId(edgeId);
+                double cost = graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId);
+                arcSources[edgeId] = nodeId;
+                arcTargets[edgeId] = targetNodeId;
+                arcCosts[edgeId] = cost;
+                if (cost != Double.POSITIVE_INFINITY && targetNodeId != nodeId) {
+                    addOutArc(nodeId, edgeId);
+                    addInArc(targetNodeId, edgeId);
+                }
+            }
+        }
+        arcCount = edgeCount;
+    }
+
+    /**
+     * Construit la hiérarchie de contraction du graphe donné pour la fonction de coût donnée
+     * @param graph graphe à prétraiter
+     * @param costFunction fonction de coût des arêtes
+     * @return la hiérarchie de contraction du graphe
+     */
+    static ContractionHierarchy build(Graph graph, CostFunction costFunction) {
+        return new ContractionHierarchyBuilder(graph, costFunction).contractAll(graph);
+    }
+
+    /**
+     * Méthode auxiliaire contractant tous les noeuds du graphe
+     * @param graph graphe prétraité
+     * @return la hiérarchie de contraction obtenue
+     */
+    private ContractionHierarchy contractAll(Graph graph) {
+        IndexedNodeHeap order = new IndexedNodeHeap(nodeCount);
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            order.push(nodeId, priority(nodeId));
+        }
+
+        int[] ranks = new int[nodeCount];
+        int rank = 0;
+        while (!order.isEmpty()) {
+            int nodeId = order.pop();
+            float priority = priority(nodeId);
+            if (!order.isEmpty() && priority > order.minKey()) {
+                order.push(nodeId, priority);
+                continue;
+            }
+            contract(nodeId, false);
+            ranks[nodeId] = rank++;
+        }
+
+        int shortcutCount = arcCount - edgeCount;
+        return new ContractionHierarchy(graph, ranks,
+                Arrays.copyOf(arcSources, arcCount),
+                Arrays.copyOf(arcTargets, arcCount),
+                Arrays.copyOf(arcCosts, arcCount),
+                Arrays.copyOf(shortcutChildren, 2 * shortcutCount));
+    }
+
+    /**
+     * Méthode auxiliaire calculant la priorité de contraction du noeud donné, les noeuds de plus petite priorité
+     * étant contractés en premier
+     * @param nodeId identité du noeud
+     * @return la priorité du noeud
+     */
+    private float priority(int nodeId) {
+        int shortcuts = contract(nodeId, true);
+        return shortcuts - inCounts[nodeId] - outCounts[nodeId] + deletedNeighbors[nodeId];
+    }
+
+    /**
+     * Méthode auxiliaire contractant le noeud donné, ou simulant seulement sa contraction
+     * @param nodeId identité du noeud
+     * @param simulate vrai ssi la contraction doit seulement être simulée
+     * @return le nombre de raccourcis ajoutés (ou qui le seraient)
+     */
+    private int contract(int nodeId, boolean simulate) {
+        int shortcuts = 0;
+        double maxOutCost = 0;
+        for (int j = 0; j < outCounts[nodeId]; j++) {
+            maxOutCost = Math.max(maxOutCost, arcCosts[outArcs[nodeId][j]]);
+        }
+
+        for (int i = 0; i < inCounts[nodeId]; i++) {
+            int inArc = inArcs[nodeId][i];
+            int sourceId = arcSources[inArc];
+            double inCost = arcCosts[inArc];
+            witnessSearch(sourceId, nodeId, inCost + maxOutCost,
+                    simulate ? SIMULATION_SETTLED_LIMIT : WITNESS_SETTLED_LIMIT);
+
+            for (int j = 0; j < outCounts[nodeId]; j++) {
+                int outArc = outArcs[nodeId][j];
+                int targetId = arcTargets[outArc];
+                if (targetId == sourceId) continue;
+                double cost = inCost + arcCosts[outArc];
+                if (witnessState.distance(targetId) <= cost) continue;
+
+                shortcuts += 1;
+                if (!simulate) addShortcut(sourceId, targetId, cost, inArc, outArc);
+            }
+        }
+
+        if (!simulate) {
+            contracted[nodeId] = true;
+            for (int i = 0; i < inCounts[nodeId]; i++) {
+                int sourceId = arcSources[inArcs[nodeId][i]];
+                removeArc(outArcs[sourceId], outCounts, sourceId, inArcs[nodeId][i]);
+                deletedNeighbors[sourceId] += 1;
+            }
+            for (int j = 0; j < outCounts[nodeId]; j++) {
+                int targetId = arcTargets[outArcs[nodeId][j]];
+                removeArc(inArcs[targetId], inCounts, targetId, outArcs[nodeId][j]);
+                deletedNeighbors[targetId] += 1;
+            }
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Méthode auxiliaire effectuant une recherche de témoin limitée depuis le noeud donné, dans le graphe des
+     * noeuds non contractés privé du noeud en cours de contraction. La recherche s'arrête dès que tous les
+     * successeurs du noeud en cours de contraction ont été visités.
+     * @param sourceId identité du noeud de départ
+     * @param excludedNodeId identité du noeud en cours de contraction
+     * @param maxCost coût au-delà duquel la recherche est inutile
+     * @param settledLimit nombre maximal de noeuds visités
+     */
+    private void witnessSearch(int sourceId, int excludedNodeId, double maxCost, int settledLimit) {
+        SearchState state = witnessState;
+        state.begin();
+        NodeQueue queue = state.queue();
+        state.update(sourceId, 0, -1);
+        queue.push(sourceId, 0);
+
+        currentMark += 1;
+        int remainingTargets = 0;
+        for (int j = 0; j < outCounts[excludedNodeId]; j++) {
+            int targetId = arcTargets[outArcs[excludedNodeId][j]];
+            if (targetId != sourceId && targetMarks[targetId] != currentMark) {
+                targetMarks[targetId] = currentMark;
+                remainingTargets += 1;
+            }
+        }
+
+        int settled = 0;
+        while (!queue.isEmpty() && remainingTargets > 0 && settled < settledLimit && queue.minKey() <= maxCost) {
+            int nodeId = queue.pop();
+            if (state.isSettled(nodeId)) continue;
+            if (targetMarks[nodeId] == currentMark) remainingTargets -= 1;
+            double distance = state.distance(nodeId);
+            for (int i = 0; i < outCounts[nodeId]; i++) {
+                int arc = outArcs[nodeId][i];
+                int targetId = arcTargets[arc];
+                if (targetId == excludedNodeId || state.isSettled(targetId)) continue;
+                double d = distance + arcCosts[arc];
+                if (d < state.distance(targetId)) {
+                    state.update(targetId, d, arc);
+                    queue.push(targetId, (float) d);
+                }
+            }
+            state.settle(nodeId);
+            settled += 1;
+        }
+    }
+
+    /**
+     * Méthode auxiliaire ajoutant un raccourci entre les deux noeuds donnés
+     * @param sourceId identité du noeud de départ du raccourci
+     * @param targetId identité du noeud d'arrivée du raccourci
+     * @param cost coût du raccourci
+     * @param firstArc premier arc remplacé par le raccourci
+     * @param secondArc second arc remplacé par le raccourci
+     */
+    private void addShortcut(int sourceId, int targetId, double cost, int firstArc, int secondArc) {
+        if (arcCount == arcSources.length) {
+            int capacity = arcCount + arcCount / 2;
+            arcSources = Arrays.copyOf(arcSources, capacity);
+            arcTargets = Arrays.copyOf(arcTargets, capacity);
+            arcCosts = Arrays.copyOf(arcCosts, capacity);
+        }
+        int shortcutIndex = arcCount - edgeCount;
+        if (2 * shortcutIndex + 1 >= shortcutChildren.length) {
+            shortcutChildren = Arrays.copyOf(shortcutChildren, 2 * shortcutChildren.length + 2);
+        }
+        arcSources[arcCount] = sourceId;
+        arcTargets[arcCount] = targetId;
+        arcCosts[arcCount] = cost;
+        shortcutChildren[2 * shortcutIndex] = firstArc;
+        shortcutChildren[2 * shortcutIndex + 1] = secondArc;
+        addOutArc(sourceId, arcCount);
+        addInArc(targetId, arcCount);
+        arcCount += 1;
+    }
+
+    /**
+     * Méthode auxiliaire ajoutant l'arc donné aux arcs sortants du noeud donné
+     * @param nodeId identité du noeud
+     * @param arc identité de l'arc
+     */
+    private void addOutArc(int nodeId, int arc) {
+        if (outCounts[nodeId] == outArcs[nodeId].length) {
+            outArcs[nodeId] = Arrays.copyOf(outArcs[nodeId], 2 * outCounts[nodeId]);
+        }
+        outArcs[nodeId][outCounts[nodeId]++] = arc;
+    }
+
+    /**
+     * Méthode auxiliaire ajoutant l'arc donné aux arcs entrants du noeud donné
+     * @param nodeId identité du noeud
+     * @param arc identité de l'arc
+     */
+    private void addInArc(int nodeId, int arc) {
+        if (inCounts[nodeId] == inArcs[nodeId].length) {
+            inArcs[nodeId] = Arrays.copyOf(inArcs[nodeId], 2 * inCounts[nodeId]);
+        }
+        inArcs[nodeId][inCounts[nodeId]++] = arc;
+    }
+
+    /**
+     * Méthode auxiliaire retirant l'arc donné de la liste d'arcs donnée, sans en préserver l'ordre
+     * @param arcs liste d'arcs du noeud
+     * @param counts nombre d'arcs de chaque noeud
+     * @param nodeId identité du noeud
+     * @param arc identité de l'arc à retirer
+     */
+    private static void removeArc(int[] arcs, int[] counts, int nodeId, int arc) {
+        for (int i = 0; i < counts[nodeId]; i++) {
+            if (arcs[i] == arc) {
+                arcs[i] = arcs[--counts[nodeId]];
+                return;
+            }
+        }
+    }
+}
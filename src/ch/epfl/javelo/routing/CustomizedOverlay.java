@@ -0,0 +1,280 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Classe CustomizedOverlay, graphe de recouvrement d'une partition multiniveau adapté à une fonction de coût
+ * ("customizable route planning"). Pour chaque cellule de chaque niveau, le coût des meilleurs itinéraires
+ * restant dans la cellule entre chaque paire de ses noeuds frontière est précalculé (clique de la cellule).
+ * Ce calcul, appelé personnalisation, ne dépend que de la partition et de la fonction de coût; il est rapide
+ * et parallèle, car les cellules d'un même niveau sont indépendantes et chaque niveau réutilise les cliques du
+ * niveau inférieur. Changer de fonction de coût ne nécessite donc pas de recalculer la partition.
+ * <p>
+ * Une recherche d'itinéraire n'explore le graphe d'origine que dans les cellules feuilles des noeuds de départ et
+ * d'arrivée; ailleurs, elle emprunte les cliques de la plus grande cellule ne contenant aucun de ces noeuds.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class CustomizedOverlay {
+    private final Graph graph;
+    private final MultilevelPartition partition;
+    private final CostFunction costFunction;
+    /**
+     * Pour chaque niveau (l'index 0 étant inutilisé), matrices des cliques des cellules, ligne par ligne
+     */
+    private final float[][] cliques;
+    /**
+     * Pour chaque niveau, index de la matrice de la clique de chaque cellule
+     */
+    private final int[][] cliqueOffsets;
+    private final ThreadLocal<SearchState> searchStates;
+
+    /**
+     * Constructeur privé, les instances étant obtenues par la méthode customize
+     * @param graph graphe
+     * @param partition partition du graphe
+     * @param costFunction fonction de coût des arêtes
+     */
+    private CustomizedOverlay(Graph graph, MultilevelPartition partition, CostFunction costFunction) {
+        this.graph = graph;
+        this.partition = partition;
+        this.costFunction = costFunction;
+        int levelCount = partition.levelCount();
+        cliques = new float[levelCount + 1][];
+        cliqueOffsets = new int[levelCount + 1][];
+        for (int level = 1; level <= levelCount; level++) {
+            int[] offsets = new int[partition.cellCount(level)];
+            long size = 0;
+            for (int cell = 0; cell < offsets.length; cell++) {
+                offsets[cell] = (int) size;
+                size += (long) partition.boundaryNodeCount(level, cell) * partition.boundaryNodeCount(level, cell);
+            }
+            Preconditions.checkArgument(size <= Integer.MAX_VALUE);
+            cliqueOffsets[level] = offsets;
+            cliques[level] = new float[(int) size];
+        }
+        searchStates = ThreadLocal.withInitial(
+                () -> new SearchState(graph.nodeCount(), RouteComputer.QueueType.INDEXED_HEAP));
+    }
+
+    /**
+     * Adapte la partition donnée à la fonction de coût donnée, en calculant les cliques de toutes ses cellules,
+     * niveau par niveau
+     * @param graph graphe partitionné
+     * @param partition partition du graphe
+     * @param costFunction fonction de coût des arêtes
+     * @return le graphe de recouvrement de la partition pour la fonction de coût
+     */
+    public static CustomizedOverlay customize(Graph graph, MultilevelPartition partition,
+                                              CostFunction costFunction) {
+        CustomizedOverlay overlay = new CustomizedOverlay(graph, partition, costFunction);
+        for (int level = 1; level <= partition.levelCount(); level++) {
+            int cellLevel = level;
+            IntStream.range(0, partition.cellCount(level))
+                    .parallel()
+                    .forEach(cell -> overlay.customizeCell(cellLevel, cell));
+        }
+        return overlay;
+    }
+
+    /**
+     * Retourne le meilleur itinéraire entre les deux noeuds donnés, au moyen d'une recherche de Dijkstra dans le
+     * graphe de recouvrement, dont les cliques sont ensuite remplacées par les arêtes qu'elles représentent
+     * @param startNodeId identité du premier noeud de l'itinéraire
+     * @param endNodeId identité du dernier noeud de l'itinéraire
+     * @return le meilleur itinéraire, ou null s'il n'en existe aucun
+     * @throws IllegalArgumentException si les deux noeuds sont identiques
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        SearchState state = searchStates.get();
+        state.begin();
+        NodeQueue queue = state.queue();
+        state.update(startNodeId, 0, -1);
+        queue.push(startNodeId, 0);
+
+        while (!queue.isEmpty()) {
+            int nodeId = queue.pop();
+            if (state.isSettled(nodeId)) continue;
+            if (nodeId == endNodeId) {
+                int[] path = pathTo(state, startNodeId, endNodeId);
+                List<Edge> edges = new ArrayList<>();
+                for (int i = 0; i + 1 < path.length; i++) {
+                    addEdges(state, path[i], path[i + 1], queryLevel(path[i], startNodeId, endNodeId), edges);
+                }
+                return new SingleRoute(edges);
+            }
+            relaxArcs(state, nodeId, queryLevel(nodeId, startNodeId, endNodeId), 0, 0);
+            state.settle(nodeId);
+        }
+        return null;
+    }
+
+    /**
+     * Méthode auxiliaire calculant la clique de la cellule donnée, au moyen d'une recherche depuis chacun de ses
+     * noeuds frontière, limitée à la cellule et n'empruntant que les arcs du niveau inférieur
+     * @param level niveau de la cellule
+     * @param cell index de la cellule
+     */
+    private void customizeCell(int level, int cell) {
+        SearchState state = searchStates.get();
+        int boundaryCount = partition.boundaryNodeCount(level, cell);
+        int offset = cliqueOffsets[level][cell];
+        for (int i = 0; i < boundaryCount; i++) {
+            search(state, partition.boundaryNodeId(level, cell, i), -1, level - 1, level, cell);
+            for (int j = 0; j < boundaryCount; j++) {
+                cliques[level][offset + i * boundaryCount + j] =
+                        (float) state.distance(partition.boundaryNodeId(level, cell, j));
+            }
+        }
+    }
+
+    /**
+     * Méthode auxiliaire effectuant une recherche de Dijkstra limitée à une cellule
+     * @param state état de recherche réutilisable
+     * @param startNodeId identité du noeud de départ
+     * @param endNodeId identité du noeud auquel la recherche s'arrête, ou -1 pour explorer toute la cellule
+     * @param arcLevel niveau des arcs empruntés (0 pour les arêtes du graphe)
+     * @param cellLevel niveau de la cellule à laquelle la recherche est limitée
+     * @param cell index de la cellule à laquelle la recherche est limitée
+     */
+    private void search(SearchState state, int startNodeId, int endNodeId, int arcLevel, int cellLevel,
+                        int cell) {
+        state.begin();
+        NodeQueue queue = state.queue();
+        state.update(startNodeId, 0, -1);
+        queue.push(startNodeId, 0);
+        while (!queue.isEmpty()) {
+            int nodeId = queue.pop();
+            if (state.isSettled(nodeId)) continue;
+            if (nodeId == endNodeId) return;
+            relaxArcs(state, nodeId, arcLevel, cellLevel, cell);
+            state.settle(nodeId);
+        }
+    }
+
+    /**
+     * Méthode auxiliaire relâchant les arcs du niveau donné sortant du noeud donné: au niveau 0, toutes les
+     * arêtes sortantes du noeud; aux niveaux supérieurs, les arêtes menant à une autre cellule de ce niveau et la
+     * clique de la cellule du noeud, qui doit en être un noeud frontière
+     * @param state état de recherche
+     * @param nodeId identité du noeud
+     * @param level niveau des arcs
+     * @param cellLevel niveau de la cellule à laquelle la recherche est limitée, ou 0 si elle ne l'est pas
+     * @param cell index de la cellule à laquelle la recherche est limitée
+     */
+    private void relaxArcs(SearchState state, int nodeId, int level, int cellLevel, int cell) {
+        double distance = state.distance(nodeId);
+        for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+            int edgeId = graph.nodeOutEdgeId(nodeId, i);
+            int targetNodeId = graph.edgeTargetNodeId(edgeId);
+            if (level > 0 && partition.cell(level, targetNodeId) == partition.cell(level, nodeId)) continue;
+            if (cellLevel > 0 && partition.cell(cellLevel, targetNodeId) != cell) continue;
+            relax(state, nodeId, targetNodeId,
+                    distance + graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId));
+        }
+        if (level == 0) return;
+
+        int nodeCell = partition.cell(level, nodeId);
+        int index = partition.boundaryIndex(level, nodeId);
+        assert index >= 0;
+        int boundaryCount = partition.boundaryNodeCount(level, nodeCell);
+        int offset = cliqueOffsets[level][nodeCell] + index * boundaryCount;
+        for (int j = 0; j < boundaryCount; j++) {
+            float cost = cliques[level][offset + j];
+            if (j == index || cost == Float.POSITIVE_INFINITY) continue;
+            relax(state, nodeId, partition.boundaryNodeId(level, nodeCell, j), distance + cost);
+        }
+    }
+
+    /**
+     * Méthode auxiliaire mettant à jour le noeud d'arrivée d'un arc si ce dernier l'atteint à moindre coût
+     * @param state état de recherche
+     * @param nodeId identité du noeud de départ de l'arc
+     * @param targetNodeId identité du noeud d'arrivée de l'arc
+     * @param distance coût du noeud d'arrivée en passant par l'arc
+     */
+    private static void relax(SearchState state, int nodeId, int targetNodeId, double distance) {
+        if (state.isSettled(targetNodeId) || distance >= state.distance(targetNodeId)) return;
+        state.update(targetNodeId, distance, nodeId);
+        state.queue().push(targetNodeId, (float) distance);
+    }
+
+    /**
+     * Méthode auxiliaire retournant le niveau des arcs à emprunter depuis le noeud donné lors de la recherche
+     * d'un itinéraire, c.-à-d. le plus haut niveau auquel la cellule du noeud ne contient ni le noeud de départ ni
+     * le noeud d'arrivée, ou 0 s'il n'y en a aucun
+     * @param nodeId identité du noeud
+     * @param startNodeId identité du noeud de départ
+     * @param endNodeId identité du noeud d'arrivée
+     * @return le niveau des arcs sortant du noeud
+     */
+    private int queryLevel(int nodeId, int startNodeId, int endNodeId) {
+        for (int level = partition.levelCount(); level > 0; level--) {
+            int cell = partition.cell(level, nodeId);
+            if (cell != partition.cell(level, startNodeId) && cell != partition.cell(level, endNodeId)) {
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Méthode auxiliaire retournant les noeuds du chemin trouvé par une recherche, du départ à l'arrivée
+     * @param state état de la recherche
+     * @param startNodeId identité du noeud de départ
+     * @param endNodeId identité du noeud d'arrivée, qui doit avoir été atteint
+     * @return les identités des noeuds du chemin
+     */
+    private static int[] pathTo(SearchState state, int startNodeId, int endNodeId) {
+        int[] path = new int[8];
+        int length = 0;
+        for (int nodeId = endNodeId; nodeId != startNodeId; nodeId = state.predecessor(nodeId)) {
+            if (length == path.length) path = Arrays.copyOf(path, 2 * length);
+            path[length++] = nodeId;
+        }
+        if (length == path.length) path = Arrays.copyOf(path, length + 1);
+        path[length++] = startNodeId;
+        int[] reversed = new int[length];
+        for (int i = 0; i < length; i++) reversed[i] = path[length - 1 - i];
+        return reversed;
+    }
+
+    /**
+     * Méthode auxiliaire ajoutant à la liste donnée les arêtes du graphe représentées par un arc du niveau donné.
+     * Un arc de clique est remplacé par le meilleur chemin correspondant dans sa cellule, obtenu par une recherche
+     * limitée à celle-ci, dont les arcs sont à leur tour remplacés récursivement.
+     * @param state état de recherche réutilisable
+     * @param nodeId identité du noeud de départ de l'arc
+     * @param targetNodeId identité du noeud d'arrivée de l'arc
+     * @param level niveau de l'arc
+     * @param edges liste à laquelle ajouter les arêtes
+     */
+    private void addEdges(SearchState state, int nodeId, int targetNodeId, int level, List<Edge> edges) {
+        if (level == 0 || partition.cell(level, nodeId) != partition.cell(level, targetNodeId)) {
+            int bestEdgeId = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                if (graph.edgeTargetNodeId(edgeId) != targetNodeId) continue;
+                double cost = graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId);
+                if (bestEdgeId == -1 || cost < bestCost) {
+                    bestEdgeId = edgeId;
+                    bestCost = cost;
+                }
+            }
+            edges.add(Edge.of(graph, bestEdgeId, nodeId, targetNodeId));
+            return;
+        }
+        search(state, nodeId, targetNodeId, level - 1, level, partition.cell(level, nodeId));
+        int[] path = pathTo(state, nodeId, targetNodeId);
+        for (int i = 0; i + 1 < path.length; i++) addEdges(state, path[i], path[i + 1], level - 1, edges);
+    }
+}
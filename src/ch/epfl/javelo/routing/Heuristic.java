@@ -0,0 +1,32 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Interface Heuristic, estimation du coût d'un itinéraire utilisée pour guider la recherche A*
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public interface Heuristic {
+
+    /**
+     * Retourne une borne inférieure du coût du meilleur itinéraire allant du noeud d'identité fromNodeId au noeud
+     * d'identité toNodeId. Pour que la recherche reste optimale, cette borne doit être cohérente, c.-à-d. ne
+     * jamais diminuer de plus que le coût d'une arête lorsqu'on emprunte cette arête. Elle vaut l'infini positif
+     * s'il est certain qu'aucun itinéraire n'existe.
+     * @param fromNodeId identité du noeud de départ
+     * @param toNodeId identité du noeud d'arrivée
+     * @return une borne inférieure du coût de l'itinéraire
+     */
+    double lowerBound(int fromNodeId, int toNodeId);
+
+    /**
+     * Retourne l'heuristique dont la borne est la plus grande des bornes de cette heuristique et de celle donnée,
+     * qui reste cohérente si les deux le sont
+     * @param that heuristique à combiner avec celle-ci
+     * @return la combinaison des deux heuristiques
+     */
+    default Heuristic max(Heuristic that) {
+        return (fromNodeId, toNodeId) ->
+                Math.max(lowerBound(fromNodeId, toNodeId), that.lowerBound(fromNodeId, toNodeId));
+    }
+}
@@ -0,0 +1,132 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+
+/**
+ * Classe IndexedNodeHeap, tas binaire indexé de noeuds dont les identités et les clés sont stockées dans des
+ * tableaux primitifs parallèles. Chaque noeud n'apparaît qu'une fois dans le tas, et sa clé peut être diminuée
+ * sans aucune allocation.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class IndexedNodeHeap implements NodeQueue {
+    /**
+     * Valeur de la position d'un noeud qui ne se trouve pas dans le tas
+     */
+    private static final int ABSENT = -1;
+    /**
+     * Capacité initiale des tableaux du tas
+     */
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private final int[] positions;
+    private int[] nodes;
+    private float[] keys;
+    private int size;
+
+    /**
+     * Constructeur public
+     * @param nodeCount nombre de noeuds du graphe, les identités des noeuds ajoutés devant être inférieures
+     */
+    public IndexedNodeHeap(int nodeCount) {
+        positions = new int[nodeCount];
+        Arrays.fill(positions, ABSENT);
+        int capacity = Math.max(1, Math.min(nodeCount, INITIAL_CAPACITY));
+        nodes = new int[capacity];
+        keys = new float[capacity];
+    }
+
+    @Override
+    public void push(int nodeId, float key) {
+        int position = positions[nodeId];
+        if (position == ABSENT) {
+            if (size == nodes.length) {
+                int capacity = Math.min(positions.length, 2 * size);
+                nodes = Arrays.copyOf(nodes, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+            }
+            siftUp(size++, nodeId, key);
+        } else if (key < keys[position]) {
+            siftUp(position, nodeId, key);
+        }
+    }
+
+    @Override
+    public int pop() {
+        int minNodeId = nodes[0];
+        positions[minNodeId] = ABSENT;
+        size -= 1;
+        if (size > 0) {
+            siftDown(nodes[size], keys[size]);
+        }
+        return minNodeId;
+    }
+
+    @Override
+    public float minKey() {
+        return size == 0 ? Float.POSITIVE_INFINITY : keys[0];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[nodes[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    /**
+     * Fait remonter le noeud donné depuis la position donnée jusqu'à ce que son parent ait une clé inférieure
+     * ou égale à la sienne
+     * @param position position de départ (libre) du noeud
+     * @param nodeId identité du noeud
+     * @param key clé du noeud
+     */
+    private void siftUp(int position, int nodeId, float key) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            place(position, nodes[parent], keys[parent]);
+            position = parent;
+        }
+        place(position, nodeId, key);
+    }
+
+    /**
+     * Fait descendre le noeud donné depuis la racine jusqu'à ce que ses enfants aient des clés supérieures
+     * ou égales à la sienne
+     * @param nodeId identité du noeud
+     * @param key clé du noeud
+     */
+    private void siftDown(int nodeId, float key) {
+        int position = 0;
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && keys[right] < keys[child]) child = right;
+            if (key <= keys[child]) break;
+            place(position, nodes[child], keys[child]);
+            position = child;
+        }
+        place(position, nodeId, key);
+    }
+
+    /**
+     * Place le noeud donné à la position donnée du tas
+     * @param position position dans le tas
+     * @param nodeId identité du noeud
+     * @param key clé du noeud
+     */
+    private void place(int position, int nodeId, float key) {
+        nodes[position] = nodeId;
+        keys[position] = key;
+        positions[nodeId] = position;
+    }
+}
@@ -0,0 +1,109 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Classe Isochrone, ensemble des noeuds et arêtes atteignables depuis un noeud de départ sans dépasser un budget
+ * donné (de coût ou de longueur). Les noeuds et arêtes sont stockés dans des tableaux primitifs, les noeuds étant
+ * triés par budget consommé croissant.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class Isochrone {
+    private final int startNodeId;
+    private final double budget;
+    private final int[] nodeIds;
+    private final double[] nodeCosts;
+    private final int[] edgeIds;
+    private final List<PointCh> boundary;
+
+    /**
+     * Constructeur de l'isochrone, qui ne copie pas les tableaux donnés
+     * @param startNodeId identité du noeud de départ
+     * @param budget budget de la recherche
+     * @param nodeIds identités des noeuds atteints, par budget consommé croissant
+     * @param nodeCosts budget consommé pour atteindre chaque noeud
+     * @param edgeIds identités des arêtes entièrement parcourues sans dépasser le budget
+     * @param boundary sommets du polygone englobant les noeuds atteints
+     */
+    Isochrone(int startNodeId, double budget, int[] nodeIds, double[] nodeCosts, int[] edgeIds,
+              List<PointCh> boundary) {
+        this.startNodeId = startNodeId;
+        this.budget = budget;
+        this.nodeIds = nodeIds;
+        this.nodeCosts = nodeCosts;
+        this.edgeIds = edgeIds;
+        this.boundary = List.copyOf(boundary);
+    }
+
+    /**
+     * Retourne l'identité du noeud de départ
+     * @return l'identité du noeud de départ
+     */
+    public int startNodeId() {
+        return startNodeId;
+    }
+
+    /**
+     * Retourne le budget de la recherche
+     * @return le budget de la recherche
+     */
+    public double budget() {
+        return budget;
+    }
+
+    /**
+     * Retourne le nombre de noeuds atteints
+     * @return le nombre de noeuds atteints
+     */
+    public int nodeCount() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Retourne l'identité du noeud atteint d'index donné
+     * @param index index du noeud, les noeuds étant triés par budget consommé croissant
+     * @return l'identité du noeud
+     */
+    public int nodeId(int index) {
+        return nodeIds[Objects.checkIndex(index, nodeIds.length)];
+    }
+
+    /**
+     * Retourne le budget consommé pour atteindre le noeud d'index donné
+     * @param index index du noeud
+     * @return le budget consommé
+     */
+    public double nodeCost(int index) {
+        return nodeCosts[Objects.checkIndex(index, nodeCosts.length)];
+    }
+
+    /**
+     * Retourne le nombre d'arêtes entièrement parcourues sans dépasser le budget
+     * @return le nombre d'arêtes
+     */
+    public int edgeCount() {
+        return edgeIds.length;
+    }
+
+    /**
+     * Retourne l'identité de l'arête d'index donné
+     * @param index index de l'arête
+     * @return l'identité de l'arête
+     */
+    public int edgeId(int index) {
+        return edgeIds[Objects.checkIndex(index, edgeIds.length)];
+    }
+
+    /**
+     * Retourne les sommets, dans le sens trigonométrique, de l'enveloppe convexe des noeuds atteints
+     * @return le polygone englobant les noeuds atteints
+     */
+    public List<PointCh> boundary() {
+        return boundary;
+    }
+}
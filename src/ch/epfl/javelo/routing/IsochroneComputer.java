@@ -0,0 +1,175 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Classe IsochroneComputer, calculateur des isochrones d'un graphe, au moyen d'une recherche de Dijkstra arrêtée
+ * dès que le budget est épuisé. Les états de recherche sont réutilisés d'un calcul à l'autre (un par fil
+ * d'exécution), de sorte que plusieurs isochrones peuvent être calculées en parallèle.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class IsochroneComputer {
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final ThreadLocal<SearchState> searchStates;
+
+    /**
+     * Grandeur limitée par le budget d'une isochrone
+     */
+    public enum Metric {
+        /**
+         * Coût des itinéraires selon la fonction de coût
+         */
+        COST,
+        /**
+         * Longueur, en mètres, des itinéraires les plus courts n'empruntant que des arêtes de coût fini
+         */
+        LENGTH
+    }
+
+    /**
+     * Construit un calculateur d'isochrones pour le graphe et la fonction de coût donnés
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     */
+    public IsochroneComputer(Graph graph, CostFunction costFunction) {
+        this.graph = Objects.requireNonNull(graph);
+        this.costFunction = Objects.requireNonNull(costFunction);
+        this.searchStates = ThreadLocal.withInitial(
+                () -> new SearchState(graph.nodeCount(), RouteComputer.QueueType.INDEXED_HEAP));
+    }
+
+    /**
+     * Calcule l'isochrone du noeud de départ donné
+     * @param startNodeId identité du noeud de départ
+     * @param budget budget maximal, en unités de coût ou en mètres selon la grandeur
+     * @param metric grandeur limitée par le budget
+     * @return l'isochrone du noeud
+     * @throws IllegalArgumentException si le budget est négatif
+     */
+    public Isochrone isochrone(int startNodeId, double budget, Metric metric) {
+        Preconditions.checkArgument(budget >= 0);
+        SearchState state = searchStates.get();
+        state.begin();
+        NodeQueue queue = state.queue();
+        state.update(startNodeId, 0, -1);
+        queue.push(startNodeId, 0);
+
+        int[] nodeIds = new int[64];
+        double[] nodeCosts = new double[64];
+        int[] edgeIds = new int[64];
+        int nodeCount = 0, edgeCount = 0;
+        while (!queue.isEmpty() && queue.minKey() <= budget) {
+            int nodeId = queue.pop();
+            if (state.isSettled(nodeId)) continue;
+            double distance = state.distance(nodeId);
+            if (distance > budget) break;
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                double costFactor = costFunction.costFactor(nodeId, edgeId);
+                if (costFactor == Double.POSITIVE_INFINITY) continue;
+                double d = distance + graph.edgeLength(edgeId) * (metric == Metric.COST ? costFactor : 1);
+                if (d > budget) continue;
+                if (edgeCount == edgeIds.length) edgeIds = Arrays.copyOf(edgeIds, 2 * edgeCount);
+                edgeIds[edgeCount++] = edgeId;
+
+                int targetNodeId = graph.edgeTargetNodeId(edgeId);
+                if (!state.isSettled(targetNodeId) && d < state.distance(targetNodeId)) {
+                    state.update(targetNodeId, d, nodeId);
+                    queue.push(targetNodeId, (float) d);
+                }
+            }
+            state.settle(nodeId);
+            if (nodeCount == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, 2 * nodeCount);
+                nodeCosts = Arrays.copyOf(nodeCosts, 2 * nodeCount);
+            }
+            nodeIds[nodeCount] = nodeId;
+            nodeCosts[nodeCount++] = distance;
+        }
+
+        nodeIds = Arrays.copyOf(nodeIds, nodeCount);
+        return new Isochrone(startNodeId, budget, nodeIds, Arrays.copyOf(nodeCosts, nodeCount),
+                Arrays.copyOf(edgeIds, edgeCount), convexHull(nodeIds));
+    }
+
+    /**
+     * Calcule en parallèle les isochrones des noeuds de départ donnés
+     * @param startNodeIds identités des noeuds de départ
+     * @param budget budget maximal, en unités de coût ou en mètres selon la grandeur
+     * @param metric grandeur limitée par le budget
+     * @return l'isochrone de chaque noeud de départ, dans le même ordre
+     * @throws IllegalArgumentException si le budget est négatif
+     */
+    public List<Isochrone> isochrones(int[] startNodeIds, double budget, Metric metric) {
+        Preconditions.checkArgument(budget >= 0);
+        return IntStream.range(0, startNodeIds.length)
+                .parallel()
+                .mapToObj(i -> isochrone(startNodeIds[i], budget, metric))
+                .toList();
+    }
+
+    /**
+     * Méthode auxiliaire calculant l'enveloppe convexe des noeuds donnés au moyen de l'algorithme de la chaîne
+     * monotone d'Andrew. Les coordonnées sont lues sans créer de point, arrondies au seizième de mètre, comme dans
+     * les fichiers du graphe, et empaquetées dans des entiers longs afin d'être triées sans créer d'objet par
+     * noeud; seuls les sommets de l'enveloppe deviennent des points.
+     * @param nodeIds identités des noeuds
+     * @return les sommets de l'enveloppe convexe, dans le sens trigonométrique
+     */
+    private List<PointCh> convexHull(int[] nodeIds) {
+        long[] points = new long[nodeIds.length];
+        for (int i = 0; i < nodeIds.length; i++) {
+            points[i] = (Math.round(Math.scalb(graph.nodeE(nodeIds[i]), 4)) << 32)
+                    | Math.round(Math.scalb(graph.nodeN(nodeIds[i]), 4));
+        }
+        Arrays.sort(points);
+
+        long[] hull = new long[2 * points.length + 1];
+        int size = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (i > 0 && points[i] == points[i - 1]) continue;
+            while (size >= 2 && cross(hull[size - 2], hull[size - 1], points[i]) <= 0) size -= 1;
+            hull[size++] = points[i];
+        }
+        int lowerSize = size + 1;
+        for (int i = points.length - 2; i >= 0; i--) {
+            if (points[i] == points[i + 1]) continue;
+            while (size >= lowerSize && cross(hull[size - 2], hull[size - 1], points[i]) <= 0) size -= 1;
+            hull[size++] = points[i];
+        }
+        if (size > 1) size -= 1;
+
+        List<PointCh> boundary = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boundary.add(new PointCh(Math.scalb((double) (hull[i] >>> 32), -4),
+                    Math.scalb((double) (int) hull[i], -4)));
+        }
+        return boundary;
+    }
+
+    /**
+     * Méthode auxiliaire calculant le produit vectoriel des vecteurs ab et ac, positif ssi a, b et c tournent
+     * dans le sens trigonométrique
+     * @param a point a, empaqueté
+     * @param b point b, empaqueté
+     * @param c point c, empaqueté
+     * @return le produit vectoriel de ab et ac
+     */
+    private static long cross(long a, long b, long c) {
+        long ae = a >>> 32, an = (int) a;
+        long be = b >>> 32, bn = (int) b;
+        long ce = c >>> 32, cn = (int) c;
+        return (be - ae) * (cn - an) - (bn - an) * (ce - ae);
+    }
+}
@@ -0,0 +1,459 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphContainer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Classe Landmarks, heuristique ALT (A*, landmarks, inégalité triangulaire). Pour un petit nombre de noeuds
+ * repères L, le coût des meilleurs itinéraires de L vers chaque noeud et de chaque noeud vers L est précalculé;
+ * l'inégalité triangulaire donne alors une borne inférieure du coût entre deux noeuds quelconques, bien plus
+ * précise que la distance à vol d'oiseau lorsque le relief ou le réseau imposent des détours.
+ * <p>
+ * Les tables dépendent de la fonction de coût et sont sauvegardées dans le fichier landmarks-&lt;profil&gt;.bin,
+ * qui contient le nombre de repères, le nombre de noeuds, l'identité des repères puis, pour chaque repère, les
+ * coûts depuis le repère et les coûts vers le repère de chaque noeud (float, infini si le noeud n'est pas
+ * atteignable). Chaque table est projetée en mémoire lors du chargement. Leur calcul parcourant plusieurs fois
+ * tout le graphe, il est effectué à l'avance par le programme principal de cette classe.
+ * <p>
+ * Utilisation : {@code java ch.epfl.javelo.routing.Landmarks <répertoire du graphe> [nombre de repères]}
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class Landmarks implements Heuristic {
+    /**
+     * Nombre de repères calculés par défaut par le programme principal
+     */
+    private static final int DEFAULT_LANDMARK_COUNT = 16;
+    /**
+     * Nom du profil de la fonction de coût utilisée par le programme principal
+     */
+    private static final String PROFILE = "city-bike";
+    /**
+     * Taille de l'en-tête du fichier : nombre de repères et nombre de noeuds
+     */
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    /**
+     * Germe du générateur aléatoire choisissant les racines de la sélection, afin qu'elle soit reproductible
+     */
+    private static final long SEED = 2022;
+
+    private final int landmarkCount;
+    private final int nodeCount;
+    private final int[] landmarkIds;
+    private final FloatBuffer[] costs;
+
+    /**
+     * Méthode de sélection des repères
+     */
+    public enum Selection {
+        /**
+         * Chaque repère est le noeud le plus éloigné (en coût) des repères déjà choisis
+         */
+        FARTHEST,
+        /**
+         * Chaque repère est choisi dans la région de l'arbre des plus courts chemins d'une racine aléatoire où
+         * les repères déjà choisis donnent les bornes les moins précises ("avoid")
+         */
+        AVOID
+    }
+
+    /**
+     * Constructeur privé, les instances étant obtenues par les méthodes compute et loadFrom
+     * @param nodeCount nombre de noeuds du graphe
+     * @param landmarkIds identité du noeud de chaque repère
+     * @param costs pour chaque repère, la table des coûts depuis le repère puis celle des coûts vers le repère
+     * @throws IllegalArgumentException si le nombre de tables ou la taille de l'une d'entre elles ne correspond
+     * pas au nombre de repères ou de noeuds, ou si l'un des repères n'est pas un noeud du graphe
+     */
+    private Landmarks(int nodeCount, int[] landmarkIds, FloatBuffer[] costs) {
+        Preconditions.checkArgument(landmarkIds.length > 0 && costs.length == 2 * landmarkIds.length);
+        for (int landmarkId : landmarkIds) {
+            Preconditions.checkArgument(0 <= landmarkId && landmarkId < nodeCount);
+        }
+        for (FloatBuffer table : costs) {
+            Preconditions.checkArgument(table.capacity() == nodeCount);
+        }
+        this.landmarkCount = landmarkIds.length;
+        this.nodeCount = nodeCount;
+        this.landmarkIds = landmarkIds;
+        this.costs = costs;
+    }
+
+    /**
+     * Programme calculant les repères du graphe du répertoire donné en premier argument, pour la fonction de coût
+     * précalculée du profil "city-bike" (calculée et sauvegardée elle aussi si elle ne l'est pas encore), et les
+     * sauvegardant dans ce répertoire
+     * @param args répertoire du graphe, puis éventuellement le nombre de repères
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 1 || args.length == 2);
+        Path basePath = Path.of(args[0]);
+        int landmarkCount = args.length == 2 ? Integer.parseInt(args[1]) : DEFAULT_LANDMARK_COUNT;
+        Graph graph = Graph.loadFrom(basePath);
+        PrecomputedCostFunction costFunction;
+        try {
+            costFunction = PrecomputedCostFunction.loadFrom(basePath, PROFILE, graph);
+        } catch (NoSuchFileException e) {
+            costFunction = PrecomputedCostFunction.compute(graph, new CityBikeCF(graph));
+            costFunction.writeTo(basePath, PROFILE);
+        }
+        compute(graph, costFunction, landmarkCount, Selection.AVOID).writeTo(basePath, PROFILE);
+    }
+
+    /**
+     * Sélectionne le nombre donné de repères dans le graphe donné et calcule leurs tables de coûts
+     * @param graph graphe dans lequel choisir les repères
+     * @param costFunction fonction de coût des arêtes
+     * @param landmarkCount nombre de repères (au moins 1)
+     * @param selection méthode de sélection des repères
+     * @return les repères et leurs tables
+     * @throws IllegalArgumentException si le nombre de repères n'est pas strictement positif, ou si les tables
+     * seraient trop grandes pour être sauvegardées puis projetées en mémoire
+     */
+    public static Landmarks compute(Graph graph, CostFunction costFunction, int landmarkCount,
+                                    Selection selection) {
+        Preconditions.checkArgument(landmarkCount > 0);
+        int nodeCount = graph.nodeCount();
+        fileSize(landmarkCount, nodeCount);
+        ReverseAdjacency reverseAdjacency = ReverseAdjacency.of(graph);
+        SearchState state = new SearchState(nodeCount, RouteComputer.QueueType.INDEXED_HEAP);
+        Random random = new Random(SEED);
+
+        int[] landmarks = new int[landmarkCount];
+        float[][] forwardCosts = new float[landmarkCount][];
+        float[][] backwardCosts = new float[landmarkCount][];
+        for (int i = 0; i < landmarkCount; i++) {
+            int landmarkId = selection == Selection.AVOID && i > 0
+                    ? avoidLandmark(graph, costFunction, state, random, forwardCosts, backwardCosts, i)
+                    : farthestLandmark(graph, costFunction, state, random, landmarks, i);
+            landmarks[i] = landmarkId;
+            forwardCosts[i] = new float[nodeCount];
+            backwardCosts[i] = new float[nodeCount];
+            dijkstra(graph, costFunction, null, state, new int[]{landmarkId}, forwardCosts[i], null);
+            dijkstra(graph, costFunction, reverseAdjacency, state, new int[]{landmarkId}, backwardCosts[i], null);
+        }
+
+        FloatBuffer[] costs = new FloatBuffer[2 * landmarkCount];
+        for (int i = 0; i < landmarkCount; i++) {
+            costs[2 * i] = FloatBuffer.wrap(forwardCosts[i]);
+            costs[2 * i + 1] = FloatBuffer.wrap(backwardCosts[i]);
+        }
+        return new Landmarks(nodeCount, landmarks, costs);
+    }
+
+    /**
+     * Charge les repères du profil donné, sauvegardés dans le répertoire donné, en projetant leurs tables en
+     * mémoire
+     * @param basePath chemin d'accès du répertoire
+     * @param profile nom du profil de la fonction de coût, p.ex. "city-bike"
+     * @param graph graphe auquel s'appliquent les repères
+     * @return les repères et leurs tables
+     * @throws IOException en cas d'erreur d'entrée ou sortie, p.ex: si le fichier n'existe pas
+     * @throws IllegalArgumentException si le fichier ne correspond pas au nombre de noeuds du graphe, ou si l'un
+     * des repères n'est pas un noeud du graphe
+     */
+    public static Landmarks loadFrom(Path basePath, String profile, Graph graph) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(fileName(profile)))) {
+            int nodeCount = graph.nodeCount();
+            Preconditions.checkArgument(channel.size() >= HEADER_BYTES);
+            IntBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).asIntBuffer();
+            int landmarkCount = header.get(0);
+            Preconditions.checkArgument(landmarkCount > 0 && header.get(1) == nodeCount
+                    && channel.size() == fileSize(landmarkCount, nodeCount));
+
+            int[] landmarkIds = new int[landmarkCount];
+            channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) landmarkCount * Integer.BYTES)
+                    .asIntBuffer()
+                    .get(landmarkIds);
+            FloatBuffer[] costs = new FloatBuffer[2 * landmarkCount];
+            long tableBytes = (long) nodeCount * Float.BYTES;
+            long position = HEADER_BYTES + (long) landmarkCount * Integer.BYTES;
+            for (int i = 0; i < costs.length; i++) {
+                costs[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, tableBytes).asFloatBuffer();
+                position += tableBytes;
+            }
+            return new Landmarks(nodeCount, landmarkIds, costs);
+        }
+    }
+
+    /**
+     * Charge les repères du profil donné depuis la section du même nom du conteneur donné (voir GraphContainer),
+     * dont les tables sont des vues, sans copie
+     * @param container conteneur du graphe
+     * @param profile nom du profil de la fonction de coût, p.ex. "city-bike"
+     * @param graph graphe auquel s'appliquent les repères
+     * @return les repères et leurs tables
+     * @throws IllegalArgumentException si le conteneur ne possède pas la section du profil, si elle ne correspond
+     * pas au nombre de noeuds du graphe, ou si l'un des repères n'est pas un noeud du graphe
+     */
+    public static Landmarks loadFrom(GraphContainer container, String profile, Graph graph) {
+        ByteBuffer buffer = container.section(fileName(profile));
+        int nodeCount = graph.nodeCount();
+        Preconditions.checkArgument(buffer.capacity() >= HEADER_BYTES);
+        int landmarkCount = buffer.getInt(0);
+        Preconditions.checkArgument(landmarkCount > 0 && buffer.getInt(Integer.BYTES) == nodeCount
+                && buffer.capacity() == fileSize(landmarkCount, nodeCount));
+
+        // La section, d'au plus 2 Go, est de la taille attendue : aucune des positions ci-dessous ne déborde
+        int[] landmarkIds = new int[landmarkCount];
+        buffer.slice(HEADER_BYTES, landmarkCount * Integer.BYTES).asIntBuffer().get(landmarkIds);
+        FloatBuffer[] costs = new FloatBuffer[2 * landmarkCount];
+        int tableBytes = nodeCount * Float.BYTES;
+        int position = HEADER_BYTES + landmarkCount * Integer.BYTES;
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = buffer.slice(position, tableBytes).asFloatBuffer();
+            position += tableBytes;
+        }
+        return new Landmarks(nodeCount, landmarkIds, costs);
+    }
+
+    /**
+     * Sauvegarde les repères et leurs tables sous le nom du profil donné, dans le répertoire donné, à côté des
+     * fichiers du graphe
+     * @param basePath chemin d'accès du répertoire
+     * @param profile nom du profil de la fonction de coût
+     * @throws IOException en cas d'erreur d'entrée ou sortie
+     */
+    public void writeTo(Path basePath, String profile) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(fileName(profile)))))) {
+            s.writeInt(landmarkCount);
+            s.writeInt(nodeCount);
+            for (int landmarkId : landmarkIds) s.writeInt(landmarkId);
+            for (FloatBuffer table : costs) {
+                for (int nodeId = 0; nodeId < nodeCount; nodeId++) s.writeFloat(table.get(nodeId));
+            }
+        }
+    }
+
+    /**
+     * Retourne le nombre de repères
+     * @return le nombre de repères
+     */
+    public int landmarkCount() {
+        return landmarkCount;
+    }
+
+    /**
+     * Retourne l'identité du noeud du repère d'index donné
+     * @param index index du repère
+     * @return l'identité du noeud du repère
+     */
+    public int landmarkNodeId(int index) {
+        return landmarkIds[index];
+    }
+
+    @Override
+    public double lowerBound(int fromNodeId, int toNodeId) {
+        double bound = 0;
+        for (int i = 0; i < landmarkCount; i++) {
+            FloatBuffer forwardCosts = costs[2 * i];
+            FloatBuffer backwardCosts = costs[2 * i + 1];
+            bound = Math.max(bound, triangleBound(forwardCosts.get(toNodeId), forwardCosts.get(fromNodeId)));
+            bound = Math.max(bound, triangleBound(backwardCosts.get(fromNodeId), backwardCosts.get(toNodeId)));
+        }
+        return bound;
+    }
+
+    /**
+     * Méthode auxiliaire calculant la borne a - b donnée par l'inégalité triangulaire, où b peut être infini
+     * uniquement si a l'est aussi (aucune information n'est alors disponible). Les coûts étant arrondis au float
+     * le plus proche, chacun peut s'écarter de la valeur exacte d'un demi-ulp : la différence est donc calculée
+     * en double et diminuée de l'ulp de chaque coût, afin de rester une borne inférieure.
+     * @param a coût majorant
+     * @param b coût soustrait
+     * @return la borne a - b, diminuée de l'erreur d'arrondi, 0 si b est infini, ou l'infini si seul a l'est
+     */
+    private static double triangleBound(float a, float b) {
+        if (b == Float.POSITIVE_INFINITY) return 0;
+        if (a == Float.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+        return (double) a - b - (Math.ulp(a) + Math.ulp(b));
+    }
+
+    /**
+     * Méthode auxiliaire retournant la taille, en octets, du fichier des repères. Chaque table étant projetée en
+     * mémoire d'un seul tenant, sa taille ne peut dépasser Integer.MAX_VALUE octets.
+     * @param landmarkCount nombre de repères
+     * @param nodeCount nombre de noeuds
+     * @return la taille du fichier
+     * @throws IllegalArgumentException si une table, ou le fichier, est trop grand
+     */
+    private static long fileSize(int landmarkCount, int nodeCount) {
+        long tableBytes = Math.multiplyExact((long) nodeCount, Float.BYTES);
+        Preconditions.checkArgument(tableBytes <= Integer.MAX_VALUE);
+        try {
+            return Math.addExact(HEADER_BYTES + (long) landmarkCount * Integer.BYTES,
+                    Math.multiplyExact(2L * landmarkCount, tableBytes));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Retourne le nom du fichier des repères du profil donné, qui est aussi celui de sa section dans un conteneur
+     * (voir GraphContainer)
+     * @param profile nom du profil
+     * @return le nom du fichier
+     */
+    public static String fileName(String profile) {
+        return "landmarks-" + profile + ".bin";
+    }
+
+    /**
+     * Méthode auxiliaire choisissant comme repère le noeud le plus éloigné des repères déjà choisis, ou d'un noeud
+     * aléatoire s'il n'y en a encore aucun
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param state état de recherche réutilisable
+     * @param random générateur aléatoire
+     * @param landmarks repères déjà choisis
+     * @param count nombre de repères déjà choisis
+     * @return l'identité du noeud choisi
+     */
+    private static int farthestLandmark(Graph graph, CostFunction costFunction, SearchState state, Random random,
+                                        int[] landmarks, int count) {
+        int[] sources = count == 0
+                ? new int[]{random.nextInt(graph.nodeCount())}
+                : Arrays.copyOf(landmarks, count);
+        float[] distances = new float[graph.nodeCount()];
+        dijkstra(graph, costFunction, null, state, sources, distances, null);
+
+        int farthestId = sources[0];
+        for (int nodeId = 0; nodeId < distances.length; nodeId++) {
+            if (distances[nodeId] != Float.POSITIVE_INFINITY && distances[nodeId] > distances[farthestId]) {
+                farthestId = nodeId;
+            }
+        }
+        return farthestId;
+    }
+
+    /**
+     * Méthode auxiliaire choisissant un repère selon la méthode "avoid": dans l'arbre des plus courts chemins d'une
+     * racine aléatoire, chaque noeud est pondéré par l'imprécision de la borne actuelle de son coût depuis la
+     * racine; on descend ensuite depuis la racine vers le sous-arbre de plus grand poids ne contenant aucun repère,
+     * jusqu'à une feuille
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param state état de recherche réutilisable
+     * @param random générateur aléatoire
+     * @param forwardCosts coûts depuis les repères déjà choisis
+     * @param backwardCosts coûts vers les repères déjà choisis
+     * @param count nombre de repères déjà choisis
+     * @return l'identité du noeud choisi
+     */
+    private static int avoidLandmark(Graph graph, CostFunction costFunction, SearchState state, Random random,
+                                     float[][] forwardCosts, float[][] backwardCosts, int count) {
+        int nodeCount = graph.nodeCount();
+        int rootId = random.nextInt(nodeCount);
+        float[] distances = new float[nodeCount];
+        int[] settleOrder = new int[nodeCount];
+        int settledCount = dijkstra(graph, costFunction, null, state, new int[]{rootId}, distances, settleOrder);
+
+        boolean[] isLandmark = new boolean[nodeCount];
+        for (int i = 0; i < count; i++) {
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                if (forwardCosts[i][nodeId] == 0) isLandmark[nodeId] = true;
+            }
+        }
+
+        double[] sizes = new double[nodeCount];
+        boolean[] coversLandmark = new boolean[nodeCount];
+        int[] bestChildren = new int[nodeCount];
+        Arrays.fill(bestChildren, -1);
+        for (int k = settledCount - 1; k >= 0; k--) {
+            int nodeId = settleOrder[k];
+            double bound = 0;
+            for (int i = 0; i < count; i++) {
+                bound = Math.max(bound, triangleBound(forwardCosts[i][nodeId], forwardCosts[i][rootId]));
+                bound = Math.max(bound, triangleBound(backwardCosts[i][rootId], backwardCosts[i][nodeId]));
+            }
+            sizes[nodeId] += distances[nodeId] - bound;
+            if (isLandmark[nodeId]) coversLandmark[nodeId] = true;
+            if (coversLandmark[nodeId]) sizes[nodeId] = 0;
+            if (nodeId == rootId) continue;
+
+            int parentId = state.predecessor(nodeId);
+            coversLandmark[parentId] |= coversLandmark[nodeId];
+            sizes[parentId] += sizes[nodeId];
+            if (bestChildren[parentId] == -1 || sizes[nodeId] > sizes[bestChildren[parentId]]) {
+                bestChildren[parentId] = nodeId;
+            }
+        }
+
+        int nodeId = rootId;
+        while (bestChildren[nodeId] != -1 && sizes[bestChildren[nodeId]] > 0) {
+            nodeId = bestChildren[nodeId];
+        }
+        return nodeId;
+    }
+
+    /**
+     * Méthode auxiliaire calculant le coût des meilleurs itinéraires depuis les noeuds donnés vers tous les
+     * autres noeuds, ou depuis tous les noeuds vers les noeuds donnés si un index des arêtes entrantes est fourni.
+     * A la fin de la recherche, le prédécesseur de chaque noeud atteint dans l'état donné est son parent dans
+     * l'arbre des plus courts chemins.
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param reverseAdjacency index des arêtes entrantes pour une recherche arrière, ou null
+     * @param state état de recherche réutilisable
+     * @param sources noeuds de départ de la recherche
+     * @param distances tableau rempli par le coût de chaque noeud (infini s'il n'est pas atteignable)
+     * @param settleOrder tableau rempli par les noeuds dans l'ordre de leur visite, ou null
+     * @return le nombre de noeuds visités
+     */
+    private static int dijkstra(Graph graph, CostFunction costFunction, ReverseAdjacency reverseAdjacency,
+                                SearchState state, int[] sources, float[] distances, int[] settleOrder) {
+        state.begin();
+        NodeQueue queue = state.queue();
+        for (int sourceId : sources) {
+            state.update(sourceId, 0, sourceId);
+            queue.push(sourceId, 0);
+        }
+
+        int settledCount = 0;
+        while (!queue.isEmpty()) {
+            int nodeId = queue.pop();
+            if (state.isSettled(nodeId)) continue;
+            double distance = state.distance(nodeId);
+            boolean backward = reverseAdjacency != null;
+            int degree = backward ? reverseAdjacency.inDegree(nodeId) : graph.nodeOutDegree(nodeId);
+            for (int i = 0; i < degree; i++) {
+                int edgeId = backward ? reverseAdjacency.inEdgeId(nodeId, i) : graph.nodeOutEdgeId(nodeId, i);
+                int neighborId = backward
+                        ? reverseAdjacency.edgeSourceNodeId(edgeId)
+                        : graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(neighborId)) continue;
+                double d = distance + graph.edgeLength(edgeId) *
+                        costFunction.costFactor(backward ? neighborId : nodeId, edgeId);
+                if (d < state.distance(neighborId)) {
+                    state.update(neighborId, d, nodeId);
+                    queue.push(neighborId, (float) d);
+                }
+            }
+            state.settle(nodeId);
+            if (settleOrder != null) settleOrder[settledCount] = nodeId;
+            settledCount += 1;
+        }
+
+        for (int nodeId = 0; nodeId < distances.length; nodeId++) {
+            distances[nodeId] = (float) state.distance(nodeId);
+        }
+        return settledCount;
+    }
+}
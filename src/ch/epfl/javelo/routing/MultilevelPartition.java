@@ -0,0 +1,258 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Classe MultilevelPartition, partition hiérarchique des noeuds d'un graphe en cellules, indépendante de toute
+ * fonction de coût. Le graphe est coupé récursivement en deux moitiés de même taille, le long de la plus grande
+ * dimension de chaque partie; chaque noeud reçoit ainsi l'index de sa cellule feuille. Les niveaux 1 (le plus
+ * fin) à levelCount regroupent chacun 2^bitsPerLevel cellules du niveau inférieur, de sorte que la cellule de
+ * niveau k d'un noeud s'obtient en décalant l'index de sa cellule feuille.
+ * <p>
+ * Pour chaque niveau, la partition connaît aussi les noeuds frontière de chaque cellule, c.-à-d. les noeuds
+ * ayant une arête entrante ou sortante vers une autre cellule du même niveau. Seules les cellules feuilles sont
+ * sauvegardées dans le fichier partition.bin, les frontières étant recalculées au chargement.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class MultilevelPartition {
+    /**
+     * Nom du fichier contenant la partition
+     */
+    private static final String PARTITION_FILE = "partition.bin";
+    /**
+     * Nombre maximal de bits des index des cellules feuilles
+     */
+    private static final int MAX_LEAF_BITS = 24;
+
+    private final int levelCount;
+    private final int bitsPerLevel;
+    private final int[] leafCells;
+    /**
+     * Pour chaque niveau k (l'index 0 étant inutilisé), index du premier noeud frontière de chaque cellule
+     */
+    private final int[][] firstBoundaryNodes;
+    /**
+     * Pour chaque niveau, noeuds frontière des cellules, regroupés par cellule
+     */
+    private final int[][] boundaryNodes;
+    /**
+     * Pour chaque niveau, index de chaque noeud parmi les noeuds frontière de sa cellule, ou -1
+     */
+    private final int[][] boundaryIndices;
+
+    /**
+     * Constructeur privé, les instances étant obtenues par les méthodes build et loadFrom
+     * @param graph graphe partitionné
+     * @param levelCount nombre de niveaux
+     * @param bitsPerLevel nombre de bits de l'index des cellules ajoutés par chaque niveau
+     * @param leafCells cellule feuille de chaque noeud
+     */
+    private MultilevelPartition(Graph graph, int levelCount, int bitsPerLevel, int[] leafCells) {
+        Preconditions.checkArgument(levelCount > 0 && bitsPerLevel > 0
+                && levelCount * bitsPerLevel <= MAX_LEAF_BITS);
+        Preconditions.checkArgument(leafCells.length == graph.nodeCount());
+        this.levelCount = levelCount;
+        this.bitsPerLevel = bitsPerLevel;
+        this.leafCells = leafCells;
+
+        int nodeCount = graph.nodeCount();
+        firstBoundaryNodes = new int[levelCount + 1][];
+        boundaryNodes = new int[levelCount + 1][];
+        boundaryIndices = new int[levelCount + 1][];
+        for (int level = 1; level <= levelCount; level++) {
+            boolean[] isBoundary = new boolean[nodeCount];
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                    int targetNodeId = graph.edgeTargetNodeId(graph.nodeOutEdgeId(nodeId, i));
+                    if (cell(level, nodeId) != cell(level, targetNodeId)) {
+                        isBoundary[nodeId] = true;
+                        isBoundary[targetNodeId] = true;
+                    }
+                }
+            }
+
+            int[] firstNodes = new int[cellCount(level) + 1];
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                if (isBoundary[nodeId]) firstNodes[cell(level, nodeId) + 1] += 1;
+            }
+            Arrays.parallelPrefix(firstNodes, Integer::sum);
+            int[] nodes = new int[firstNodes[firstNodes.length - 1]];
+            int[] indices = new int[nodeCount];
+            int[] next = firstNodes.clone();
+            for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+                if (isBoundary[nodeId]) {
+                    int cell = cell(level, nodeId);
+                    indices[nodeId] = next[cell] - firstNodes[cell];
+                    nodes[next[cell]++] = nodeId;
+                } else {
+                    indices[nodeId] = -1;
+                }
+            }
+            firstBoundaryNodes[level] = firstNodes;
+            boundaryNodes[level] = nodes;
+            boundaryIndices[level] = indices;
+        }
+    }
+
+    /**
+     * Construit la partition du graphe donné par bissections géométriques récursives
+     * @param graph graphe à partitionner
+     * @param levelCount nombre de niveaux de la partition
+     * @param bitsPerLevel logarithme en base 2 du nombre de sous-cellules de chaque cellule
+     * @return la partition du graphe
+     * @throws IllegalArgumentException si l'un des paramètres n'est pas strictement positif, ou si le nombre
+     * total de cellules feuilles dépasse 2^24
+     */
+    public static MultilevelPartition build(Graph graph, int levelCount, int bitsPerLevel) {
+        Preconditions.checkArgument(levelCount > 0 && bitsPerLevel > 0
+                && levelCount * bitsPerLevel <= MAX_LEAF_BITS);
+        int nodeCount = graph.nodeCount();
+        long[] nodes = new long[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) nodes[nodeId] = nodeId;
+        int[] leafCells = new int[nodeCount];
+        bisect(graph, nodes, 0, nodeCount, levelCount * bitsPerLevel, 0, leafCells);
+        return new MultilevelPartition(graph, levelCount, bitsPerLevel, leafCells);
+    }
+
+    /**
+     * Charge la partition sauvegardée dans le répertoire donné
+     * @param basePath chemin d'accès du répertoire
+     * @param graph graphe partitionné
+     * @return la partition du graphe
+     * @throws IOException en cas d'erreur d'entrée ou sortie, p.ex: si le fichier n'existe pas
+     */
+    public static MultilevelPartition loadFrom(Path basePath, Graph graph) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(PARTITION_FILE))) {
+            IntBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+            int[] leafCells = new int[buffer.capacity() - 2];
+            buffer.get(2, leafCells);
+            return new MultilevelPartition(graph, buffer.get(0), buffer.get(1), leafCells);
+        }
+    }
+
+    /**
+     * Sauvegarde la partition dans le répertoire donné, à côté des fichiers du graphe
+     * @param basePath chemin d'accès du répertoire
+     * @throws IOException en cas d'erreur d'entrée ou sortie
+     */
+    public void writeTo(Path basePath) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(PARTITION_FILE))))) {
+            s.writeInt(levelCount);
+            s.writeInt(bitsPerLevel);
+            for (int leafCell : leafCells) s.writeInt(leafCell);
+        }
+    }
+
+    /**
+     * Retourne le nombre de niveaux de la partition
+     * @return le nombre de niveaux
+     */
+    public int levelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Retourne le nombre de cellules du niveau donné
+     * @param level niveau, entre 1 et levelCount
+     * @return le nombre de cellules du niveau
+     */
+    public int cellCount(int level) {
+        return 1 << (bitsPerLevel * (levelCount - level + 1));
+    }
+
+    /**
+     * Retourne l'index de la cellule du niveau donné contenant le noeud d'identité donnée
+     * @param level niveau, entre 1 et levelCount
+     * @param nodeId identité du noeud
+     * @return l'index de la cellule du noeud
+     */
+    public int cell(int level, int nodeId) {
+        return leafCells[nodeId] >>> (bitsPerLevel * (level - 1));
+    }
+
+    /**
+     * Retourne le nombre de noeuds frontière de la cellule donnée
+     * @param level niveau de la cellule
+     * @param cell index de la cellule
+     * @return le nombre de noeuds frontière de la cellule
+     */
+    public int boundaryNodeCount(int level, int cell) {
+        return firstBoundaryNodes[level][cell + 1] - firstBoundaryNodes[level][cell];
+    }
+
+    /**
+     * Retourne l'identité du noeud frontière d'index donné de la cellule donnée
+     * @param level niveau de la cellule
+     * @param cell index de la cellule
+     * @param index index du noeud parmi les noeuds frontière de la cellule
+     * @return l'identité du noeud frontière
+     */
+    public int boundaryNodeId(int level, int cell, int index) {
+        return boundaryNodes[level][firstBoundaryNodes[level][cell] + index];
+    }
+
+    /**
+     * Retourne l'index du noeud d'identité donnée parmi les noeuds frontière de sa cellule du niveau donné
+     * @param level niveau
+     * @param nodeId identité du noeud
+     * @return l'index du noeud parmi les noeuds frontière de sa cellule, ou -1 s'il n'en fait pas partie
+     */
+    public int boundaryIndex(int level, int nodeId) {
+        return boundaryIndices[level][nodeId];
+    }
+
+    /**
+     * Méthode auxiliaire coupant récursivement en deux moitiés les noeuds donnés, le long de la plus grande
+     * dimension de leur rectangle englobant. Les noeuds sont triés au moyen d'entiers longs dont les 32 bits de
+     * poids fort contiennent la coordonnée (en seizièmes de mètre) et les 32 bits de poids faible l'identité.
+     * @param graph graphe partitionné
+     * @param nodes tableau dont les 32 bits de poids faible des éléments contiennent les identités des noeuds
+     * @param from index du premier noeud de la partie (inclus)
+     * @param to index du dernier noeud de la partie (exclus)
+     * @param remainingBits nombre de bissections restantes
+     * @param prefix index de la cellule de la partie
+     * @param leafCells tableau rempli par la cellule feuille de chaque noeud
+     */
+    private static void bisect(Graph graph, long[] nodes, int from, int to, int remainingBits, int prefix,
+                               int[] leafCells) {
+        if (remainingBits == 0) {
+            for (int i = from; i < to; i++) leafCells[(int) nodes[i]] = prefix;
+            return;
+        }
+        double minE = Double.POSITIVE_INFINITY, maxE = Double.NEGATIVE_INFINITY;
+        double minN = Double.POSITIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            PointCh point = graph.nodePoint((int) nodes[i]);
+            minE = Math.min(minE, point.e());
+            maxE = Math.max(maxE, point.e());
+            minN = Math.min(minN, point.n());
+            maxN = Math.max(maxN, point.n());
+        }
+        boolean alongE = maxE - minE >= maxN - minN;
+        for (int i = from; i < to; i++) {
+            int nodeId = (int) nodes[i];
+            PointCh point = graph.nodePoint(nodeId);
+            long coordinate = (long) Math.scalb(alongE ? point.e() : point.n(), 4);
+            nodes[i] = (coordinate << 32) | nodeId;
+        }
+        Arrays.sort(nodes, from, to);
+
+        int middle = (from + to) >>> 1;
+        bisect(graph, nodes, from, middle, remainingBits - 1, prefix << 1, leafCells);
+        bisect(graph, nodes, middle, to, remainingBits - 1, (prefix << 1) | 1, leafCells);
+    }
+}
@@ -0,0 +1,41 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Interface NodeQueue, file de priorité de noeuds utilisée par la recherche A*
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+interface NodeQueue {
+
+    /**
+     * Ajoute le noeud d'identité donnée à la file avec la clé donnée, ou diminue sa clé s'il s'y trouve déjà
+     * avec une clé plus grande
+     * @param nodeId identité du noeud
+     * @param key clé (distance estimée) du noeud
+     */
+    void push(int nodeId, float key);
+
+    /**
+     * Retire de la file le noeud de plus petite clé et retourne son identité
+     * @return l'identité du noeud de plus petite clé
+     */
+    int pop();
+
+    /**
+     * Retourne la plus petite clé de la file, sans retirer le noeud correspondant
+     * @return la plus petite clé de la file, ou l'infini positif si la file est vide
+     */
+    float minKey();
+
+    /**
+     * Retourne vrai ssi la file ne contient aucun noeud
+     * @return vrai ssi la file est vide
+     */
+    boolean isEmpty();
+
+    /**
+     * Vide la file, afin qu'elle puisse être réutilisée pour une nouvelle recherche
+     */
+    void clear();
+}
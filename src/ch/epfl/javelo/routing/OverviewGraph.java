@@ -0,0 +1,426 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+
+import static ch.epfl.javelo.data.Attribute.*;
+
+/**
+ * Classe OverviewGraph, graphe grossier ne contenant que les routes principales et les itinéraires cyclables
+ * balisés du graphe, qui permet de calculer en quelques millisecondes un itinéraire approximatif, p.ex. pour
+ * afficher un aperçu de l'itinéraire pendant le déplacement d'un point de passage.
+ * <p>
+ * Un itinéraire approximatif est composé de trois parties: un accès depuis le départ vers les noeuds les plus
+ * proches du graphe grossier, un chemin dans le graphe grossier (recherche A* à vol d'oiseau) puis une sortie du
+ * graphe grossier vers l'arrivée. Toutes ses arêtes sont des arêtes du graphe complet, mais son coût peut être
+ * supérieur à celui du meilleur itinéraire.
+ * <p>
+ * Le graphe grossier partage les arêtes entrantes et les états de recherche du planificateur d'itinéraire dont il
+ * est construit; son calcul peut être limité (voir QueryOptions), afin de tenir dans le temps d'affichage d'une
+ * image.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class OverviewGraph {
+    /**
+     * Types de routes faisant partie du graphe grossier, ainsi que tout itinéraire cyclable non local
+     */
+    private static final AttributeSet MAJOR_WAYS = AttributeSet.of(
+            HIGHWAY_TRUNK, HIGHWAY_PRIMARY, HIGHWAY_SECONDARY, HIGHWAY_TERTIARY, HIGHWAY_CYCLEWAY,
+            ICN_YES, NCN_YES, RCN_YES);
+    /**
+     * Nombre de noeuds du graphe grossier servant de points d'accès (ou de sortie) depuis le départ (ou l'arrivée)
+     */
+    private static final int ACCESS_NODE_COUNT = 8;
+    /**
+     * Nombre maximal de noeuds visités par la recherche d'un point d'accès ou de sortie
+     */
+    private static final int MAX_ACCESS_SETTLED_COUNT = 4_096;
+
+    private final RouteComputer routeComputer;
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final ReverseAdjacency reverseAdjacency;
+    private final int[] overviewIds;
+    private final int[] nodeIds;
+    private final int[] firstArcs;
+    private final int[] arcEdgeIds;
+    private final int[] arcTargets;
+    private final float[] arcCosts;
+    private final ThreadLocal<SearchState> overviewStates;
+
+    /**
+     * Constructeur privé, qui ne copie pas les tableaux donnés
+     * @param routeComputer planificateur d'itinéraire dont le graphe grossier partage le graphe, la fonction de
+     *                      coût, les arêtes entrantes et les états de recherche
+     * @param overviewIds index de chaque noeud du graphe dans le graphe grossier, ou -1
+     * @param nodeIds identité dans le graphe complet de chaque noeud du graphe grossier
+     * @param firstArcs index du premier arc sortant de chaque noeud du graphe grossier, suivi du nombre d'arcs
+     * @param arcEdgeIds identité de l'arête du graphe complet correspondant à chaque arc
+     * @param arcTargets index dans le graphe grossier du noeud d'arrivée de chaque arc
+     * @param arcCosts coût de chaque arc
+     */
+    private OverviewGraph(RouteComputer routeComputer, int[] overviewIds, int[] nodeIds, int[] firstArcs,
+                          int[] arcEdgeIds, int[] arcTargets, float[] arcCosts) {
+        this.routeComputer = routeComputer;
+        this.graph = routeComputer.graph();
+        this.costFunction = routeComputer.costFunction();
+        this.reverseAdjacency = routeComputer.reverseAdjacency();
+        this.overviewIds = overviewIds;
+        this.nodeIds = nodeIds;
+        this.firstArcs = firstArcs;
+        this.arcEdgeIds = arcEdgeIds;
+        this.arcTargets = arcTargets;
+        this.arcCosts = arcCosts;
+        RouteComputer.QueueType queueType = RouteComputer.QueueType.INDEXED_HEAP;
+        this.overviewStates = ThreadLocal.withInitial(() -> new SearchState(nodeIds.length, queueType));
+    }
+
+    /**
+     * Construit le graphe grossier du graphe du planificateur donné, composé des arêtes praticables (selon sa
+     * fonction de coût) des routes principales et des itinéraires cyclables balisés
+     * @param routeComputer planificateur d'itinéraire
+     * @return le graphe grossier
+     */
+    public static OverviewGraph of(RouteComputer routeComputer) {
+        Graph graph = routeComputer.graph();
+        CostFunction costFunction = routeComputer.costFunction();
+        int nodeCount = graph.nodeCount();
+        // Seule la plus grande composante (faiblement) connexe des routes principales est conservée, afin que les
+        // points d'accès ne se trouvent jamais sur un tronçon isolé
+        int[] parents = new int[nodeCount];
+        Arrays.fill(parents, -1);
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                if (!isOverviewEdge(graph, costFunction, nodeId, edgeId)) continue;
+                int root = root(parents, nodeId);
+                int targetRoot = root(parents, graph.edgeTargetNodeId(edgeId));
+                if (root != targetRoot) parents[targetRoot] = root;
+            }
+        }
+        int[] componentSizes = new int[nodeCount];
+        int largestRoot = -1;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            if (parents[nodeId] == -1) continue;
+            int root = root(parents, nodeId);
+            componentSizes[root] += 1;
+            if (largestRoot == -1 || componentSizes[root] > componentSizes[largestRoot]) largestRoot = root;
+        }
+
+        int[] overviewIds = new int[nodeCount];
+        Arrays.fill(overviewIds, -1);
+        int[] outDegrees = new int[nodeCount];
+        int overviewNodeCount = 0;
+        int arcCount = 0;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            if (parents[nodeId] == -1 || root(parents, nodeId) != largestRoot) continue;
+            overviewIds[nodeId] = overviewNodeCount++;
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                if (isOverviewEdge(graph, costFunction, nodeId, graph.nodeOutEdgeId(nodeId, i))) {
+                    outDegrees[nodeId] += 1;
+                    arcCount += 1;
+                }
+            }
+        }
+        int[] nodeIds = new int[overviewNodeCount];
+        int[] firstArcs = new int[overviewNodeCount + 1];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            int overviewId = overviewIds[nodeId];
+            if (overviewId == -1) continue;
+            nodeIds[overviewId] = nodeId;
+            firstArcs[overviewId + 1] = firstArcs[overviewId] + outDegrees[nodeId];
+        }
+
+        int[] arcEdgeIds = new int[arcCount];
+        int[] arcTargets = new int[arcCount];
+        float[] arcCosts = new float[arcCount];
+        for (int overviewId = 0; overviewId < overviewNodeCount; overviewId++) {
+            int nodeId = nodeIds[overviewId];
+            int arc = firstArcs[overviewId];
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                if (!isOverviewEdge(graph, costFunction, nodeId, edgeId)) continue;
+                arcEdgeIds[arc] = edgeId;
+                arcTargets[arc] = overviewIds[graph.edgeTargetNodeId(edgeId)];
+                arcCosts[arc] = (float) (graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId));
+                arc += 1;
+            }
+        }
+        return new OverviewGraph(routeComputer, overviewIds, nodeIds, firstArcs, arcEdgeIds, arcTargets, arcCosts);
+    }
+
+    /**
+     * Retourne le nombre de noeuds du graphe grossier
+     * @return le nombre de noeuds du graphe grossier
+     */
+    public int nodeCount() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Retourne le nombre d'arêtes du graphe grossier
+     * @return le nombre d'arêtes du graphe grossier
+     */
+    public int edgeCount() {
+        return arcEdgeIds.length;
+    }
+
+    /**
+     * Retourne vrai ssi le noeud donné du graphe complet fait partie du graphe grossier
+     * @param nodeId identité du noeud
+     * @return vrai ssi le noeud fait partie du graphe grossier
+     */
+    public boolean contains(int nodeId) {
+        return overviewIds[nodeId] != -1;
+    }
+
+    /**
+     * Calcule un itinéraire approximatif entre les deux noeuds donnés, en passant autant que possible par le
+     * graphe grossier
+     * @param startNodeId identité du premier noeud de l'itinéraire
+     * @param endNodeId identité du dernier noeud de l'itinéraire
+     * @return un itinéraire entre les deux noeuds, ou null si aucun n'a été trouvé
+     * @throws IllegalArgumentException si les deux noeuds sont identiques
+     */
+    public Route approximateRouteBetween(int startNodeId, int endNodeId) {
+        return approximateRouteBetween(startNodeId, endNodeId, QueryOptions.UNLIMITED).route();
+    }
+
+    /**
+     * Calcule un itinéraire approximatif entre les deux noeuds donnés en respectant les limites données, le
+     * nombre maximal de noeuds visités s'appliquant au total des recherches d'accès, de sortie et dans le graphe
+     * grossier. Les états de recherche du planificateur étant réutilisés, ce calcul ne doit pas être imbriqué dans
+     * une recherche de celui-ci effectuée par le même fil d'exécution.
+     * @param startNodeId identité du premier noeud de l'itinéraire
+     * @param endNodeId identité du dernier noeud de l'itinéraire
+     * @param options limites du calcul
+     * @return le résultat du calcul, contenant l'itinéraire approximatif s'il a été trouvé
+     * @throws IllegalArgumentException si les deux noeuds sont identiques
+     */
+    public RouteResult approximateRouteBetween(int startNodeId, int endNodeId, QueryOptions options) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        Budget budget = new Budget(options);
+        SearchState access = routeComputer.searchState();
+        int[] accessNodeIds = accessSearch(access, startNodeId, endNodeId, false, budget);
+        if (budget.abortStatus != null) return RouteResult.notFound(budget.abortStatus, budget.settledCount);
+        Deque<Edge> edges = new ArrayDeque<>();
+        if (access.isSettled(endNodeId)) {
+            addAccessEdges(edges, access, startNodeId, endNodeId);
+            return RouteResult.found(new SingleRoute(new ArrayList<>(edges)), budget.settledCount);
+        }
+        if (accessNodeIds.length == 0) return RouteResult.notFound(RouteResult.Status.NO_ROUTE, budget.settledCount);
+        SearchState egress = routeComputer.backwardSearchState();
+        int[] egressNodeIds = accessSearch(egress, endNodeId, -1, true, budget);
+        if (budget.abortStatus != null) return RouteResult.notFound(budget.abortStatus, budget.settledCount);
+        if (egressNodeIds.length == 0) return RouteResult.notFound(RouteResult.Status.NO_ROUTE, budget.settledCount);
+
+        SearchState overview = overviewStates.get();
+        int viaId = overviewSearch(overview, access, accessNodeIds, egress, graph.nodePoint(endNodeId), budget);
+        if (budget.abortStatus != null) return RouteResult.notFound(budget.abortStatus, budget.settledCount);
+        if (viaId == -1) return RouteResult.notFound(RouteResult.Status.NO_ROUTE, budget.settledCount);
+
+        for (int overviewId = viaId; overview.predecessor(overviewId) != -1; ) {
+            int edgeId = arcEdgeIds[overview.predecessor(overviewId)];
+            int previousNodeId = reverseAdjacency.edgeSourceNodeId(edgeId);
+            edges.addFirst(Edge.of(graph, edgeId, previousNodeId, nodeIds[overviewId]));
+            overviewId = overviewIds[previousNodeId];
+        }
+        int accessNodeId = edges.isEmpty() ? nodeIds[viaId] : edges.getFirst().fromNodeId();
+        addAccessEdges(edges, access, startNodeId, accessNodeId);
+        for (int nodeId = nodeIds[viaId]; nodeId != endNodeId; ) {
+            int edgeId = egress.predecessor(nodeId);
+            int nextNodeId = graph.edgeTargetNodeId(edgeId);
+            edges.addLast(Edge.of(graph, edgeId, nodeId, nextNodeId));
+            nodeId = nextNodeId;
+        }
+        return edges.isEmpty()
+                ? RouteResult.notFound(RouteResult.Status.NO_ROUTE, budget.settledCount)
+                : RouteResult.found(new SingleRoute(new ArrayList<>(edges)), budget.settledCount);
+    }
+
+    /**
+     * Méthode auxiliaire retournant la racine de l'arbre (union-find) contenant le noeud donné, en compressant
+     * le chemin parcouru
+     * @param parents parent de chaque noeud, le parent d'une racine étant elle-même et celui d'un noeud ne faisant
+     *                partie d'aucun arbre -1
+     * @param nodeId identité du noeud
+     * @return l'identité de la racine
+     */
+    private static int root(int[] parents, int nodeId) {
+        if (parents[nodeId] == -1) parents[nodeId] = nodeId;
+        int root = nodeId;
+        while (parents[root] != root) root = parents[root];
+        while (parents[nodeId] != root) {
+            int parent = parents[nodeId];
+            parents[nodeId] = root;
+            nodeId = parent;
+        }
+        return root;
+    }
+
+    /**
+     * Méthode auxiliaire retournant vrai ssi l'arête donnée fait partie du graphe grossier
+     * @param graph graphe complet
+     * @param costFunction fonction de coût des arêtes
+     * @param nodeId identité du noeud de départ de l'arête
+     * @param edgeId identité de l'arête
+     * @return vrai ssi l'arête fait partie du graphe grossier
+     */
+    private static boolean isOverviewEdge(Graph graph, CostFunction costFunction, int nodeId, int edgeId) {
+        return graph.edgeAttributes(edgeId).intersects(MAJOR_WAYS)
+                && costFunction.costFactor(nodeId, edgeId) != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Méthode auxiliaire effectuant une recherche de Dijkstra dans le graphe complet, avant ou arrière, jusqu'à
+     * avoir visité ACCESS_NODE_COUNT noeuds du graphe grossier ou le noeud donné. Le prédécesseur d'un noeud est
+     * l'identité de l'arête le reliant au noeud précédent (ou suivant, pour la recherche arrière).
+     * @param state état de la recherche
+     * @param originNodeId identité du noeud d'origine
+     * @param stopNodeId identité du noeud arrêtant la recherche, ou -1
+     * @param isBackward vrai ssi la recherche suit les arêtes à rebours
+     * @param budget limites du calcul, dont le statut est fixé si elles sont atteintes
+     * @return les identités des noeuds du graphe grossier visités
+     */
+    private int[] accessSearch(SearchState state, int originNodeId, int stopNodeId, boolean isBackward,
+                               Budget budget) {
+        state.begin();
+        NodeQueue queue = state.queue();
+        state.update(originNodeId, 0, -1);
+        queue.push(originNodeId, 0);
+        int[] accessNodeIds = new int[ACCESS_NODE_COUNT];
+        int accessNodeCount = 0;
+        int settledCount = 0;
+        while (!queue.isEmpty() && accessNodeCount < ACCESS_NODE_COUNT
+                && settledCount < MAX_ACCESS_SETTLED_COUNT) {
+            if (budget.isExhausted()) break;
+            int nodeId = queue.pop();
+            if (state.isSettled(nodeId)) continue;
+            state.settle(nodeId);
+            settledCount += 1;
+            budget.settledCount += 1;
+            if (nodeId == stopNodeId) break;
+            if (overviewIds[nodeId] != -1) accessNodeIds[accessNodeCount++] = nodeId;
+
+            double distance = state.distance(nodeId);
+            int degree = isBackward ? reverseAdjacency.inDegree(nodeId) : graph.nodeOutDegree(nodeId);
+            for (int i = 0; i < degree; i++) {
+                int edgeId = isBackward ? reverseAdjacency.inEdgeId(nodeId, i) : graph.nodeOutEdgeId(nodeId, i);
+                int neighborId = isBackward
+                        ? reverseAdjacency.edgeSourceNodeId(edgeId)
+                        : graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(neighborId)) continue;
+                double d = distance + graph.edgeLength(edgeId) *
+                        costFunction.costFactor(isBackward ? neighborId : nodeId, edgeId);
+                if (d < state.distance(neighborId)) {
+                    state.update(neighborId, d, edgeId);
+                    queue.push(neighborId, (float) d);
+                }
+            }
+        }
+        return Arrays.copyOf(accessNodeIds, accessNodeCount);
+    }
+
+    /**
+     * Méthode auxiliaire effectuant une recherche A* dans le graphe grossier, depuis tous les points d'accès
+     * (avec leur coût d'accès) vers tous les points de sortie (avec leur coût de sortie)
+     * @param state état de la recherche dans le graphe grossier
+     * @param access état de la recherche des points d'accès
+     * @param accessNodeIds identités des points d'accès
+     * @param egress état de la recherche des points de sortie
+     * @param endPoint position du noeud d'arrivée de l'itinéraire
+     * @param budget limites du calcul, dont le statut est fixé si elles sont atteintes
+     * @return l'index dans le graphe grossier du point de sortie du meilleur chemin, ou -1 s'il n'y en a aucun
+     */
+    private int overviewSearch(SearchState state, SearchState access, int[] accessNodeIds, SearchState egress,
+                               PointCh endPoint, Budget budget) {
+        state.begin();
+        NodeQueue queue = state.queue();
+        for (int nodeId : accessNodeIds) {
+            int overviewId = overviewIds[nodeId];
+            state.update(overviewId, access.distance(nodeId), -1);
+            queue.push(overviewId, (float) (access.distance(nodeId) + endPoint.distanceTo(graph.nodePoint(nodeId))));
+        }
+
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestId = -1;
+        while (!queue.isEmpty() && queue.minKey() < bestCost) {
+            if (budget.isExhausted()) return -1;
+            int overviewId = queue.pop();
+            if (state.isSettled(overviewId)) continue;
+            state.settle(overviewId);
+            budget.settledCount += 1;
+            double distance = state.distance(overviewId);
+            int nodeId = nodeIds[overviewId];
+            if (egress.isSettled(nodeId) && distance + egress.distance(nodeId) < bestCost) {
+                bestCost = distance + egress.distance(nodeId);
+                bestId = overviewId;
+            }
+            for (int arc = firstArcs[overviewId]; arc < firstArcs[overviewId + 1]; arc++) {
+                int targetId = arcTargets[arc];
+                if (state.isSettled(targetId)) continue;
+                double d = distance + arcCosts[arc];
+                if (d < state.distance(targetId)) {
+                    state.update(targetId, d, arc);
+                    queue.push(targetId, (float) (d + endPoint.distanceTo(graph.nodePoint(nodeIds[targetId]))));
+                }
+            }
+        }
+        return bestId;
+    }
+
+    /**
+     * Méthode auxiliaire ajoutant au début de la liste donnée les arêtes du chemin d'accès vers le noeud donné
+     * @param edges arêtes de l'itinéraire
+     * @param access état de la recherche des points d'accès
+     * @param startNodeId identité du noeud de départ de l'itinéraire
+     * @param nodeId identité du noeud d'arrivée du chemin d'accès
+     */
+    private void addAccessEdges(Deque<Edge> edges, SearchState access, int startNodeId, int nodeId) {
+        while (nodeId != startNodeId) {
+            int edgeId = access.predecessor(nodeId);
+            int previousNodeId = reverseAdjacency.edgeSourceNodeId(edgeId);
+            edges.addFirst(Edge.of(graph, edgeId, previousNodeId, nodeId));
+            nodeId = previousNodeId;
+        }
+    }
+
+    /**
+     * Limites d'un calcul d'itinéraire approximatif, partagées par ses différentes recherches
+     */
+    private static final class Budget {
+        private final QueryOptions options;
+        private int iterationCount = 0;
+        private int settledCount = 0;
+        /**
+         * Statut du calcul abandonné, ou null tant qu'il ne l'a pas été
+         */
+        private RouteResult.Status abortStatus = null;
+
+        /**
+         * Constructeur des limites
+         * @param options limites du calcul
+         */
+        private Budget(QueryOptions options) {
+            this.options = options;
+        }
+
+        /**
+         * Retourne vrai ssi le calcul doit être abandonné, après en avoir mémorisé le statut
+         * @return vrai ssi l'une des limites est atteinte
+         */
+        private boolean isExhausted() {
+            abortStatus = RouteComputer.abortStatus(options, iterationCount++, settledCount);
+            return abortStatus != null;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classe PlateauAlternatives, calcul d'itinéraires alternatifs par la méthode des plateaux. Un arbre des plus
+ * courts chemins depuis le départ et un arbre des plus courts chemins vers l'arrivée sont calculés une seule fois,
+ * limités aux noeuds dont le détour ne dépasse pas MAX_STRETCH. Un plateau est une suite maximale d'arêtes
+ * appartenant aux deux arbres; chaque plateau définit un itinéraire (départ, plateau, arrivée) localement
+ * optimal sur toute la longueur du plateau. Les itinéraires des plateaux suffisamment longs sont examinés par
+ * coût croissant et retenus s'ils partagent peu d'arêtes avec ceux déjà retenus.
+ * <p>
+ * Les deux recherches respectent les limites données (voir QueryOptions), le nombre maximal de noeuds visités
+ * s'appliquant à leur total. Une instance ne sert qu'à un seul calcul. Hormis les itinéraires retenus, celui-ci
+ * n'alloue que des tableaux proportionnels au nombre de noeuds visités : les données associées à chaque noeud
+ * (fin de plateau, appartenance à l'itinéraire examiné) sont des étiquettes des états de recherche réutilisés.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class PlateauAlternatives {
+    /**
+     * Détour maximal d'une alternative, relativement au coût du meilleur itinéraire
+     */
+    private static final double MAX_STRETCH = 0.25;
+    /**
+     * Part maximale de la longueur d'une alternative partagée avec les itinéraires déjà retenus
+     */
+    private static final double MAX_SHARING = 0.8;
+    /**
+     * Coût minimal d'un plateau, relativement au coût du meilleur itinéraire
+     */
+    private static final double MIN_PLATEAU = 0.1;
+    /**
+     * Nombre maximal de plateaux examinés, qui borne le temps de calcul
+     */
+    private static final int MAX_CANDIDATES = 64;
+
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final ReverseAdjacency reverseAdjacency;
+    private final SearchState forward;
+    private final SearchState backward;
+    private final QueryOptions options;
+    private int iterationCount = 0;
+    private int settledCount = 0;
+    /**
+     * Statut de la recherche abandonnée, ou null tant qu'elle ne l'a pas été
+     */
+    private RouteResult.Status abortStatus = null;
+    /**
+     * Identités des arêtes de l'itinéraire examiné (voir edgeIdsVia)
+     */
+    private int[] edgeIds = new int[64];
+
+    /**
+     * Constructeur du calcul
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param reverseAdjacency arêtes entrantes des noeuds du graphe
+     * @param forward état de la recherche depuis le départ
+     * @param backward état de la recherche vers l'arrivée
+     * @param options limites des recherches
+     */
+    PlateauAlternatives(Graph graph, CostFunction costFunction, ReverseAdjacency reverseAdjacency,
+                        SearchState forward, SearchState backward, QueryOptions options) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.reverseAdjacency = reverseAdjacency;
+        this.forward = forward;
+        this.backward = backward;
+        this.options = options;
+    }
+
+    /**
+     * Calcule au plus le nombre donné d'itinéraires entre les deux noeuds donnés, le meilleur en premier puis
+     * les alternatives par coût croissant
+     * @param startNodeId identité du premier noeud des itinéraires
+     * @param endNodeId identité du dernier noeud des itinéraires
+     * @param maxCount nombre maximal d'itinéraires
+     * @return le résultat du calcul, contenant les itinéraires trouvés
+     */
+    AlternativeRoutesResult routesBetween(int startNodeId, int endNodeId, int maxCount) {
+        int[] forwardOrder = search(forward, startNodeId, endNodeId, false, Double.POSITIVE_INFINITY);
+        if (forwardOrder == null) return AlternativeRoutesResult.notFound(abortStatus, settledCount);
+        if (!forward.isSettled(endNodeId)) {
+            return AlternativeRoutesResult.notFound(RouteResult.Status.NO_ROUTE, settledCount);
+        }
+        double bestCost = forward.distance(endNodeId);
+        double maxCost = (1 + MAX_STRETCH) * bestCost;
+        int[] backwardOrder = search(backward, endNodeId, -1, true, maxCost);
+        if (backwardOrder == null) return AlternativeRoutesResult.notFound(abortStatus, settledCount);
+
+        // Fin du plateau de chaque noeud, étiquette de l'état arrière, en parcourant l'arbre arrière depuis
+        // l'arrivée
+        for (int nodeId : backwardOrder) {
+            int nextNodeId = nodeId == endNodeId ? -1 : graph.edgeTargetNodeId(backward.predecessor(nodeId));
+            backward.setLabel(nodeId, nextNodeId != -1 && isPlateauEdge(nodeId, nextNodeId)
+                    ? backward.label(nextNodeId)
+                    : nodeId);
+        }
+
+        // Un plateau est représenté par son premier noeud, dont le prédécesseur dans l'arbre avant n'en fait pas
+        // partie; son itinéraire passe par sa fin
+        long[] candidates = new long[forwardOrder.length];
+        int candidateCount = 0;
+        for (int nodeId : forwardOrder) {
+            if (!backward.isSettled(nodeId)) continue;
+            if (nodeId != startNodeId && isPlateauEdge(forwardPredecessorNodeId(nodeId), nodeId)) continue;
+            double total = forward.distance(nodeId) + backward.distance(nodeId);
+            int plateauEndId = backward.label(nodeId);
+            double plateauCost = forward.distance(plateauEndId) - forward.distance(nodeId);
+            if (total > maxCost || plateauCost < MIN_PLATEAU * bestCost) continue;
+            candidates[candidateCount++] = ((long) Float.floatToIntBits((float) total) << 32) | plateauEndId;
+        }
+        Arrays.sort(candidates, 0, candidateCount);
+
+        // Les arêtes des itinéraires retenus sont gardées triées, afin d'être recherchées par dichotomie
+        List<AlternativeRoute> routes = new ArrayList<>();
+        int[] selectedEdgeIds = new int[64];
+        int selectedEdgeCount = 0;
+        for (int i = 0; i < Math.min(candidateCount, MAX_CANDIDATES) && routes.size() < maxCount; i++) {
+            int viaNodeId = (int) candidates[i];
+            int edgeCount = edgeIdsVia(startNodeId, endNodeId, viaNodeId, i);
+            if (edgeCount == -1) continue;
+
+            double length = 0, sharedLength = 0;
+            for (int k = 0; k < edgeCount; k++) {
+                int edgeId = edgeIds[k];
+                length += graph.edgeLength(edgeId);
+                if (Arrays.binarySearch(selectedEdgeIds, 0, selectedEdgeCount, edgeId) >= 0) {
+                    sharedLength += graph.edgeLength(edgeId);
+                }
+            }
+            if (!routes.isEmpty() && sharedLength > MAX_SHARING * length) continue;
+
+            List<Edge> edges = new ArrayList<>(edgeCount);
+            if (selectedEdgeCount + edgeCount > selectedEdgeIds.length) {
+                selectedEdgeIds = Arrays.copyOf(selectedEdgeIds, 2 * (selectedEdgeCount + edgeCount));
+            }
+            for (int k = 0; k < edgeCount; k++) {
+                int edgeId = edgeIds[k];
+                edges.add(Edge.of(graph, edgeId, reverseAdjacency.edgeSourceNodeId(edgeId),
+                        graph.edgeTargetNodeId(edgeId)));
+                selectedEdgeIds[selectedEdgeCount++] = edgeId;
+            }
+            Arrays.sort(selectedEdgeIds, 0, selectedEdgeCount);
+            double cost = forward.distance(viaNodeId) + backward.distance(viaNodeId);
+            routes.add(new AlternativeRoute(new SingleRoute(edges), cost, cost / bestCost, sharedLength));
+        }
+        return routes.isEmpty()
+                ? AlternativeRoutesResult.notFound(RouteResult.Status.NO_ROUTE, settledCount)
+                : AlternativeRoutesResult.found(routes, settledCount);
+    }
+
+    /**
+     * Méthode auxiliaire effectuant une recherche de Dijkstra, avant ou arrière, arrêtée lorsque le coût maximal
+     * est dépassé; ce coût est ramené au coût maximal d'une alternative lorsque le noeud donné est visité. Le
+     * prédécesseur d'un noeud est, pour la recherche avant, l'index de l'arête et le noeud précédent (comme dans
+     * RouteComputer) et, pour la recherche arrière, l'identité de l'arête menant au noeud suivant. La recherche
+     * est abandonnée, et son statut mémorisé, dès que l'une des limites du calcul est atteinte. L'étiquette de
+     * chaque noeud visité vaut initialement -1.
+     * @param state état de la recherche
+     * @param originNodeId identité du noeud d'origine
+     * @param boundNodeId identité du noeud dont le coût détermine le coût maximal, ou -1
+     * @param isBackward vrai ssi la recherche suit les arêtes à rebours
+     * @param maxCost coût maximal des noeuds visités
+     * @return les noeuds visités, dans l'ordre de leur visite, ou null si la recherche a été abandonnée
+     */
+    private int[] search(SearchState state, int originNodeId, int boundNodeId, boolean isBackward,
+                         double maxCost) {
+        state.begin();
+        NodeQueue queue = state.queue();
+        state.update(originNodeId, 0, -1);
+        queue.push(originNodeId, 0);
+        int[] order = new int[64];
+        int count = 0;
+        while (!queue.isEmpty() && queue.minKey() <= maxCost) {
+            abortStatus = RouteComputer.abortStatus(options, ++iterationCount, settledCount);
+            if (abortStatus != null) return null;
+            int nodeId = queue.pop();
+            if (state.isSettled(nodeId)) continue;
+            double distance = state.distance(nodeId);
+            int degree = isBackward ? reverseAdjacency.inDegree(nodeId) : graph.nodeOutDegree(nodeId);
+            for (int i = 0; i < degree; i++) {
+                int edgeId = isBackward ? reverseAdjacency.inEdgeId(nodeId, i) : graph.nodeOutEdgeId(nodeId, i);
+                int neighborId = isBackward
+                        ? reverseAdjacency.edgeSourceNodeId(edgeId)
+                        : graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(neighborId)) continue;
+                double d = distance + graph.edgeLength(edgeId) *
+                        costFunction.costFactor(isBackward ? neighborId : nodeId, edgeId);
+                if (d < state.distance(neighborId)) {
+                    state.update(neighborId, d, isBackward ? edgeId : (i << 28) | nodeId);
+                    queue.push(neighborId, (float) d);
+                }
+            }
+            state.settle(nodeId);
+            state.setLabel(nodeId, -1);
+            settledCount += 1;
+            if (count == order.length) order = Arrays.copyOf(order, 2 * count);
+            order[count++] = nodeId;
+            if (nodeId == boundNodeId) maxCost = (1 + MAX_STRETCH) * distance;
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    /**
+     * Méthode auxiliaire retournant vrai ssi l'arête de l'arbre avant menant au noeud d'arrivée donné est aussi
+     * l'arête de l'arbre arrière partant du noeud de départ donné
+     * @param nodeId identité du noeud de départ de l'arête
+     * @param nextNodeId identité du noeud d'arrivée de l'arête
+     * @return vrai ssi l'arête fait partie d'un plateau
+     */
+    private boolean isPlateauEdge(int nodeId, int nextNodeId) {
+        if (!forward.isSettled(nextNodeId) || !backward.isSettled(nodeId)) return false;
+        int predecessor = forward.predecessor(nextNodeId);
+        if (predecessor == -1 || forwardPredecessorNodeId(nextNodeId) != nodeId) return false;
+        int forwardEdgeId = graph.nodeOutEdgeId(nodeId, Bits.extractUnsigned(predecessor, 28, 4));
+        return backward.predecessor(nodeId) == forwardEdgeId;
+    }
+
+    /**
+     * Méthode auxiliaire retournant le prédécesseur du noeud donné dans l'arbre avant
+     * @param nodeId identité d'un noeud différent du départ
+     * @return l'identité du noeud précédent
+     */
+    private int forwardPredecessorNodeId(int nodeId) {
+        return Bits.extractUnsigned(forward.predecessor(nodeId), 0, 28);
+    }
+
+    /**
+     * Méthode auxiliaire construisant, dans le tableau edgeIds, les arêtes de l'itinéraire passant par le noeud
+     * donné, composé du chemin de l'arbre avant jusqu'à ce noeud puis du chemin de l'arbre arrière depuis
+     * celui-ci. Les noeuds du chemin avant reçoivent, dans l'état avant, l'étiquette du candidat examiné; le
+     * chemin arrière ne doit passer par aucun d'entre eux, chacun des deux chemins étant lui-même sans cycle.
+     * @param startNodeId identité du noeud de départ
+     * @param endNodeId identité du noeud d'arrivée
+     * @param viaNodeId identité du noeud de passage
+     * @param candidateIndex index du candidat examiné, différent pour chaque appel
+     * @return le nombre d'arêtes de l'itinéraire, ou -1 s'il passe deux fois par le même noeud
+     */
+    private int edgeIdsVia(int startNodeId, int endNodeId, int viaNodeId, int candidateIndex) {
+        int count = 0;
+        forward.setLabel(viaNodeId, candidateIndex);
+        for (int nodeId = viaNodeId; nodeId != startNodeId; ) {
+            int previousNodeId = forwardPredecessorNodeId(nodeId);
+            forward.setLabel(previousNodeId, candidateIndex);
+            if (count == edgeIds.length) edgeIds = Arrays.copyOf(edgeIds, 2 * count);
+            edgeIds[count++] = graph.nodeOutEdgeId(previousNodeId,
+                    Bits.extractUnsigned(forward.predecessor(nodeId), 28, 4));
+            nodeId = previousNodeId;
+        }
+        for (int i = 0, j = count - 1; i < j; i++, j--) {
+            int edgeId = edgeIds[i];
+            edgeIds[i] = edgeIds[j];
+            edgeIds[j] = edgeId;
+        }
+        for (int nodeId = viaNodeId; nodeId != endNodeId; ) {
+            int edgeId = backward.predecessor(nodeId);
+            int nextNodeId = graph.edgeTargetNodeId(edgeId);
+            if (forward.isSettled(nextNodeId) && forward.label(nextNodeId) == candidateIndex) return -1;
+            if (count == edgeIds.length) edgeIds = Arrays.copyOf(edgeIds, 2 * count);
+            edgeIds[count++] = edgeId;
+            nodeId = nextNodeId;
+        }
+        return count;
+    }
+}
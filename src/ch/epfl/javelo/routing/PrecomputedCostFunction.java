@@ -0,0 +1,125 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphContainer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * Classe PrecomputedCostFunction, fonction de coût dont le facteur de chaque arête a été évalué une fois pour
+ * toutes au moyen d'une autre fonction de coût. Les facteurs sont stockés (en float) dans le fichier
+ * costs-&lt;profil&gt;.bin, à côté des fichiers du graphe, et projetés en mémoire lors du chargement.
+ * <p>
+ * Le facteur d'une arête ne doit dépendre que de l'arête, ce qui est le cas de toute fonction de coût dont le
+ * noeud passé à costFactor est le noeud de départ de l'arête.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class PrecomputedCostFunction implements CostFunction {
+    private final FloatBuffer costFactors;
+
+    /**
+     * Constructeur privé, les instances étant obtenues par les méthodes compute et loadFrom
+     * @param costFactors facteur de coût de chaque arête
+     */
+    private PrecomputedCostFunction(FloatBuffer costFactors) {
+        this.costFactors = costFactors;
+    }
+
+    /**
+     * Evalue, en parallèle, la fonction de coût donnée pour toutes les arêtes du graphe donné
+     * @param graph graphe
+     * @param costFunction fonction de coût à évaluer
+     * @return la fonction de coût précalculée
+     */
+    public static PrecomputedCostFunction compute(Graph graph, CostFunction costFunction) {
+        float[] costFactors = new float[graph.edgeCount()];
+        IntStream.range(0, graph.nodeCount()).parallel().forEach(nodeId -> {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                costFactors[edgeId] = (float) costFunction.costFactor(nodeId, edgeId);
+            }
+        });
+        return new PrecomputedCostFunction(FloatBuffer.wrap(costFactors));
+    }
+
+    /**
+     * Charge les facteurs de coût du profil donné, sauvegardés dans le répertoire donné
+     * @param basePath chemin d'accès du répertoire
+     * @param profile nom du profil, p.ex. "city-bike"
+     * @param graph graphe auquel s'appliquent les facteurs
+     * @return la fonction de coût précalculée
+     * @throws IOException en cas d'erreur d'entrée ou sortie, p.ex: si le fichier n'existe pas
+     * @throws IllegalArgumentException si le fichier ne contient pas un facteur par arête du graphe
+     */
+    public static PrecomputedCostFunction loadFrom(Path basePath, String profile, Graph graph) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(fileName(profile)))) {
+            return of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), graph);
+        }
+    }
+
+    /**
+     * Charge les facteurs de coût du profil donné depuis la section du même nom du conteneur donné (voir
+     * GraphContainer), sans copie
+     * @param container conteneur du graphe
+     * @param profile nom du profil, p.ex. "city-bike"
+     * @param graph graphe auquel s'appliquent les facteurs
+     * @return la fonction de coût précalculée
+     * @throws IllegalArgumentException si le conteneur ne possède pas la section du profil, ou si elle ne contient
+     * pas un facteur par arête du graphe
+     */
+    public static PrecomputedCostFunction loadFrom(GraphContainer container, String profile, Graph graph) {
+        return of(container.section(fileName(profile)), graph);
+    }
+
+    /**
+     * Sauvegarde les facteurs de coût sous le nom du profil donné, dans le répertoire donné
+     * @param basePath chemin d'accès du répertoire
+     * @param profile nom du profil
+     * @throws IOException en cas d'erreur d'entrée ou sortie
+     */
+    public void writeTo(Path basePath, String profile) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(fileName(profile)))))) {
+            for (int edgeId = 0; edgeId < costFactors.capacity(); edgeId++) s.writeFloat(costFactors.get(edgeId));
+        }
+    }
+
+    @Override
+    public double costFactor(int nodeId, int edgeId) {
+        return costFactors.get(edgeId);
+    }
+
+    /**
+     * Méthode auxiliaire retournant la fonction de coût dont les facteurs sont le contenu donné
+     * @param buffer contenu du fichier des facteurs de coût
+     * @param graph graphe auquel s'appliquent les facteurs
+     * @return la fonction de coût précalculée
+     * @throws IllegalArgumentException si le contenu ne contient pas un facteur par arête du graphe
+     */
+    private static PrecomputedCostFunction of(ByteBuffer buffer, Graph graph) {
+        FloatBuffer costFactors = buffer.asFloatBuffer();
+        Preconditions.checkArgument(costFactors.capacity() == graph.edgeCount());
+        return new PrecomputedCostFunction(costFactors);
+    }
+
+    /**
+     * Retourne le nom du fichier des facteurs de coût du profil donné, qui est aussi celui de sa section dans un
+     * conteneur (voir GraphContainer)
+     * @param profile nom du profil
+     * @return le nom du fichier
+     */
+    public static String fileName(String profile) {
+        return "costs-" + profile + ".bin";
+    }
+}
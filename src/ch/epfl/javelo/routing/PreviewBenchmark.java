@@ -0,0 +1,141 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Classe PreviewBenchmark, programme mesurant la durée du calcul de l'aperçu d'un itinéraire (voir OverviewGraph)
+ * à chaque image du déplacement d'un point de passage. Chaque déplacement simulé fait glisser, en ligne droite, le
+ * point de passage situé entre deux autres; à chaque image, les deux segments qui le touchent sont calculés dans
+ * le graphe grossier avec les mêmes limites que RouteBean, et la durée de l'image ainsi que les abandons (l'aperçu
+ * précédent restant alors affiché) sont relevés.
+ * <p>
+ * Utilisation : {@code java ch.epfl.javelo.routing.PreviewBenchmark <graphe> [nombre de déplacements]}
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class PreviewBenchmark {
+    /**
+     * Nombre de déplacements par défaut
+     */
+    private static final int DEFAULT_DRAG_COUNT = 100;
+    /**
+     * Nombre d'images de chaque déplacement
+     */
+    private static final int FRAME_COUNT = 60;
+    /**
+     * Distance parcourue par le point de passage entre deux images, en mètres
+     */
+    private static final double FRAME_STEP = 25;
+    /**
+     * Distance maximale entre la position du point de passage et le noeud auquel il est rattaché, en mètres
+     */
+    private static final double SEARCH_DISTANCE = 500;
+    /**
+     * Limites du calcul d'une image, identiques à celles de RouteBean
+     */
+    private static final Duration PREVIEW_TIMEOUT = Duration.ofMillis(10);
+    private static final int PREVIEW_MAX_SETTLED_COUNT = 50_000;
+    /**
+     * Germe du générateur des déplacements, afin que les mesures soient reproductibles
+     */
+    private static final long SEED = 2022;
+    /**
+     * Durée d'une image à 60 Hz, en nanosecondes
+     */
+    private static final long FRAME_NANOS = 16_000_000;
+
+    private PreviewBenchmark() {}
+
+    /**
+     * Programme principal
+     * @param args répertoire du graphe, puis éventuellement le nombre de déplacements
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 1 || args.length == 2);
+        Graph graph = Graph.loadFrom(Path.of(args[0]));
+        int dragCount = args.length == 2 ? Integer.parseInt(args[1]) : DEFAULT_DRAG_COUNT;
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        long buildStart = System.nanoTime();
+        OverviewGraph overviewGraph = OverviewGraph.of(routeComputer);
+        System.out.printf("graphe grossier : %d noeuds, %d arêtes, construit en %.0f ms%n",
+                overviewGraph.nodeCount(), overviewGraph.edgeCount(), (System.nanoTime() - buildStart) / 1e6);
+
+        // Un premier passage, non mesuré, sert à l'échauffement de la machine virtuelle
+        run(graph, overviewGraph, dragCount, false);
+        run(graph, overviewGraph, dragCount, true);
+    }
+
+    /**
+     * Méthode auxiliaire simulant les déplacements et, si demandé, affichant les durées mesurées
+     * @param graph graphe
+     * @param overviewGraph graphe grossier
+     * @param dragCount nombre de déplacements
+     * @param print vrai ssi les mesures doivent être affichées
+     */
+    private static void run(Graph graph, OverviewGraph overviewGraph, int dragCount, boolean print) {
+        Random random = new Random(SEED);
+        long[] frameTimes = new long[dragCount * FRAME_COUNT];
+        int frameCount = 0;
+        int abortedCount = 0;
+        int noRouteCount = 0;
+        for (int drag = 0; drag < dragCount; drag++) {
+            int previousNodeId = random.nextInt(graph.nodeCount());
+            int nextNodeId = random.nextInt(graph.nodeCount());
+            PointCh point = graph.nodePoint(random.nextInt(graph.nodeCount()));
+            double angle = 2 * Math.PI * random.nextDouble();
+            int draggedNodeId = -1;
+            for (int frame = 0; frame < FRAME_COUNT; frame++) {
+                double e = point.e() + FRAME_STEP * Math.cos(angle);
+                double n = point.n() + FRAME_STEP * Math.sin(angle);
+                if (!SwissBounds.containsEN(e, n)) break;
+                point = new PointCh(e, n);
+                int nodeId = graph.nodeClosestTo(point, SEARCH_DISTANCE);
+                // Comme dans RouteBean, l'aperçu n'est recalculé que si le noeud du point de passage change
+                if (nodeId == -1 || nodeId == draggedNodeId) continue;
+                draggedNodeId = nodeId;
+
+                long start = System.nanoTime();
+                QueryOptions options = QueryOptions.UNLIMITED
+                        .withMaxSettledCount(PREVIEW_MAX_SETTLED_COUNT)
+                        .withTimeout(PREVIEW_TIMEOUT);
+                RouteResult.Status status = RouteResult.Status.FOUND;
+                if (previousNodeId != nodeId) {
+                    status = overviewGraph.approximateRouteBetween(previousNodeId, nodeId, options).status();
+                }
+                if (status == RouteResult.Status.FOUND && nodeId != nextNodeId) {
+                    status = overviewGraph.approximateRouteBetween(nodeId, nextNodeId, options).status();
+                }
+                frameTimes[frameCount++] = System.nanoTime() - start;
+                if (status.isAborted()) abortedCount += 1;
+                if (status == RouteResult.Status.NO_ROUTE) noRouteCount += 1;
+            }
+        }
+        if (!print || frameCount == 0) return;
+
+        long[] times = Arrays.copyOf(frameTimes, frameCount);
+        Arrays.sort(times);
+        long total = 0;
+        int lateCount = 0;
+        for (long time : times) {
+            total += time;
+            if (time > FRAME_NANOS) lateCount += 1;
+        }
+        System.out.printf("%d images : moyenne %.2f ms, médiane %.2f ms, 99e centile %.2f ms, maximum %.2f ms%n",
+                frameCount, total / 1e6 / frameCount, times[frameCount / 2] / 1e6,
+                times[Math.min(frameCount - 1, (int) (0.99 * frameCount))] / 1e6, times[frameCount - 1] / 1e6);
+        System.out.printf("images de plus de 16 ms : %d (%.2f %%)%n", lateCount, 100.0 * lateCount / frameCount);
+        System.out.printf("aperçus abandonnés (aperçu précédent conservé) : %d (%.1f %%), sans itinéraire : %d%n",
+                abortedCount, 100.0 * abortedCount / frameCount, noRouteCount);
+    }
+}
@@ -0,0 +1,89 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.time.Duration;
+
+/**
+ * Enregistrement QueryOptions, limites imposées à une recherche d'itinéraire, vérifiées régulièrement durant la
+ * recherche; celle-ci s'arrête dès que l'une d'elles est atteinte et retourne un résultat indiquant la raison de
+ * son arrêt (voir RouteResult).
+ *
+ * @param deadline instant (selon System.nanoTime) au-delà duquel la recherche est abandonnée, ou NO_DEADLINE
+ * @param maxSettledCount nombre maximal de noeuds visités par la recherche
+ * @param cancellationToken jeton permettant d'annuler la recherche, ou null
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public record QueryOptions(long deadline, int maxSettledCount, CancellationToken cancellationToken) {
+    /**
+     * Valeur de l'échéance d'une recherche qui n'en a pas
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+    /**
+     * Options d'une recherche sans aucune limite
+     */
+    public static final QueryOptions UNLIMITED = new QueryOptions(NO_DEADLINE, Integer.MAX_VALUE, null);
+
+    /**
+     * Constructeur compact
+     * @throws IllegalArgumentException si le nombre maximal de noeuds visités n'est pas strictement positif
+     */
+    public QueryOptions {
+        Preconditions.checkArgument(maxSettledCount > 0);
+    }
+
+    /**
+     * Retourne des options identiques à celles-ci, mais dont l'échéance se trouve dans le délai donné
+     * @param timeout délai accordé à la recherche, à partir de maintenant
+     * @return les nouvelles options
+     */
+    public QueryOptions withTimeout(Duration timeout) {
+        return withDeadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * Retourne des options identiques à celles-ci, mais avec l'échéance donnée
+     * @param deadline instant (selon System.nanoTime) au-delà duquel la recherche est abandonnée, ou NO_DEADLINE
+     * @return les nouvelles options
+     */
+    public QueryOptions withDeadline(long deadline) {
+        return new QueryOptions(deadline, maxSettledCount, cancellationToken);
+    }
+
+    /**
+     * Retourne des options identiques à celles-ci, mais avec le nombre maximal de noeuds visités donné
+     * @param maxSettledCount nombre maximal de noeuds visités par la recherche
+     * @return les nouvelles options
+     * @throws IllegalArgumentException si ce nombre n'est pas strictement positif
+     */
+    public QueryOptions withMaxSettledCount(int maxSettledCount) {
+        return new QueryOptions(deadline, maxSettledCount, cancellationToken);
+    }
+
+    /**
+     * Retourne des options identiques à celles-ci, mais avec le jeton d'annulation donné
+     * @param cancellationToken jeton permettant d'annuler la recherche, ou null
+     * @return les nouvelles options
+     */
+    public QueryOptions withCancellationToken(CancellationToken cancellationToken) {
+        return new QueryOptions(deadline, maxSettledCount, cancellationToken);
+    }
+
+    /**
+     * Retourne vrai ssi la recherche a été annulée au moyen de son jeton
+     * @return vrai ssi la recherche a été annulée
+     */
+    public boolean isCancelled() {
+        return cancellationToken != null && cancellationToken.isCancelled();
+    }
+
+    /**
+     * Retourne vrai ssi l'échéance de la recherche est dépassée
+     * @return vrai ssi l'échéance est dépassée
+     */
+    public boolean isExpired() {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+}
@@ -0,0 +1,109 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphRenumbering;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Classe RenumberingBenchmark, programme comparant la durée des recherches d'itinéraire sur un graphe et sur sa
+ * version renumérotée par GraphRenumbering. Les mêmes requêtes (mêmes noeuds, renumérotés) sont effectuées sur
+ * les deux graphes, avec chaque mode de recherche, et les coûts des itinéraires obtenus sont comparés.
+ * <p>
+ * Utilisation : {@code java ch.epfl.javelo.routing.RenumberingBenchmark <graphe> <graphe renuméroté>
+ * [nombre de requêtes]}
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class RenumberingBenchmark {
+    /**
+     * Nombre de requêtes par défaut
+     */
+    private static final int DEFAULT_QUERY_COUNT = 200;
+    /**
+     * Nombre de répétitions de la mesure, la première servant à l'échauffement de la machine virtuelle
+     */
+    private static final int ROUND_COUNT = 3;
+    /**
+     * Germe du générateur des requêtes, afin que les mesures soient reproductibles
+     */
+    private static final long SEED = 2022;
+
+    private RenumberingBenchmark() {}
+
+    /**
+     * Programme principal
+     * @param args répertoires du graphe et du graphe renuméroté, puis éventuellement le nombre de requêtes
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Preconditions.checkArgument(args.length == 2 || args.length == 3);
+        Graph graph = Graph.loadFrom(Path.of(args[0]));
+        Graph renumberedGraph = Graph.loadFrom(Path.of(args[1]));
+        int queryCount = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_QUERY_COUNT;
+        Preconditions.checkArgument(graph.nodeCount() == renumberedGraph.nodeCount());
+
+        int[] newNodeIds = GraphRenumbering.newNodeIds(graph);
+        Random random = new Random(SEED);
+        int[] startNodeIds = new int[queryCount];
+        int[] endNodeIds = new int[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            startNodeIds[i] = random.nextInt(graph.nodeCount());
+            do endNodeIds[i] = random.nextInt(graph.nodeCount()); while (endNodeIds[i] == startNodeIds[i]);
+        }
+        int[] newStartNodeIds = new int[queryCount];
+        int[] newEndNodeIds = new int[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            newStartNodeIds[i] = newNodeIds[startNodeIds[i]];
+            newEndNodeIds[i] = newNodeIds[endNodeIds[i]];
+        }
+
+        for (RouteComputer.SearchMode searchMode : RouteComputer.SearchMode.values()) {
+            RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph),
+                    RouteComputer.QueueType.INDEXED_HEAP, searchMode);
+            RouteComputer renumberedRouteComputer = new RouteComputer(renumberedGraph,
+                    new CityBikeCF(renumberedGraph), RouteComputer.QueueType.INDEXED_HEAP, searchMode);
+            double[] lengths = new double[queryCount];
+            double[] renumberedLengths = new double[queryCount];
+            long time = 0, renumberedTime = 0;
+            for (int round = 0; round < ROUND_COUNT; round++) {
+                long roundTime = run(routeComputer, startNodeIds, endNodeIds, lengths);
+                long renumberedRoundTime = run(renumberedRouteComputer, newStartNodeIds, newEndNodeIds,
+                        renumberedLengths);
+                if (round > 0) {
+                    time += roundTime;
+                    renumberedTime += renumberedRoundTime;
+                }
+            }
+            int differenceCount = 0;
+            for (int i = 0; i < queryCount; i++) {
+                if (Math.abs(lengths[i] - renumberedLengths[i]) > 1e-6 * lengths[i]) differenceCount += 1;
+            }
+            int measuredCount = queryCount * (ROUND_COUNT - 1);
+            System.out.printf("%s: avant %.3f ms/requête, après %.3f ms/requête (x%.2f), "
+                            + "%d itinéraire(s) différent(s)%n", searchMode, time / 1e6 / measuredCount, renumberedTime / 1e6 / measuredCount,
+                    (double) time / renumberedTime, differenceCount);
+        }
+    }
+
+    /**
+     * Méthode auxiliaire effectuant les requêtes données et mesurant leur durée totale
+     * @param routeComputer planificateur d'itinéraire
+     * @param startNodeIds identités des noeuds de départ des requêtes
+     * @param endNodeIds identités des noeuds d'arrivée des requêtes
+     * @param lengths tableau dans lequel sont écrites les longueurs des itinéraires (0 en l'absence d'itinéraire)
+     * @return la durée totale des requêtes, en nanosecondes
+     */
+    private static long run(RouteComputer routeComputer, int[] startNodeIds, int[] endNodeIds, double[] lengths) {
+        long start = System.nanoTime();
+        for (int i = 0; i < startNodeIds.length; i++) {
+            Route route = routeComputer.bestRouteBetween(startNodeIds[i], endNodeIds[i]);
+            lengths[i] = route == null ? 0 : route.length();
+        }
+        return System.nanoTime() - start;
+    }
+}
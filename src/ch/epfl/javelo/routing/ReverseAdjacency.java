@@ -0,0 +1,86 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+/**
+ * Classe ReverseAdjacency, index des arêtes entrantes de chaque noeud d'un graphe, ainsi que du noeud de départ
+ * de chaque arête. Ces informations ne figurent pas dans les fichiers du graphe et sont donc dérivées une fois
+ * pour toutes des arêtes sortantes.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class ReverseAdjacency {
+    private final int[] firstInEdges;
+    private final int[] inEdgeIds;
+    private final int[] edgeSources;
+
+    /**
+     * Constructeur privé, les instances étant construites par la méthode of
+     */
+    private ReverseAdjacency(int[] firstInEdges, int[] inEdgeIds, int[] edgeSources) {
+        this.firstInEdges = firstInEdges;
+        this.inEdgeIds = inEdgeIds;
+        this.edgeSources = edgeSources;
+    }
+
+    /**
+     * Construit l'index des arêtes entrantes du graphe donné
+     * @param graph graphe dont on veut les arêtes entrantes
+     * @return l'index des arêtes entrantes du graphe
+     */
+    public static ReverseAdjacency of(Graph graph) {
+        int nodeCount = graph.nodeCount();
+        int edgeCount = graph.edgeCount();
+        int[] edgeSources = new int[edgeCount];
+        int[] firstInEdges = new int[nodeCount + 1];
+
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                edgeSources[edgeId] = nodeId;
+                firstInEdges[graph.edgeTargetNodeId(edgeId) + 1] += 1;
+            }
+        }
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            firstInEdges[nodeId + 1] += firstInEdges[nodeId];
+        }
+
+        int[] next = new int[nodeCount];
+        System.arraycopy(firstInEdges, 0, next, 0, nodeCount);
+        int[] inEdgeIds = new int[edgeCount];
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            inEdgeIds[next[graph.edgeTargetNodeId(edgeId)]++] = edgeId;
+        }
+        return new ReverseAdjacency(firstInEdges, inEdgeIds, edgeSources);
+    }
+
+    /**
+     * Retourne le nombre d'arêtes entrant dans le noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @return le nombre d'arêtes entrant dans le noeud
+     */
+    public int inDegree(int nodeId) {
+        return firstInEdges[nodeId + 1] - firstInEdges[nodeId];
+    }
+
+    /**
+     * Retourne l'identité de la edgeIndex-ième arête entrant dans le noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @param edgeIndex index de l'arête entrante
+     * @return l'identité de l'arête entrante
+     */
+    public int inEdgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < inDegree(nodeId);
+        return inEdgeIds[firstInEdges[nodeId] + edgeIndex];
+    }
+
+    /**
+     * Retourne l'identité du noeud de départ de l'arête d'identité donnée
+     * @param edgeId identité de l'arête
+     * @return l'identité du noeud duquel part l'arête
+     */
+    public int edgeSourceNodeId(int edgeId) {
+        return edgeSources[edgeId];
+    }
+}
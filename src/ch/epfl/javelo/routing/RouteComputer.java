@@ -2,27 +2,142 @@ package ch.epfl.javelo.routing;
 
 import ch.epfl.javelo.Bits;
 import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.EdgeIndex;
+import ch.epfl.javelo.data.EdgeSnap;
 import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.projection.PointCh;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.DoubleUnaryOperator;
 import java.util.List;
 
 
+/**
+ * Classe RouteComputer, planificateur d'itinéraire. Une instance peut être partagée par plusieurs fils
+ * d'exécution, chacun utilisant ses propres états de recherche.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
 public final class RouteComputer {
+    /**
+     * Nombre d'itérations d'une recherche entre deux vérifications de l'interruption du fil d'exécution, de
+     * l'annulation et de l'échéance de la recherche
+     */
+    private static final int INTERRUPTION_CHECK_INTERVAL = 1 << 10;
+
     private final Graph graph;
     private final CostFunction costFunction;
+    private final QueueType queueType;
+    private final SearchMode searchMode;
+    /**
+     * Heuristique guidant la recherche A*
+     */
+    private final Heuristic heuristic;
+    /**
+     * Etats de recherche réutilisables, un par fil d'exécution
+     */
+    private final ThreadLocal<SearchState> searchStates;
+    /**
+     * Etats de la recherche arrière, utilisés uniquement par la recherche bidirectionnelle
+     */
+    private final ThreadLocal<SearchState> backwardSearchStates;
+    /**
+     * Arêtes entrantes des noeuds, construites à la création pour la recherche bidirectionnelle et sinon lors du
+     * premier calcul d'alternatives ou d'aperçu (voir OverviewGraph)
+     */
+    private volatile ReverseAdjacency reverseAdjacency;
+
+    /**
+     * Type de file de priorité utilisée par la recherche A*
+     */
+    public enum QueueType {
+        /**
+         * File basée sur java.util.PriorityQueue, qui alloue un objet par noeud ajouté
+         */
+        BINARY_QUEUE,
+        /**
+         * Tas binaire indexé sur des tableaux primitifs, avec diminution de clé et sans allocation par noeud
+         */
+        INDEXED_HEAP;
+
+        /**
+         * Crée une nouvelle file de ce type pour un graphe du nombre de noeuds donné
+         * @param nodeCount nombre de noeuds du graphe
+         * @return une nouvelle file vide
+         */
+        NodeQueue newQueue(int nodeCount) {
+            return this == INDEXED_HEAP ? new IndexedNodeHeap(nodeCount) : new BinaryNodeQueue();
+        }
+    }
+
+    /**
+     * Mode de recherche de l'itinéraire
+     */
+    public enum SearchMode {
+        /**
+         * Recherche A* depuis le noeud de départ uniquement
+         */
+        UNIDIRECTIONAL,
+        /**
+         * Recherche A* simultanée depuis le noeud de départ et, à rebours, depuis le noeud d'arrivée
+         */
+        BIDIRECTIONAL
+    }
 
-    private final static Float NEG_INFINITY = Float.NEGATIVE_INFINITY;
     /**
      * Construit un objet de la classe RouteComputer
      * @param graph graph sur lequel est la route
      * @param costFunction fonction de coût pour la route
      */
     public RouteComputer(Graph graph, CostFunction costFunction){
+        this(graph, costFunction, QueueType.INDEXED_HEAP);
+    }
+
+    /**
+     * Construit un objet de la classe RouteComputer utilisant le type de file de priorité donné
+     * @param graph graph sur lequel est la route
+     * @param costFunction fonction de coût pour la route
+     * @param queueType type de file de priorité utilisée par la recherche
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, QueueType queueType){
+        this(graph, costFunction, queueType, SearchMode.UNIDIRECTIONAL);
+    }
+
+    /**
+     * Construit un objet de la classe RouteComputer utilisant le type de file de priorité et le mode de recherche
+     * donnés
+     * @param graph graph sur lequel est la route
+     * @param costFunction fonction de coût pour la route
+     * @param queueType type de file de priorité utilisée par la recherche
+     * @param searchMode mode de recherche, unidirectionnel ou bidirectionnel
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, QueueType queueType, SearchMode searchMode){
+        this(graph, costFunction, queueType, searchMode, new StraightLineHeuristic(graph));
+    }
+
+    /**
+     * Construit un objet de la classe RouteComputer utilisant le type de file de priorité, le mode de recherche et
+     * l'heuristique donnés
+     * @param graph graph sur lequel est la route
+     * @param costFunction fonction de coût pour la route
+     * @param queueType type de file de priorité utilisée par la recherche
+     * @param searchMode mode de recherche, unidirectionnel ou bidirectionnel
+     * @param heuristic heuristique cohérente avec la fonction de coût, p.ex. la distance à vol d'oiseau ou des
+     *                  repères (Landmarks)
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, QueueType queueType, SearchMode searchMode,
+                         Heuristic heuristic){
 
         this.graph = graph;
         this.costFunction = costFunction;
+        this.queueType = Objects.requireNonNull(queueType);
+        this.searchMode = Objects.requireNonNull(searchMode);
+        this.heuristic = Objects.requireNonNull(heuristic);
+        this.searchStates = ThreadLocal.withInitial(() -> new SearchState(graph.nodeCount(), queueType));
+        this.backwardSearchStates = ThreadLocal.withInitial(() -> new SearchState(graph.nodeCount(), queueType));
+        this.reverseAdjacency = searchMode == SearchMode.BIDIRECTIONAL ? ReverseAdjacency.of(graph) : null;
     }
 
     /**
@@ -30,75 +145,653 @@ public final class RouteComputer {
      * @param startNodeId identité du premier noeud de l'itinéraire
      * @param endNodeId identité du dernier noeud de l'itinéraire
      * @return un planificateur d'itinéraire pour le graphe et la fonction de coûts donnés.
+     * @throws CancellationException si le fil d'exécution est interrompu durant la recherche
      */
 
     public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        RouteResult result = bestRouteBetween(startNodeId, endNodeId, QueryOptions.UNLIMITED);
+        if (result.status() == RouteResult.Status.CANCELLED) throw new CancellationException();
+        return result.route();
+    }
+
+    /**
+     * Calcule le meilleur itinéraire entre les deux noeuds donnés en respectant les limites données. La recherche
+     * est abandonnée dès qu'elle a visité le nombre maximal de noeuds, ou, lors de vérifications effectuées toutes
+     * les INTERRUPTION_CHECK_INTERVAL itérations, si son échéance est dépassée ou si elle a été annulée (par son
+     * jeton ou par l'interruption du fil d'exécution).
+     * @param startNodeId identité du premier noeud de l'itinéraire
+     * @param endNodeId identité du dernier noeud de l'itinéraire
+     * @param options limites de la recherche
+     * @return le résultat de la recherche, contenant le meilleur itinéraire s'il a été trouvé
+     * @throws IllegalArgumentException si les deux noeuds sont identiques
+     */
+    public RouteResult bestRouteBetween(int startNodeId, int endNodeId, QueryOptions options) {
         Preconditions.checkArgument(startNodeId != endNodeId);
-        record WeightedNode(int nodeId, float distance)
-                implements Comparable<WeightedNode> {
-            @Override
-            public int compareTo(WeightedNode that) {
-                return Float.compare(this.distance, that.distance);
+        // Une requête ayant attendu trop longtemps, ou déjà annulée, n'est pas commencée
+        RouteResult.Status abortStatus = abortStatus(options, 0, 0);
+        if (abortStatus != null) return RouteResult.notFound(abortStatus, 0);
+        if (heuristic.lowerBound(startNodeId, endNodeId) == Double.POSITIVE_INFINITY) {
+            return RouteResult.notFound(RouteResult.Status.NO_ROUTE, 0);
+        }
+        return searchMode == SearchMode.BIDIRECTIONAL
+                ? bidirectionalRouteBetween(startNodeId, endNodeId, options)
+                : unidirectionalRouteBetween(startNodeId, endNodeId, options);
+    }
+
+    /**
+     * Calcule le meilleur itinéraire entre les deux points d'arêtes donnés (p.ex. trouvés par EdgeIndex), qui peut
+     * donc commencer et se terminer au milieu d'une arête
+     * @param start point de départ de l'itinéraire
+     * @param end point d'arrivée de l'itinéraire
+     * @return l'itinéraire de coût total minimal entre les deux points, ou null s'il n'en existe aucun
+     * @throws IllegalArgumentException si les deux points sont identiques
+     * @throws CancellationException si le fil d'exécution est interrompu durant la recherche
+     */
+    public Route bestRouteBetween(EdgeSnap start, EdgeSnap end) {
+        RouteResult result = bestRouteBetween(start, end, QueryOptions.UNLIMITED);
+        if (result.status() == RouteResult.Status.CANCELLED) throw new CancellationException();
+        return result.route();
+    }
+
+    /**
+     * Calcule le meilleur itinéraire entre les deux points d'arêtes donnés en respectant les limites données
+     * (voir bestRouteBetween(int, int, QueryOptions)). La recherche, toujours unidirectionnelle, part des deux
+     * extrémités de l'arête de départ (la seconde seulement si l'arête peut être parcourue en sens inverse), avec
+     * pour coût initial celui de la portion d'arête qui y mène, et s'arrête lorsqu'aucun noeud restant ne peut
+     * améliorer le meilleur itinéraire atteignant l'arête d'arrivée par l'une de ses extrémités, ou directement
+     * si les deux points sont sur la même arête.
+     * @param start point de départ de l'itinéraire
+     * @param end point d'arrivée de l'itinéraire
+     * @param options limites de la recherche
+     * @return le résultat de la recherche, contenant le meilleur itinéraire s'il a été trouvé
+     * @throws IllegalArgumentException si les deux points sont identiques
+     */
+    public RouteResult bestRouteBetween(EdgeSnap start, EdgeSnap end, QueryOptions options) {
+        Preconditions.checkArgument(!start.point().equals(end.point()));
+        RouteResult.Status abortStatus = abortStatus(options, 0, 0);
+        if (abortStatus != null) return RouteResult.notFound(abortStatus, 0);
+
+        int startEdgeId = start.edgeId();
+        int startFromNodeId = start.fromNodeId();
+        int startToNodeId = graph.edgeTargetNodeId(startEdgeId);
+        int startReverseEdgeId = EdgeIndex.reverseEdgeId(graph, startEdgeId, startFromNodeId);
+        double startLength = graph.edgeLength(startEdgeId);
+        int endEdgeId = end.edgeId();
+        int endFromNodeId = end.fromNodeId();
+        int endToNodeId = graph.edgeTargetNodeId(endEdgeId);
+        int endReverseEdgeId = EdgeIndex.reverseEdgeId(graph, endEdgeId, endFromNodeId);
+        double endLength = graph.edgeLength(endEdgeId);
+        double endPosition = end.position();
+        // Coûts des portions de l'arête d'arrivée depuis chacune de ses extrémités (infinis si inutilisables);
+        // une portion de longueur nulle est toujours utilisable, même sans arête inverse
+        double endForwardCost = portionCost(endPosition, costFunction.costFactor(endFromNodeId, endEdgeId));
+        double endReverseCost = reversePortionCost(endToNodeId, endReverseEdgeId, endLength - endPosition);
+
+        // Itinéraire direct, si les deux points sont sur la même arête (éventuellement exprimés en sens inverses)
+        double bestCost = Double.POSITIVE_INFINITY;
+        Edge directEdge = null;
+        double endPositionOnStartEdge = endEdgeId == startEdgeId ? endPosition
+                : endEdgeId == startReverseEdgeId ? startLength - endPosition : Double.NaN;
+        if (!Double.isNaN(endPositionOnStartEdge)) {
+            double p = start.position();
+            if (endPositionOnStartEdge >= p) {
+                bestCost = portionCost(endPositionOnStartEdge - p,
+                        costFunction.costFactor(startFromNodeId, startEdgeId));
+                directEdge = partialEdge(startEdgeId, startFromNodeId, p, endPositionOnStartEdge,
+                        start.point(), end.point());
+            } else if (startReverseEdgeId != -1) {
+                bestCost = portionCost(p - endPositionOnStartEdge,
+                        costFunction.costFactor(startToNodeId, startReverseEdgeId));
+                directEdge = partialEdge(startReverseEdgeId, startToNodeId, startLength - p,
+                        startLength - endPositionOnStartEdge, start.point(), end.point());
             }
         }
 
-        PointCh endPoint = graph.nodePoint(endNodeId);
-        int nodeCount = graph.nodeCount();
-        double[] distances = new double[nodeCount];
-        int[] predecesseur = new int[nodeCount];
+        SearchState state = searchStates.get();
+        state.begin();
+        NodeQueue queue = state.queue();
+        seed(state, startToNodeId,
+                portionCost(startLength - start.position(), costFunction.costFactor(startFromNodeId, startEdgeId)),
+                endFromNodeId, endForwardCost, endToNodeId, endReverseCost);
+        seed(state, startFromNodeId, reversePortionCost(startToNodeId, startReverseEdgeId, start.position()),
+                endFromNodeId, endForwardCost, endToNodeId, endReverseCost);
 
-        PriorityQueue<WeightedNode> queue = new PriorityQueue<>();
+        int bestEndNodeId = -1;
+        int iterationCount = 0;
+        int settledCount = 0;
+        while (!queue.isEmpty()) {
+            abortStatus = abortStatus(options, ++iterationCount, settledCount);
+            if (abortStatus != null) return RouteResult.notFound(abortStatus, settledCount);
+            int nodeMinId = queue.pop();
+            if (state.isSettled(nodeMinId)) continue;
+            double nodeMinDistance = state.distance(nodeMinId);
+            if (nodeMinDistance + endBound(nodeMinId, endFromNodeId, endForwardCost, endToNodeId, endReverseCost) >= bestCost) {
+                break;
+            }
+            if (nodeMinId == endFromNodeId && nodeMinDistance + endForwardCost < bestCost) {
+                bestCost = nodeMinDistance + endForwardCost;
+                bestEndNodeId = nodeMinId;
+            }
+            if (nodeMinId == endToNodeId && nodeMinDistance + endReverseCost < bestCost) {
+                bestCost = nodeMinDistance + endReverseCost;
+                bestEndNodeId = nodeMinId;
+            }
+            for (int i = 0; i < graph.nodeOutDegree(nodeMinId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeMinId, i);
+                int nodeId = graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(nodeId)) continue;
+                double d = nodeMinDistance + graph.edgeLength(edgeId) * costFunction.costFactor(nodeMinId, edgeId);
+                if (d < state.distance(nodeId)) {
+                    double bound = endBound(nodeId, endFromNodeId, endForwardCost, endToNodeId, endReverseCost);
+                    if (bound == Double.POSITIVE_INFINITY) continue;
+                    state.update(nodeId, d, (i<<28) | nodeMinId);
+                    queue.push(nodeId, (float) (d + bound));
+                }
+            }
+            state.settle(nodeMinId);
+            settledCount += 1;
+        }
 
-        queue.add(new WeightedNode(startNodeId, 0));
+        if (bestCost == Double.POSITIVE_INFINITY) return RouteResult.notFound(RouteResult.Status.NO_ROUTE, settledCount);
+        if (bestEndNodeId == -1) return RouteResult.found(new SingleRoute(List.of(directEdge)), settledCount);
 
-        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Deque<Edge> edgeDeck = new ArrayDeque<>();
+        int originNodeId = addSeededEdges(state, bestEndNodeId, edgeDeck);
+        // Les portions de longueur nulle (point sur une extrémité) sont omises, l'arête inverse pouvant manquer
+        if (originNodeId == startToNodeId) {
+            if (start.position() < startLength) {
+                edgeDeck.addFirst(partialEdge(startEdgeId, startFromNodeId, start.position(), startLength,
+                        start.point(), graph.nodePoint(startToNodeId)));
+            }
+        } else if (start.position() > 0) {
+            edgeDeck.addFirst(partialEdge(startReverseEdgeId, startToNodeId, startLength - start.position(),
+                    startLength, start.point(), graph.nodePoint(startFromNodeId)));
+        }
+        if (bestEndNodeId == endFromNodeId) {
+            if (endPosition > 0) {
+                edgeDeck.addLast(partialEdge(endEdgeId, endFromNodeId, 0, endPosition,
+                        graph.nodePoint(endFromNodeId), end.point()));
+            }
+        } else if (endPosition < endLength) {
+            edgeDeck.addLast(partialEdge(endReverseEdgeId, endToNodeId, 0, endLength - endPosition,
+                    graph.nodePoint(endToNodeId), end.point()));
+        }
+        if (edgeDeck.isEmpty()) return RouteResult.notFound(RouteResult.Status.NO_ROUTE, settledCount);
+        return RouteResult.found(new SingleRoute(new ArrayList<>(edgeDeck)), settledCount);
+    }
 
-        distances[startNodeId] = 0;
+    /**
+     * Calcule le meilleur itinéraire entre les deux noeuds donnés ainsi que des alternatives raisonnables, c.-à-d.
+     * à peine plus coûteuses, suffisamment différentes les unes des autres et localement optimales. Les
+     * alternatives sont extraites d'un seul arbre des plus courts chemins dans chaque sens (méthode des plateaux).
+     * @param startNodeId identité du premier noeud des itinéraires
+     * @param endNodeId identité du dernier noeud des itinéraires
+     * @param maxCount nombre maximal d'itinéraires, y compris le meilleur
+     * @return les itinéraires, le meilleur en premier puis les alternatives par coût croissant, ou une liste vide
+     * s'il n'en existe aucun
+     * @throws IllegalArgumentException si les deux noeuds sont identiques ou si le nombre maximal n'est pas
+     * strictement positif
+     * @throws CancellationException si le fil d'exécution est interrompu durant la recherche
+     */
+    public List<AlternativeRoute> alternativeRoutesBetween(int startNodeId, int endNodeId, int maxCount) {
+        AlternativeRoutesResult result =
+                alternativeRoutesBetween(startNodeId, endNodeId, maxCount, QueryOptions.UNLIMITED);
+        if (result.status() == RouteResult.Status.CANCELLED) throw new CancellationException();
+        return result.routes();
+    }
 
-        do {
-            assert queue.peek() != null;
-            WeightedNode nodeMin = queue.remove();
-            int nodeMinId = nodeMin.nodeId;
+    /**
+     * Calcule le meilleur itinéraire entre les deux noeuds donnés ainsi que des alternatives raisonnables, en
+     * respectant les limites données (voir bestRouteBetween(int, int, QueryOptions)); le nombre maximal de
+     * noeuds visités s'applique au total des deux recherches
+     * @param startNodeId identité du premier noeud des itinéraires
+     * @param endNodeId identité du dernier noeud des itinéraires
+     * @param maxCount nombre maximal d'itinéraires, y compris le meilleur
+     * @param options limites de la recherche
+     * @return le résultat de la recherche, contenant les itinéraires trouvés, le meilleur en premier
+     * @throws IllegalArgumentException si les deux noeuds sont identiques ou si le nombre maximal n'est pas
+     * strictement positif
+     */
+    public AlternativeRoutesResult alternativeRoutesBetween(int startNodeId, int endNodeId, int maxCount,
+                                                            QueryOptions options) {
+        Preconditions.checkArgument(startNodeId != endNodeId && maxCount > 0);
+        RouteResult.Status abortStatus = abortStatus(options, 0, 0);
+        if (abortStatus != null) return AlternativeRoutesResult.notFound(abortStatus, 0);
+        if (heuristic.lowerBound(startNodeId, endNodeId) == Double.POSITIVE_INFINITY) {
+            return AlternativeRoutesResult.notFound(RouteResult.Status.NO_ROUTE, 0);
+        }
+        return new PlateauAlternatives(graph, costFunction, reverseAdjacency(), searchStates.get(),
+                backwardSearchStates.get(), options).routesBetween(startNodeId, endNodeId, maxCount);
+    }
 
-            if (distances[nodeMinId] != NEG_INFINITY) {
-                if (nodeMinId == endNodeId) {
-                    Deque<Edge> edgeDeck = new ArrayDeque<>();
-                    int currentNodeId = nodeMinId;
+    /**
+     * Calcule l'arbre des meilleurs itinéraires depuis le noeud donné, limité au nombre donné de noeuds les plus
+     * proches (en coût) de celui-ci. Ce calcul peut être effectué à l'avance, p.ex. dans un fil d'exécution
+     * d'arrière-plan, afin d'obtenir instantanément les itinéraires partant de ce noeud.
+     * @param rootNodeId identité du noeud racine de l'arbre
+     * @param maxNodeCount nombre maximal de noeuds de l'arbre
+     * @return l'arbre des meilleurs itinéraires depuis le noeud
+     * @throws IllegalArgumentException si le nombre maximal de noeuds n'est pas strictement positif
+     * @throws CancellationException si le fil d'exécution est interrompu durant le calcul
+     */
+    public ShortestPathTree shortestPathTree(int rootNodeId, int maxNodeCount) {
+        Preconditions.checkArgument(maxNodeCount > 0);
+        SearchState state = searchStates.get();
+        state.begin();
+        NodeQueue queue = state.queue();
+        state.update(rootNodeId, 0, -1);
+        queue.push(rootNodeId, 0);
+
+        int[] nodeIds = new int[Math.min(maxNodeCount, 1024)];
+        int nodeCount = 0;
+        int iterationCount = 0;
+        while (!queue.isEmpty() && nodeCount < maxNodeCount) {
+            checkInterruption(++iterationCount);
+            int nodeMinId = queue.pop();
+            if (state.isSettled(nodeMinId)) continue;
+            double nodeMinDistance = state.distance(nodeMinId);
+            for (int i = 0; i < graph.nodeOutDegree(nodeMinId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeMinId, i);
+                int nodeId = graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(nodeId)) continue;
+                double d = nodeMinDistance + graph.edgeLength(edgeId) * costFunction.costFactor(nodeMinId, edgeId);
+                if (d < state.distance(nodeId)) {
+                    state.update(nodeId, d, (i<<28) | nodeMinId);
+                    queue.push(nodeId, (float) d);
+                }
+            }
+            state.settle(nodeMinId);
+            if (nodeCount == nodeIds.length) nodeIds = Arrays.copyOf(nodeIds, 2 * nodeCount);
+            nodeIds[nodeCount++] = nodeMinId;
+        }
+        // La file binaire conserve des entrées périmées (noeuds déjà visités), qui sont retirées avant de juger si
+        // l'arbre contient tous les noeuds atteignables
+        boolean isComplete = true;
+        while (!queue.isEmpty()) {
+            if (!state.isSettled(queue.pop())) {
+                isComplete = false;
+                break;
+            }
+        }
+
+        nodeIds = Arrays.copyOf(nodeIds, nodeCount);
+        Arrays.sort(nodeIds);
+        double[] costs = new double[nodeCount];
+        int[] predecessors = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            costs[i] = state.distance(nodeIds[i]);
+            predecessors[i] = state.predecessor(nodeIds[i]);
+        }
+        return new ShortestPathTree(graph, rootNodeId, nodeIds, costs, predecessors, isComplete);
+    }
+
+    /**
+     * Retourne le graphe de ce planificateur
+     * @return le graphe
+     */
+    Graph graph() {
+        return graph;
+    }
+
+    /**
+     * Retourne la fonction de coût de ce planificateur
+     * @return la fonction de coût
+     */
+    CostFunction costFunction() {
+        return costFunction;
+    }
+
+    /**
+     * Retourne l'état de recherche (avant) du fil d'exécution courant, que peut réutiliser un autre calcul
+     * effectué par ce fil, p.ex. par OverviewGraph, à condition qu'il ne soit pas imbriqué dans une recherche
+     * @return l'état de recherche du fil d'exécution courant
+     */
+    SearchState searchState() {
+        return searchStates.get();
+    }
+
+    /**
+     * Retourne l'état de recherche arrière du fil d'exécution courant (voir searchState)
+     * @return l'état de recherche arrière du fil d'exécution courant
+     */
+    SearchState backwardSearchState() {
+        return backwardSearchStates.get();
+    }
+
+    /**
+     * Méthode auxiliaire retournant les arêtes entrantes des noeuds, en les construisant si nécessaire
+     * @return les arêtes entrantes des noeuds du graphe
+     */
+    ReverseAdjacency reverseAdjacency() {
+        ReverseAdjacency adjacency = reverseAdjacency;
+        if (adjacency == null) {
+            synchronized (this) {
+                adjacency = reverseAdjacency;
+                if (adjacency == null) reverseAdjacency = adjacency = ReverseAdjacency.of(graph);
+            }
+        }
+        return adjacency;
+    }
 
-                    do {
-                        int nodePredecesseurId = Bits.extractUnsigned
-                                (predecesseur[currentNodeId],0,28);
+    /**
+     * Méthode auxiliaire calculant le meilleur itinéraire au moyen d'une recherche A* depuis le noeud de départ
+     * @param startNodeId identité du premier noeud de l'itinéraire
+     * @param endNodeId identité du dernier noeud de l'itinéraire
+     * @param options limites de la recherche
+     * @return le résultat de la recherche
+     */
+    private RouteResult unidirectionalRouteBetween(int startNodeId, int endNodeId, QueryOptions options) {
+        SearchState state = searchStates.get();
+        state.begin();
+        NodeQueue queue = state.queue();
 
-                        int edgeId = graph.nodeOutEdgeId(nodePredecesseurId,
-                                Bits.extractUnsigned(predecesseur[currentNodeId],28,4));
+        state.update(startNodeId, 0, -1);
+        queue.push(startNodeId, 0);
 
-                        edgeDeck.addFirst(Edge.of(graph, edgeId,
-                                nodePredecesseurId, currentNodeId));
-                        currentNodeId = nodePredecesseurId;
-                    } while (currentNodeId != startNodeId);
+        int iterationCount = 0;
+        int settledCount = 0;
+        do {
+            RouteResult.Status abortStatus = abortStatus(options, ++iterationCount, settledCount);
+            if (abortStatus != null) return RouteResult.notFound(abortStatus, settledCount);
+            int nodeMinId = queue.pop();
 
+            if (!state.isSettled(nodeMinId)) {
+                if (nodeMinId == endNodeId) {
+                    Deque<Edge> edgeDeck = new ArrayDeque<>();
+                    addForwardEdges(state, startNodeId, nodeMinId, edgeDeck);
                     List<Edge> edges = new ArrayList<>(edgeDeck);
-                    return new SingleRoute(edges);
+                    return RouteResult.found(new SingleRoute(edges), settledCount);
                 }
+                double nodeMinDistance = state.distance(nodeMinId);
                 for (int i = 0; i < graph.nodeOutDegree(nodeMinId); i++) {
                     int edgeId = graph.nodeOutEdgeId(nodeMinId, i);
                     int nodeId = graph.edgeTargetNodeId(edgeId);
-                    double d = (distances[nodeMinId] + (graph.edgeLength(edgeId) *
+                    if (state.isSettled(nodeId)) continue;
+                    double d = (nodeMinDistance + (graph.edgeLength(edgeId) *
                             costFunction.costFactor(nodeMinId, edgeId)));
 
-                    if (d < distances[nodeId]) {
-                        distances[nodeId] = d;
-                        predecesseur[nodeId] = (i<<28) | nodeMinId;
-                        queue.add(new WeightedNode(nodeId,
-                                (float) (d + endPoint.distanceTo(graph.nodePoint(nodeId)))));
+                    if (d < state.distance(nodeId)) {
+                        double bound = heuristic.lowerBound(nodeId, endNodeId);
+                        if (bound == Double.POSITIVE_INFINITY) continue;
+                        state.update(nodeId, d, (i<<28) | nodeMinId);
+                        queue.push(nodeId, (float) (d + bound));
                     }
                 }
-                distances[nodeMinId] = Float.NEGATIVE_INFINITY;
+                state.settle(nodeMinId);
+                settledCount += 1;
             }
         } while (!queue.isEmpty()) ;
 
 
+        return RouteResult.notFound(RouteResult.Status.NO_ROUTE, settledCount);
+    }
+
+    /**
+     * Méthode auxiliaire calculant le meilleur itinéraire au moyen de deux recherches A* simultanées, l'une depuis
+     * le noeud de départ et l'autre, à rebours, depuis le noeud d'arrivée. Les deux recherches utilisent le
+     * potentiel moyen p(v) = (h(v, arrivée) - h(départ, v)) / 2 (resp. -p(v)), où h est l'heuristique, ce qui rend les coûts réduits identiques dans les deux sens et permet d'arrêter la recherche dès
+     * que la somme des plus petites clés des deux files atteint le coût du meilleur chemin connu.
+     * @param startNodeId identité du premier noeud de l'itinéraire
+     * @param endNodeId identité du dernier noeud de l'itinéraire
+     * @param options limites de la recherche
+     * @return le résultat de la recherche
+     */
+    private RouteResult bidirectionalRouteBetween(int startNodeId, int endNodeId, QueryOptions options) {
+        ReverseAdjacency reverseAdjacency = this.reverseAdjacency;
+        SearchState forward = searchStates.get();
+        SearchState backward = backwardSearchStates.get();
+        forward.begin();
+        backward.begin();
+        NodeQueue forwardQueue = forward.queue();
+        NodeQueue backwardQueue = backward.queue();
+
+        forward.update(startNodeId, 0, -1);
+        forwardQueue.push(startNodeId, 0);
+        backward.update(endNodeId, 0, -1);
+        backwardQueue.push(endNodeId, 0);
+
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int meetingNodeId = -1;
+
+        int iterationCount = 0;
+        int settledCount = 0;
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()
+                && (double) forwardQueue.minKey() + backwardQueue.minKey() < bestDistance) {
+            RouteResult.Status abortStatus = abortStatus(options, ++iterationCount, settledCount);
+            if (abortStatus != null) return RouteResult.notFound(abortStatus, settledCount);
+            if (forwardQueue.minKey() <= backwardQueue.minKey()) {
+                int nodeMinId = forwardQueue.pop();
+                if (forward.isSettled(nodeMinId)) continue;
+                double nodeMinDistance = forward.distance(nodeMinId);
+                for (int i = 0; i < graph.nodeOutDegree(nodeMinId); i++) {
+                    int edgeId = graph.nodeOutEdgeId(nodeMinId, i);
+                    int nodeId = graph.edgeTargetNodeId(edgeId);
+                    if (forward.isSettled(nodeId)) continue;
+                    double d = nodeMinDistance + graph.edgeLength(edgeId) *
+                            costFunction.costFactor(nodeMinId, edgeId);
+
+                    if (d < forward.distance(nodeId)) {
+                        forward.update(nodeId, d, (i<<28) | nodeMinId);
+                        double key = d + potential(nodeId, startNodeId, endNodeId);
+                        if (key != Double.POSITIVE_INFINITY) forwardQueue.push(nodeId, (float) key);
+                        double total = d + backward.distance(nodeId);
+                        if (total < bestDistance) {
+                            bestDistance = total;
+                            meetingNodeId = nodeId;
+                        }
+                    }
+                }
+                forward.settle(nodeMinId);
+                settledCount += 1;
+            } else {
+                int nodeMinId = backwardQueue.pop();
+                if (backward.isSettled(nodeMinId)) continue;
+                double nodeMinDistance = backward.distance(nodeMinId);
+                for (int i = 0; i < reverseAdjacency.inDegree(nodeMinId); i++) {
+                    int edgeId = reverseAdjacency.inEdgeId(nodeMinId, i);
+                    int nodeId = reverseAdjacency.edgeSourceNodeId(edgeId);
+                    if (backward.isSettled(nodeId)) continue;
+                    double d = nodeMinDistance + graph.edgeLength(edgeId) *
+                            costFunction.costFactor(nodeId, edgeId);
+
+                    if (d < backward.distance(nodeId)) {
+                        backward.update(nodeId, d, edgeId);
+                        double key = d - potential(nodeId, startNodeId, endNodeId);
+                        if (key != Double.POSITIVE_INFINITY) backwardQueue.push(nodeId, (float) key);
+                        double total = d + forward.distance(nodeId);
+                        if (total < bestDistance) {
+                            bestDistance = total;
+                            meetingNodeId = nodeId;
+                        }
+                    }
+                }
+                backward.settle(nodeMinId);
+                settledCount += 1;
+            }
+        }
+
+        if (meetingNodeId == -1) return RouteResult.notFound(RouteResult.Status.NO_ROUTE, settledCount);
+
+        Deque<Edge> edgeDeck = new ArrayDeque<>();
+        addForwardEdges(forward, startNodeId, meetingNodeId, edgeDeck);
+        int currentNodeId = meetingNodeId;
+        while (currentNodeId != endNodeId) {
+            int edgeId = backward.predecessor(currentNodeId);
+            int nextNodeId = graph.edgeTargetNodeId(edgeId);
+            edgeDeck.addLast(Edge.of(graph, edgeId, currentNodeId, nextNodeId));
+            currentNodeId = nextNodeId;
+        }
+        return RouteResult.found(new SingleRoute(new ArrayList<>(edgeDeck)), settledCount);
+    }
+
+    /**
+     * Méthode auxiliaire calculant le potentiel moyen du noeud d'identité donnée pour la recherche bidirectionnelle
+     * @param nodeId identité du noeud
+     * @param startNodeId identité du noeud de départ
+     * @param endNodeId identité du noeud d'arrivée
+     * @return le potentiel du noeud pour la recherche avant, l'opposé étant celui de la recherche arrière; il est
+     * infini si l'heuristique garantit que le noeud ne peut pas faire partie de l'itinéraire
+     */
+    private double potential(int nodeId, int startNodeId, int endNodeId) {
+        return (heuristic.lowerBound(nodeId, endNodeId) - heuristic.lowerBound(startNodeId, nodeId)) / 2;
+    }
+
+    /**
+     * Méthode auxiliaire interrompant la recherche, toutes les INTERRUPTION_CHECK_INTERVAL itérations, si le fil
+     * d'exécution qui l'effectue a été interrompu (p.ex. par l'annulation d'une requête de RoutingService)
+     * @param iterationCount nombre d'itérations effectuées par la recherche
+     * @throws CancellationException si le fil d'exécution a été interrompu
+     */
+    private static void checkInterruption(int iterationCount) {
+        if (iterationCount % INTERRUPTION_CHECK_INTERVAL == 0 && Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Méthode auxiliaire déterminant si une recherche doit être abandonnée. Le nombre de noeuds visités est vérifié
+     * à chaque itération, l'annulation et l'échéance (plus coûteuses à vérifier) toutes les
+     * INTERRUPTION_CHECK_INTERVAL itérations seulement.
+     * @param options limites de la recherche
+     * @param iterationCount nombre d'itérations effectuées par la recherche
+     * @param settledCount nombre de noeuds visités par la recherche
+     * @return le statut de la recherche abandonnée, ou null si elle doit continuer
+     */
+    static RouteResult.Status abortStatus(QueryOptions options, int iterationCount, int settledCount) {
+        if (settledCount >= options.maxSettledCount()) return RouteResult.Status.BUDGET_EXHAUSTED;
+        if (iterationCount % INTERRUPTION_CHECK_INTERVAL != 0) return null;
+        if (Thread.currentThread().isInterrupted() || options.isCancelled()) return RouteResult.Status.CANCELLED;
+        if (options.isExpired()) return RouteResult.Status.DEADLINE_EXCEEDED;
         return null;
     }
 
-}
\ No newline at end of file
+    /**
+     * Méthode auxiliaire ajoutant à la recherche l'une des extrémités de l'arête de départ d'un itinéraire entre
+     * points d'arêtes, atteinte avec le coût donné, si elle est atteignable et peut mener à l'arête d'arrivée
+     * @param state état de la recherche
+     * @param nodeId identité de l'extrémité
+     * @param cost coût de la portion de l'arête de départ menant à l'extrémité, infini si elle est inutilisable
+     * @param endFromNodeId identité du noeud de départ de l'arête d'arrivée
+     * @param endForwardCost coût de la portion de l'arête d'arrivée depuis son noeud de départ
+     * @param endToNodeId identité du noeud d'arrivée de l'arête d'arrivée
+     * @param endReverseCost coût de la portion de l'arête d'arrivée depuis son noeud d'arrivée
+     */
+    private void seed(SearchState state, int nodeId, double cost, int endFromNodeId, double endForwardCost,
+                      int endToNodeId, double endReverseCost) {
+        if (cost == Double.POSITIVE_INFINITY) return;
+        double bound = endBound(nodeId, endFromNodeId, endForwardCost, endToNodeId, endReverseCost);
+        if (cost < state.distance(nodeId) && bound != Double.POSITIVE_INFINITY) {
+            state.update(nodeId, cost, -1);
+            state.queue().push(nodeId, (float) (cost + bound));
+        }
+    }
+
+    /**
+     * Méthode auxiliaire retournant le coût d'une portion d'arête, nul si elle est de longueur nulle, même si
+     * l'arête ne peut pas être empruntée (le point se trouvant alors sur l'un de ses noeuds)
+     * @param length longueur de la portion
+     * @param costFactor facteur de coût de l'arête
+     * @return le coût de la portion
+     */
+    private static double portionCost(double length, double costFactor) {
+        return length == 0 ? 0 : length * costFactor;
+    }
+
+    /**
+     * Méthode auxiliaire retournant le coût de la portion de longueur donnée de l'arête inverse donnée, qui part
+     * du noeud donné, nul si la portion est de longueur nulle, et infini si l'arête inverse n'existe pas
+     * @param fromNodeId identité du noeud de départ de l'arête inverse
+     * @param reverseEdgeId identité de l'arête inverse, ou -1
+     * @param length longueur de la portion
+     * @return le coût de la portion
+     */
+    private double reversePortionCost(int fromNodeId, int reverseEdgeId, double length) {
+        if (length == 0) return 0;
+        return reverseEdgeId == -1 ? Double.POSITIVE_INFINITY
+                : portionCost(length, costFunction.costFactor(fromNodeId, reverseEdgeId));
+    }
+
+    /**
+     * Méthode auxiliaire retournant une borne inférieure du coût d'un itinéraire du noeud donné au point
+     * d'arrivée, c.-à-d. la plus petite, parmi les extrémités de l'arête d'arrivée par lesquelles on peut
+     * l'atteindre, de la borne de l'heuristique vers l'extrémité augmentée du coût de la portion qui en part
+     * @param nodeId identité du noeud
+     * @param endFromNodeId identité du noeud de départ de l'arête d'arrivée
+     * @param endForwardCost coût de la portion de l'arête d'arrivée depuis son noeud de départ
+     * @param endToNodeId identité du noeud d'arrivée de l'arête d'arrivée
+     * @param endReverseCost coût de la portion de l'arête d'arrivée depuis son noeud d'arrivée
+     * @return la borne inférieure, infinie si aucune extrémité n'est utilisable
+     */
+    private double endBound(int nodeId, int endFromNodeId, double endForwardCost, int endToNodeId,
+                            double endReverseCost) {
+        double bound = Double.POSITIVE_INFINITY;
+        if (endForwardCost != Double.POSITIVE_INFINITY) {
+            bound = heuristic.lowerBound(nodeId, endFromNodeId) + endForwardCost;
+        }
+        if (endReverseCost != Double.POSITIVE_INFINITY) {
+            bound = Math.min(bound, heuristic.lowerBound(nodeId, endToNodeId) + endReverseCost);
+        }
+        return bound;
+    }
+
+    /**
+     * Méthode auxiliaire retournant la portion de l'arête donnée comprise entre les deux positions données
+     * @param edgeId identité de l'arête
+     * @param fromNodeId identité du noeud de départ de l'arête
+     * @param fromPosition position du début de la portion, en mètres depuis le noeud de départ
+     * @param toPosition position de la fin de la portion
+     * @param fromPoint point de l'arête au début de la portion
+     * @param toPoint point de l'arête à la fin de la portion
+     * @return la portion d'arête, dont le profil est celui de l'arête décalé de la position de début
+     */
+    private Edge partialEdge(int edgeId, int fromNodeId, double fromPosition, double toPosition,
+                             PointCh fromPoint, PointCh toPoint) {
+        DoubleUnaryOperator profile = graph.edgeProfile(edgeId);
+        return new Edge(fromNodeId, graph.edgeTargetNodeId(edgeId), fromPoint, toPoint,
+                toPosition - fromPosition, position -> profile.applyAsDouble(fromPosition + position));
+    }
+
+    /**
+     * Méthode auxiliaire ajoutant au début de la liste donnée les arêtes menant au noeud donné depuis le noeud
+     * initial de la recherche dont il provient, en remontant les prédécesseurs jusqu'à un noeud qui n'en a pas
+     * @param state état de la recherche avant
+     * @param nodeId identité du noeud auquel mènent les arêtes
+     * @param edgeDeck liste à laquelle ajouter les arêtes
+     * @return l'identité du noeud initial
+     */
+    private int addSeededEdges(SearchState state, int nodeId, Deque<Edge> edgeDeck) {
+        int currentNodeId = nodeId;
+        while (state.predecessor(currentNodeId) != -1) {
+            int predecessor = state.predecessor(currentNodeId);
+            int nodePredecesseurId = Bits.extractUnsigned(predecessor, 0, 28);
+            int edgeId = graph.nodeOutEdgeId(nodePredecesseurId, Bits.extractUnsigned(predecessor, 28, 4));
+            edgeDeck.addFirst(Edge.of(graph, edgeId, nodePredecesseurId, currentNodeId));
+            currentNodeId = nodePredecesseurId;
+        }
+        return currentNodeId;
+    }
+
+    /**
+     * Méthode auxiliaire ajoutant au début de la liste donnée les arêtes menant du noeud de départ au noeud donné,
+     * en remontant les prédécesseurs d'une recherche avant
+     * @param state état de la recherche avant
+     * @param startNodeId identité du noeud de départ
+     * @param nodeId identité du noeud auquel mènent les arêtes
+     * @param edgeDeck liste à laquelle ajouter les arêtes
+     */
+    private void addForwardEdges(SearchState state, int startNodeId, int nodeId, Deque<Edge> edgeDeck) {
+        int currentNodeId = nodeId;
+        while (currentNodeId != startNodeId) {
+            int nodePredecesseurId = Bits.extractUnsigned
+                    (state.predecessor(currentNodeId),0,28);
+
+            int edgeId = graph.nodeOutEdgeId(nodePredecesseurId,
+                    Bits.extractUnsigned(state.predecessor(currentNodeId),28,4));
+
+            edgeDeck.addFirst(Edge.of(graph, edgeId,
+                    nodePredecesseurId, currentNodeId));
+            currentNodeId = nodePredecesseurId;
+        }
+    }
+
+}
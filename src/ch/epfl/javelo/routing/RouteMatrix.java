@@ -0,0 +1,205 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * Classe RouteMatrix, matrice des coûts et des longueurs des meilleurs itinéraires entre chaque noeud d'un
+ * ensemble de départs et chaque noeud d'un ensemble d'arrivées.
+ * <p>
+ * La matrice est calculée au moyen d'une hiérarchie de contraction et de "seaux" : l'espace de recherche
+ * descendant (arrière) de chaque arrivée est d'abord calculé, et chacun de ses noeuds reçoit dans son seau le
+ * coût jusqu'à l'arrivée; l'espace de recherche montant de chaque départ est ensuite parcouru, en combinant le
+ * coût de chaque noeud avec le contenu de son seau. Il suffit ainsi d'une recherche par départ et par arrivée, au
+ * lieu d'une par paire, et ces recherches sont effectuées en parallèle.
+ * <p>
+ * Seuls des nombres sont calculés; les itinéraires eux-mêmes ne sont construits que sur demande.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class RouteMatrix {
+    private final ContractionHierarchy hierarchy;
+    private final int[] sourceNodeIds;
+    private final int[] targetNodeIds;
+    private final double[] costs;
+    private final double[] lengths;
+
+    /**
+     * Constructeur privé, les instances étant obtenues par la méthode compute
+     */
+    private RouteMatrix(ContractionHierarchy hierarchy, int[] sourceNodeIds, int[] targetNodeIds, double[] costs,
+                        double[] lengths) {
+        this.hierarchy = hierarchy;
+        this.sourceNodeIds = sourceNodeIds;
+        this.targetNodeIds = targetNodeIds;
+        this.costs = costs;
+        this.lengths = lengths;
+    }
+
+    /**
+     * Calcule la matrice des meilleurs itinéraires entre les départs et les arrivées donnés
+     * @param hierarchy hiérarchie de contraction du graphe pour la fonction de coût voulue
+     * @param sourceNodeIds identités des noeuds de départ (lignes de la matrice)
+     * @param targetNodeIds identités des noeuds d'arrivée (colonnes de la matrice)
+     * @return la matrice des coûts et longueurs des itinéraires
+     * @throws IllegalArgumentException si l'un des ensembles est vide
+     */
+    public static RouteMatrix compute(ContractionHierarchy hierarchy, int[] sourceNodeIds, int[] targetNodeIds) {
+        Objects.requireNonNull(hierarchy);
+        Preconditions.checkArgument(sourceNodeIds.length > 0 && targetNodeIds.length > 0);
+        int[] sources = sourceNodeIds.clone();
+        int[] targets = targetNodeIds.clone();
+        int targetCount = targets.length;
+
+        ContractionHierarchy.SearchSpace[] targetSpaces = IntStream.range(0, targetCount)
+                .parallel()
+                .mapToObj(j -> hierarchy.upwardSearchSpace(targets[j], false))
+                .toArray(ContractionHierarchy.SearchSpace[]::new);
+        Buckets buckets = Buckets.of(targetSpaces);
+
+        double[] costs = new double[sources.length * targetCount];
+        double[] lengths = new double[sources.length * targetCount];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        Arrays.fill(lengths, Double.POSITIVE_INFINITY);
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            ContractionHierarchy.SearchSpace space = hierarchy.upwardSearchSpace(sources[i], true);
+            int row = i * targetCount;
+            for (int k = 0; k < space.nodeIds().length; k++) {
+                int bucket = Arrays.binarySearch(buckets.nodeIds(), space.nodeIds()[k]);
+                if (bucket < 0) continue;
+                for (int b = buckets.firstEntries[bucket]; b < buckets.firstEntries[bucket + 1]; b++) {
+                    int j = buckets.targetIndices[b];
+                    double cost = space.costs()[k] + buckets.costs[b];
+                    if (cost < costs[row + j]) {
+                        costs[row + j] = cost;
+                        lengths[row + j] = space.lengths()[k] + buckets.lengths[b];
+                    }
+                }
+            }
+        });
+        return new RouteMatrix(hierarchy, sources, targets, costs, lengths);
+    }
+
+    /**
+     * Retourne le nombre de départs, c.-à-d. de lignes de la matrice
+     * @return le nombre de départs
+     */
+    public int sourceCount() {
+        return sourceNodeIds.length;
+    }
+
+    /**
+     * Retourne le nombre d'arrivées, c.-à-d. de colonnes de la matrice
+     * @return le nombre d'arrivées
+     */
+    public int targetCount() {
+        return targetNodeIds.length;
+    }
+
+    /**
+     * Retourne le coût du meilleur itinéraire entre le départ et l'arrivée d'index donnés
+     * @param sourceIndex index du départ
+     * @param targetIndex index de l'arrivée
+     * @return le coût de l'itinéraire, ou l'infini positif s'il n'en existe aucun
+     */
+    public double cost(int sourceIndex, int targetIndex) {
+        return costs[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * Retourne la longueur, en mètres, du meilleur itinéraire entre le départ et l'arrivée d'index donnés
+     * @param sourceIndex index du départ
+     * @param targetIndex index de l'arrivée
+     * @return la longueur de l'itinéraire, ou l'infini positif s'il n'en existe aucun
+     */
+    public double length(int sourceIndex, int targetIndex) {
+        return lengths[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * Construit le meilleur itinéraire entre le départ et l'arrivée d'index donnés
+     * @param sourceIndex index du départ
+     * @param targetIndex index de l'arrivée
+     * @return l'itinéraire, ou null s'il n'en existe aucun ou si le départ et l'arrivée sont le même noeud
+     */
+    public Route route(int sourceIndex, int targetIndex) {
+        int sourceNodeId = sourceNodeIds[sourceIndex];
+        int targetNodeId = targetNodeIds[targetIndex];
+        if (sourceNodeId == targetNodeId || cost(sourceIndex, targetIndex) == Double.POSITIVE_INFINITY) return null;
+        return hierarchy.bestRouteBetween(sourceNodeId, targetNodeId);
+    }
+
+    /**
+     * Méthode auxiliaire retournant l'index de la case donnée dans les tableaux de la matrice
+     */
+    private int index(int sourceIndex, int targetIndex) {
+        Objects.checkIndex(sourceIndex, sourceNodeIds.length);
+        Objects.checkIndex(targetIndex, targetNodeIds.length);
+        return sourceIndex * targetNodeIds.length + targetIndex;
+    }
+
+    /**
+     * Seaux des noeuds des espaces de recherche des arrivées, regroupés par noeud. Seuls les noeuds ayant un seau
+     * non vide y figurent, triés par identité, afin que la taille de la structure ne dépende pas de celle du
+     * graphe.
+     * @param nodeIds identités des noeuds ayant un seau, triées
+     * @param firstEntries index de la première entrée du seau de chaque noeud, suivi du nombre d'entrées
+     * @param targetIndices index de l'arrivée de chaque entrée
+     * @param costs coût entre le noeud et l'arrivée de chaque entrée
+     * @param lengths longueur du chemin entre le noeud et l'arrivée de chaque entrée
+     */
+    private record Buckets(int[] nodeIds, int[] firstEntries, int[] targetIndices, double[] costs,
+                           double[] lengths) {
+
+        /**
+         * Construit les seaux des espaces de recherche donnés
+         * @param targetSpaces espace de recherche arrière de chaque arrivée
+         * @return les seaux
+         */
+        static Buckets of(ContractionHierarchy.SearchSpace[] targetSpaces) {
+            int entryCount = 0;
+            for (ContractionHierarchy.SearchSpace space : targetSpaces) entryCount += space.nodeIds().length;
+            long[] entries = new long[entryCount];
+            int[] unsortedTargetIndices = new int[entryCount];
+            double[] unsortedCosts = new double[entryCount];
+            double[] unsortedLengths = new double[entryCount];
+            int e = 0;
+            for (int j = 0; j < targetSpaces.length; j++) {
+                ContractionHierarchy.SearchSpace space = targetSpaces[j];
+                for (int k = 0; k < space.nodeIds().length; k++) {
+                    entries[e] = ((long) space.nodeIds()[k] << 32) | e;
+                    unsortedTargetIndices[e] = j;
+                    unsortedCosts[e] = space.costs()[k];
+                    unsortedLengths[e] = space.lengths()[k];
+                    e += 1;
+                }
+            }
+            Arrays.parallelSort(entries);
+
+            int[] nodeIds = new int[entryCount];
+            int[] firstEntries = new int[entryCount + 1];
+            int[] targetIndices = new int[entryCount];
+            double[] costs = new double[entryCount];
+            double[] lengths = new double[entryCount];
+            int nodeCount = 0;
+            for (int i = 0; i < entryCount; i++) {
+                int nodeId = (int) (entries[i] >>> 32);
+                int entry = (int) entries[i];
+                if (nodeCount == 0 || nodeIds[nodeCount - 1] != nodeId) {
+                    nodeIds[nodeCount] = nodeId;
+                    firstEntries[nodeCount++] = i;
+                }
+                targetIndices[i] = unsortedTargetIndices[entry];
+                costs[i] = unsortedCosts[entry];
+                lengths[i] = unsortedLengths[entry];
+            }
+            firstEntries[nodeCount] = entryCount;
+            return new Buckets(Arrays.copyOf(nodeIds, nodeCount), Arrays.copyOf(firstEntries, nodeCount + 1),
+                    targetIndices, costs, lengths);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * Enregistrement RouteResult, résultat d'une recherche d'itinéraire effectuée avec des limites (voir
+ * QueryOptions), qui distingue l'absence d'itinéraire de l'abandon de la recherche
+ *
+ * @param status statut de la recherche
+ * @param route itinéraire trouvé, null si le statut n'est pas FOUND
+ * @param settledCount nombre de noeuds visités par la recherche
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public record RouteResult(Status status, Route route, int settledCount) {
+
+    /**
+     * Statut d'une recherche d'itinéraire
+     */
+    public enum Status {
+        /**
+         * Le meilleur itinéraire a été trouvé
+         */
+        FOUND,
+        /**
+         * Il n'existe aucun itinéraire
+         */
+        NO_ROUTE,
+        /**
+         * La recherche a été annulée, par son jeton ou par l'interruption de son fil d'exécution
+         */
+        CANCELLED,
+        /**
+         * La recherche a été abandonnée car son échéance est dépassée
+         */
+        DEADLINE_EXCEEDED,
+        /**
+         * La recherche a été abandonnée car elle a visité le nombre maximal de noeuds
+         */
+        BUDGET_EXHAUSTED;
+
+        /**
+         * Retourne vrai ssi ce statut est celui d'une recherche abandonnée avant de connaître sa réponse
+         * @return vrai ssi la recherche a été abandonnée
+         */
+        public boolean isAborted() {
+            return this != FOUND && this != NO_ROUTE;
+        }
+    }
+
+    /**
+     * Constructeur compact
+     * @throws IllegalArgumentException si l'itinéraire est nul alors que le statut est FOUND, ou inversement, ou
+     * si le nombre de noeuds visités est négatif
+     */
+    public RouteResult {
+        Preconditions.checkArgument((status == Status.FOUND) == (route != null) && settledCount >= 0);
+    }
+
+    /**
+     * Retourne le résultat d'une recherche ayant trouvé l'itinéraire donné
+     * @param route itinéraire trouvé
+     * @param settledCount nombre de noeuds visités par la recherche
+     * @return le résultat
+     */
+    public static RouteResult found(Route route, int settledCount) {
+        return new RouteResult(Status.FOUND, route, settledCount);
+    }
+
+    /**
+     * Retourne le résultat d'une recherche terminée sans avoir trouvé d'itinéraire, ou abandonnée
+     * @param status statut de la recherche, différent de FOUND
+     * @param settledCount nombre de noeuds visités par la recherche
+     * @return le résultat
+     */
+    public static RouteResult notFound(Status status, int settledCount) {
+        return new RouteResult(status, null, settledCount);
+    }
+
+    /**
+     * Retourne vrai ssi la recherche a été abandonnée avant de connaître sa réponse
+     * @return vrai ssi la recherche a été abandonnée
+     */
+    public boolean isAborted() {
+        return status.isAborted();
+    }
+}
@@ -0,0 +1,147 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Classe RoutingService, service de calcul d'itinéraires asynchrone pouvant traiter de nombreuses requêtes
+ * simultanées. Toutes les requêtes partagent le même graphe et la même fonction de coût, qui ne sont jamais
+ * modifiés, et sont exécutées par un groupe de fils d'exécution de taille fixe (un par coeur par défaut), chacun
+ * réutilisant ses propres états de recherche d'une requête à l'autre.
+ * <p>
+ * Le résultat de chaque requête est un CompletableFuture; l'annuler interrompt la recherche en cours, qui
+ * s'arrête alors rapidement. Les limites d'une requête (échéance, nombre maximal de noeuds visités, jeton
+ * d'annulation) peuvent aussi être données au moyen de QueryOptions, auquel cas le résultat indique si la
+ * requête a été abandonnée.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class RoutingService implements AutoCloseable {
+    private final RouteComputer routeComputer;
+    private final ExecutorService executor;
+
+    /**
+     * Construit un service utilisant un fil d'exécution par coeur et la distance à vol d'oiseau comme heuristique
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     */
+    public RoutingService(Graph graph, CostFunction costFunction) {
+        this(graph, costFunction, new StraightLineHeuristic(graph), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construit un service utilisant l'heuristique et le nombre de fils d'exécution donnés
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param heuristic heuristique cohérente avec la fonction de coût
+     * @param threadCount nombre de fils d'exécution calculant les itinéraires
+     * @throws IllegalArgumentException si le nombre de fils d'exécution n'est pas strictement positif
+     */
+    public RoutingService(Graph graph, CostFunction costFunction, Heuristic heuristic, int threadCount) {
+        Preconditions.checkArgument(threadCount > 0);
+        this.routeComputer = new RouteComputer(graph, costFunction, RouteComputer.QueueType.INDEXED_HEAP,
+                RouteComputer.SearchMode.BIDIRECTIONAL, heuristic);
+        this.executor = Executors.newFixedThreadPool(threadCount, new RoutingThreadFactory());
+    }
+
+    /**
+     * Lance le calcul du meilleur itinéraire entre les deux noeuds donnés
+     * @param startNodeId identité du premier noeud de l'itinéraire
+     * @param endNodeId identité du dernier noeud de l'itinéraire
+     * @return le futur résultat, dont la valeur est null s'il n'existe aucun itinéraire
+     * @throws IllegalArgumentException si les deux noeuds sont identiques
+     */
+    public CompletableFuture<Route> bestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        RouteFuture<Route> future = new RouteFuture<>();
+        executor.execute(() -> future.run(() -> routeComputer.bestRouteBetween(startNodeId, endNodeId)));
+        return future;
+    }
+
+    /**
+     * Lance le calcul du meilleur itinéraire entre les deux noeuds donnés, en respectant les limites données.
+     * L'échéance éventuelle inclut l'attente de la requête, qui n'est pas commencée si elle est déjà dépassée.
+     * @param startNodeId identité du premier noeud de l'itinéraire
+     * @param endNodeId identité du dernier noeud de l'itinéraire
+     * @param options limites de la recherche
+     * @return le futur résultat de la recherche
+     * @throws IllegalArgumentException si les deux noeuds sont identiques
+     */
+    public CompletableFuture<RouteResult> bestRouteBetween(int startNodeId, int endNodeId, QueryOptions options) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        RouteFuture<RouteResult> future = new RouteFuture<>();
+        executor.execute(() -> future.run(() -> routeComputer.bestRouteBetween(startNodeId, endNodeId, options)));
+        return future;
+    }
+
+    /**
+     * Arrête le service, en interrompant les requêtes en cours et en abandonnant celles en attente
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Futur résultat d'une requête, dont l'annulation interrompt le fil d'exécution qui la traite
+     */
+    private static final class RouteFuture<T> extends CompletableFuture<T> {
+        /**
+         * Fil d'exécution traitant la requête, ou null si elle n'est pas en cours de traitement
+         */
+        private Thread runner;
+
+        /**
+         * Effectue le calcul donné, à moins que la requête n'ait été annulée avant le début du calcul
+         * @param computation calcul du résultat de la requête
+         */
+        void run(Supplier<T> computation) {
+            synchronized (this) {
+                if (isDone()) return;
+                runner = Thread.currentThread();
+            }
+            try {
+                complete(computation.get());
+            } catch (Throwable t) {
+                completeExceptionally(t);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    // Efface une éventuelle interruption, afin qu'elle n'affecte pas la requête suivante
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            synchronized (this) {
+                if (cancelled && runner != null) runner.interrupt();
+            }
+            return cancelled;
+        }
+    }
+
+    /**
+     * Fabrique des fils d'exécution du service, qui n'empêchent pas l'arrêt du programme
+     */
+    private static final class RoutingThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "javelo-routing-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Arrays;
+
+/**
+ * Classe SearchState, état réutilisable d'une recherche de plus court chemin (distances, prédécesseurs, noeuds
+ * visités et file de priorité). Chaque noeud est marqué du numéro (époque) de la dernière recherche l'ayant
+ * atteint, de sorte que commencer une nouvelle recherche ne coûte rien, indépendamment de la taille du graphe.
+ * Les recherches qui en ont besoin peuvent en outre associer une étiquette entière à chaque noeud atteint, dont
+ * le tableau n'est alloué qu'à la première utilisation.
+ * Une instance ne doit être utilisée que par un seul fil d'exécution à la fois.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+final class SearchState {
+    /**
+     * Plus grande époque représentable, le bit de poids faible des marques étant réservé aux noeuds visités
+     */
+    private static final int MAX_EPOCH = Integer.MAX_VALUE >>> 1;
+
+    private final int[] stamps;
+    private final double[] distances;
+    private final int[] predecessors;
+    private final NodeQueue queue;
+    private int[] labels;
+    private int epoch;
+
+    /**
+     * Constructeur public
+     * @param nodeCount nombre de noeuds du graphe
+     * @param queueType type de la file de priorité de la recherche
+     */
+    public SearchState(int nodeCount, RouteComputer.QueueType queueType) {
+        stamps = new int[nodeCount];
+        distances = new double[nodeCount];
+        predecessors = new int[nodeCount];
+        queue = queueType.newQueue(nodeCount);
+    }
+
+    /**
+     * Commence une nouvelle recherche, en oubliant toutes les informations de la recherche précédente
+     */
+    public void begin() {
+        queue.clear();
+        if (epoch == MAX_EPOCH) {
+            Arrays.fill(stamps, 0);
+            epoch = 0;
+        }
+        epoch += 1;
+    }
+
+    /**
+     * Retourne la file de priorité de la recherche
+     * @return la file de priorité de la recherche
+     */
+    public NodeQueue queue() {
+        return queue;
+    }
+
+    /**
+     * Retourne la meilleure distance connue jusqu'au noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @return la distance du noeud, ou l'infini positif s'il n'a pas encore été atteint par la recherche
+     */
+    public double distance(int nodeId) {
+        return isReached(nodeId) ? distances[nodeId] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Retourne le prédécesseur du noeud d'identité donnée, dont la signification dépend de la recherche
+     * @param nodeId identité d'un noeud atteint par la recherche
+     * @return le prédécesseur du noeud
+     */
+    public int predecessor(int nodeId) {
+        assert isReached(nodeId);
+        return predecessors[nodeId];
+    }
+
+    /**
+     * Met à jour la distance et le prédécesseur du noeud d'identité donnée
+     * @param nodeId identité du noeud
+     * @param distance nouvelle distance du noeud
+     * @param predecessor nouveau prédécesseur du noeud
+     */
+    public void update(int nodeId, double distance, int predecessor) {
+        if (!isReached(nodeId)) stamps[nodeId] = epoch << 1;
+        distances[nodeId] = distance;
+        predecessors[nodeId] = predecessor;
+    }
+
+    /**
+     * Retourne l'étiquette du noeud d'identité donnée, dont la signification dépend de la recherche
+     * @param nodeId identité d'un noeud atteint par la recherche, dont l'étiquette a été fixée
+     * @return l'étiquette du noeud
+     */
+    public int label(int nodeId) {
+        assert isReached(nodeId) && labels != null;
+        return labels[nodeId];
+    }
+
+    /**
+     * Fixe l'étiquette du noeud d'identité donnée, valable jusqu'au début de la recherche suivante
+     * @param nodeId identité d'un noeud atteint par la recherche
+     * @param label étiquette du noeud
+     */
+    public void setLabel(int nodeId, int label) {
+        assert isReached(nodeId);
+        if (labels == null) labels = new int[stamps.length];
+        labels[nodeId] = label;
+    }
+
+    /**
+     * Retourne vrai ssi le noeud d'identité donnée a été atteint par la recherche courante
+     * @param nodeId identité du noeud
+     * @return vrai ssi le noeud a été atteint
+     */
+    public boolean isReached(int nodeId) {
+        return (stamps[nodeId] >>> 1) == epoch;
+    }
+
+    /**
+     * Retourne vrai ssi le noeud d'identité donnée a déjà été visité (sa distance est définitive)
+     * @param nodeId identité du noeud
+     * @return vrai ssi le noeud a été visité
+     */
+    public boolean isSettled(int nodeId) {
+        return stamps[nodeId] == ((epoch << 1) | 1);
+    }
+
+    /**
+     * Marque le noeud d'identité donnée, qui doit avoir été atteint, comme visité
+     * @param nodeId identité du noeud
+     */
+    public void settle(int nodeId) {
+        assert isReached(nodeId);
+        stamps[nodeId] |= 1;
+    }
+}
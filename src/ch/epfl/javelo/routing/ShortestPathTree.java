@@ -0,0 +1,119 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Classe ShortestPathTree, arbre des meilleurs itinéraires depuis un noeud racine, éventuellement limité aux
+ * noeuds les plus proches (en coût) de la racine. Il permet d'obtenir instantanément le meilleur itinéraire de la
+ * racine vers n'importe lequel de ses noeuds. Seuls les noeuds de l'arbre sont stockés, triés par identité, de
+ * sorte que sa taille ne dépend pas de celle du graphe.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class ShortestPathTree {
+    private final Graph graph;
+    private final int rootNodeId;
+    private final int[] nodeIds;
+    private final double[] costs;
+    private final int[] predecessors;
+    private final boolean isComplete;
+
+    /**
+     * Constructeur de l'arbre, qui ne copie pas les tableaux donnés
+     * @param graph graphe
+     * @param rootNodeId identité du noeud racine
+     * @param nodeIds identités des noeuds de l'arbre, triées
+     * @param costs coût du meilleur itinéraire vers chaque noeud
+     * @param predecessors prédécesseur de chaque noeud (index de l'arête sortante et noeud précédent)
+     * @param isComplete vrai ssi l'arbre contient tous les noeuds atteignables depuis la racine
+     */
+    ShortestPathTree(Graph graph, int rootNodeId, int[] nodeIds, double[] costs, int[] predecessors,
+                     boolean isComplete) {
+        this.graph = graph;
+        this.rootNodeId = rootNodeId;
+        this.nodeIds = nodeIds;
+        this.costs = costs;
+        this.predecessors = predecessors;
+        this.isComplete = isComplete;
+    }
+
+    /**
+     * Retourne l'identité du noeud racine de l'arbre
+     * @return l'identité du noeud racine
+     */
+    public int rootNodeId() {
+        return rootNodeId;
+    }
+
+    /**
+     * Retourne le nombre de noeuds de l'arbre
+     * @return le nombre de noeuds de l'arbre
+     */
+    public int nodeCount() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Retourne vrai ssi l'arbre contient tous les noeuds atteignables depuis la racine, auquel cas un noeud qui
+     * n'en fait pas partie est inatteignable
+     * @return vrai ssi l'arbre est complet
+     */
+    public boolean isComplete() {
+        return isComplete;
+    }
+
+    /**
+     * Retourne vrai ssi l'arbre permet de répondre à une recherche d'itinéraire de la racine vers le noeud donné,
+     * c.-à-d. si ce noeud fait partie de l'arbre ou si l'arbre est complet
+     * @param nodeId identité du noeud
+     * @return vrai ssi l'arbre couvre le noeud
+     */
+    public boolean covers(int nodeId) {
+        return isComplete || contains(nodeId);
+    }
+
+    /**
+     * Retourne vrai ssi le noeud donné fait partie de l'arbre
+     * @param nodeId identité du noeud
+     * @return vrai ssi le noeud fait partie de l'arbre
+     */
+    public boolean contains(int nodeId) {
+        return Arrays.binarySearch(nodeIds, nodeId) >= 0;
+    }
+
+    /**
+     * Retourne le coût du meilleur itinéraire de la racine vers le noeud donné
+     * @param nodeId identité du noeud
+     * @return le coût de l'itinéraire, ou l'infini positif si le noeud ne fait pas partie de l'arbre
+     */
+    public double costTo(int nodeId) {
+        int index = Arrays.binarySearch(nodeIds, nodeId);
+        return index >= 0 ? costs[index] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Retourne le meilleur itinéraire de la racine vers le noeud donné
+     * @param nodeId identité du noeud d'arrivée, différent de la racine
+     * @return le meilleur itinéraire, ou null si le noeud ne fait pas partie de l'arbre
+     */
+    public Route routeTo(int nodeId) {
+        if (nodeId == rootNodeId || !contains(nodeId)) return null;
+        Deque<Edge> edges = new ArrayDeque<>();
+        int currentNodeId = nodeId;
+        while (currentNodeId != rootNodeId) {
+            int predecessor = predecessors[Arrays.binarySearch(nodeIds, currentNodeId)];
+            int previousNodeId = Bits.extractUnsigned(predecessor, 0, 28);
+            int edgeId = graph.nodeOutEdgeId(previousNodeId, Bits.extractUnsigned(predecessor, 28, 4));
+            edges.addFirst(Edge.of(graph, edgeId, previousNodeId, currentNodeId));
+            currentNodeId = previousNodeId;
+        }
+        return new SingleRoute(new ArrayList<>(edges));
+    }
+}
@@ -0,0 +1,529 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classe SimplifiedGraph, graphe simplifié dans lequel chaque chaîne maximale de noeuds de degré 2 (p.ex. le long
+ * d'une route sinueuse) est remplacée par une super-arête, qui porte la somme des coûts, longueurs et dénivelés
+ * positifs des arêtes de la chaîne. Une recherche A* n'y visite que les noeuds principaux (intersections, culs-de-sac,
+ * etc.), puis chaque super-arête de l'itinéraire trouvé est décomposée en les arêtes du graphe qu'elle remplace.
+ * <p>
+ * Un noeud est contracté (fait partie d'une chaîne) s'il a exactement deux voisins distincts, au plus une arête
+ * praticable (de coût fini) vers chacun d'eux et depuis chacun d'eux, et si tout itinéraire y entrant depuis l'un
+ * de ses voisins peut en ressortir vers l'autre. La suite d'une chaîne est ainsi toujours déterminée par l'arête
+ * qui y entre.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public final class SimplifiedGraph {
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final Heuristic heuristic;
+    private final ReverseAdjacency reverseAdjacency;
+    /**
+     * Index de chaque noeud du graphe parmi les noeuds principaux, ou -1 s'il est contracté
+     */
+    private final int[] coreIds;
+    /**
+     * Identité de chaque noeud principal dans le graphe
+     */
+    private final int[] coreNodeIds;
+    /**
+     * Index de la première super-arête sortant de chaque noeud principal, suivi du nombre de super-arêtes
+     */
+    private final int[] firstSuperEdges;
+    private final int[] superTargets;
+    private final int[] superFirstEdgeIds;
+    private final int[] superEdgeCounts;
+    private final double[] superCosts;
+    private final double[] superLengths;
+    private final double[] superElevationGains;
+    private final ThreadLocal<SearchState> searchStates;
+
+    /**
+     * Constructeur privé, qui ne copie pas les tableaux donnés
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param heuristic heuristique cohérente avec la fonction de coût
+     * @param reverseAdjacency arêtes entrantes des noeuds du graphe
+     * @param coreIds index de chaque noeud parmi les noeuds principaux, ou -1
+     * @param coreNodeIds identité de chaque noeud principal
+     * @param firstSuperEdges index de la première super-arête de chaque noeud principal, suivi du nombre total
+     * @param superTargets index du noeud principal d'arrivée de chaque super-arête
+     * @param superFirstEdgeIds identité de la première arête de chaque super-arête
+     * @param superEdgeCounts nombre d'arêtes de chaque super-arête
+     * @param superCosts coût de chaque super-arête
+     * @param superLengths longueur de chaque super-arête
+     * @param superElevationGains dénivelé positif de chaque super-arête
+     */
+    private SimplifiedGraph(Graph graph, CostFunction costFunction, Heuristic heuristic,
+                            ReverseAdjacency reverseAdjacency, int[] coreIds, int[] coreNodeIds,
+                            int[] firstSuperEdges, int[] superTargets, int[] superFirstEdgeIds,
+                            int[] superEdgeCounts, double[] superCosts, double[] superLengths,
+                            double[] superElevationGains) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.heuristic = heuristic;
+        this.reverseAdjacency = reverseAdjacency;
+        this.coreIds = coreIds;
+        this.coreNodeIds = coreNodeIds;
+        this.firstSuperEdges = firstSuperEdges;
+        this.superTargets = superTargets;
+        this.superFirstEdgeIds = superFirstEdgeIds;
+        this.superEdgeCounts = superEdgeCounts;
+        this.superCosts = superCosts;
+        this.superLengths = superLengths;
+        this.superElevationGains = superElevationGains;
+        this.searchStates = ThreadLocal.withInitial(() ->
+                new SearchState(coreNodeIds.length, RouteComputer.QueueType.INDEXED_HEAP));
+    }
+
+    /**
+     * Construit le graphe simplifié du graphe donné, guidé par la distance à vol d'oiseau
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @return le graphe simplifié
+     */
+    public static SimplifiedGraph of(Graph graph, CostFunction costFunction) {
+        return of(graph, costFunction, new StraightLineHeuristic(graph));
+    }
+
+    /**
+     * Construit le graphe simplifié du graphe donné, guidé par l'heuristique donnée
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param heuristic heuristique cohérente avec la fonction de coût
+     * @return le graphe simplifié
+     */
+    public static SimplifiedGraph of(Graph graph, CostFunction costFunction, Heuristic heuristic) {
+        ReverseAdjacency reverseAdjacency = ReverseAdjacency.of(graph);
+        int nodeCount = graph.nodeCount();
+        int[] coreIds = new int[nodeCount];
+        int coreCount = 0;
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            coreIds[nodeId] = isChainNode(graph, costFunction, reverseAdjacency, nodeId) ? -1 : coreCount++;
+        }
+        int[] coreNodeIds = new int[coreCount];
+        for (int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            if (coreIds[nodeId] != -1) coreNodeIds[coreIds[nodeId]] = nodeId;
+        }
+
+        int[] firstSuperEdges = new int[coreCount + 1];
+        int capacity = Math.max(16, coreCount);
+        int[] superTargets = new int[capacity];
+        int[] superFirstEdgeIds = new int[capacity];
+        int[] superEdgeCounts = new int[capacity];
+        double[] superCosts = new double[capacity];
+        double[] superLengths = new double[capacity];
+        double[] superElevationGains = new double[capacity];
+        int superEdgeCount = 0;
+        for (int coreId = 0; coreId < coreCount; coreId++) {
+            int originId = coreNodeIds[coreId];
+            for (int i = 0; i < graph.nodeOutDegree(originId); i++) {
+                int firstEdgeId = graph.nodeOutEdgeId(originId, i);
+                if (!isUsable(graph, costFunction, originId, firstEdgeId)) continue;
+
+                int edgeCount = 0;
+                double cost = 0, length = 0, elevationGain = 0;
+                int previousNodeId = originId;
+                int edgeId = firstEdgeId;
+                int nodeId;
+                while (true) {
+                    nodeId = graph.edgeTargetNodeId(edgeId);
+                    edgeCount += 1;
+                    cost += graph.edgeLength(edgeId) * costFunction.costFactor(previousNodeId, edgeId);
+                    length += graph.edgeLength(edgeId);
+                    elevationGain += graph.edgeElevationGain(edgeId);
+                    if (coreIds[nodeId] != -1) break;
+                    edgeId = nextEdgeId(graph, costFunction, nodeId, previousNodeId);
+                    previousNodeId = nodeId;
+                }
+                // Une chaîne revenant à son origine ne fait partie d'aucun meilleur itinéraire
+                if (nodeId == originId) continue;
+
+                if (superEdgeCount == superTargets.length) {
+                    capacity = 2 * superEdgeCount;
+                    superTargets = Arrays.copyOf(superTargets, capacity);
+                    superFirstEdgeIds = Arrays.copyOf(superFirstEdgeIds, capacity);
+                    superEdgeCounts = Arrays.copyOf(superEdgeCounts, capacity);
+                    superCosts = Arrays.copyOf(superCosts, capacity);
+                    superLengths = Arrays.copyOf(superLengths, capacity);
+                    superElevationGains = Arrays.copyOf(superElevationGains, capacity);
+                }
+                superTargets[superEdgeCount] = coreIds[nodeId];
+                superFirstEdgeIds[superEdgeCount] = firstEdgeId;
+                superEdgeCounts[superEdgeCount] = edgeCount;
+                superCosts[superEdgeCount] = cost;
+                superLengths[superEdgeCount] = length;
+                superElevationGains[superEdgeCount] = elevationGain;
+                superEdgeCount += 1;
+            }
+            firstSuperEdges[coreId + 1] = superEdgeCount;
+        }
+
+        return new SimplifiedGraph(graph, costFunction, heuristic, reverseAdjacency, coreIds, coreNodeIds,
+                firstSuperEdges, Arrays.copyOf(superTargets, superEdgeCount),
+                Arrays.copyOf(superFirstEdgeIds, superEdgeCount), Arrays.copyOf(superEdgeCounts, superEdgeCount),
+                Arrays.copyOf(superCosts, superEdgeCount), Arrays.copyOf(superLengths, superEdgeCount),
+                Arrays.copyOf(superElevationGains, superEdgeCount));
+    }
+
+    /**
+     * Retourne le nombre de noeuds principaux, c.-à-d. non contractés
+     * @return le nombre de noeuds principaux
+     */
+    public int coreNodeCount() {
+        return coreNodeIds.length;
+    }
+
+    /**
+     * Retourne vrai ssi le noeud donné fait partie d'une chaîne contractée
+     * @param nodeId identité du noeud
+     * @return vrai ssi le noeud est contracté
+     */
+    public boolean isContracted(int nodeId) {
+        return coreIds[nodeId] == -1;
+    }
+
+    /**
+     * Retourne le nombre de super-arêtes
+     * @return le nombre de super-arêtes
+     */
+    public int superEdgeCount() {
+        return superTargets.length;
+    }
+
+    /**
+     * Retourne l'identité du noeud de départ de la super-arête donnée
+     * @param superEdgeId identité de la super-arête
+     * @return l'identité du noeud de départ
+     */
+    public int superEdgeSourceNodeId(int superEdgeId) {
+        return reverseAdjacency.edgeSourceNodeId(superFirstEdgeIds[superEdgeId]);
+    }
+
+    /**
+     * Retourne l'identité du noeud d'arrivée de la super-arête donnée
+     * @param superEdgeId identité de la super-arête
+     * @return l'identité du noeud d'arrivée
+     */
+    public int superEdgeTargetNodeId(int superEdgeId) {
+        return coreNodeIds[superTargets[superEdgeId]];
+    }
+
+    /**
+     * Retourne le coût de la super-arête donnée, somme des coûts de ses arêtes
+     * @param superEdgeId identité de la super-arête
+     * @return le coût de la super-arête
+     */
+    public double superEdgeCost(int superEdgeId) {
+        return superCosts[superEdgeId];
+    }
+
+    /**
+     * Retourne la longueur, en mètres, de la super-arête donnée
+     * @param superEdgeId identité de la super-arête
+     * @return la longueur de la super-arête
+     */
+    public double superEdgeLength(int superEdgeId) {
+        return superLengths[superEdgeId];
+    }
+
+    /**
+     * Retourne le dénivelé positif total, en mètres, de la super-arête donnée
+     * @param superEdgeId identité de la super-arête
+     * @return le dénivelé positif de la super-arête
+     */
+    public double superEdgeElevationGain(int superEdgeId) {
+        return superElevationGains[superEdgeId];
+    }
+
+    /**
+     * Retourne les identités des arêtes du graphe remplacées par la super-arête donnée, dans l'ordre
+     * @param superEdgeId identité de la super-arête
+     * @return les identités des arêtes de la super-arête
+     */
+    public int[] superEdgeEdgeIds(int superEdgeId) {
+        int[] edgeIds = new int[superEdgeCounts[superEdgeId]];
+        int edgeId = superFirstEdgeIds[superEdgeId];
+        int previousNodeId = reverseAdjacency.edgeSourceNodeId(edgeId);
+        for (int i = 0; i < edgeIds.length; i++) {
+            edgeIds[i] = edgeId;
+            int nodeId = graph.edgeTargetNodeId(edgeId);
+            if (i + 1 < edgeIds.length) edgeId = nextEdgeId(graph, costFunction, nodeId, previousNodeId);
+            previousNodeId = nodeId;
+        }
+        return edgeIds;
+    }
+
+    /**
+     * Calcule le meilleur itinéraire entre les deux noeuds donnés, qui peuvent être contractés, au moyen d'une
+     * recherche A* dans le graphe simplifié
+     * @param startNodeId identité du premier noeud de l'itinéraire
+     * @param endNodeId identité du dernier noeud de l'itinéraire
+     * @return le meilleur itinéraire, ou null s'il n'en existe aucun
+     * @throws IllegalArgumentException si les deux noeuds sont identiques
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        if (heuristic.lowerBound(startNodeId, endNodeId) == Double.POSITIVE_INFINITY) return null;
+        SearchState state = searchStates.get();
+        state.begin();
+        NodeQueue queue = state.queue();
+
+        // Départ: le noeud lui-même s'il est principal, sinon les noeuds principaux aux extrémités de sa chaîne,
+        // dont le prédécesseur -2 - i désigne l'index i de l'arête sortante du départ qui y mène
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestTargetIndex = -1;
+        int directEdgeIndex = -1;
+        if (coreIds[startNodeId] != -1) {
+            push(state, coreIds[startNodeId], 0, -1, endNodeId);
+        } else {
+            for (int i = 0; i < graph.nodeOutDegree(startNodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(startNodeId, i);
+                if (!isUsable(graph, costFunction, startNodeId, edgeId)) continue;
+                int previousNodeId = startNodeId;
+                double cost = 0;
+                int nodeId;
+                while (true) {
+                    nodeId = graph.edgeTargetNodeId(edgeId);
+                    cost += graph.edgeLength(edgeId) * costFunction.costFactor(previousNodeId, edgeId);
+                    if (coreIds[nodeId] != -1 || nodeId == endNodeId || nodeId == startNodeId) break;
+                    edgeId = nextEdgeId(graph, costFunction, nodeId, previousNodeId);
+                    previousNodeId = nodeId;
+                }
+                if (nodeId == endNodeId && cost < bestCost) {
+                    bestCost = cost;
+                    directEdgeIndex = i;
+                } else if (coreIds[nodeId] != -1 && cost < state.distance(coreIds[nodeId])) {
+                    push(state, coreIds[nodeId], cost, -2 - i, endNodeId);
+                }
+            }
+        }
+
+        // Arrivée: le noeud lui-même s'il est principal, sinon les noeuds principaux aux extrémités de sa chaîne,
+        // accompagnés du coût et de la première arête du chemin qui en mène à l'arrivée
+        int[] targetCoreIds = new int[2];
+        int[] targetFirstEdgeIds = new int[2];
+        double[] targetCosts = new double[2];
+        int targetCount = 0;
+        if (coreIds[endNodeId] != -1) {
+            targetCoreIds[0] = coreIds[endNodeId];
+            targetFirstEdgeIds[0] = -1;
+            targetCount = 1;
+        } else {
+            for (int i = 0; i < reverseAdjacency.inDegree(endNodeId); i++) {
+                int edgeId = reverseAdjacency.inEdgeId(endNodeId, i);
+                int nodeId = reverseAdjacency.edgeSourceNodeId(edgeId);
+                if (!isUsable(graph, costFunction, nodeId, edgeId)) continue;
+                int nextNodeId = endNodeId;
+                double cost = 0;
+                while (true) {
+                    cost += graph.edgeLength(edgeId) * costFunction.costFactor(nodeId, edgeId);
+                    if (coreIds[nodeId] != -1 || nodeId == endNodeId) break;
+                    edgeId = previousEdgeId(nodeId, nextNodeId);
+                    if (edgeId == -1) break;
+                    nextNodeId = nodeId;
+                    nodeId = reverseAdjacency.edgeSourceNodeId(edgeId);
+                }
+                if (coreIds[nodeId] != -1) {
+                    targetCoreIds[targetCount] = coreIds[nodeId];
+                    targetFirstEdgeIds[targetCount] = edgeId;
+                    targetCosts[targetCount] = cost;
+                    targetCount += 1;
+                }
+            }
+        }
+
+        while (!queue.isEmpty() && queue.minKey() < bestCost) {
+            int coreId = queue.pop();
+            if (state.isSettled(coreId)) continue;
+            state.settle(coreId);
+            double distance = state.distance(coreId);
+            for (int k = 0; k < targetCount; k++) {
+                if (targetCoreIds[k] == coreId && distance + targetCosts[k] < bestCost) {
+                    bestCost = distance + targetCosts[k];
+                    bestTargetIndex = k;
+                }
+            }
+            for (int superEdgeId = firstSuperEdges[coreId]; superEdgeId < firstSuperEdges[coreId + 1];
+                 superEdgeId++) {
+                int targetId = superTargets[superEdgeId];
+                if (state.isSettled(targetId)) continue;
+                double d = distance + superCosts[superEdgeId];
+                if (d < state.distance(targetId)) push(state, targetId, d, superEdgeId, endNodeId);
+            }
+        }
+        if (bestCost == Double.POSITIVE_INFINITY) return null;
+
+        List<Edge> edges = new ArrayList<>();
+        if (bestTargetIndex == -1) {
+            addChainEdges(edges, graph.nodeOutEdgeId(startNodeId, directEdgeIndex), endNodeId);
+            return new SingleRoute(edges);
+        }
+        int k = bestTargetIndex;
+        int[] superEdgeIds = new int[16];
+        int superEdgeCount = 0;
+        int coreId = targetCoreIds[k];
+        while (state.predecessor(coreId) >= 0) {
+            int superEdgeId = state.predecessor(coreId);
+            if (superEdgeCount == superEdgeIds.length) {
+                superEdgeIds = Arrays.copyOf(superEdgeIds, 2 * superEdgeCount);
+            }
+            superEdgeIds[superEdgeCount++] = superEdgeId;
+            coreId = coreIds[superEdgeSourceNodeId(superEdgeId)];
+        }
+        int firstPredecessor = state.predecessor(coreId);
+        if (firstPredecessor != -1) {
+            addChainEdges(edges, graph.nodeOutEdgeId(startNodeId, -2 - firstPredecessor), -1);
+        }
+        for (int i = superEdgeCount - 1; i >= 0; i--) {
+            addChainEdges(edges, superFirstEdgeIds[superEdgeIds[i]], -1);
+        }
+        if (targetFirstEdgeIds[k] != -1) addChainEdges(edges, targetFirstEdgeIds[k], endNodeId);
+        return new SingleRoute(edges);
+    }
+
+    /**
+     * Méthode auxiliaire ajoutant un noeud principal à la file de la recherche, sauf si l'heuristique garantit
+     * qu'il ne mène pas à l'arrivée
+     * @param state état de la recherche
+     * @param coreId index du noeud principal
+     * @param distance coût du meilleur chemin connu vers ce noeud
+     * @param predecessor super-arête menant à ce noeud, ou valeur négative pour un noeud de départ
+     * @param endNodeId identité du noeud d'arrivée
+     */
+    private void push(SearchState state, int coreId, double distance, int predecessor, int endNodeId) {
+        double bound = heuristic.lowerBound(coreNodeIds[coreId], endNodeId);
+        if (bound == Double.POSITIVE_INFINITY) return;
+        state.update(coreId, distance, predecessor);
+        state.queue().push(coreId, (float) (distance + bound));
+    }
+
+    /**
+     * Méthode auxiliaire ajoutant à la liste donnée les arêtes d'une chaîne, depuis l'arête donnée jusqu'au
+     * prochain noeud principal ou jusqu'au noeud d'arrêt donné
+     * @param edges arêtes de l'itinéraire
+     * @param edgeId identité de la première arête de la chaîne
+     * @param stopNodeId identité du noeud d'arrêt, ou -1
+     */
+    private void addChainEdges(List<Edge> edges, int edgeId, int stopNodeId) {
+        int previousNodeId = reverseAdjacency.edgeSourceNodeId(edgeId);
+        while (true) {
+            int nodeId = graph.edgeTargetNodeId(edgeId);
+            edges.add(Edge.of(graph, edgeId, previousNodeId, nodeId));
+            if (coreIds[nodeId] != -1 || nodeId == stopNodeId) return;
+            edgeId = nextEdgeId(graph, costFunction, nodeId, previousNodeId);
+            previousNodeId = nodeId;
+        }
+    }
+
+    /**
+     * Méthode auxiliaire retournant l'arête praticable d'une chaîne menant au noeud contracté donné depuis son
+     * voisin autre que le noeud suivant donné
+     * @param nodeId identité du noeud contracté
+     * @param nextNodeId identité du voisin vers lequel mène la chaîne
+     * @return l'identité de l'arête, ou -1 s'il n'en existe aucune
+     */
+    private int previousEdgeId(int nodeId, int nextNodeId) {
+        for (int i = 0; i < reverseAdjacency.inDegree(nodeId); i++) {
+            int edgeId = reverseAdjacency.inEdgeId(nodeId, i);
+            int sourceNodeId = reverseAdjacency.edgeSourceNodeId(edgeId);
+            if (sourceNodeId != nextNodeId && isUsable(graph, costFunction, sourceNodeId, edgeId)) return edgeId;
+        }
+        return -1;
+    }
+
+    /**
+     * Méthode auxiliaire retournant l'arête praticable par laquelle une chaîne se poursuit au-delà du noeud
+     * contracté donné, c.-à-d. celle qui ne retourne pas au noeud précédent donné
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param nodeId identité du noeud contracté
+     * @param previousNodeId identité du noeud précédent de la chaîne
+     * @return l'identité de l'arête
+     */
+    private static int nextEdgeId(Graph graph, CostFunction costFunction, int nodeId, int previousNodeId) {
+        for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+            int edgeId = graph.nodeOutEdgeId(nodeId, i);
+            if (graph.edgeTargetNodeId(edgeId) != previousNodeId && isUsable(graph, costFunction, nodeId, edgeId)) {
+                return edgeId;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Méthode auxiliaire retournant vrai ssi l'arête donnée est praticable, c.-à-d. de coût fini
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param nodeId identité du noeud de départ de l'arête
+     * @param edgeId identité de l'arête
+     * @return vrai ssi l'arête est praticable
+     */
+    private static boolean isUsable(Graph graph, CostFunction costFunction, int nodeId, int edgeId) {
+        return costFunction.costFactor(nodeId, edgeId) != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Méthode auxiliaire retournant vrai ssi le noeud donné peut être contracté dans une chaîne
+     * @param graph graphe
+     * @param costFunction fonction de coût des arêtes
+     * @param reverseAdjacency arêtes entrantes des noeuds du graphe
+     * @param nodeId identité du noeud
+     * @return vrai ssi le noeud peut être contracté
+     */
+    private static boolean isChainNode(Graph graph, CostFunction costFunction, ReverseAdjacency reverseAdjacency,
+                                       int nodeId) {
+        // Voisins distincts, et arêtes praticables vers (bit 0) et depuis (bit 1) chacun d'eux
+        int[] neighborIds = {-1, -1};
+        int[] directions = new int[2];
+        for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+            int edgeId = graph.nodeOutEdgeId(nodeId, i);
+            if (!isUsable(graph, costFunction, nodeId, edgeId)) continue;
+            int k = neighborIndex(neighborIds, graph.edgeTargetNodeId(edgeId), nodeId);
+            if (k == -1 || (directions[k] & 1) != 0) return false;
+            directions[k] |= 1;
+        }
+        for (int i = 0; i < reverseAdjacency.inDegree(nodeId); i++) {
+            int edgeId = reverseAdjacency.inEdgeId(nodeId, i);
+            int sourceNodeId = reverseAdjacency.edgeSourceNodeId(edgeId);
+            if (!isUsable(graph, costFunction, sourceNodeId, edgeId)) continue;
+            int k = neighborIndex(neighborIds, sourceNodeId, nodeId);
+            if (k == -1 || (directions[k] & 2) != 0) return false;
+            directions[k] |= 2;
+        }
+        if (neighborIds[1] == -1) return false;
+        // Un itinéraire entrant depuis un voisin doit pouvoir ressortir vers l'autre
+        for (int k = 0; k < 2; k++) {
+            if ((directions[k] & 2) != 0 && (directions[1 - k] & 1) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Méthode auxiliaire retournant l'index du voisin donné parmi les (au plus deux) voisins distincts d'un noeud,
+     * en l'y ajoutant si nécessaire
+     * @param neighborIds voisins distincts déjà rencontrés, -1 désignant une place libre
+     * @param neighborId identité du voisin
+     * @param nodeId identité du noeud
+     * @return l'index du voisin, ou -1 s'il s'agit du noeud lui-même ou d'un troisième voisin distinct
+     */
+    private static int neighborIndex(int[] neighborIds, int neighborId, int nodeId) {
+        if (neighborId == nodeId) return -1;
+        for (int k = 0; k < 2; k++) {
+            if (neighborIds[k] == neighborId) return k;
+            if (neighborIds[k] == -1) {
+                neighborIds[k] = neighborId;
+                return k;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,19 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+/**
+ * Enregistrement StraightLineHeuristic, heuristique estimant le coût d'un itinéraire par la distance à vol
+ * d'oiseau entre ses extrémités. Elle est valable pour toute fonction de coût dont les facteurs sont supérieurs
+ * ou égaux à 1.
+ *
+ * @author Pedro Gouveia (345768)
+ * @author Idriss Mimet (324424)
+ */
+public record StraightLineHeuristic(Graph graph) implements Heuristic {
+
+    @Override
+    public double lowerBound(int fromNodeId, int toNodeId) {
+        return graph.nodePoint(fromNodeId).distanceTo(graph.nodePoint(toNodeId));
+    }
+}